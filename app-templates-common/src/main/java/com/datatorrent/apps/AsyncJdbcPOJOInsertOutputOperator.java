@@ -0,0 +1,362 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.lib.db.jdbc.JdbcPOJOInsertOutputOperator;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+import com.datatorrent.lib.util.KryoCloneUtils;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * {@link JdbcPOJOInsertOutputOperator} which executes its batches on a pool of
+ * worker connections instead of on the operator thread.
+ * <p>
+ * Tuples are assigned to one of <code>workers</code> worker connections by the
+ * hash of <code>keyExpression</code>, so tuples with the same key are inserted
+ * in order, or round robin when no key is set. The round robin starts again
+ * with the first worker in every window, so a replayed window hands every
+ * tuple to the same worker as the first time. A worker executes the batches
+ * handed to it in order on its own connection and thread, while the operator
+ * thread goes on with the next tuples; at most
+ * <code>maxInFlightBatches</code> batches are queued or executing, beyond
+ * that the operator thread waits, which applies back pressure upstream.
+ * <p>
+ * At the end of a window every worker commits its transaction together with
+ * its own row in the meta table of the store, under the negative operator id
+ * <code>-(operatorId * 64 + worker + 1)</code>, so after a failure each worker
+ * skips exactly the windows it already committed. The window id of the
+ * operator is stored in the meta table and committed once all workers have
+ * acknowledged the window. Unlike the synchronous operator, a failed batch
+ * fails the operator instead of emitting error tuples.
+ */
+public class AsyncJdbcPOJOInsertOutputOperator extends JdbcPOJOInsertOutputOperator
+{
+  private static final int MAX_WORKERS = 64;
+
+  @Min(1)
+  @Max(MAX_WORKERS)
+  private int workers = 4;
+
+  @Min(1)
+  private int maxInFlightBatches = 8;
+
+  private String keyExpression;
+
+  @AutoMetric
+  private long batchesSubmitted;
+
+  @AutoMetric
+  private long submitWaitNanos;
+
+  @AutoMetric
+  private long commitWaitNanos;
+
+  private transient String appId;
+  private transient int operatorId;
+  private transient long windowId;
+  private transient long committedWindowId;
+  private transient Worker[] pool;
+  private transient Semaphore inFlight;
+  private transient long roundRobin;
+  private transient Class<?> keyClass;
+  private transient PojoUtils.Getter<Object, Object> keyGetter;
+  private final transient AtomicReference<Throwable> error = new AtomicReference<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    appId = context.getValue(DAG.APPLICATION_ID);
+    operatorId = context.getId();
+    committedWindowId = getStore().getCommittedWindowId(appId, operatorId);
+    inFlight = new Semaphore(maxInFlightBatches);
+    pool = new Worker[workers];
+    for (int i = 0; i < workers; i++) {
+      pool[i] = new Worker(-(operatorId * MAX_WORKERS + i + 1));
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (pool != null) {
+      for (Worker worker : pool) {
+        worker.close();
+      }
+    }
+    super.teardown();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    this.windowId = windowId;
+    roundRobin = 0;
+    batchesSubmitted = 0;
+    submitWaitNanos = 0;
+    commitWaitNanos = 0;
+  }
+
+  @Override
+  public void processTuple(Object tuple)
+  {
+    if (windowId <= committedWindowId) {
+      return;
+    }
+    Worker worker = pool[workerIndex(tuple)];
+    worker.pending.add(tuple);
+    if (worker.pending.size() >= getBatchSize()) {
+      submit(worker);
+    }
+  }
+
+  private int workerIndex(Object tuple)
+  {
+    if (keyExpression == null) {
+      return (int)(roundRobin++ % workers);
+    }
+    if (tuple.getClass() != keyClass) {
+      keyClass = tuple.getClass();
+      keyGetter = PojoUtils.createGetter(keyClass, keyExpression, Object.class);
+    }
+    Object key = keyGetter.get(tuple);
+    if (key == null) {
+      return 0;
+    }
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % workers;
+  }
+
+  private void submit(final Worker worker)
+  {
+    checkError();
+    long start = System.nanoTime();
+    inFlight.acquireUninterruptibly();
+    submitWaitNanos += System.nanoTime() - start;
+    final List<Object> batch = worker.pending;
+    final long window = windowId;
+    worker.pending = new ArrayList<>(getBatchSize());
+    batchesSubmitted++;
+    worker.executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          worker.execute(batch, window);
+        } catch (Throwable t) {
+          error.compareAndSet(null, t);
+        } finally {
+          inFlight.release();
+        }
+      }
+    });
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (windowId > committedWindowId) {
+      for (Worker worker : pool) {
+        if (!worker.pending.isEmpty()) {
+          submit(worker);
+        }
+      }
+      long start = System.nanoTime();
+      List<Future<?>> commits = new ArrayList<>(pool.length);
+      for (final Worker worker : pool) {
+        final long window = windowId;
+        commits.add(worker.executor.submit(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            worker.commit(window);
+          }
+        }));
+      }
+      for (Future<?> commit : commits) {
+        try {
+          commit.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+          error.compareAndSet(null, e.getCause());
+        }
+      }
+      commitWaitNanos = System.nanoTime() - start;
+      checkError();
+    }
+    super.endWindow();
+    committedWindowId = Math.max(committedWindowId, windowId);
+  }
+
+  private void checkError()
+  {
+    Throwable t = error.get();
+    if (t != null) {
+      throw new RuntimeException("JDBC worker failed", t);
+    }
+  }
+
+  /**
+   * A connection with its own transaction and meta table row, used only by
+   * its single thread.
+   */
+  private class Worker
+  {
+    private final int metaOperatorId;
+    private final JdbcTransactionalStore workerStore;
+    private final ExecutorService executor;
+    private final long workerCommittedWindowId;
+    private PreparedStatement statement;
+    private List<Object> pending = new ArrayList<>();
+    private boolean inTransaction;
+
+    Worker(int metaOperatorId)
+    {
+      this.metaOperatorId = metaOperatorId;
+      workerStore = KryoCloneUtils.cloneObject(getStore());
+      workerStore.connect();
+      workerCommittedWindowId = workerStore.getCommittedWindowId(appId, metaOperatorId);
+      executor = Executors.newSingleThreadExecutor();
+    }
+
+    void execute(List<Object> batch, long window) throws SQLException
+    {
+      if (window <= workerCommittedWindowId || error.get() != null) {
+        return;
+      }
+      if (!inTransaction) {
+        workerStore.beginTransaction();
+        inTransaction = true;
+      }
+      if (statement == null) {
+        statement = workerStore.getConnection().prepareStatement(getUpdateCommand());
+      }
+      for (Object tuple : batch) {
+        setStatementParameters(statement, tuple);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+      statement.clearBatch();
+    }
+
+    void commit(long window)
+    {
+      if (window <= workerCommittedWindowId || error.get() != null) {
+        // a failed batch of any worker must not be committed as part of the window
+        return;
+      }
+      if (!inTransaction) {
+        workerStore.beginTransaction();
+      }
+      workerStore.storeCommittedWindowId(appId, metaOperatorId, window);
+      workerStore.commitTransaction();
+      inTransaction = false;
+    }
+
+    void close()
+    {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      try {
+        if (statement != null) {
+          statement.close();
+        }
+      } catch (SQLException e) {
+        LOG.warn("Closing statement", e);
+      }
+      workerStore.disconnect();
+    }
+  }
+
+  public int getWorkers()
+  {
+    return workers;
+  }
+
+  /**
+   * Number of worker connections, at most 64. Default is 4.
+   */
+  public void setWorkers(int workers)
+  {
+    this.workers = workers;
+  }
+
+  public int getMaxInFlightBatches()
+  {
+    return maxInFlightBatches;
+  }
+
+  /**
+   * Maximum number of batches queued or executing over all workers before
+   * the operator thread waits. Default is 8.
+   */
+  public void setMaxInFlightBatches(int maxInFlightBatches)
+  {
+    this.maxInFlightBatches = maxInFlightBatches;
+  }
+
+  public String getKeyExpression()
+  {
+    return keyExpression;
+  }
+
+  /**
+   * Field name or PojoUtils expression of the key whose tuples are inserted in
+   * order by the same worker. Tuples are spread round robin when it is not
+   * set.
+   */
+  public void setKeyExpression(String keyExpression)
+  {
+    this.keyExpression = keyExpression;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncJdbcPOJOInsertOutputOperator.class);
+}
@@ -19,45 +19,18 @@
 
 package com.datatorrent.apps;
 
-public class PojoEvent
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.BytesFileOutputOperator;
+
+/**
+ * File writer for byte chunks which already contain complete, terminated
+ * records, such as the output of {@link DelimitedByteFormatter}. Each chunk is
+ * written as is, without appending a tuple separator.
+ */
+public class ChunkedBytesFileOutputOperator extends BytesFileOutputOperator
 {
   @Override
-  public String toString()
-  {
-    return "PojoEvent [accountNumber=" + accountNumber + ", name=" + name + ", amount=" + amount + "]";
-  }
-
-  private int accountNumber;
-  private String name;
-  private int amount;
-
-  public int getAccountNumber()
-  {
-    return accountNumber;
-  }
-
-  public void setAccountNumber(int accountNumber)
-  {
-    this.accountNumber = accountNumber;
-  }
-
-  public String getName()
-  {
-    return name;
-  }
-
-  public void setName(String name)
-  {
-    this.name = name;
-  }
-
-  public int getAmount()
-  {
-    return amount;
-  }
-
-  public void setAmount(int amount)
+  protected byte[] getBytesForTuple(byte[] tuple)
   {
-    this.amount = amount;
+    return tuple;
   }
 }
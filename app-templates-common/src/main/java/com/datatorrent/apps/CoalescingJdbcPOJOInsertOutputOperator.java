@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.validation.constraints.Min;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.Operator;
+import com.datatorrent.lib.db.jdbc.JdbcPOJOInsertOutputOperator;
+
+/**
+ * {@link JdbcPOJOInsertOutputOperator} which commits the rows and the
+ * committed window id every <code>commitWindowCount</code> windows, or once
+ * <code>commitRowCount</code> rows are uncommitted, instead of every window.
+ * <p>
+ * The store has to be a {@link CoalescingJdbcTransactionalStore}. The
+ * transaction is also committed before every checkpoint, so the database
+ * never lags behind the checkpointed state of the operator and the windows
+ * lost with an uncommitted transaction are replayed by the upstream
+ * operators. The meta table then receives one update per commit instead of
+ * one per window.
+ * <p>
+ * With the window id, application id and operator id columns of the store
+ * set, the insert also writes the current window id, application id and
+ * operator id into those columns of every row, and the meta table is not
+ * used.
+ */
+public class CoalescingJdbcPOJOInsertOutputOperator extends JdbcPOJOInsertOutputOperator
+    implements Operator.CheckpointNotificationListener
+{
+  private static final Pattern VALUES = Pattern.compile("\\)\\s*VALUES\\s*\\(", Pattern.CASE_INSENSITIVE);
+
+  @Min(1)
+  private int commitWindowCount = 10;
+
+  @Min(0)
+  private long commitRowCount;
+
+  @AutoMetric
+  private long commits;
+
+  private transient CoalescingJdbcTransactionalStore coalescingStore;
+  private transient String appId;
+  private transient int operatorId;
+  private transient long windowId;
+  private transient int uncommittedWindows;
+  private transient long uncommittedRows;
+  private transient String insertCommand;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    if (!(getStore() instanceof CoalescingJdbcTransactionalStore)) {
+      throw new IllegalArgumentException("The store has to be a " + CoalescingJdbcTransactionalStore.class.getName());
+    }
+    coalescingStore = (CoalescingJdbcTransactionalStore)getStore();
+    if (coalescingStore.isStaging()) {
+      if (coalescingStore.getAppIdColumn() == null || coalescingStore.getOperatorIdColumn() == null) {
+        throw new IllegalArgumentException("The window id column needs the app id and operator id columns");
+      }
+      if (coalescingStore.getDataTable() == null) {
+        coalescingStore.setDataTable(getTablename());
+      }
+    }
+    appId = context.getValue(DAG.APPLICATION_ID);
+    operatorId = context.getId();
+    super.setup(context);
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    this.windowId = windowId;
+    commits = 0;
+  }
+
+  @Override
+  public void processTuple(Object tuple)
+  {
+    uncommittedRows++;
+    super.processTuple(tuple);
+  }
+
+  @Override
+  public void endWindow()
+  {
+    uncommittedWindows++;
+    boolean commit = uncommittedWindows >= commitWindowCount
+        || (commitRowCount > 0 && uncommittedRows >= commitRowCount);
+    coalescingStore.setDeferCommit(!commit);
+    super.endWindow();
+    if (commit) {
+      countCommit();
+    }
+  }
+
+  @Override
+  public void beforeCheckpoint(long windowId)
+  {
+    if (uncommittedWindows > 0) {
+      coalescingStore.flush();
+      countCommit();
+    }
+  }
+
+  private void countCommit()
+  {
+    commits++;
+    uncommittedWindows = 0;
+    uncommittedRows = 0;
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+  }
+
+  /**
+   * Adds the window id, app id and operator id columns to the insert statement of
+   * the super class.
+   */
+  @Override
+  protected String getUpdateCommand()
+  {
+    if (!coalescingStore.isStaging()) {
+      return super.getUpdateCommand();
+    }
+    if (insertCommand == null) {
+      String command = super.getUpdateCommand();
+      Matcher matcher = VALUES.matcher(command);
+      int end = command.lastIndexOf(')');
+      if (!matcher.find() || end < matcher.end()) {
+        throw new IllegalStateException("Unexpected insert statement " + command);
+      }
+      insertCommand = command.substring(0, matcher.start()) + ", " + coalescingStore.getWindowIdColumn() + ", "
+          + coalescingStore.getAppIdColumn() + ", " + coalescingStore.getOperatorIdColumn()
+          + command.substring(matcher.start(), end) + ", ?, ?, ?" + command.substring(end);
+    }
+    return insertCommand;
+  }
+
+  @Override
+  protected void setStatementParameters(PreparedStatement statement, Object tuple) throws SQLException
+  {
+    super.setStatementParameters(statement, tuple);
+    if (coalescingStore.isStaging()) {
+      int index = getFieldInfos().size();
+      statement.setLong(index + 1, windowId);
+      statement.setString(index + 2, appId);
+      statement.setInt(index + 3, operatorId);
+    }
+  }
+
+  public int getCommitWindowCount()
+  {
+    return commitWindowCount;
+  }
+
+  /**
+   * Number of windows committed together. Default is 10.
+   */
+  public void setCommitWindowCount(int commitWindowCount)
+  {
+    this.commitWindowCount = commitWindowCount;
+  }
+
+  public long getCommitRowCount()
+  {
+    return commitRowCount;
+  }
+
+  /**
+   * Number of uncommitted rows after which the transaction is committed at the
+   * end of the window, or 0 for no limit. Default is 0.
+   */
+  public void setCommitRowCount(long commitRowCount)
+  {
+    this.commitRowCount = commitRowCount;
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+
+/**
+ * {@link JdbcTransactionalStore} which can keep the transaction of a window
+ * open into the next windows, so that the data and the committed window id
+ * of several windows are committed together. Used by
+ * {@link CoalescingJdbcPOJOInsertOutputOperator}, which decides when to
+ * commit.
+ * <p>
+ * With <code>windowIdColumn</code>, <code>appIdColumn</code> and
+ * <code>operatorIdColumn</code> set, the meta table is not used at all: the
+ * operator writes its window id, application id and operator id into these
+ * columns of every row it inserts into <code>dataTable</code>, so they are
+ * committed with the rows, and the committed window id of an operator is the
+ * highest window id of the rows of its application and operator id. Like the
+ * rows of the meta table, the rows of other applications writing to the same
+ * table are not taken into account.
+ */
+public class CoalescingJdbcTransactionalStore extends JdbcTransactionalStore
+{
+  private String dataTable;
+  private String windowIdColumn;
+  private String appIdColumn;
+  private String operatorIdColumn;
+
+  private transient boolean deferCommit;
+  private transient boolean transactionOpen;
+  private transient String pendingAppId;
+  private transient int pendingOperatorId;
+  private transient long pendingWindowId = -1;
+
+  boolean isStaging()
+  {
+    return windowIdColumn != null;
+  }
+
+  /**
+   * Makes the following commit keep the transaction open.
+   */
+  void setDeferCommit(boolean deferCommit)
+  {
+    this.deferCommit = deferCommit;
+  }
+
+  /**
+   * Commits the transaction kept open, with the last window id stored in it.
+   */
+  void flush()
+  {
+    if (transactionOpen) {
+      transactionOpen = false;
+      if (pendingWindowId >= 0) {
+        super.storeCommittedWindowId(pendingAppId, pendingOperatorId, pendingWindowId);
+        pendingWindowId = -1;
+      }
+      super.commitTransaction();
+    }
+  }
+
+  @Override
+  public void beginTransaction()
+  {
+    if (!transactionOpen) {
+      super.beginTransaction();
+    }
+  }
+
+  @Override
+  public void commitTransaction()
+  {
+    transactionOpen = true;
+    if (!deferCommit) {
+      flush();
+    }
+  }
+
+  @Override
+  public void storeCommittedWindowId(String appId, int operatorId, long windowId)
+  {
+    if (isStaging()) {
+      // committed with the rows
+      return;
+    }
+    pendingAppId = appId;
+    pendingOperatorId = operatorId;
+    pendingWindowId = windowId;
+  }
+
+  @Override
+  public long getCommittedWindowId(String appId, int operatorId)
+  {
+    if (!isStaging()) {
+      return super.getCommittedWindowId(appId, operatorId);
+    }
+    String sql = "SELECT MAX(" + windowIdColumn + ") FROM " + dataTable + " WHERE " + appIdColumn + " = ? AND "
+        + operatorIdColumn + " = ?";
+    try (PreparedStatement statement = getConnection().prepareStatement(sql)) {
+      statement.setString(1, appId);
+      statement.setInt(2, operatorId);
+      try (ResultSet result = statement.executeQuery()) {
+        long windowId = result.next() ? result.getLong(1) : -1;
+        return result.wasNull() ? -1 : windowId;
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to read the committed window from " + dataTable, e);
+    }
+  }
+
+  @Override
+  public void disconnect()
+  {
+    // what is still open is rolled back and replayed
+    transactionOpen = false;
+    pendingWindowId = -1;
+    super.disconnect();
+  }
+
+  public String getDataTable()
+  {
+    return dataTable;
+  }
+
+  /**
+   * Table the operator inserts into, when the window id is stored in its rows.
+   * Default is the table of the operator.
+   */
+  public void setDataTable(String dataTable)
+  {
+    this.dataTable = dataTable;
+  }
+
+  public String getWindowIdColumn()
+  {
+    return windowIdColumn;
+  }
+
+  /**
+   * BIGINT column of <code>dataTable</code> which receives the window id of
+   * every row inserted. When set the meta table is not used.
+   */
+  public void setWindowIdColumn(String windowIdColumn)
+  {
+    this.windowIdColumn = windowIdColumn;
+  }
+
+  public String getAppIdColumn()
+  {
+    return appIdColumn;
+  }
+
+  /**
+   * VARCHAR column of <code>dataTable</code> which receives the id of the
+   * application which inserted the row. Required with the window id column.
+   */
+  public void setAppIdColumn(String appIdColumn)
+  {
+    this.appIdColumn = appIdColumn;
+  }
+
+  public String getOperatorIdColumn()
+  {
+    return operatorIdColumn;
+  }
+
+  /**
+   * INTEGER column of <code>dataTable</code> which receives the id of the
+   * operator partition which inserted the row. Required with the window id
+   * column. The application id, operator id and window id columns should be
+   * indexed together.
+   */
+  public void setOperatorIdColumn(String operatorIdColumn)
+  {
+    this.operatorIdColumn = operatorIdColumn;
+  }
+}
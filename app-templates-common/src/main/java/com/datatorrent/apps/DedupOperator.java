@@ -0,0 +1,493 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.state.managed.ManagedTimeStateImpl;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.util.PojoUtils;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Drops tuples whose key was already seen within the expiry period.
+ * <p>
+ * The key of a tuple is the value of <code>keyExpression</code>, a field name
+ * or a PojoUtils expression such as <code>{$.accountNumber}</code>. Keys are
+ * remembered for <code>expireSeconds</code>, or for <code>expireWindows</code>
+ * application windows when that is set, give or take one generation. The age
+ * of a key is measured in window time, so replayed windows get the same
+ * decisions as the first time.
+ * <p>
+ * Every accepted key is written to managed state, which spills to files under
+ * the application path and checkpoints only what changed since the last
+ * checkpoint, so the checkpoint size does not grow with the expiry period. In
+ * front of it the operator keeps, outside the checkpoint, one off-heap Bloom
+ * filter per generation of the expiry period and the exact key sets of the
+ * <code>recentGenerations</code> newest generations. A new key, which most
+ * keys are, is recognized by the Bloom filters without reading the store; a
+ * recent duplicate is found in the exact sets. Only a key that may have been
+ * seen in an older generation is looked up in the store.
+ * <p>
+ * After a restart the Bloom filters are empty, so until the keys seen before
+ * the restart have expired every key missed by the exact sets is looked up in
+ * the store. Tuples with a null key are passed on as unique.
+ */
+public class DedupOperator extends BaseOperator implements Operator.CheckpointNotificationListener
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int DEFAULT_NUM_BUCKETS = 16;
+
+  @NotNull
+  private String keyExpression;
+
+  @Min(0)
+  private long expireSeconds = 3600;
+
+  @Min(0)
+  private long expireWindows;
+
+  @Min(1)
+  private int bloomGenerations = 8;
+
+  @Min(0)
+  private int recentGenerations = 2;
+
+  @Min(1)
+  private int expectedKeysPerGeneration = 1000000;
+
+  @DecimalMin(value = "0.0", inclusive = false)
+  @DecimalMax(value = "1.0", inclusive = false)
+  private double falsePositiveProbability = 0.01;
+
+  @NotNull
+  private ManagedTimeStateImpl managedState = new ManagedTimeStateImpl();
+
+  @AutoMetric
+  private long uniqueTuples;
+
+  @AutoMetric
+  private long duplicateTuples;
+
+  @AutoMetric
+  private long storeLookups;
+
+  private transient Class<?> tupleClass;
+  private transient PojoUtils.Getter<Object, Object> keyGetter;
+  private transient long windowWidthMillis;
+  private transient long expireMillis;
+  private transient long generationMillis;
+  private transient ArrayDeque<Generation> generations;
+  private transient boolean recovered;
+  private transient long verifyUntilMillis;
+  private transient long windowMillis;
+
+  public DedupOperator()
+  {
+    managedState.setNumBuckets(DEFAULT_NUM_BUCKETS);
+  }
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      processTuple(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> unique = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> duplicate = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  };
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    keyGetter = PojoUtils.createGetter(tupleClass, keyExpression, Object.class);
+    windowWidthMillis = context.getValue(Context.DAGContext.STREAMING_WINDOW_SIZE_MILLIS);
+    if (expireWindows > 0) {
+      expireMillis = expireWindows * windowWidthMillis
+          * context.getValue(Context.OperatorContext.APPLICATION_WINDOW_COUNT);
+    } else {
+      expireMillis = expireSeconds * 1000;
+    }
+    generationMillis = Math.max(windowWidthMillis, expireMillis / bloomGenerations);
+    generations = new ArrayDeque<>();
+    recovered = context.getValue(Context.OperatorContext.ACTIVATION_WINDOW_ID) != Stateless.WINDOW_ID;
+
+    managedState.getTimeBucketAssigner().setExpireBefore(Duration.millis(expireMillis));
+    managedState.setup(context);
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    uniqueTuples = 0;
+    duplicateTuples = 0;
+    storeLookups = 0;
+    windowMillis = (windowId >> 32) * 1000 + (windowId & 0xffffffffL) * windowWidthMillis;
+    if (recovered) {
+      recovered = false;
+      verifyUntilMillis = windowMillis + expireMillis;
+      LOG.info("Restarted at window {}, looking up keys in the store until {}", windowId, verifyUntilMillis);
+    }
+    rollGenerations();
+    managedState.beginWindow(windowId);
+  }
+
+  @Override
+  public void endWindow()
+  {
+    managedState.endWindow();
+  }
+
+  @Override
+  public void teardown()
+  {
+    managedState.teardown();
+  }
+
+  @Override
+  public void beforeCheckpoint(long windowId)
+  {
+    managedState.beforeCheckpoint(windowId);
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+    managedState.checkpointed(windowId);
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+    managedState.committed(windowId);
+  }
+
+  /**
+   * Starts a new generation when the newest one is full, drops the Bloom
+   * filters of expired generations and the exact key sets of generations
+   * which are no longer recent.
+   */
+  private void rollGenerations()
+  {
+    Generation newest = generations.peekLast();
+    if (newest == null || windowMillis >= newest.start + generationMillis) {
+      generations.addLast(new Generation(windowMillis, expectedKeysPerGeneration, falsePositiveProbability));
+    }
+    while (generations.peekFirst().start + generationMillis + expireMillis <= windowMillis) {
+      generations.removeFirst();
+    }
+    int recent = 0;
+    Iterator<Generation> iterator = generations.descendingIterator();
+    while (iterator.hasNext()) {
+      Generation generation = iterator.next();
+      if (recent++ >= recentGenerations) {
+        generation.keys = null;
+      }
+    }
+  }
+
+  private void processTuple(Object tuple)
+  {
+    Object value = keyGetter.get(tuple);
+    if (value == null) {
+      uniqueTuples++;
+      unique.emit(tuple);
+      return;
+    }
+    Slice key = new Slice(String.valueOf(value).getBytes(UTF8));
+    long hash = hash(key);
+    long bucket = (hash & Long.MAX_VALUE) % managedState.getNumBuckets();
+    if (isDuplicate(key, hash, bucket)) {
+      duplicateTuples++;
+      duplicate.emit(tuple);
+      return;
+    }
+    Generation newest = generations.peekLast();
+    newest.bloom.add(hash);
+    if (newest.keys != null) {
+      newest.keys.add(key);
+    }
+    managedState.put(bucket, windowMillis, key, new Slice(ByteBuffer.allocate(8).putLong(windowMillis).array()));
+    uniqueTuples++;
+    unique.emit(tuple);
+  }
+
+  private boolean isDuplicate(Slice key, long hash, long bucket)
+  {
+    boolean lookup = windowMillis < verifyUntilMillis;
+    for (Generation generation : generations) {
+      if (generation.bloom.mightContain(hash)) {
+        if (generation.keys == null) {
+          lookup = true;
+        } else if (generation.keys.contains(key)) {
+          return true;
+        }
+      }
+    }
+    if (!lookup) {
+      return false;
+    }
+    storeLookups++;
+    Slice seen = managedState.getSync(bucket, key);
+    // the store may still hold keys which expired but were not purged yet
+    return seen != null
+        && ByteBuffer.wrap(seen.buffer, seen.offset, seen.length).getLong() + expireMillis > windowMillis;
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the key bytes with a final avalanche step, so that
+   * both halves can index the Bloom filter.
+   */
+  static long hash(Slice key)
+  {
+    long h = 0xcbf29ce484222325L;
+    for (int i = key.offset; i < key.offset + key.length; i++) {
+      h = (h ^ (key.buffer[i] & 0xff)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static class Generation
+  {
+    final long start;
+    final OffHeapBloomFilter bloom;
+    Set<Slice> keys = new HashSet<>();
+
+    Generation(long start, int expectedKeys, double falsePositiveProbability)
+    {
+      this.start = start;
+      this.bloom = new OffHeapBloomFilter(expectedKeys, falsePositiveProbability);
+    }
+  }
+
+  /**
+   * Bloom filter whose bits are kept in a direct buffer, outside the heap.
+   * The k bit positions are derived from the two halves of a 64 bit hash.
+   */
+  static class OffHeapBloomFilter
+  {
+    private final ByteBuffer bits;
+    private final long numBits;
+    private final int numHashes;
+
+    OffHeapBloomFilter(int expectedKeys, double falsePositiveProbability)
+    {
+      long m = (long)Math.ceil(-expectedKeys * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+      m = (m + 63) & ~63L;
+      if (m / 8 > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Bloom filter for " + expectedKeys + " keys is too large");
+      }
+      numBits = m;
+      numHashes = Math.max(1, (int)Math.round((double)m / expectedKeys * Math.log(2)));
+      bits = ByteBuffer.allocateDirect((int)(m / 8));
+    }
+
+    void add(long hash)
+    {
+      int h1 = (int)hash;
+      int h2 = (int)(hash >>> 32);
+      for (int i = 0; i < numHashes; i++) {
+        long bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+        int index = (int)(bit >>> 6) << 3;
+        bits.putLong(index, bits.getLong(index) | (1L << bit));
+      }
+    }
+
+    boolean mightContain(long hash)
+    {
+      int h1 = (int)hash;
+      int h2 = (int)(hash >>> 32);
+      for (int i = 0; i < numHashes; i++) {
+        long bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+        if ((bits.getLong((int)(bit >>> 6) << 3) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  public String getKeyExpression()
+  {
+    return keyExpression;
+  }
+
+  /**
+   * Field name or PojoUtils expression of the key, for example accountNumber
+   */
+  public void setKeyExpression(String keyExpression)
+  {
+    this.keyExpression = keyExpression;
+  }
+
+  public long getExpireSeconds()
+  {
+    return expireSeconds;
+  }
+
+  /**
+   * Seconds for which a key is remembered, default is 3600. Not used when
+   * expireWindows is set.
+   */
+  public void setExpireSeconds(long expireSeconds)
+  {
+    this.expireSeconds = expireSeconds;
+  }
+
+  public long getExpireWindows()
+  {
+    return expireWindows;
+  }
+
+  /**
+   * Number of application windows for which a key is remembered. Takes
+   * precedence over expireSeconds when greater than 0.
+   */
+  public void setExpireWindows(long expireWindows)
+  {
+    this.expireWindows = expireWindows;
+  }
+
+  public int getBloomGenerations()
+  {
+    return bloomGenerations;
+  }
+
+  /**
+   * Number of generations, each with its own Bloom filter, the expiry period
+   * is divided in, default is 8
+   */
+  public void setBloomGenerations(int bloomGenerations)
+  {
+    this.bloomGenerations = bloomGenerations;
+  }
+
+  public int getRecentGenerations()
+  {
+    return recentGenerations;
+  }
+
+  /**
+   * Number of newest generations whose keys are also kept in memory as exact
+   * sets, default is 2
+   */
+  public void setRecentGenerations(int recentGenerations)
+  {
+    this.recentGenerations = recentGenerations;
+  }
+
+  public int getExpectedKeysPerGeneration()
+  {
+    return expectedKeysPerGeneration;
+  }
+
+  /**
+   * Number of keys the Bloom filter of a generation is sized for, default is
+   * 1000000
+   */
+  public void setExpectedKeysPerGeneration(int expectedKeysPerGeneration)
+  {
+    this.expectedKeysPerGeneration = expectedKeysPerGeneration;
+  }
+
+  public double getFalsePositiveProbability()
+  {
+    return falsePositiveProbability;
+  }
+
+  /**
+   * False positive probability of a Bloom filter holding the expected number
+   * of keys, default is 0.01
+   */
+  public void setFalsePositiveProbability(double falsePositiveProbability)
+  {
+    this.falsePositiveProbability = falsePositiveProbability;
+  }
+
+  public ManagedTimeStateImpl getManagedState()
+  {
+    return managedState;
+  }
+
+  /**
+   * Managed state the accepted keys are written to. Its numBuckets, 16 by
+   * default, and fileAccess properties can be configured.
+   */
+  public void setManagedState(ManagedTimeStateImpl managedState)
+  {
+    this.managedState = managedState;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(DedupOperator.class);
+}
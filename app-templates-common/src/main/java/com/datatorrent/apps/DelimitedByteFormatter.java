@@ -0,0 +1,399 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.contrib.parser.DelimitedSchema;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Formats POJOs as delimited records directly into a reusable byte buffer and
+ * emits the buffer in large chunks of complete records.
+ * <p>
+ * Compared to {@link com.datatorrent.contrib.formatter.CsvFormatter} followed
+ * by a String file writer, this avoids creating a String per record and
+ * encoding it again to bytes. Integer and long fields are written as ASCII
+ * digits without intermediate objects and ASCII strings are copied char by
+ * char. Date fields are formatted with the <code>format</code> constraint of
+ * the field, so the records can be read back with the same schema. The
+ * <code>schema</code> property has the same format as for CsvFormatter and,
+ * like there, every record is terminated with the <code>lineDelimiter</code>
+ * of the schema. The chunks should be written with
+ * {@link ChunkedBytesFileOutputOperator}, which does not add a separator of its
+ * own, so for files the schema usually sets <code>"lineDelimiter": "\n"</code>
+ * where a CsvFormatter schema leaves it empty for the String file writer.
+ * <p>
+ * A chunk is emitted once the buffer holds <code>chunkSize</code> bytes and at
+ * the end of every window, so chunks never span windows.
+ */
+public class DelimitedByteFormatter extends BaseOperator
+{
+  @NotNull
+  private String schema;
+
+  @Min(1)
+  private int chunkSize = 64 * 1024;
+
+  @AutoMetric
+  private long recordsFormatted;
+
+  @AutoMetric
+  private long bytesOut;
+
+  @AutoMetric
+  private long errorTupleCount;
+
+  private transient Class<?> clazz;
+  private transient byte separator;
+  private transient byte quoteChar;
+  private transient byte[] lineDelimiterBytes;
+  private transient FieldEncoder[] encoders;
+  private transient byte[] buffer;
+  private transient int size;
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> in = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      clazz = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      format(tuple);
+    }
+  };
+
+  public final transient DefaultOutputPort<byte[]> out = new DefaultOutputPort<>();
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<Object> err = new DefaultOutputPort<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    DelimitedSchema delimitedSchema = new DelimitedSchema(schema);
+    if (delimitedSchema.getDelimiterChar() > 127 || delimitedSchema.getQuoteChar() > 127) {
+      throw new IllegalArgumentException("Separator and quote character must be single byte characters");
+    }
+    separator = (byte)delimitedSchema.getDelimiterChar();
+    quoteChar = (byte)delimitedSchema.getQuoteChar();
+    lineDelimiterBytes = delimitedSchema.getLineDelimiter().getBytes(StandardCharsets.UTF_8);
+    List<DelimitedSchema.Field> fields = delimitedSchema.getFields();
+    encoders = new FieldEncoder[fields.size()];
+    for (int i = 0; i < encoders.length; i++) {
+      encoders[i] = FieldEncoder.create(clazz, fields.get(i));
+    }
+    buffer = new byte[chunkSize + 1024];
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    recordsFormatted = 0;
+    bytesOut = 0;
+    errorTupleCount = 0;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    flush();
+  }
+
+  private void format(Object tuple)
+  {
+    int start = size;
+    try {
+      for (int i = 0; i < encoders.length; i++) {
+        if (i > 0) {
+          writeByte(separator);
+        }
+        encoders[i].encode(tuple, this);
+      }
+      for (byte b : lineDelimiterBytes) {
+        writeByte(b);
+      }
+    } catch (RuntimeException e) {
+      size = start;
+      errorTupleCount++;
+      LOG.debug("Unable to format {}", tuple, e);
+      err.emit(tuple);
+      return;
+    }
+    recordsFormatted++;
+    if (size >= chunkSize) {
+      flush();
+    }
+  }
+
+  private void flush()
+  {
+    if (size == 0) {
+      return;
+    }
+    bytesOut += size;
+    out.emit(Arrays.copyOf(buffer, size));
+    size = 0;
+  }
+
+  private void ensureCapacity(int extra)
+  {
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+  }
+
+  void writeByte(byte b)
+  {
+    ensureCapacity(1);
+    buffer[size++] = b;
+  }
+
+  /**
+   * Writes the decimal representation of the value as ASCII digits.
+   */
+  void writeLong(long value)
+  {
+    if (value == Long.MIN_VALUE) {
+      writeAscii(String.valueOf(value));
+      return;
+    }
+    ensureCapacity(20);
+    if (value < 0) {
+      buffer[size++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long v = value; v >= 10; v /= 10) {
+      digits++;
+    }
+    int pos = size + digits;
+    size = pos;
+    do {
+      buffer[--pos] = (byte)('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+  }
+
+  void writeInt(int value)
+  {
+    if (value == Integer.MIN_VALUE) {
+      writeLong(value);
+      return;
+    }
+    ensureCapacity(11);
+    if (value < 0) {
+      buffer[size++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (int v = value; v >= 10; v /= 10) {
+      digits++;
+    }
+    int pos = size + digits;
+    size = pos;
+    do {
+      buffer[--pos] = (byte)('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+  }
+
+  private void writeAscii(String value)
+  {
+    ensureCapacity(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      buffer[size++] = (byte)value.charAt(i);
+    }
+  }
+
+  /**
+   * Writes the string UTF-8 encoded, quoting it when it contains the
+   * separator, the quote character or a line break.
+   */
+  void writeString(String value)
+  {
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == separator || c == quoteChar || c == '\n' || c == '\r';
+    }
+    if (quote) {
+      writeByte(quoteChar);
+    }
+    // worst case of 3 bytes per char, plus doubled quote characters
+    ensureCapacity(value.length() * 3 + (quote ? value.length() : 0));
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (quote && c == quoteChar) {
+          buffer[size++] = quoteChar;
+        }
+        buffer[size++] = (byte)c;
+      } else if (c < 0x800) {
+        buffer[size++] = (byte)(0xc0 | (c >> 6));
+        buffer[size++] = (byte)(0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, value.charAt(++i));
+        buffer[size++] = (byte)(0xf0 | (cp >> 18));
+        buffer[size++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+        buffer[size++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+        buffer[size++] = (byte)(0x80 | (cp & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        buffer[size++] = '?';
+      } else {
+        buffer[size++] = (byte)(0xe0 | (c >> 12));
+        buffer[size++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+        buffer[size++] = (byte)(0x80 | (c & 0x3f));
+      }
+    }
+    if (quote) {
+      writeByte(quoteChar);
+    }
+  }
+
+  /**
+   * Reads one field from the POJO and writes it into the formatter buffer.
+   */
+  abstract static class FieldEncoder
+  {
+    /**
+     * Pattern of date fields without a format constraint, as for CsvParser
+     */
+    static final String DEFAULT_DATE_FORMAT = "dd/MM/yyyy";
+
+    abstract void encode(Object pojo, DelimitedByteFormatter formatter);
+
+    static FieldEncoder create(Class<?> clazz, DelimitedSchema.Field field)
+    {
+      String name = field.getName();
+      DelimitedSchema.FieldType type = field.getType();
+      if (type == DelimitedSchema.FieldType.DATE) {
+        Object format = field.getConstraints().get(DelimitedSchema.DATE_FORMAT);
+        final DateFormat dateFormat = new SimpleDateFormat(format == null ? DEFAULT_DATE_FORMAT : format.toString());
+        final PojoUtils.Getter<Object, Date> getter = PojoUtils.createGetter(clazz, name, Date.class);
+        return new FieldEncoder()
+        {
+          @Override
+          void encode(Object pojo, DelimitedByteFormatter formatter)
+          {
+            Date value = getter.get(pojo);
+            if (value != null) {
+              formatter.writeString(dateFormat.format(value));
+            }
+          }
+        };
+      }
+      boolean primitive = PojoFields.fieldType(clazz, name).isPrimitive();
+      if (primitive && type == DelimitedSchema.FieldType.INTEGER) {
+        final PojoUtils.GetterInt<Object> getter = PojoUtils.createGetterInt(clazz, name);
+        return new FieldEncoder()
+        {
+          @Override
+          void encode(Object pojo, DelimitedByteFormatter formatter)
+          {
+            formatter.writeInt(getter.get(pojo));
+          }
+        };
+      }
+      if (primitive && type == DelimitedSchema.FieldType.LONG) {
+        final PojoUtils.GetterLong<Object> getter = PojoUtils.createGetterLong(clazz, name);
+        return new FieldEncoder()
+        {
+          @Override
+          void encode(Object pojo, DelimitedByteFormatter formatter)
+          {
+            formatter.writeLong(getter.get(pojo));
+          }
+        };
+      }
+      final PojoUtils.Getter<Object, Object> getter = PojoUtils.createGetter(clazz, name, Object.class);
+      return new FieldEncoder()
+      {
+        @Override
+        void encode(Object pojo, DelimitedByteFormatter formatter)
+        {
+          Object value = getter.get(pojo);
+          if (value == null) {
+            return;
+          }
+          if (value instanceof Integer) {
+            formatter.writeInt((Integer)value);
+          } else if (value instanceof Long) {
+            formatter.writeLong((Long)value);
+          } else {
+            formatter.writeString(value.toString());
+          }
+        }
+      };
+    }
+  }
+
+  public String getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * Delimited schema of the records, same format as the CsvFormatter schema
+   */
+  public void setSchema(String schema)
+  {
+    this.schema = schema;
+  }
+
+  public int getChunkSize()
+  {
+    return chunkSize;
+  }
+
+  /**
+   * Number of buffered bytes after which a chunk is emitted, default is 64KB
+   */
+  public void setChunkSize(int chunkSize)
+  {
+    this.chunkSize = chunkSize;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(DelimitedByteFormatter.class);
+}
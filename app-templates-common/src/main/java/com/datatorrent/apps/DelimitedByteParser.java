@@ -0,0 +1,680 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.contrib.parser.DelimitedSchema;
+import com.datatorrent.lib.util.KeyValPair;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Parser for delimited records which scans the incoming <code>byte[]</code> in
+ * place instead of going through a CSV reader.
+ * <p>
+ * Integer, long, short, double, float, boolean and character fields are
+ * decoded directly from the bytes and set through primitive setters, so no
+ * intermediate String or boxed value is created for them when the POJO field
+ * is primitive. Strings are materialized only for string typed fields. The
+ * <code>schema</code> property has the same format as for
+ * {@link com.datatorrent.contrib.parser.CsvParser} and the ports have the same
+ * names, so it can replace CsvParser without configuration changes; field
+ * constraints and date fields are not supported.
+ * <p>
+ * Empty values leave boxed fields null and primitive fields 0. A trailing
+ * CR, LF or CRLF is not part of the last field. With
+ * <code>reuseTuple</code> a single POJO instance is emitted for every record.
+ * That is only safe when the downstream operators are THREAD_LOCAL and do not
+ * keep references to the tuple after process returns.
+ */
+public class DelimitedByteParser extends BaseOperator
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @NotNull
+  private String schema;
+
+  private boolean reuseTuple;
+
+  @AutoMetric
+  private long incomingTuplesCount;
+
+  @AutoMetric
+  private long emittedObjectCount;
+
+  @AutoMetric
+  private long errorTupleCount;
+
+  private transient Class<?> clazz;
+  private transient byte separator;
+  private transient byte quoteChar;
+  private transient FieldDecoder[] decoders;
+  private transient Object tuple;
+
+  public final transient DefaultInputPort<byte[]> in = new DefaultInputPort<byte[]>()
+  {
+    @Override
+    public void process(byte[] tuple)
+    {
+      processTuple(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> out = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      clazz = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+  };
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<KeyValPair<String, String>> err = new DefaultOutputPort<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    DelimitedSchema delimitedSchema = new DelimitedSchema(schema);
+    if (delimitedSchema.getDelimiterChar() > 127 || delimitedSchema.getQuoteChar() > 127) {
+      throw new IllegalArgumentException("Separator and quote character must be single byte characters");
+    }
+    separator = (byte)delimitedSchema.getDelimiterChar();
+    quoteChar = (byte)delimitedSchema.getQuoteChar();
+    List<DelimitedSchema.Field> fields = delimitedSchema.getFields();
+    decoders = new FieldDecoder[fields.size()];
+    for (int i = 0; i < decoders.length; i++) {
+      decoders[i] = FieldDecoder.create(clazz, fields.get(i).getName(), fields.get(i).getType().name());
+    }
+    if (reuseTuple) {
+      tuple = newTuple();
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    incomingTuplesCount = 0;
+    emittedObjectCount = 0;
+    errorTupleCount = 0;
+  }
+
+  private Object newTuple()
+  {
+    try {
+      return clazz.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Unable to instantiate " + clazz, e);
+    }
+  }
+
+  void processTuple(byte[] record)
+  {
+    incomingTuplesCount++;
+    Object pojo = reuseTuple ? tuple : newTuple();
+    try {
+      parse(record, pojo);
+    } catch (RuntimeException e) {
+      errorTupleCount++;
+      LOG.debug("Unable to parse record", e);
+      err.emit(new KeyValPair<>(new String(record, UTF8), String.valueOf(e.getMessage())));
+      return;
+    }
+    emittedObjectCount++;
+    out.emit(pojo);
+  }
+
+  private void parse(byte[] record, Object pojo)
+  {
+    split(record, decoders.length, separator, quoteChar, decodingVisitor, pojo);
+  }
+
+  /**
+   * Receives the values of the fields of a record from
+   * {@link DelimitedByteParser#split}.
+   */
+  interface FieldVisitor
+  {
+    /**
+     * Called for field <code>index</code> with its value in
+     * <code>record[start, end)</code>, without the enclosing quotes. When
+     * <code>escaped</code> is set the quote characters in the value are
+     * still doubled.
+     */
+    void field(Object target, int index, byte[] record, int start, int end, boolean escaped);
+  }
+
+  private final transient FieldVisitor decodingVisitor = new FieldVisitor()
+  {
+    @Override
+    public void field(Object pojo, int index, byte[] record, int start, int end, boolean escaped)
+    {
+      if (escaped) {
+        decoders[index].decode(pojo, unescape(record, start, end));
+      } else {
+        decoders[index].decode(pojo, record, start, end);
+      }
+    }
+  };
+
+  /**
+   * Splits a delimited record into its fields and passes them to the visitor
+   * in order, with <code>target</code>. A trailing CR, LF or CRLF is not part
+   * of the last field.
+   *
+   * @throws IllegalArgumentException if the record does not have
+   * <code>fields</code> fields or a quoted value is not terminated or is
+   * followed by something else than the separator
+   */
+  static void split(byte[] record, int fields, byte separator, byte quoteChar, FieldVisitor visitor, Object target)
+  {
+    int length = record.length;
+    // a line delimiter left at the end of the record, such as the CR of a CRLF line
+    if (length > 0 && record[length - 1] == '\n') {
+      length--;
+    }
+    if (length > 0 && record[length - 1] == '\r') {
+      length--;
+    }
+    int pos = 0;
+    for (int i = 0; i < fields; i++) {
+      if (pos > length) {
+        throw new IllegalArgumentException("Expected " + fields + " fields, found " + i);
+      }
+      if (pos < length && record[pos] == quoteChar) {
+        int start = pos + 1;
+        int end = start;
+        boolean escaped = false;
+        while (true) {
+          if (end >= length) {
+            throw new IllegalArgumentException("Unterminated quoted value in field " + (i + 1));
+          }
+          if (record[end] == quoteChar) {
+            if (end + 1 < length && record[end + 1] == quoteChar) {
+              escaped = true;
+              end += 2;
+              continue;
+            }
+            break;
+          }
+          end++;
+        }
+        visitor.field(target, i, record, start, end, escaped);
+        pos = end + 1;
+        if (pos < length && record[pos] != separator) {
+          throw new IllegalArgumentException("Unexpected character after quoted value in field " + (i + 1));
+        }
+        pos++;
+      } else {
+        int end = pos;
+        while (end < length && record[end] != separator) {
+          end++;
+        }
+        visitor.field(target, i, record, pos, end, false);
+        pos = end + 1;
+      }
+    }
+    if (pos <= length) {
+      throw new IllegalArgumentException("Expected " + fields + " fields, found more");
+    }
+  }
+
+  private byte[] unescape(byte[] record, int start, int end)
+  {
+    byte[] value = new byte[end - start];
+    int n = 0;
+    for (int i = start; i < end; i++) {
+      value[n++] = record[i];
+      if (record[i] == quoteChar) {
+        i++;
+      }
+    }
+    byte[] result = new byte[n];
+    System.arraycopy(value, 0, result, 0, n);
+    return result;
+  }
+
+  /**
+   * Parses an int from the ASCII digits in <code>b[start, end)</code>.
+   */
+  static int parseInt(byte[] b, int start, int end)
+  {
+    long value = parseLong(b, start, end);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw new NumberFormatException("Value out of int range: " + new String(b, start, end - start, UTF8));
+    }
+    return (int)value;
+  }
+
+  /**
+   * Parses a long from the ASCII digits in <code>b[start, end)</code>.
+   */
+  static long parseLong(byte[] b, int start, int end)
+  {
+    if (start >= end) {
+      throw new NumberFormatException("Empty number");
+    }
+    boolean negative = false;
+    int i = start;
+    if (b[i] == '-' || b[i] == '+') {
+      negative = b[i] == '-';
+      if (++i == end) {
+        throw new NumberFormatException("Invalid number: " + new String(b, start, end - start, UTF8));
+      }
+    }
+    // accumulate negatively so that Long.MIN_VALUE can be represented
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multmin = limit / 10;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = b[i] - '0';
+      if (digit < 0 || digit > 9 || result < multmin) {
+        throw new NumberFormatException("Invalid number: " + new String(b, start, end - start, UTF8));
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw new NumberFormatException("Invalid number: " + new String(b, start, end - start, UTF8));
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * Parses a double from <code>b[start, end)</code>. Plain decimals with at
+   * most 15 significant digits are computed exactly from the digits; anything
+   * else (exponents, longer mantissas, NaN) falls back to
+   * {@link Double#parseDouble(String)}.
+   */
+  static double parseDouble(byte[] b, int start, int end)
+  {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (b[i] == '-' || b[i] == '+')) {
+      negative = b[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean point = false;
+    boolean sawDigit = false;
+    boolean simple = true;
+    for (; i < end && simple; i++) {
+      byte c = b[i];
+      if (c >= '0' && c <= '9') {
+        sawDigit = true;
+        if (mantissa != 0 || c != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (point) {
+          scale++;
+        }
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        simple = false;
+      }
+    }
+    if (simple && sawDigit && digits <= 15 && scale < POWERS_OF_TEN.length) {
+      double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+      return negative ? -value : value;
+    }
+    return Double.parseDouble(new String(b, start, end - start, UTF8));
+  }
+
+  static boolean parseBoolean(byte[] b, int start, int end)
+  {
+    switch (end - start) {
+      case 1:
+        switch (b[start] | 0x20) {
+          case '1' | 0x20:
+          case 't':
+          case 'y':
+            return true;
+          case '0' | 0x20:
+          case 'f':
+          case 'n':
+            return false;
+          default:
+            break;
+        }
+        break;
+      case 2:
+        if ((b[start] | 0x20) == 'n' && (b[start + 1] | 0x20) == 'o') {
+          return false;
+        }
+        break;
+      case 3:
+        if ((b[start] | 0x20) == 'y' && (b[start + 1] | 0x20) == 'e' && (b[start + 2] | 0x20) == 's') {
+          return true;
+        }
+        break;
+      case 4:
+        if ((b[start] | 0x20) == 't' && (b[start + 1] | 0x20) == 'r' && (b[start + 2] | 0x20) == 'u'
+            && (b[start + 3] | 0x20) == 'e') {
+          return true;
+        }
+        break;
+      case 5:
+        if ((b[start] | 0x20) == 'f' && (b[start + 1] | 0x20) == 'a' && (b[start + 2] | 0x20) == 'l'
+            && (b[start + 3] | 0x20) == 's' && (b[start + 4] | 0x20) == 'e') {
+          return false;
+        }
+        break;
+      default:
+        break;
+    }
+    throw new IllegalArgumentException("Invalid boolean: " + new String(b, start, end - start, UTF8));
+  }
+
+  /**
+   * Decodes one field from bytes and sets it on the POJO.
+   */
+  abstract static class FieldDecoder
+  {
+    final String name;
+
+    FieldDecoder(String name)
+    {
+      this.name = name;
+    }
+
+    void decode(Object pojo, byte[] value)
+    {
+      decode(pojo, value, 0, value.length);
+    }
+
+    abstract void decode(Object pojo, byte[] b, int start, int end);
+
+    static FieldDecoder create(Class<?> clazz, String name, String type)
+    {
+      boolean primitive = PojoFields.fieldType(clazz, name).isPrimitive();
+      switch (type) {
+        case "INTEGER":
+          return primitive ? new IntDecoder(name, PojoUtils.createSetterInt(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Integer.class));
+        case "LONG":
+          return primitive ? new LongDecoder(name, PojoUtils.createSetterLong(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Long.class));
+        case "SHORT":
+          return primitive ? new ShortDecoder(name, PojoUtils.createSetterShort(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Short.class));
+        case "DOUBLE":
+          return primitive ? new DoubleDecoder(name, PojoUtils.createSetterDouble(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Double.class));
+        case "FLOAT":
+          return primitive ? new FloatDecoder(name, PojoUtils.createSetterFloat(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Float.class));
+        case "BOOLEAN":
+          return primitive ? new BooleanDecoder(name, PojoUtils.createSetterBoolean(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Boolean.class));
+        case "CHARACTER":
+          return primitive ? new CharDecoder(name, PojoUtils.createSetterChar(clazz, name)) :
+              new BoxedDecoder(name, type, PojoUtils.createSetter(clazz, name, Character.class));
+        case "STRING":
+          return new StringDecoder(name, PojoUtils.createSetter(clazz, name, String.class));
+        default:
+          throw new IllegalArgumentException("Unsupported type " + type + " for field " + name);
+      }
+    }
+  }
+
+  static class IntDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterInt<Object> setter;
+
+    IntDecoder(String name, PojoUtils.SetterInt<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      setter.set(pojo, start == end ? 0 : parseInt(b, start, end));
+    }
+  }
+
+  static class LongDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterLong<Object> setter;
+
+    LongDecoder(String name, PojoUtils.SetterLong<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      setter.set(pojo, start == end ? 0L : parseLong(b, start, end));
+    }
+  }
+
+  static class ShortDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterShort<Object> setter;
+
+    ShortDecoder(String name, PojoUtils.SetterShort<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      int value = start == end ? 0 : parseInt(b, start, end);
+      if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+        throw new NumberFormatException("Value out of short range in field " + name);
+      }
+      setter.set(pojo, (short)value);
+    }
+  }
+
+  static class DoubleDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterDouble<Object> setter;
+
+    DoubleDecoder(String name, PojoUtils.SetterDouble<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      setter.set(pojo, start == end ? 0d : parseDouble(b, start, end));
+    }
+  }
+
+  static class FloatDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterFloat<Object> setter;
+
+    FloatDecoder(String name, PojoUtils.SetterFloat<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      setter.set(pojo, start == end ? 0f : (float)parseDouble(b, start, end));
+    }
+  }
+
+  static class BooleanDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterBoolean<Object> setter;
+
+    BooleanDecoder(String name, PojoUtils.SetterBoolean<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      setter.set(pojo, start != end && parseBoolean(b, start, end));
+    }
+  }
+
+  static class CharDecoder extends FieldDecoder
+  {
+    private final PojoUtils.SetterChar<Object> setter;
+
+    CharDecoder(String name, PojoUtils.SetterChar<Object> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      if (start == end) {
+        setter.set(pojo, '\0');
+      } else if (end - start == 1 && b[start] >= 0) {
+        setter.set(pojo, (char)b[start]);
+      } else {
+        setter.set(pojo, new String(b, start, end - start, UTF8).charAt(0));
+      }
+    }
+  }
+
+  static class StringDecoder extends FieldDecoder
+  {
+    private final PojoUtils.Setter<Object, String> setter;
+
+    StringDecoder(String name, PojoUtils.Setter<Object, String> setter)
+    {
+      super(name);
+      this.setter = setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      setter.set(pojo, start == end ? null : new String(b, start, end - start, UTF8));
+    }
+  }
+
+  /**
+   * Decoder for boxed fields, which need an object per value anyway.
+   */
+  static class BoxedDecoder extends FieldDecoder
+  {
+    private final String type;
+    private final PojoUtils.Setter<Object, Object> setter;
+
+    @SuppressWarnings("unchecked")
+    BoxedDecoder(String name, String type, PojoUtils.Setter<Object, ?> setter)
+    {
+      super(name);
+      this.type = type;
+      this.setter = (PojoUtils.Setter<Object, Object>)setter;
+    }
+
+    @Override
+    void decode(Object pojo, byte[] b, int start, int end)
+    {
+      if (start == end) {
+        setter.set(pojo, null);
+        return;
+      }
+      switch (type) {
+        case "INTEGER":
+          setter.set(pojo, parseInt(b, start, end));
+          break;
+        case "LONG":
+          setter.set(pojo, parseLong(b, start, end));
+          break;
+        case "SHORT":
+          setter.set(pojo, Short.valueOf(new String(b, start, end - start, UTF8)));
+          break;
+        case "DOUBLE":
+          setter.set(pojo, parseDouble(b, start, end));
+          break;
+        case "FLOAT":
+          setter.set(pojo, (float)parseDouble(b, start, end));
+          break;
+        case "BOOLEAN":
+          setter.set(pojo, parseBoolean(b, start, end));
+          break;
+        default:
+          setter.set(pojo, new String(b, start, end - start, UTF8).charAt(0));
+          break;
+      }
+    }
+  }
+
+  public String getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * Delimited schema of the records, same format as the CsvParser schema
+   */
+  public void setSchema(String schema)
+  {
+    this.schema = schema;
+  }
+
+  public boolean isReuseTuple()
+  {
+    return reuseTuple;
+  }
+
+  /**
+   * Emit the same POJO instance for every record. Only enable this when the
+   * downstream operators are THREAD_LOCAL and do not hold on to tuples.
+   */
+  public void setReuseTuple(boolean reuseTuple)
+  {
+    this.reuseTuple = reuseTuple;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(DelimitedByteParser.class);
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.BytesFileOutputOperator;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+
+/**
+ * {@link BytesFileOutputOperator} which reports the number of records, the
+ * number of bytes written and the time taken to write them as auto metrics.
+ * <p>
+ * The window latency is the time spent in <code>endWindow</code>, which
+ * flushes the open files and rolls them over.
+ */
+public class InstrumentedBytesFileOutputOperator extends BytesFileOutputOperator
+{
+  private transient LatencyMetrics metrics;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    metrics = new LatencyMetrics();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    metrics.beginWindow();
+  }
+
+  @Override
+  protected void processTuple(byte[] tuple)
+  {
+    metrics.addRecordsIn(1);
+    long start = System.nanoTime();
+    super.processTuple(tuple);
+    metrics.recordTuple(System.nanoTime() - start);
+  }
+
+  @Override
+  protected byte[] getBytesForTuple(byte[] tuple)
+  {
+    byte[] bytes = super.getBytesForTuple(tuple);
+    metrics.addBytesOut(bytes.length);
+    return bytes;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    long start = System.nanoTime();
+    super.endWindow();
+    metrics.recordWindow(System.nanoTime() - start);
+  }
+
+  @AutoMetric
+  public long getRecordsIn()
+  {
+    return metrics.getRecordsIn();
+  }
+
+  @AutoMetric
+  public long getBytesOut()
+  {
+    return metrics.getBytesOut();
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP50Nanos()
+  {
+    return metrics.getTupleLatencyNanos(50);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP99Nanos()
+  {
+    return metrics.getTupleLatencyNanos(99);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyMaxNanos()
+  {
+    return metrics.getMaxTupleLatencyNanos();
+  }
+
+  @AutoMetric
+  public long getWindowLatencyNanos()
+  {
+    return metrics.getWindowLatencyNanos();
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.contrib.parser.CsvParser;
+
+/**
+ * {@link CsvParser} which reports the number and size of the incoming records
+ * and the time taken to parse them as auto metrics.
+ * <p>
+ * The tuple latency includes the time spent in thread local downstream
+ * operators. The number of parsed and invalid records is already reported by
+ * CsvParser.
+ */
+public class InstrumentedCsvParser extends CsvParser
+{
+  private transient LatencyMetrics metrics;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    metrics = new LatencyMetrics();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    metrics.beginWindow();
+  }
+
+  @Override
+  public void processTuple(byte[] tuple)
+  {
+    metrics.addRecordsIn(1);
+    if (tuple != null) {
+      metrics.addBytesIn(tuple.length);
+    }
+    long start = System.nanoTime();
+    super.processTuple(tuple);
+    metrics.recordTuple(System.nanoTime() - start);
+  }
+
+  @AutoMetric
+  public long getRecordsIn()
+  {
+    return metrics.getRecordsIn();
+  }
+
+  @AutoMetric
+  public long getBytesIn()
+  {
+    return metrics.getBytesIn();
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP50Nanos()
+  {
+    return metrics.getTupleLatencyNanos(50);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP99Nanos()
+  {
+    return metrics.getTupleLatencyNanos(99);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyMaxNanos()
+  {
+    return metrics.getMaxTupleLatencyNanos();
+  }
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.lib.db.jdbc.JdbcPOJOInsertOutputOperator;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+
+/**
+ * {@link JdbcPOJOInsertOutputOperator} which reports the number of incoming
+ * tuples, the time taken per tuple and the time taken to commit as auto
+ * metrics.
+ * <p>
+ * A batch is executed by the tuple which fills it, so the tuple latency
+ * percentiles show the cost of adding a tuple to a batch and the maximum
+ * usually the cost of executing one. <code>endWindow</code> executes the last
+ * batch and commits the transaction; the commit latency is the time taken by
+ * the commit, measured by {@link CommitTimingStore}, the default store, and
+ * the window latency the rest of <code>endWindow</code>. With another store
+ * the commit latency is 0 and the commit is part of the window latency.
+ * <p>
+ * When the store connects through {@link PooledJdbcDriver}, the time spent
+ * waiting for pooled connections and the hit rate of the statement cache
+ * during the window are reported as well. Both are for the pool, which is
+ * shared by the operators in the container; the hit rate is 0 for windows in
+ * which no statement was prepared.
+ */
+public class InstrumentedJdbcPOJOInsertOutputOperator extends JdbcPOJOInsertOutputOperator
+{
+  private transient LatencyMetrics metrics;
+  private transient JdbcConnectionPool pool;
+  private transient long poolWaitNanos;
+  private transient long windowPoolWaitNanos;
+  private transient long statementCacheHits;
+  private transient long statementCacheMisses;
+  private transient double windowStatementCacheHitRate;
+  private transient long commitLatencyNanos;
+
+  public InstrumentedJdbcPOJOInsertOutputOperator()
+  {
+    setStore(new CommitTimingStore());
+  }
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    metrics = new LatencyMetrics();
+    Connection connection = getStore().getConnection();
+    if (connection instanceof JdbcConnectionPool.Pooled) {
+      pool = ((JdbcConnectionPool.Pooled)connection).getPool();
+      poolWaitNanos = pool.getWaitNanos();
+      statementCacheHits = pool.getStatementCacheHits();
+      statementCacheMisses = pool.getStatementCacheMisses();
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    metrics.beginWindow();
+  }
+
+  @Override
+  public void processTuple(Object tuple)
+  {
+    metrics.addRecordsIn(1);
+    long start = System.nanoTime();
+    super.processTuple(tuple);
+    metrics.recordTuple(System.nanoTime() - start);
+  }
+
+  @Override
+  public void endWindow()
+  {
+    CommitTimingStore timingStore = getStore() instanceof CommitTimingStore ? (CommitTimingStore)getStore() : null;
+    long commitNanos = timingStore == null ? 0 : timingStore.commitNanos;
+    long start = System.nanoTime();
+    super.endWindow();
+    long nanos = System.nanoTime() - start;
+    commitLatencyNanos = timingStore == null ? 0 : timingStore.commitNanos - commitNanos;
+    metrics.recordWindow(nanos - commitLatencyNanos);
+    if (pool != null) {
+      long waitNanos = pool.getWaitNanos();
+      windowPoolWaitNanos = waitNanos - poolWaitNanos;
+      poolWaitNanos = waitNanos;
+      long hits = pool.getStatementCacheHits();
+      long misses = pool.getStatementCacheMisses();
+      long windowHits = hits - statementCacheHits;
+      long windowTotal = windowHits + misses - statementCacheMisses;
+      windowStatementCacheHitRate = windowTotal == 0 ? 0 : (double)windowHits / windowTotal;
+      statementCacheHits = hits;
+      statementCacheMisses = misses;
+    }
+  }
+
+  @AutoMetric
+  public long getRecordsIn()
+  {
+    return metrics.getRecordsIn();
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP50Nanos()
+  {
+    return metrics.getTupleLatencyNanos(50);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP99Nanos()
+  {
+    return metrics.getTupleLatencyNanos(99);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyMaxNanos()
+  {
+    return metrics.getMaxTupleLatencyNanos();
+  }
+
+  @AutoMetric
+  public long getWindowLatencyNanos()
+  {
+    return metrics.getWindowLatencyNanos();
+  }
+
+  @AutoMetric
+  public long getCommitLatencyNanos()
+  {
+    return commitLatencyNanos;
+  }
+
+  @AutoMetric
+  public long getPoolWaitNanos()
+  {
+    return windowPoolWaitNanos;
+  }
+
+  @AutoMetric
+  public double getStatementCacheHitRate()
+  {
+    return windowStatementCacheHitRate;
+  }
+
+  /**
+   * {@link JdbcTransactionalStore} which keeps the time spent committing
+   * transactions.
+   */
+  public static class CommitTimingStore extends JdbcTransactionalStore
+  {
+    private transient long commitNanos;
+
+    @Override
+    public void commitTransaction()
+    {
+      long start = System.nanoTime();
+      super.commitTransaction();
+      commitNanos += System.nanoTime() - start;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import org.apache.apex.malhar.kafka.KafkaSinglePortInputOperator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+
+/**
+ * {@link KafkaSinglePortInputOperator} which reports the number and size of
+ * the emitted messages and the time taken to emit them as auto metrics.
+ * <p>
+ * The tuple latency is the time of an <code>emitTuples</code> call divided by
+ * the number of messages it emitted, including the time spent in thread local
+ * downstream operators. The window latency is the time spent in
+ * <code>endWindow</code>.
+ */
+public class InstrumentedKafkaInputOperator extends KafkaSinglePortInputOperator
+{
+  private transient LatencyMetrics metrics;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    metrics = new LatencyMetrics();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    metrics.beginWindow();
+  }
+
+  @Override
+  public void emitTuples()
+  {
+    long records = metrics.getRecordsOut();
+    long start = System.nanoTime();
+    super.emitTuples();
+    metrics.recordTuples(System.nanoTime() - start, (int)(metrics.getRecordsOut() - records));
+  }
+
+  @Override
+  protected void emitTuple(String cluster, ConsumerRecord<byte[], byte[]> message)
+  {
+    metrics.addRecordsOut(1);
+    if (message.value() != null) {
+      metrics.addBytesOut(message.value().length);
+    }
+    super.emitTuple(cluster, message);
+  }
+
+  @Override
+  public void endWindow()
+  {
+    long start = System.nanoTime();
+    super.endWindow();
+    metrics.recordWindow(System.nanoTime() - start);
+  }
+
+  @AutoMetric
+  public long getRecordsOut()
+  {
+    return metrics.getRecordsOut();
+  }
+
+  @AutoMetric
+  public long getBytesOut()
+  {
+    return metrics.getBytesOut();
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP50Nanos()
+  {
+    return metrics.getTupleLatencyNanos(50);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP99Nanos()
+  {
+    return metrics.getTupleLatencyNanos(99);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyMaxNanos()
+  {
+    return metrics.getMaxTupleLatencyNanos();
+  }
+
+  @AutoMetric
+  public long getWindowLatencyNanos()
+  {
+    return metrics.getWindowLatencyNanos();
+  }
+}
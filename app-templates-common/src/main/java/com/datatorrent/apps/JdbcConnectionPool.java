@@ -0,0 +1,461 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of connections to one database as one user, shared by the operators of
+ * a container through {@link PooledJdbcDriver}.
+ * <p>
+ * Closing a pooled connection rolls back what was not committed, restores
+ * auto commit and returns the connection to the pool. Idle connections are
+ * validated with {@link Connection#isValid(int)} before they are handed out
+ * again and closed once they are older than <code>maxLifetimeMillis</code>.
+ * At most <code>maxSize</code> connections are open; beyond that borrowers
+ * wait.
+ * <p>
+ * Every connection caches up to <code>statementCacheSize</code> statements
+ * prepared with {@link Connection#prepareStatement(String)} by SQL text, so
+ * preparing the same statement after the connection has been returned and
+ * borrowed again, as operators do when they are redeployed or repartitioned,
+ * does not go to the database. Closing a cached statement keeps it open for
+ * the next borrower. A statement is handed out to one borrower at a time:
+ * preparing SQL text whose cached statement is still in use prepares a new
+ * statement which is not cached, and returning the connection takes back the
+ * statements the borrower did not close.
+ */
+class JdbcConnectionPool
+{
+  /**
+   * Implemented by the connections handed out by a pool.
+   */
+  interface Pooled
+  {
+    JdbcConnectionPool getPool();
+  }
+
+  private final String url;
+  private final Properties properties;
+  private final int maxSize;
+  private final long maxLifetimeMillis;
+  private final int validationTimeoutSeconds;
+  private final int statementCacheSize;
+
+  private final Deque<PhysicalConnection> idle = new ArrayDeque<>();
+  private int open;
+
+  private final AtomicLong borrowed = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong statementCacheHits = new AtomicLong();
+  private final AtomicLong statementCacheMisses = new AtomicLong();
+
+  JdbcConnectionPool(String url, Properties properties, int maxSize, long maxLifetimeMillis,
+      int validationTimeoutSeconds, int statementCacheSize)
+  {
+    this.url = url;
+    this.properties = properties;
+    this.maxSize = maxSize;
+    this.maxLifetimeMillis = maxLifetimeMillis;
+    this.validationTimeoutSeconds = validationTimeoutSeconds;
+    this.statementCacheSize = statementCacheSize;
+  }
+
+  Connection borrow() throws SQLException
+  {
+    long start = System.nanoTime();
+    PhysicalConnection connection;
+    while (true) {
+      connection = take();
+      if (connection == null) {
+        // the slot for a new connection was reserved by take
+        try {
+          connection = new PhysicalConnection(DriverManager.getConnection(url, properties));
+        } catch (SQLException | RuntimeException e) {
+          synchronized (this) {
+            open--;
+            notify();
+          }
+          throw e;
+        }
+        break;
+      }
+      // validated outside the lock, as it goes to the database
+      if (usable(connection)) {
+        break;
+      }
+      synchronized (this) {
+        discard(connection);
+      }
+    }
+    waitNanos.addAndGet(System.nanoTime() - start);
+    borrowed.incrementAndGet();
+    return connection.handOut();
+  }
+
+  /**
+   * Takes an idle connection, or returns null after reserving a slot for a new
+   * one, waiting while the pool is exhausted.
+   */
+  private synchronized PhysicalConnection take() throws SQLException
+  {
+    while (idle.isEmpty() && open >= maxSize) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted waiting for a connection to " + url, e);
+      }
+    }
+    PhysicalConnection connection = idle.pollFirst();
+    if (connection == null) {
+      open++;
+    }
+    return connection;
+  }
+
+  private boolean usable(PhysicalConnection connection)
+  {
+    if (System.currentTimeMillis() - connection.created > maxLifetimeMillis) {
+      return false;
+    }
+    try {
+      return connection.connection.isValid(validationTimeoutSeconds);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Closes a connection taken out of the pool, called with the lock held.
+   */
+  private void discard(PhysicalConnection connection)
+  {
+    open--;
+    connection.close();
+    notify();
+  }
+
+  private void release(PhysicalConnection connection)
+  {
+    boolean reusable;
+    connection.takeBack();
+    try {
+      if (!connection.connection.getAutoCommit()) {
+        connection.connection.rollback();
+        connection.connection.setAutoCommit(true);
+      }
+      reusable = System.currentTimeMillis() - connection.created <= maxLifetimeMillis;
+    } catch (SQLException e) {
+      LOG.debug("Discarding connection to {}", url, e);
+      reusable = false;
+    }
+    synchronized (this) {
+      if (reusable) {
+        idle.addFirst(connection);
+        notify();
+      } else {
+        discard(connection);
+      }
+    }
+  }
+
+  /**
+   * Nanoseconds borrowers waited for connections, including the time to open
+   * new ones, since the pool was created.
+   */
+  long getWaitNanos()
+  {
+    return waitNanos.get();
+  }
+
+  long getBorrowed()
+  {
+    return borrowed.get();
+  }
+
+  long getStatementCacheHits()
+  {
+    return statementCacheHits.get();
+  }
+
+  long getStatementCacheMisses()
+  {
+    return statementCacheMisses.get();
+  }
+
+  synchronized int getOpen()
+  {
+    return open;
+  }
+
+  /**
+   * A connection to the database with its statement cache.
+   */
+  private class PhysicalConnection
+  {
+    final Connection connection;
+    final long created = System.currentTimeMillis();
+    final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest)
+      {
+        if (size() > statementCacheSize) {
+          CachedStatement cached = eldest.getValue();
+          if (cached.owner == null) {
+            closeQuietly(cached.statement);
+          } else {
+            // closed when the borrower is done with it
+            evicted.add(cached);
+          }
+          return true;
+        }
+        return false;
+      }
+    };
+
+    /**
+     * Statements removed from the cache while they were handed out.
+     */
+    final List<CachedStatement> evicted = new ArrayList<>();
+
+    PhysicalConnection(Connection connection)
+    {
+      this.connection = connection;
+    }
+
+    Connection handOut()
+    {
+      return (Connection)Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(),
+          new Class<?>[] {Connection.class, Pooled.class}, new ConnectionHandler(this));
+    }
+
+    PreparedStatement prepare(String sql, Connection proxy) throws SQLException
+    {
+      CachedStatement cached = statements.get(sql);
+      if (cached != null && cached.owner == null && !cached.statement.isClosed()) {
+        statementCacheHits.incrementAndGet();
+        cached.statement.clearParameters();
+        cached.statement.clearBatch();
+      } else {
+        statementCacheMisses.incrementAndGet();
+        PreparedStatement statement = connection.prepareStatement(sql);
+        if (statementCacheSize == 0 || (cached != null && cached.owner != null)) {
+          // not cached, so closing it closes it
+          return statement;
+        }
+        cached = new CachedStatement(statement);
+        statements.put(sql, cached);
+      }
+      StatementHandler handler = new StatementHandler(this, cached, proxy);
+      cached.owner = handler;
+      return (PreparedStatement)Proxy.newProxyInstance(JdbcConnectionPool.class.getClassLoader(),
+          new Class<?>[] {PreparedStatement.class}, handler);
+    }
+
+    /**
+     * Takes back a statement from the borrower it was handed out to.
+     */
+    void checkIn(CachedStatement cached)
+    {
+      cached.owner = null;
+      if (evicted.remove(cached)) {
+        closeQuietly(cached.statement);
+      }
+    }
+
+    /**
+     * Takes back the statements the borrower of the connection did not close.
+     */
+    void takeBack()
+    {
+      for (CachedStatement cached : statements.values()) {
+        cached.owner = null;
+      }
+      for (CachedStatement cached : evicted) {
+        closeQuietly(cached.statement);
+      }
+      evicted.clear();
+    }
+
+    void close()
+    {
+      takeBack();
+      for (CachedStatement cached : statements.values()) {
+        closeQuietly(cached.statement);
+      }
+      statements.clear();
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        LOG.debug("Closing connection to {}", url, e);
+      }
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement statement)
+  {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      LOG.debug("Closing statement", e);
+    }
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable
+  {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Connection handed out to one borrower until it closes it.
+   */
+  private class ConnectionHandler implements InvocationHandler
+  {
+    private final PhysicalConnection physical;
+    private boolean closed;
+
+    ConnectionHandler(PhysicalConnection physical)
+    {
+      this.physical = physical;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+      String name = method.getName();
+      switch (name) {
+        case "getPool":
+          return JdbcConnectionPool.this;
+        case "close":
+          if (!closed) {
+            closed = true;
+            release(physical);
+          }
+          return null;
+        case "isClosed":
+          return closed || physical.connection.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled " + physical.connection;
+        default:
+          break;
+      }
+      if (closed) {
+        throw new SQLException("Connection is closed");
+      }
+      if (name.equals("prepareStatement") && args.length == 1) {
+        return physical.prepare((String)args[0], (Connection)proxy);
+      }
+      return JdbcConnectionPool.invoke(physical.connection, method, args);
+    }
+  }
+
+  /**
+   * Statement in the cache of a connection, with the handler of the borrower
+   * it is handed out to, if any.
+   */
+  private static class CachedStatement
+  {
+    final PreparedStatement statement;
+    StatementHandler owner;
+
+    CachedStatement(PreparedStatement statement)
+    {
+      this.statement = statement;
+    }
+  }
+
+  /**
+   * Cached statement handed out to one borrower, which stays open when the
+   * borrower closes it and is closed for the borrower after that or once the
+   * connection has been returned.
+   */
+  private class StatementHandler implements InvocationHandler
+  {
+    private final PhysicalConnection physical;
+    private final CachedStatement cached;
+    private final Connection connection;
+
+    StatementHandler(PhysicalConnection physical, CachedStatement cached, Connection connection)
+    {
+      this.physical = physical;
+      this.cached = cached;
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+      boolean closed = cached.owner != this;
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            physical.checkIn(cached);
+          }
+          return null;
+        case "isClosed":
+          return closed || cached.statement.isClosed();
+        case "getConnection":
+          return connection;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          break;
+      }
+      if (closed) {
+        throw new SQLException("Statement is closed");
+      }
+      return JdbcConnectionPool.invoke(cached.statement, method, args);
+    }
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcConnectionPool.class);
+}
@@ -0,0 +1,593 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.db.jdbc.JdbcStore;
+import com.datatorrent.lib.util.FieldInfo;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Sets fields of the tuples from the row of a reference table with the key of
+ * the tuple, such as the tier and region of an account.
+ * <p>
+ * The key of a tuple is the value of <code>keyExpression</code>, looked up in
+ * the <code>keyColumn</code> of <code>tableName</code>; the columns of the
+ * field infos are set on the fields they name. Rows are kept in an LRU cache of
+ * <code>maxCacheSize</code> keys for <code>cacheTtlSeconds</code>, including
+ * keys without a row, which leave the tuple unchanged. A tuple whose key is
+ * cached is enriched and emitted right away. The keys which are not are looked
+ * up on a separate thread and connection, with one
+ * <code>SELECT ... WHERE keyColumn IN (...)</code> for every
+ * <code>maxLookupKeys</code> keys, sent as soon as that many are missing and
+ * at the end of the window for the rest. The tuples waiting for them are
+ * emitted at the end of the window, in the order they arrived; tuples with
+ * the same key keep their order.
+ * <p>
+ * With <code>preload</code> set, the whole table is loaded at setup into a map
+ * keyed by the primitive long value of the key, which then has to be an
+ * integral number, which is checked at setup when the key is a field, and
+ * reloaded in the background every <code>cacheTtlSeconds</code>. No queries
+ * are sent for single keys, and keys which are not in the table leave the
+ * tuples unchanged.
+ * <p>
+ * The rows are read when the tuples are processed, so replayed windows see
+ * the table as it is then.
+ */
+public class JdbcLookupEnrichmentOperator extends BaseOperator
+{
+  private static final Object[] NOT_FOUND = new Object[0];
+  private static final Set<Class<?>> INTEGRAL_TYPES = new HashSet<Class<?>>(Arrays.asList(
+      long.class, int.class, short.class, byte.class, Long.class, Integer.class, Short.class, Byte.class));
+
+  @NotNull
+  private JdbcStore store = new JdbcStore();
+
+  @NotNull
+  private String tableName;
+
+  @NotNull
+  private String keyColumn;
+
+  @NotNull
+  private String keyExpression;
+
+  @NotNull
+  private List<FieldInfo> fieldInfos = new ArrayList<>();
+
+  @Min(1)
+  private int maxCacheSize = 100000;
+
+  @Min(1)
+  private int cacheTtlSeconds = 300;
+
+  @Min(1)
+  private int maxLookupKeys = 500;
+
+  private boolean preload;
+
+  @AutoMetric
+  private long cacheHits;
+
+  @AutoMetric
+  private long cacheMisses;
+
+  @AutoMetric
+  private long lookupQueries;
+
+  private transient Class<?> tupleClass;
+  private transient PojoUtils.Getter<Object, Object> keyGetter;
+  private transient JdbcPojoMapper mapper;
+  private transient LinkedHashMap<Object, CachedRow> cache;
+  private transient ExecutorService lookupExecutor;
+  private transient PreparedStatement lookupStatement;
+  private transient List<Object> missingKeys;
+  private transient Set<Object> pendingKeys;
+  private transient List<Object> pendingTuples;
+  private transient List<Future<Map<Object, Object[]>>> lookups;
+  private transient PreloadedTable preloaded;
+  private transient Future<PreloadedTable> reload;
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      processTuple(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> output = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  };
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    keyGetter = PojoUtils.createGetter(tupleClass, keyExpression, Object.class);
+    mapper = new JdbcPojoMapper(tupleClass, fieldInfos);
+    if (preload) {
+      checkPreloadKey();
+    }
+    cache = new LinkedHashMap<Object, CachedRow>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, CachedRow> eldest)
+      {
+        return size() > maxCacheSize;
+      }
+    };
+    missingKeys = new ArrayList<>(maxLookupKeys);
+    pendingKeys = new HashSet<>();
+    pendingTuples = new ArrayList<>();
+    lookups = new ArrayList<>();
+    store.connect();
+    if (preload) {
+      try {
+        preloaded = loadTable();
+      } catch (SQLException e) {
+        throw new RuntimeException("Unable to load " + tableName, e);
+      }
+    }
+    // the connection is only used by this thread from now on
+    lookupExecutor = Executors.newSingleThreadExecutor();
+  }
+
+  /**
+   * Fails unless the key is integral, when it is a field whose type is known.
+   */
+  private void checkPreloadKey()
+  {
+    Class<?> type;
+    try {
+      type = PojoFields.fieldType(tupleClass, keyExpression);
+    } catch (IllegalArgumentException e) {
+      // a nested expression
+      return;
+    }
+    if (!INTEGRAL_TYPES.contains(type)) {
+      throw new IllegalArgumentException("Preload needs an integral key, " + keyExpression + " of "
+          + tupleClass.getName() + " is " + type.getName());
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (lookupExecutor != null) {
+      lookupExecutor.shutdownNow();
+      try {
+        lookupExecutor.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    store.disconnect();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    cacheHits = 0;
+    cacheMisses = 0;
+    lookupQueries = 0;
+    if (preload) {
+      if (reload != null && reload.isDone()) {
+        preloaded = get(reload);
+        reload = null;
+      }
+      if (reload == null && System.currentTimeMillis() - preloaded.loadedMillis >= cacheTtlSeconds * 1000L) {
+        reload = lookupExecutor.submit(new Callable<PreloadedTable>()
+        {
+          @Override
+          public PreloadedTable call() throws SQLException
+          {
+            return loadTable();
+          }
+        });
+      }
+    }
+  }
+
+  private void processTuple(Object tuple)
+  {
+    Object key = keyGetter.get(tuple);
+    if (key == null) {
+      output.emit(tuple);
+      return;
+    }
+    if (preload) {
+      enrich(tuple, preloaded.get(((Number)key).longValue()));
+      output.emit(tuple);
+      return;
+    }
+    if (!pendingKeys.contains(key)) {
+      CachedRow row = cache.get(key);
+      if (row != null && System.currentTimeMillis() - row.loadedMillis < cacheTtlSeconds * 1000L) {
+        cacheHits++;
+        enrich(tuple, row.values);
+        output.emit(tuple);
+        return;
+      }
+      cacheMisses++;
+      pendingKeys.add(key);
+      missingKeys.add(key);
+      if (missingKeys.size() >= maxLookupKeys) {
+        submitLookup();
+      }
+    }
+    pendingTuples.add(tuple);
+  }
+
+  private void enrich(Object tuple, Object[] values)
+  {
+    if (values == null || values == NOT_FOUND) {
+      return;
+    }
+    for (int i = 0; i < values.length; i++) {
+      mapper.set(tuple, i, values[i]);
+    }
+  }
+
+  private void submitLookup()
+  {
+    final List<Object> keys = missingKeys;
+    missingKeys = new ArrayList<>(maxLookupKeys);
+    lookupQueries++;
+    lookups.add(lookupExecutor.submit(new Callable<Map<Object, Object[]>>()
+    {
+      @Override
+      public Map<Object, Object[]> call() throws SQLException
+      {
+        return lookup(keys);
+      }
+    }));
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (!missingKeys.isEmpty()) {
+      submitLookup();
+    }
+    long now = System.currentTimeMillis();
+    Map<Object, Object[]> rows = new HashMap<>();
+    for (Future<Map<Object, Object[]>> lookup : lookups) {
+      rows.putAll(get(lookup));
+    }
+    lookups.clear();
+    for (Map.Entry<Object, Object[]> entry : rows.entrySet()) {
+      cache.put(entry.getKey(), new CachedRow(entry.getValue(), now));
+    }
+    for (Object tuple : pendingTuples) {
+      enrich(tuple, rows.get(keyGetter.get(tuple)));
+      output.emit(tuple);
+    }
+    pendingTuples.clear();
+    pendingKeys.clear();
+  }
+
+  private static <T> T get(Future<T> future)
+  {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Lookup failed", e.getCause());
+    }
+  }
+
+  /**
+   * Selects the rows of the given keys, called on the lookup thread. The
+   * statement always has maxLookupKeys parameters, the last key fills the
+   * unused ones, so it is prepared once.
+   */
+  private Map<Object, Object[]> lookup(List<Object> keys) throws SQLException
+  {
+    if (lookupStatement == null) {
+      char[] parameters = new char[maxLookupKeys * 2 - 1];
+      Arrays.fill(parameters, ',');
+      for (int i = 0; i < parameters.length; i += 2) {
+        parameters[i] = '?';
+      }
+      lookupStatement = store.getConnection().prepareStatement(selectList() + " WHERE " + keyColumn + " IN ("
+          + new String(parameters) + ")");
+    }
+    for (int i = 0; i < maxLookupKeys; i++) {
+      lookupStatement.setObject(i + 1, keys.get(Math.min(i, keys.size() - 1)));
+    }
+    Class<?> keyClass = keys.get(0).getClass();
+    Map<Object, Object[]> rows = new HashMap<>();
+    try (ResultSet result = lookupStatement.executeQuery()) {
+      while (result.next()) {
+        rows.put(JdbcPojoMapper.FieldSetter.convert(result.getObject(1), keyClass), values(result));
+      }
+    }
+    for (Object key : keys) {
+      if (!rows.containsKey(key)) {
+        rows.put(key, NOT_FOUND);
+      }
+    }
+    return rows;
+  }
+
+  private PreloadedTable loadTable() throws SQLException
+  {
+    long start = System.currentTimeMillis();
+    List<Object[]> rows = new ArrayList<>();
+    List<Long> keys = new ArrayList<>();
+    try (PreparedStatement statement = store.getConnection().prepareStatement(selectList());
+        ResultSet result = statement.executeQuery()) {
+      while (result.next()) {
+        keys.add(result.getLong(1));
+        rows.add(values(result));
+      }
+    }
+    PreloadedTable table = new PreloadedTable(keys.size(), start);
+    Iterator<Long> key = keys.iterator();
+    for (Object[] row : rows) {
+      table.put(key.next(), row);
+    }
+    LOG.info("Loaded {} rows of {} in {} ms", rows.size(), tableName, System.currentTimeMillis() - start);
+    return table;
+  }
+
+  private String selectList()
+  {
+    StringBuilder sql = new StringBuilder("SELECT ").append(keyColumn);
+    for (int i = 0; i < mapper.size(); i++) {
+      sql.append(", ").append(mapper.getColumnName(i));
+    }
+    return sql.append(" FROM ").append(tableName).toString();
+  }
+
+  private Object[] values(ResultSet result) throws SQLException
+  {
+    Object[] values = new Object[mapper.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = result.getObject(i + 2);
+    }
+    return values;
+  }
+
+  private static class CachedRow
+  {
+    final Object[] values;
+    final long loadedMillis;
+
+    CachedRow(Object[] values, long loadedMillis)
+    {
+      this.values = values;
+      this.loadedMillis = loadedMillis;
+    }
+  }
+
+  /**
+   * Rows of a whole table by long key, in an open addressing hash table so
+   * that the keys are not boxed.
+   */
+  static class PreloadedTable
+  {
+    private final long[] keys;
+    private final Object[][] rows;
+    private final int mask;
+    final long loadedMillis;
+
+    PreloadedTable(int size, long loadedMillis)
+    {
+      int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+      keys = new long[capacity];
+      rows = new Object[capacity][];
+      mask = capacity - 1;
+      this.loadedMillis = loadedMillis;
+    }
+
+    private int slot(long key)
+    {
+      long h = key * 0x9e3779b97f4a7c15L;
+      int slot = (int)(h ^ (h >>> 32)) & mask;
+      while (rows[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    void put(long key, Object[] row)
+    {
+      int slot = slot(key);
+      keys[slot] = key;
+      rows[slot] = row;
+    }
+
+    Object[] get(long key)
+    {
+      return rows[slot(key)];
+    }
+  }
+
+  public JdbcStore getStore()
+  {
+    return store;
+  }
+
+  public void setStore(JdbcStore store)
+  {
+    this.store = store;
+  }
+
+  public String getTableName()
+  {
+    return tableName;
+  }
+
+  /**
+   * Reference table the rows are looked up in.
+   */
+  public void setTableName(String tableName)
+  {
+    this.tableName = tableName;
+  }
+
+  public String getKeyColumn()
+  {
+    return keyColumn;
+  }
+
+  /**
+   * Unique column of the reference table which is matched with the key of
+   * the tuples.
+   */
+  public void setKeyColumn(String keyColumn)
+  {
+    this.keyColumn = keyColumn;
+  }
+
+  public String getKeyExpression()
+  {
+    return keyExpression;
+  }
+
+  /**
+   * Field name or PojoUtils expression of the key of the tuples, for example
+   * accountNumber
+   */
+  public void setKeyExpression(String keyExpression)
+  {
+    this.keyExpression = keyExpression;
+  }
+
+  public List<FieldInfo> getFieldInfos()
+  {
+    return fieldInfos;
+  }
+
+  /**
+   * Columns of the reference table and the fields of the tuples they are set
+   * on.
+   */
+  public void setFieldInfos(List<FieldInfo> fieldInfos)
+  {
+    this.fieldInfos = fieldInfos;
+  }
+
+  public int getMaxCacheSize()
+  {
+    return maxCacheSize;
+  }
+
+  /**
+   * Maximum number of keys cached. Default is 100000.
+   */
+  public void setMaxCacheSize(int maxCacheSize)
+  {
+    this.maxCacheSize = maxCacheSize;
+  }
+
+  public int getCacheTtlSeconds()
+  {
+    return cacheTtlSeconds;
+  }
+
+  /**
+   * Seconds after which a cached row is looked up again, or the preloaded
+   * table is reloaded. Default is 300.
+   */
+  public void setCacheTtlSeconds(int cacheTtlSeconds)
+  {
+    this.cacheTtlSeconds = cacheTtlSeconds;
+  }
+
+  public int getMaxLookupKeys()
+  {
+    return maxLookupKeys;
+  }
+
+  /**
+   * Number of keys looked up per query. Default is 500.
+   */
+  public void setMaxLookupKeys(int maxLookupKeys)
+  {
+    this.maxLookupKeys = maxLookupKeys;
+  }
+
+  public boolean isPreload()
+  {
+    return preload;
+  }
+
+  /**
+   * Whether to load the whole table into memory instead of looking up keys,
+   * for small tables with integral keys. Default is false.
+   */
+  public void setPreload(boolean preload)
+  {
+    this.preload = preload;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcLookupEnrichmentOperator.class);
+}
@@ -0,0 +1,610 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.wal.FSWindowDataManager;
+import org.apache.apex.malhar.lib.wal.WindowDataManager;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.db.jdbc.JdbcStore;
+import com.datatorrent.lib.util.FieldInfo;
+import com.datatorrent.lib.util.KryoCloneUtils;
+
+/**
+ * Reads a table through a server side cursor and emits its rows as POJOs as
+ * fast as the downstream operators take them, then keeps polling for new rows.
+ * <p>
+ * Rows are read in the order of the <code>key</code> column, which has to be
+ * unique, indexed and increasing for new rows, such as a sequence. A reader
+ * thread runs <code>SELECT ... WHERE key &gt; last ORDER BY key</code> with
+ * auto commit off and <code>fetchSize</code> set, so drivers such as the
+ * Postgres one stream the result instead of materializing it, and puts the
+ * rows in a queue of <code>queueCapacity</code> rows which emitTuples drains.
+ * When the queue is full the reader stops fetching, so the scan runs at the
+ * pace of the DAG. Once the result is exhausted the reader repeats the query
+ * from the last key every <code>pollInterval</code> milliseconds.
+ * <p>
+ * With <code>partitionCount</code> greater than 1 the key range between the
+ * minimum and maximum key at launch, which then has to be numeric, is split
+ * into as many ranges, each read by its own partition. Only the partition with
+ * the last range polls for new rows.
+ * <p>
+ * The last key of every window is saved with the <code>windowManager</code>,
+ * so after a failure the windows are replayed with the same rows.
+ * <p>
+ * The properties have the same names as those of
+ * {@link com.datatorrent.lib.db.jdbc.JdbcPOJOPollInputOperator}, so it can
+ * replace the poller without configuration changes; <code>batchSize</code>
+ * is the number of rows emitted per emitTuples call.
+ */
+public class JdbcPOJOStreamingInputOperator extends BaseOperator implements InputOperator,
+    Operator.ActivationListener<Context.OperatorContext>, Operator.CheckpointListener,
+    Partitioner<JdbcPOJOStreamingInputOperator>
+{
+  @NotNull
+  private JdbcStore store = new JdbcStore();
+
+  @NotNull
+  private String tableName;
+
+  @NotNull
+  private String key;
+
+  private String columnsExpression;
+
+  private String whereCondition;
+
+  @NotNull
+  private List<FieldInfo> fieldInfos = new ArrayList<>();
+
+  @Min(1)
+  private int fetchSize = 10000;
+
+  @Min(1)
+  private int queueCapacity = 10000;
+
+  @Min(1)
+  private int batchSize = 1000;
+
+  @Min(0)
+  private int pollInterval = 1000;
+
+  @Min(1)
+  private int partitionCount = 1;
+
+  @NotNull
+  private WindowDataManager windowManager = new FSWindowDataManager();
+
+  // range of this partition, lower bound inclusive and upper bound exclusive
+  private Long lowerBound;
+  private Long upperBound;
+
+  // key of the last emitted row
+  private Object lastKey;
+
+  @AutoMetric
+  private long emittedTuples;
+
+  @AutoMetric
+  private long queuedRows;
+
+  private transient Class<?> tupleClass;
+  private transient JdbcPojoMapper mapper;
+  private transient long windowId;
+  private transient BlockingQueue<Row> queue;
+  private transient Thread reader;
+  private transient volatile boolean running;
+  private final transient AtomicReference<Throwable> readerError = new AtomicReference<>();
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> outputPort = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+  };
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    mapper = new JdbcPojoMapper(tupleClass, fieldInfos);
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    windowManager.setup(context);
+    store.connect();
+    try {
+      // drivers only use a cursor for fetchSize within a transaction
+      store.getConnection().setAutoCommit(false);
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    windowManager.teardown();
+    store.disconnect();
+  }
+
+  @Override
+  public void activate(Context.OperatorContext context)
+  {
+    running = true;
+  }
+
+  @Override
+  public void deactivate()
+  {
+    running = false;
+    if (reader != null) {
+      reader.interrupt();
+      try {
+        reader.join(10000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      reader = null;
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+    emittedTuples = 0;
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      replay(windowId);
+    }
+  }
+
+  /**
+   * Emits the rows after the last key up to the last key saved for the window.
+   */
+  private void replay(long windowId)
+  {
+    Object endKey;
+    try {
+      endKey = windowManager.retrieve(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to retrieve window " + windowId, e);
+    }
+    if (endKey == null) {
+      return;
+    }
+    try (PreparedStatement statement = prepare(store.getConnection(), lastKey, true)) {
+      int index = bind(statement, lastKey);
+      statement.setObject(index, endKey);
+      try (ResultSet result = statement.executeQuery()) {
+        while (result.next()) {
+          outputPort.emit(mapper.map(result));
+          emittedTuples++;
+        }
+      }
+      store.getConnection().commit();
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to replay window " + windowId, e);
+    }
+    lastKey = endKey;
+  }
+
+  @Override
+  public void emitTuples()
+  {
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      return;
+    }
+    Throwable t = readerError.get();
+    if (t != null) {
+      throw new RuntimeException("Reading " + tableName + " failed", t);
+    }
+    if (reader == null) {
+      startReader();
+    }
+    for (int i = 0; i < batchSize; i++) {
+      Row row = queue.poll();
+      if (row == null) {
+        break;
+      }
+      outputPort.emit(row.tuple);
+      lastKey = row.key;
+      emittedTuples++;
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    queuedRows = queue.size();
+    if (windowId > windowManager.getLargestCompletedWindow() && emittedTuples > 0) {
+      try {
+        windowManager.save(lastKey, windowId);
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to save window " + windowId, e);
+      }
+    }
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+    try {
+      windowManager.committed(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void startReader()
+  {
+    final Object startKey = lastKey;
+    reader = new Thread("jdbc-reader-" + tableName)
+    {
+      @Override
+      public void run()
+      {
+        try {
+          read(startKey);
+        } catch (InterruptedException e) {
+          // deactivated
+        } catch (Throwable t) {
+          readerError.compareAndSet(null, t);
+        }
+      }
+    };
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /**
+   * Streams the rows after the given key into the queue, then polls for new
+   * rows if this partition has no upper bound.
+   */
+  private void read(Object from) throws SQLException, InterruptedException
+  {
+    Connection connection = store.getConnection();
+    while (running) {
+      long rows = 0;
+      try (PreparedStatement statement = prepare(connection, from, false)) {
+        statement.setFetchSize(fetchSize);
+        bind(statement, from);
+        try (ResultSet result = statement.executeQuery()) {
+          while (result.next()) {
+            Object rowKey = result.getObject(key);
+            queue.put(new Row(rowKey, mapper.map(result)));
+            from = rowKey;
+            rows++;
+          }
+        }
+      } finally {
+        connection.commit();
+      }
+      LOG.debug("Read {} rows from {} up to key {}", rows, tableName, from);
+      if (upperBound != null) {
+        LOG.info("Finished reading range [{}, {}) of {}", lowerBound, upperBound, tableName);
+        return;
+      }
+      Thread.sleep(pollInterval);
+    }
+  }
+
+  private PreparedStatement prepare(Connection connection, Object from, boolean bounded) throws SQLException
+  {
+    return connection.prepareStatement(buildQuery(from, bounded), ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY);
+  }
+
+  /**
+   * Select after the given key, within the range of the partition and, for
+   * replay, up to a given key.
+   */
+  String buildQuery(Object from, boolean bounded)
+  {
+    StringBuilder sql = new StringBuilder("SELECT ");
+    if (columnsExpression != null) {
+      sql.append(columnsExpression);
+    } else {
+      sql.append(key);
+      for (FieldInfo fieldInfo : fieldInfos) {
+        if (!fieldInfo.getColumnName().equalsIgnoreCase(key)) {
+          sql.append(", ").append(fieldInfo.getColumnName());
+        }
+      }
+    }
+    sql.append(" FROM ").append(tableName);
+    List<String> conditions = new ArrayList<>();
+    if (from != null) {
+      conditions.add(key + " > ?");
+    } else if (lowerBound != null) {
+      conditions.add(key + " >= ?");
+    }
+    if (upperBound != null) {
+      conditions.add(key + " < ?");
+    }
+    if (bounded) {
+      conditions.add(key + " <= ?");
+    }
+    if (whereCondition != null && !whereCondition.trim().isEmpty()) {
+      conditions.add("(" + whereCondition + ")");
+    }
+    for (int i = 0; i < conditions.size(); i++) {
+      sql.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+    }
+    return sql.append(" ORDER BY ").append(key).toString();
+  }
+
+  /**
+   * Binds the start key and the range of the partition and returns the index
+   * of the next parameter.
+   */
+  private int bind(PreparedStatement statement, Object from) throws SQLException
+  {
+    int index = 1;
+    if (from != null) {
+      statement.setObject(index++, from);
+    } else if (lowerBound != null) {
+      statement.setLong(index++, lowerBound);
+    }
+    if (upperBound != null) {
+      statement.setLong(index++, upperBound);
+    }
+    return index;
+  }
+
+  @Override
+  public Collection<Partition<JdbcPOJOStreamingInputOperator>> definePartitions(
+      Collection<Partition<JdbcPOJOStreamingInputOperator>> partitions, PartitioningContext context)
+  {
+    if (partitionCount == 1 || partitions.size() > 1 || lastKey != null) {
+      // ranges are only assigned at launch
+      return partitions;
+    }
+    long min;
+    long max;
+    store.connect();
+    try (PreparedStatement statement = store.getConnection().prepareStatement("SELECT MIN(" + key + "), MAX("
+        + key + ") FROM " + tableName + (whereCondition == null || whereCondition.trim().isEmpty() ? "" :
+        " WHERE " + whereCondition)); ResultSet result = statement.executeQuery()) {
+      result.next();
+      min = result.getLong(1);
+      max = result.getLong(2);
+      if (result.wasNull()) {
+        // empty table, read everything with one partition
+        return partitions;
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to get the key range of " + tableName, e);
+    } finally {
+      store.disconnect();
+    }
+
+    long step = Math.max(1, (max - min + partitionCount) / partitionCount);
+    List<Partition<JdbcPOJOStreamingInputOperator>> newPartitions = new ArrayList<>(partitionCount);
+    for (int i = 0; i < partitionCount; i++) {
+      JdbcPOJOStreamingInputOperator operator = KryoCloneUtils.cloneObject(this);
+      operator.lowerBound = i == 0 ? null : min + i * step;
+      operator.upperBound = i == partitionCount - 1 ? null : min + (i + 1) * step;
+      newPartitions.add(new DefaultPartition<>(operator));
+    }
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<JdbcPOJOStreamingInputOperator>> partitions)
+  {
+  }
+
+  /**
+   * A row with its key, queued by the reader thread.
+   */
+  private static class Row
+  {
+    final Object key;
+    final Object tuple;
+
+    Row(Object key, Object tuple)
+    {
+      this.key = key;
+      this.tuple = tuple;
+    }
+  }
+
+  public JdbcStore getStore()
+  {
+    return store;
+  }
+
+  public void setStore(JdbcStore store)
+  {
+    this.store = store;
+  }
+
+  public String getTableName()
+  {
+    return tableName;
+  }
+
+  public void setTableName(String tableName)
+  {
+    this.tableName = tableName;
+  }
+
+  public String getKey()
+  {
+    return key;
+  }
+
+  /**
+   * Unique, indexed column whose value increases for new rows, which rows are
+   * read in the order of.
+   */
+  public void setKey(String key)
+  {
+    this.key = key;
+  }
+
+  public String getColumnsExpression()
+  {
+    return columnsExpression;
+  }
+
+  /**
+   * Comma separated columns to select, which have to include the key. Default
+   * is the key and the columns of the field infos.
+   */
+  public void setColumnsExpression(String columnsExpression)
+  {
+    this.columnsExpression = columnsExpression;
+  }
+
+  public String getWhereCondition()
+  {
+    return whereCondition;
+  }
+
+  /**
+   * Additional condition rows have to match.
+   */
+  public void setWhereCondition(String whereCondition)
+  {
+    this.whereCondition = whereCondition;
+  }
+
+  public List<FieldInfo> getFieldInfos()
+  {
+    return fieldInfos;
+  }
+
+  public void setFieldInfos(List<FieldInfo> fieldInfos)
+  {
+    this.fieldInfos = fieldInfos;
+  }
+
+  public int getFetchSize()
+  {
+    return fetchSize;
+  }
+
+  /**
+   * Number of rows the driver fetches per round trip. Default is 10000.
+   */
+  public void setFetchSize(int fetchSize)
+  {
+    this.fetchSize = fetchSize;
+  }
+
+  public int getQueueCapacity()
+  {
+    return queueCapacity;
+  }
+
+  /**
+   * Number of rows read ahead of the operator thread. Default is 10000.
+   */
+  public void setQueueCapacity(int queueCapacity)
+  {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * Maximum number of rows emitted per emitTuples call. Default is 1000.
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  public int getPollInterval()
+  {
+    return pollInterval;
+  }
+
+  /**
+   * Milliseconds between the queries for new rows once the table has been
+   * read. Default is 1000.
+   */
+  public void setPollInterval(int pollInterval)
+  {
+    this.pollInterval = pollInterval;
+  }
+
+  public int getPartitionCount()
+  {
+    return partitionCount;
+  }
+
+  /**
+   * Number of key ranges the table is read in at launch. Default is 1.
+   */
+  public void setPartitionCount(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  public WindowDataManager getWindowManager()
+  {
+    return windowManager;
+  }
+
+  public void setWindowManager(WindowDataManager windowManager)
+  {
+    this.windowManager = windowManager;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcPOJOStreamingInputOperator.class);
+}
@@ -0,0 +1,529 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.wal.FSWindowDataManager;
+import org.apache.apex.malhar.lib.wal.WindowDataManager;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.db.jdbc.JdbcStore;
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Polls a table for the rows inserted or updated since the last poll, using a
+ * column whose value increases on every change, such as an
+ * <code>updated_at</code> timestamp or a sequence.
+ * <p>
+ * Every <code>pollInterval</code> milliseconds the operator runs
+ * <code>SELECT ... WHERE col &gt;= ? ORDER BY col</code> with the highest
+ * value of the <code>watermarkColumn</code> seen so far, minus
+ * <code>overlap</code>, as the parameter. The predicate is a plain range on
+ * the column, so an index on it limits each poll to the new rows. At most
+ * <code>batchSize</code> rows are read per poll; when a poll returns that many
+ * the next one follows right away.
+ * <p>
+ * The rows at the watermark itself are read again by the next poll, so rows
+ * committed later with the same value are not missed, and
+ * <code>overlap</code> extends that to rows committed late with a lower
+ * value, such as timestamps of clients with skewed clocks or of long
+ * transactions. Rows read again are skipped when the
+ * <code>idColumn</code> value was already emitted with the same watermark
+ * value; a row updated again is emitted again. The id has to be unique, as
+ * many rows can share a watermark value. For timestamp columns the
+ * overlap is in milliseconds, for numeric columns in units of the column.
+ * <p>
+ * The watermark and the rows of the overlap are checkpointed, and the rows of
+ * every window are saved with the <code>windowManager</code>, so after a
+ * failure the windows are replayed with the same rows.
+ */
+public class JdbcPOJOWatermarkPollInputOperator extends BaseOperator implements InputOperator,
+    Operator.CheckpointListener
+{
+  @NotNull
+  private JdbcStore store = new JdbcStore();
+
+  @NotNull
+  private String tableName;
+
+  @NotNull
+  private String watermarkColumn;
+
+  @NotNull
+  private String idColumn;
+
+  private String columnsExpression;
+
+  private String whereCondition;
+
+  @NotNull
+  private List<FieldInfo> fieldInfos = new ArrayList<>();
+
+  @Min(0)
+  private long overlap;
+
+  @Min(0)
+  private int pollInterval = 1000;
+
+  @Min(1)
+  private int batchSize = 10000;
+
+  @NotNull
+  private WindowDataManager windowManager = new FSWindowDataManager();
+
+  // highest watermark value emitted
+  private Object watermark;
+
+  // id to watermark value of the rows emitted at or after the lower bound
+  private HashMap<Object, Object> overlapRows = new HashMap<>();
+
+  @AutoMetric
+  private long emittedTuples;
+
+  @AutoMetric
+  private long skippedDuplicates;
+
+  private transient Class<?> tupleClass;
+  private transient JdbcPojoMapper mapper;
+  private transient long windowId;
+  private transient long nextPollMillis;
+  private transient PreparedStatement initialQuery;
+  private transient PreparedStatement incrementalQuery;
+  private transient List<Row> windowRows;
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> outputPort = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+  };
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    mapper = new JdbcPojoMapper(tupleClass, fieldInfos);
+    windowRows = new ArrayList<>();
+    windowManager.setup(context);
+    store.connect();
+    try {
+      initialQuery = store.getConnection().prepareStatement(buildQuery(false));
+      initialQuery.setMaxRows(batchSize);
+      incrementalQuery = store.getConnection().prepareStatement(buildQuery(true));
+      incrementalQuery.setMaxRows(batchSize);
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to prepare the queries on " + tableName, e);
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    try {
+      initialQuery.close();
+      incrementalQuery.close();
+    } catch (SQLException e) {
+      LOG.warn("Closing statements", e);
+    }
+    windowManager.teardown();
+    store.disconnect();
+  }
+
+  String buildQuery(boolean incremental)
+  {
+    StringBuilder sql = new StringBuilder("SELECT ");
+    if (columnsExpression != null) {
+      sql.append(columnsExpression);
+    } else {
+      sql.append(watermarkColumn);
+      if (!idColumn.equalsIgnoreCase(watermarkColumn)) {
+        sql.append(", ").append(idColumn);
+      }
+      for (FieldInfo fieldInfo : fieldInfos) {
+        String column = fieldInfo.getColumnName();
+        if (!column.equalsIgnoreCase(watermarkColumn) && !column.equalsIgnoreCase(idColumn)) {
+          sql.append(", ").append(column);
+        }
+      }
+    }
+    sql.append(" FROM ").append(tableName);
+    boolean where = whereCondition != null && !whereCondition.trim().isEmpty();
+    if (incremental) {
+      sql.append(" WHERE ").append(watermarkColumn).append(" >= ?");
+    }
+    if (where) {
+      sql.append(incremental ? " AND (" : " WHERE (").append(whereCondition).append(')');
+    }
+    return sql.append(" ORDER BY ").append(watermarkColumn).toString();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+    emittedTuples = 0;
+    skippedDuplicates = 0;
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      replay(windowId);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void replay(long windowId)
+  {
+    List<Row> rows;
+    try {
+      rows = (List<Row>)windowManager.retrieve(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to retrieve window " + windowId, e);
+    }
+    if (rows == null) {
+      return;
+    }
+    for (Row row : rows) {
+      emit(row);
+    }
+    pruneOverlap();
+  }
+
+  @Override
+  public void emitTuples()
+  {
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (now < nextPollMillis) {
+      return;
+    }
+    int rows;
+    try {
+      rows = poll();
+    } catch (SQLException e) {
+      throw new RuntimeException("Polling " + tableName + " failed", e);
+    }
+    // a full batch means there are more rows to read
+    nextPollMillis = rows < batchSize ? now + pollInterval : now;
+  }
+
+  private int poll() throws SQLException
+  {
+    PreparedStatement statement = initialQuery;
+    if (watermark != null) {
+      statement = incrementalQuery;
+      statement.setObject(1, shift(watermark, -overlap));
+    }
+    int rows = 0;
+    int emitted = 0;
+    try (ResultSet result = statement.executeQuery()) {
+      while (result.next()) {
+        rows++;
+        Object value = result.getObject(watermarkColumn);
+        Object id = result.getObject(idColumn);
+        if (value.equals(overlapRows.get(id))) {
+          skippedDuplicates++;
+          continue;
+        }
+        Row row = new Row(id, value, mapper.map(result));
+        emit(row);
+        windowRows.add(row);
+        emitted++;
+      }
+    }
+    if (rows == batchSize && emitted == 0) {
+      throw new IllegalStateException("More than " + batchSize + " rows of " + tableName + " from "
+          + watermarkColumn + " " + shift(watermark, -overlap) + ", increase batchSize");
+    }
+    pruneOverlap();
+    return rows;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void emit(Row row)
+  {
+    outputPort.emit(row.tuple);
+    emittedTuples++;
+    overlapRows.put(row.id, row.watermark);
+    if (watermark == null || ((Comparable<Object>)row.watermark).compareTo(watermark) > 0) {
+      watermark = row.watermark;
+    }
+  }
+
+  /**
+   * Forgets the rows below the lower bound of the next poll.
+   */
+  @SuppressWarnings("unchecked")
+  private void pruneOverlap()
+  {
+    if (watermark == null) {
+      return;
+    }
+    Comparable<Object> lowerBound = (Comparable<Object>)shift(watermark, -overlap);
+    for (Iterator<Map.Entry<Object, Object>> it = overlapRows.entrySet().iterator(); it.hasNext(); ) {
+      if (lowerBound.compareTo(it.next().getValue()) > 0) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Adds a delta to a watermark value, keeping its type.
+   */
+  static Object shift(Object value, long delta)
+  {
+    if (delta == 0) {
+      return value;
+    }
+    if (value instanceof Timestamp) {
+      Timestamp timestamp = new Timestamp(((Timestamp)value).getTime() + delta);
+      if (delta % 1000 == 0) {
+        timestamp.setNanos(((Timestamp)value).getNanos());
+      }
+      return timestamp;
+    } else if (value instanceof java.sql.Date) {
+      return new java.sql.Date(((Date)value).getTime() + delta);
+    } else if (value instanceof Date) {
+      return new Date(((Date)value).getTime() + delta);
+    } else if (value instanceof Integer) {
+      return (int)((Integer)value + delta);
+    } else if (value instanceof Long) {
+      return (Long)value + delta;
+    } else if (value instanceof BigDecimal) {
+      return ((BigDecimal)value).add(BigDecimal.valueOf(delta));
+    }
+    throw new IllegalArgumentException("Unsupported watermark type " + value.getClass().getName());
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (windowId > windowManager.getLargestCompletedWindow() && !windowRows.isEmpty()) {
+      try {
+        windowManager.save(windowRows, windowId);
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to save window " + windowId, e);
+      }
+    }
+    windowRows.clear();
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+    try {
+      windowManager.committed(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * An emitted row with its id and watermark value.
+   */
+  static class Row
+  {
+    Object id;
+    Object watermark;
+    Object tuple;
+
+    private Row()
+    {
+      // for kryo
+    }
+
+    Row(Object id, Object watermark, Object tuple)
+    {
+      this.id = id;
+      this.watermark = watermark;
+      this.tuple = tuple;
+    }
+  }
+
+  public JdbcStore getStore()
+  {
+    return store;
+  }
+
+  public void setStore(JdbcStore store)
+  {
+    this.store = store;
+  }
+
+  public String getTableName()
+  {
+    return tableName;
+  }
+
+  public void setTableName(String tableName)
+  {
+    this.tableName = tableName;
+  }
+
+  public String getWatermarkColumn()
+  {
+    return watermarkColumn;
+  }
+
+  /**
+   * Timestamp or numeric column whose value increases whenever a row is
+   * inserted or updated. It should be indexed.
+   */
+  public void setWatermarkColumn(String watermarkColumn)
+  {
+    this.watermarkColumn = watermarkColumn;
+  }
+
+  public String getIdColumn()
+  {
+    return idColumn;
+  }
+
+  /**
+   * Unique column identifying a row, used to skip rows read again. It can be
+   * the watermark column only if that is unique, such as a sequence.
+   */
+  public void setIdColumn(String idColumn)
+  {
+    this.idColumn = idColumn;
+  }
+
+  public String getColumnsExpression()
+  {
+    return columnsExpression;
+  }
+
+  /**
+   * Comma separated columns to select, which have to include the watermark
+   * and id columns. Default is those and the columns of the field infos.
+   */
+  public void setColumnsExpression(String columnsExpression)
+  {
+    this.columnsExpression = columnsExpression;
+  }
+
+  public String getWhereCondition()
+  {
+    return whereCondition;
+  }
+
+  /**
+   * Additional condition rows have to match.
+   */
+  public void setWhereCondition(String whereCondition)
+  {
+    this.whereCondition = whereCondition;
+  }
+
+  public List<FieldInfo> getFieldInfos()
+  {
+    return fieldInfos;
+  }
+
+  public void setFieldInfos(List<FieldInfo> fieldInfos)
+  {
+    this.fieldInfos = fieldInfos;
+  }
+
+  public long getOverlap()
+  {
+    return overlap;
+  }
+
+  /**
+   * How far below the watermark each poll starts, in milliseconds for
+   * timestamp columns. Default is 0, which still reads the rows at the
+   * watermark again.
+   */
+  public void setOverlap(long overlap)
+  {
+    this.overlap = overlap;
+  }
+
+  public int getPollInterval()
+  {
+    return pollInterval;
+  }
+
+  /**
+   * Milliseconds between polls that returned less than batchSize rows.
+   * Default is 1000.
+   */
+  public void setPollInterval(int pollInterval)
+  {
+    this.pollInterval = pollInterval;
+  }
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * Maximum number of rows read per poll, which has to be larger than the
+   * number of rows sharing a watermark value. Default is 10000.
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  public WindowDataManager getWindowManager()
+  {
+    return windowManager;
+  }
+
+  public void setWindowManager(WindowDataManager windowManager)
+  {
+    this.windowManager = windowManager;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcPOJOWatermarkPollInputOperator.class);
+}
@@ -0,0 +1,333 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.datatorrent.lib.util.FieldInfo;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Sets the values of database columns on the POJO fields given by a list of
+ * {@link FieldInfo}.
+ * <p>
+ * Values are converted to the type of the field, so a column can be set from
+ * whatever the driver returns for it, such as a {@link Number} of another
+ * width or the text representation of the value, which is what logical
+ * replication delivers. Primitive fields are set through primitive setters;
+ * null leaves them 0. The text of a timestamp may end with the offset of a
+ * timestamptz, such as <code>2020-01-01 00:00:00+00</code>, and is otherwise
+ * taken in the local time zone.
+ */
+class JdbcPojoMapper
+{
+  private final Class<?> clazz;
+  private final List<FieldInfo> fieldInfos;
+  private final FieldSetter[] setters;
+  private int[] columnIndexes;
+
+  JdbcPojoMapper(Class<?> clazz, List<FieldInfo> fieldInfos)
+  {
+    this.clazz = clazz;
+    this.fieldInfos = fieldInfos;
+    setters = new FieldSetter[fieldInfos.size()];
+    for (int i = 0; i < setters.length; i++) {
+      setters[i] = FieldSetter.create(clazz, fieldInfos.get(i));
+    }
+  }
+
+  Object newTuple()
+  {
+    try {
+      return clazz.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Unable to instantiate " + clazz, e);
+    }
+  }
+
+  int size()
+  {
+    return setters.length;
+  }
+
+  String getColumnName(int field)
+  {
+    return fieldInfos.get(field).getColumnName();
+  }
+
+  /**
+   * Index of the field of the given column, ignoring case, or -1.
+   */
+  int indexOf(String columnName)
+  {
+    for (int i = 0; i < setters.length; i++) {
+      if (fieldInfos.get(i).getColumnName().equalsIgnoreCase(columnName)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  void set(Object pojo, int field, Object value)
+  {
+    setters[field].set(pojo, value);
+  }
+
+  /**
+   * Creates a POJO from the current row. The columns are looked up by name in
+   * the first result set and by the same positions afterwards, so all result
+   * sets passed to a mapper need the same select list.
+   */
+  Object map(ResultSet result) throws SQLException
+  {
+    if (columnIndexes == null) {
+      ResultSetMetaData metaData = result.getMetaData();
+      int[] indexes = new int[setters.length];
+      for (int i = 0; i < indexes.length; i++) {
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+          if (metaData.getColumnLabel(column).equalsIgnoreCase(getColumnName(i))) {
+            indexes[i] = column;
+            break;
+          }
+        }
+        if (indexes[i] == 0) {
+          throw new IllegalArgumentException("Column " + getColumnName(i) + " is not selected");
+        }
+      }
+      columnIndexes = indexes;
+    }
+    Object pojo = newTuple();
+    for (int i = 0; i < setters.length; i++) {
+      setters[i].set(pojo, result.getObject(columnIndexes[i]));
+    }
+    return pojo;
+  }
+
+  /**
+   * Converts a value to the type of a field and sets it.
+   */
+  abstract static class FieldSetter
+  {
+    private static final Pattern TIMESTAMP_WITH_OFFSET = Pattern.compile(
+        "(\\d+)-(\\d+)-(\\d+)[ T](\\d+):(\\d+):(\\d+)(\\.\\d+)?([+-])(\\d{2})(?::?(\\d{2}))?(?::?(\\d{2}))?");
+
+    abstract void set(Object pojo, Object value);
+
+    static FieldSetter create(Class<?> clazz, FieldInfo fieldInfo)
+    {
+      final String expression = fieldInfo.getPojoFieldExpression();
+      Class<?> type;
+      try {
+        type = PojoFields.fieldType(clazz, expression);
+      } catch (IllegalArgumentException e) {
+        // a nested expression, use the declared type
+        type = fieldInfo.getType().getJavaType();
+      }
+      if (type == int.class) {
+        final PojoUtils.SetterInt<Object> setter = PojoUtils.createSetterInt(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            setter.set(pojo, value == null ? 0 : toNumber(value).intValue());
+          }
+        };
+      } else if (type == long.class) {
+        final PojoUtils.SetterLong<Object> setter = PojoUtils.createSetterLong(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            setter.set(pojo, value == null ? 0L : toNumber(value).longValue());
+          }
+        };
+      } else if (type == short.class) {
+        final PojoUtils.SetterShort<Object> setter = PojoUtils.createSetterShort(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            setter.set(pojo, value == null ? 0 : toNumber(value).shortValue());
+          }
+        };
+      } else if (type == double.class) {
+        final PojoUtils.SetterDouble<Object> setter = PojoUtils.createSetterDouble(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            setter.set(pojo, value == null ? 0d : toNumber(value).doubleValue());
+          }
+        };
+      } else if (type == float.class) {
+        final PojoUtils.SetterFloat<Object> setter = PojoUtils.createSetterFloat(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            setter.set(pojo, value == null ? 0f : toNumber(value).floatValue());
+          }
+        };
+      } else if (type == boolean.class) {
+        final PojoUtils.SetterBoolean<Object> setter = PojoUtils.createSetterBoolean(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            setter.set(pojo, value != null && toBoolean(value));
+          }
+        };
+      } else if (type == char.class) {
+        final PojoUtils.SetterChar<Object> setter = PojoUtils.createSetterChar(clazz, expression);
+        return new FieldSetter()
+        {
+          @Override
+          void set(Object pojo, Object value)
+          {
+            String s = value == null ? "" : value.toString();
+            setter.set(pojo, s.isEmpty() ? '\0' : s.charAt(0));
+          }
+        };
+      }
+      final Class<?> boxedType = type;
+      @SuppressWarnings("unchecked")
+      final PojoUtils.Setter<Object, Object> setter =
+          (PojoUtils.Setter<Object, Object>)PojoUtils.createSetter(clazz, expression, type);
+      return new FieldSetter()
+      {
+        @Override
+        void set(Object pojo, Object value)
+        {
+          setter.set(pojo, convert(value, boxedType));
+        }
+      };
+    }
+
+    static Number toNumber(Object value)
+    {
+      if (value instanceof Number) {
+        return (Number)value;
+      }
+      if (value instanceof Boolean) {
+        return (Boolean)value ? 1 : 0;
+      }
+      return new BigDecimal(value.toString().trim());
+    }
+
+    static boolean toBoolean(Object value)
+    {
+      if (value instanceof Boolean) {
+        return (Boolean)value;
+      }
+      if (value instanceof Number) {
+        return ((Number)value).intValue() != 0;
+      }
+      String s = value.toString().trim();
+      // text representation of a Postgres boolean is t or f
+      return s.equalsIgnoreCase("t") || s.equalsIgnoreCase("true") || s.equals("1");
+    }
+
+    static Object convert(Object value, Class<?> type)
+    {
+      if (value == null || type.isInstance(value)) {
+        return value;
+      }
+      if (type == String.class) {
+        return value.toString();
+      } else if (type == Integer.class) {
+        return toNumber(value).intValue();
+      } else if (type == Long.class) {
+        return toNumber(value).longValue();
+      } else if (type == Short.class) {
+        return toNumber(value).shortValue();
+      } else if (type == Double.class) {
+        return toNumber(value).doubleValue();
+      } else if (type == Float.class) {
+        return toNumber(value).floatValue();
+      } else if (type == Boolean.class) {
+        return toBoolean(value);
+      } else if (type == Character.class) {
+        String s = value.toString();
+        return s.isEmpty() ? null : s.charAt(0);
+      } else if (type == Timestamp.class && value instanceof String) {
+        return toTimestamp((String)value);
+      } else if (type == Date.class && value instanceof String) {
+        return Date.valueOf(((String)value).trim());
+      } else if (type == java.util.Date.class && value instanceof String) {
+        return new java.util.Date(toTimestamp((String)value).getTime());
+      }
+      throw new IllegalArgumentException("Cannot convert " + value.getClass().getName() + " to " + type.getName());
+    }
+
+    /**
+     * Parses the text of a timestamp, <code>yyyy-mm-dd hh:mm:ss[.f...]</code>
+     * optionally followed by a UTC offset of hours, minutes and seconds as
+     * Postgres writes a timestamptz, for example <code>+00</code>,
+     * <code>+05:30</code> or <code>-03:30:00</code>.
+     */
+    static Timestamp toTimestamp(String value)
+    {
+      String s = value.trim();
+      Matcher matcher = TIMESTAMP_WITH_OFFSET.matcher(s);
+      if (!matcher.matches()) {
+        return Timestamp.valueOf(s);
+      }
+      Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+      calendar.clear();
+      calendar.set(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) - 1,
+          Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)),
+          Integer.parseInt(matcher.group(6)));
+      int offsetSeconds = Integer.parseInt(matcher.group(9)) * 3600;
+      if (matcher.group(10) != null) {
+        offsetSeconds += Integer.parseInt(matcher.group(10)) * 60;
+      }
+      if (matcher.group(11) != null) {
+        offsetSeconds += Integer.parseInt(matcher.group(11));
+      }
+      if (matcher.group(8).equals("-")) {
+        offsetSeconds = -offsetSeconds;
+      }
+      Timestamp timestamp = new Timestamp(calendar.getTimeInMillis() - offsetSeconds * 1000L);
+      String fraction = matcher.group(7);
+      if (fraction != null) {
+        // nanoseconds from up to nine digits after the point
+        String digits = (fraction.substring(1) + "000000000").substring(0, 9);
+        timestamp.setNanos(Integer.parseInt(digits));
+      }
+      return timestamp;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import com.datatorrent.api.AutoMetric;
+
+/**
+ * Per window latency and volume counters of an operator.
+ * <p>
+ * Instrumented operators keep an instance of this class as a transient field,
+ * reset it in <code>beginWindow</code> and expose its values through
+ * <code>@AutoMetric</code> getters. Tuple latencies are recorded in an
+ * HdrHistogram with two significant digits, values above one minute are
+ * recorded as one minute.
+ * <p>
+ * Use {@link Aggregator} as the METRICS_AGGREGATOR of instrumented operators
+ * to combine the metrics of their partitions.
+ */
+public class LatencyMetrics
+{
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final Histogram tupleLatency = new Histogram(HIGHEST_TRACKABLE_NANOS, 2);
+  private long windowLatencyNanos;
+  private long recordsIn;
+  private long recordsOut;
+  private long bytesIn;
+  private long bytesOut;
+
+  public void beginWindow()
+  {
+    tupleLatency.reset();
+    windowLatencyNanos = 0;
+    recordsIn = 0;
+    recordsOut = 0;
+    bytesIn = 0;
+    bytesOut = 0;
+  }
+
+  /**
+   * Records the time taken by one tuple.
+   */
+  public void recordTuple(long nanos)
+  {
+    tupleLatency.recordValue(Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+  }
+
+  /**
+   * Records the time taken by a batch of tuples as the same latency for each
+   * of them.
+   */
+  public void recordTuples(long nanos, int count)
+  {
+    if (count > 0) {
+      tupleLatency.recordValueWithCount(Math.max(0, Math.min(nanos / count, HIGHEST_TRACKABLE_NANOS)), count);
+    }
+  }
+
+  /**
+   * Records time spent at the end of the window, such as flushing or
+   * committing.
+   */
+  public void recordWindow(long nanos)
+  {
+    windowLatencyNanos += nanos;
+  }
+
+  public void addRecordsIn(long records)
+  {
+    recordsIn += records;
+  }
+
+  public void addRecordsOut(long records)
+  {
+    recordsOut += records;
+  }
+
+  public void addBytesIn(long bytes)
+  {
+    bytesIn += bytes;
+  }
+
+  public void addBytesOut(long bytes)
+  {
+    bytesOut += bytes;
+  }
+
+  public long getTupleLatencyNanos(double percentile)
+  {
+    return tupleLatency.getTotalCount() == 0 ? 0 : tupleLatency.getValueAtPercentile(percentile);
+  }
+
+  public long getMaxTupleLatencyNanos()
+  {
+    return tupleLatency.getTotalCount() == 0 ? 0 : tupleLatency.getMaxValue();
+  }
+
+  public long getWindowLatencyNanos()
+  {
+    return windowLatencyNanos;
+  }
+
+  public long getRecordsIn()
+  {
+    return recordsIn;
+  }
+
+  public long getRecordsOut()
+  {
+    return recordsOut;
+  }
+
+  public long getBytesIn()
+  {
+    return bytesIn;
+  }
+
+  public long getBytesOut()
+  {
+    return bytesOut;
+  }
+
+  /**
+   * Combines the metrics of the partitions of an operator without merging
+   * their histograms: metrics whose name ends with Nanos are the maximum over
+   * the partitions, that is the latency of the slowest partition, other
+   * integral metrics are summed and decimal metrics, such as ratios, are
+   * averaged weighted by the <code>weightMetric</code> of every partition, so
+   * a partition which saw few records does not count as much as a busy one.
+   * Metrics which are not numbers, such as the consumer metrics of the Kafka
+   * input, are passed through as the list of the values of the partitions.
+   */
+  public static class Aggregator implements AutoMetric.Aggregator, Serializable
+  {
+    private static final long serialVersionUID = 201705170001L;
+
+    private String weightMetric = "recordsIn";
+
+    @Override
+    public Map<String, Object> aggregate(long windowId, Collection<AutoMetric.PhysicalMetricsContext> physicalMetrics)
+    {
+      Map<String, Object> result = new HashMap<>();
+      Map<String, double[]> decimals = new HashMap<>();
+      Map<String, List<Object>> passed = new HashMap<>();
+      for (AutoMetric.PhysicalMetricsContext context : physicalMetrics) {
+        Map<String, Object> metrics = context.getMetrics();
+        Object weightValue = metrics.get(weightMetric);
+        double weight = weightValue instanceof Number ? ((Number)weightValue).doubleValue() : 1;
+        for (Map.Entry<String, Object> metric : metrics.entrySet()) {
+          String name = metric.getKey();
+          if (!(metric.getValue() instanceof Number)) {
+            List<Object> values = passed.get(name);
+            if (values == null) {
+              values = new ArrayList<>();
+              passed.put(name, values);
+            }
+            values.add(metric.getValue());
+            continue;
+          }
+          Number value = (Number)metric.getValue();
+          Object previous = result.get(name);
+          if (value instanceof Double || value instanceof Float) {
+            // weighted sum, sum of weights, and sum and count for when no partition has weight
+            double[] sums = decimals.get(name);
+            if (sums == null) {
+              sums = new double[4];
+              decimals.put(name, sums);
+            }
+            sums[0] += weight * value.doubleValue();
+            sums[1] += weight;
+            sums[2] += value.doubleValue();
+            sums[3]++;
+          } else if (name.endsWith("Nanos")) {
+            result.put(name, previous == null ? value.longValue() : Math.max((Long)previous, value.longValue()));
+          } else {
+            result.put(name, previous == null ? value.longValue() : (Long)previous + value.longValue());
+          }
+        }
+      }
+      for (Map.Entry<String, double[]> decimal : decimals.entrySet()) {
+        double[] sums = decimal.getValue();
+        result.put(decimal.getKey(), sums[1] > 0 ? sums[0] / sums[1] : sums[2] / sums[3]);
+      }
+      result.putAll(passed);
+      return result;
+    }
+
+    public String getWeightMetric()
+    {
+      return weightMetric;
+    }
+
+    /**
+     * Integral metric of a partition its decimal metrics are weighted by.
+     * Partitions which do not report it count once. Default is
+     * <code>recordsIn</code>.
+     */
+    public void setWeightMetric(String weightMetric)
+    {
+      this.weightMetric = weightMetric;
+    }
+  }
+}
@@ -0,0 +1,303 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.validation.constraints.Min;
+
+import org.apache.apex.malhar.lib.fs.FSRecordReader;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.lib.io.block.BlockMetadata;
+import com.datatorrent.lib.io.block.ReaderContext;
+
+/**
+ * Record reader which memory maps blocks of files on the local file system
+ * and splits them into lines directly from the mapping.
+ * <p>
+ * Line boundaries are found eight bytes at a time with a word-at-a-time
+ * (SWAR) scan, and each line is copied once, from the mapping into the
+ * emitted <code>byte[]</code>. A line belongs to the block in which it
+ * starts: every block except the first skips its leading partial line and
+ * reads past its end to finish its last line. Blocks of files on other file
+ * systems, and fixed width records, are read from the stream by the default
+ * reader context. Checksums of the local file system are not verified for
+ * mapped reads.
+ * <p>
+ * A mapping is released as soon as the next window of the file is mapped, a
+ * block of another file is read or the operator is torn down, rather than
+ * when the garbage collector gets to it.
+ */
+public class MappedFSRecordReader extends FSRecordReader
+{
+  @Min(1)
+  private int mapWindowSize = 64 * 1024 * 1024;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    if (readerContext instanceof ReaderContext.LineReaderContext && "file".equals(fs.getUri().getScheme())) {
+      readerContext = new MappedLineReaderContext(readerContext, mapWindowSize);
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (readerContext instanceof MappedLineReaderContext) {
+      ((MappedLineReaderContext)readerContext).close();
+    }
+    super.teardown();
+  }
+
+  /**
+   * Reads lines from a memory mapped window of the file, falling back to the
+   * given context for blocks which cannot be mapped.
+   */
+  static class MappedLineReaderContext implements ReaderContext<FSDataInputStream>
+  {
+    private static final long NEWLINES = 0x0a0a0a0a0a0a0a0aL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ReaderContext<FSDataInputStream> fallback;
+    private final int windowSize;
+    private final Entity entity = new Entity();
+
+    private boolean mapped;
+    private File file;
+    private long fileLength;
+    private long blockEnd;
+    private long offset;
+    private boolean skipFirstLine;
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+
+    MappedLineReaderContext(ReaderContext<FSDataInputStream> fallback, int windowSize)
+    {
+      this.fallback = fallback;
+      this.windowSize = windowSize;
+    }
+
+    @Override
+    public void initialize(FSDataInputStream stream, BlockMetadata blockMetadata, boolean consecutiveBlock)
+    {
+      File blockFile = null;
+      if (blockMetadata instanceof BlockMetadata.FileBlockMetadata) {
+        blockFile = new File(new Path(((BlockMetadata.FileBlockMetadata)blockMetadata).getFilePath()).toUri()
+            .getPath());
+      }
+      mapped = blockFile != null && blockFile.isFile();
+      if (!mapped) {
+        fallback.initialize(stream, blockMetadata, consecutiveBlock);
+        return;
+      }
+      if (!blockFile.equals(file)) {
+        close();
+        file = blockFile;
+      }
+      fileLength = file.length();
+      blockEnd = blockMetadata.getOffset() + blockMetadata.getLength();
+      if (!consecutiveBlock) {
+        offset = blockMetadata.getOffset();
+        skipFirstLine = offset != 0;
+      }
+    }
+
+    @Override
+    public Entity next() throws IOException
+    {
+      if (!mapped) {
+        return fallback.next();
+      }
+      entity.clear();
+      if (skipFirstLine) {
+        // the partial line belongs to the previous block
+        skipFirstLine = false;
+        long newline = indexOfNewline(offset);
+        long next = newline < 0 ? fileLength : newline + 1;
+        entity.setUsedBytes(next - offset);
+        offset = next;
+        return entity;
+      }
+      if (offset >= fileLength || offset > blockEnd) {
+        return null;
+      }
+      long newline = indexOfNewline(offset);
+      long end = newline < 0 ? fileLength : newline;
+      long next = newline < 0 ? fileLength : newline + 1;
+      if (end > offset && byteAt(end - 1) == '\r') {
+        end--;
+      }
+      ensureMapped(offset, end);
+      byte[] record = new byte[(int)(end - offset)];
+      ByteBuffer source = buffer.duplicate();
+      source.position((int)(offset - bufferStart));
+      source.get(record);
+      entity.setRecord(record);
+      entity.setUsedBytes(next - offset);
+      offset = next;
+      return entity;
+    }
+
+    private byte byteAt(long position) throws IOException
+    {
+      ensureMapped(position, position + 1);
+      return buffer.get((int)(position - bufferStart));
+    }
+
+    /**
+     * Makes sure that the file region [from, to) is covered by the mapping.
+     */
+    private void ensureMapped(long from, long to) throws IOException
+    {
+      if (buffer != null && from >= bufferStart && to <= bufferStart + buffer.limit()) {
+        return;
+      }
+      long size = Math.min(Math.max(windowSize, to - from), fileLength - from);
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Line at " + from + " in " + file + " is too long to be mapped");
+      }
+      close();
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, from, size);
+      }
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      bufferStart = from;
+    }
+
+    /**
+     * Releases the current mapping. The records are copied out of the mapping,
+     * so nothing refers to it any more.
+     */
+    void close()
+    {
+      if (buffer != null) {
+        unmap(buffer);
+        buffer = null;
+      }
+    }
+
+    /**
+     * Returns the position of the first '\n' at or after <code>from</code> or
+     * -1 when the rest of the file has none.
+     */
+    private long indexOfNewline(long from) throws IOException
+    {
+      long position = from;
+      while (position < fileLength) {
+        ensureMapped(position, position + 1);
+        int i = (int)(position - bufferStart);
+        int limit = buffer.limit();
+        for (; i + 8 <= limit; i += 8) {
+          long word = buffer.getLong(i) ^ NEWLINES;
+          long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+          if (found != 0) {
+            return bufferStart + i + (Long.numberOfTrailingZeros(found) >>> 3);
+          }
+        }
+        for (; i < limit; i++) {
+          if (buffer.get(i) == '\n') {
+            return bufferStart + i;
+          }
+        }
+        position = bufferStart + limit;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Unmaps the buffer through Unsafe.invokeCleaner on Java 9 and later, and
+   * through the cleaner of the buffer before. Where neither is accessible the
+   * mapping is left to the garbage collector, which is logged once.
+   */
+  static void unmap(MappedByteBuffer buffer)
+  {
+    try {
+      if (INVOKE_CLEANER != null) {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        return;
+      }
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      if (UNMAP_WARNED.compareAndSet(false, true)) {
+        LOG.warn("Unable to unmap buffers, mapped regions are released by the garbage collector", e);
+      }
+    }
+  }
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+  private static final AtomicBoolean UNMAP_WARNED = new AtomicBoolean();
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // before Java 9, the cleaner of the buffer is used
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  public int getMapWindowSize()
+  {
+    return mapWindowSize;
+  }
+
+  /**
+   * Size of the file region mapped at a time, default is 64MB. Lines longer
+   * than this are mapped on their own.
+   */
+  public void setMapWindowSize(int mapWindowSize)
+  {
+    this.mapWindowSize = mapWindowSize;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappedFSRecordReader.class);
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import javax.validation.constraints.Min;
+
+import org.apache.apex.malhar.lib.fs.FSRecordReader;
+import org.apache.apex.malhar.lib.fs.FSRecordReaderModule;
+
+/**
+ * {@link FSRecordReaderModule} which can read the blocks of local files
+ * through memory mappings instead of input streams.
+ * <p>
+ * With <code>memoryMapped</code> set, line records are read with
+ * {@link MappedFSRecordReader}. Files on other file systems are still read
+ * from streams, so the property can be left on when the input moves between
+ * the local file system and HDFS.
+ */
+public class MappedFSRecordReaderModule extends FSRecordReaderModule
+{
+  private boolean memoryMapped;
+
+  @Min(1)
+  private int mapWindowSize = 64 * 1024 * 1024;
+
+  @Override
+  public FSRecordReader createRecordReader()
+  {
+    if (!memoryMapped) {
+      return super.createRecordReader();
+    }
+    MappedFSRecordReader recordReader = new MappedFSRecordReader();
+    recordReader.setMode(getMode());
+    recordReader.setRecordLength(getRecordLength());
+    recordReader.setMapWindowSize(mapWindowSize);
+    return recordReader;
+  }
+
+  public boolean isMemoryMapped()
+  {
+    return memoryMapped;
+  }
+
+  /**
+   * Read the blocks of local files through memory mappings, default is false
+   */
+  public void setMemoryMapped(boolean memoryMapped)
+  {
+    this.memoryMapped = memoryMapped;
+  }
+
+  public int getMapWindowSize()
+  {
+    return mapWindowSize;
+  }
+
+  /**
+   * Size of the file region mapped at a time when memory mapped, default is
+   * 64MB
+   */
+  public void setMapWindowSize(int mapWindowSize)
+  {
+    this.mapWindowSize = mapWindowSize;
+  }
+}
@@ -0,0 +1,446 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Read only hash index over the rows of a delimited reference file, kept in
+ * memory mapped local files outside the heap.
+ * <p>
+ * The first line of the file names the columns. The rows are copied from the
+ * file system into a local data file, each with its length and the position of
+ * its key column, and laid out so that no row crosses a 1GB boundary, which is
+ * the size of a mapping. The index is an open addressing hash table in a
+ * second local file, with 16 byte slots holding the hash of the key and the
+ * position of the row, and at least twice as many slots as rows. Lookups read
+ * both mappings with absolute gets only, so one index serves any number of
+ * threads, and copy nothing out of them. The first row of a key wins.
+ * <p>
+ * {@link #acquire} shares one index per file and key column among the
+ * operators of a container, and a background thread builds a new index when
+ * the modification time of the file changes. The old one stays valid for the
+ * operators still using it; its files are deleted at once, and their space is
+ * freed when the mappings are collected.
+ */
+class MappedReferenceIndex
+{
+  private static final int SEGMENT_BITS = 30;
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+  private static final int RECORD_HEADER = 12;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final Map<String, Shared> SHARED = new HashMap<>();
+
+  final String[] columns;
+  final long records;
+  final long modificationTime;
+  private final File dataFile;
+  private final File indexFile;
+  private final MappedByteBuffer[] data;
+  private final MappedByteBuffer[] index;
+  private final long mask;
+
+  private MappedReferenceIndex(String[] columns, long records, long modificationTime, File dataFile,
+      File indexFile, MappedByteBuffer[] data, MappedByteBuffer[] index, long mask)
+  {
+    this.columns = columns;
+    this.records = records;
+    this.modificationTime = modificationTime;
+    this.dataFile = dataFile;
+    this.indexFile = indexFile;
+    this.data = data;
+    this.index = index;
+    this.mask = mask;
+  }
+
+  /**
+   * Returns the position of the row with the given key, or -1.
+   */
+  long find(byte[] key, int length)
+  {
+    long hash = hash(key, length);
+    long slot = hash & mask;
+    while (true) {
+      long position = slot << 4;
+      ByteBuffer segment = index[(int)(position >>> SEGMENT_BITS)];
+      int offset = (int)(position & (SEGMENT_SIZE - 1));
+      long record = segment.getLong(offset + 8) - 1;
+      if (record < 0) {
+        return -1;
+      }
+      if (segment.getLong(offset) == hash && keyEquals(record, key, length)) {
+        return record;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean keyEquals(long record, byte[] key, int length)
+  {
+    ByteBuffer segment = buffer(record);
+    int offset = (int)(record & (SEGMENT_SIZE - 1));
+    if (segment.getInt(offset + 8) != length) {
+      return false;
+    }
+    int start = offset + RECORD_HEADER + segment.getInt(offset + 4);
+    for (int i = 0; i < length; i++) {
+      if (segment.get(start + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Mapping holding the given row.
+   */
+  ByteBuffer buffer(long record)
+  {
+    return data[(int)(record >>> SEGMENT_BITS)];
+  }
+
+  /**
+   * Offset of the first byte of the row in its mapping.
+   */
+  static int lineStart(long record)
+  {
+    return (int)(record & (SEGMENT_SIZE - 1)) + RECORD_HEADER;
+  }
+
+  int lineLength(long record)
+  {
+    return buffer(record).getInt((int)(record & (SEGMENT_SIZE - 1)));
+  }
+
+  private void delete()
+  {
+    if (!dataFile.delete() || !indexFile.delete()) {
+      LOG.warn("Unable to delete {} or {}", dataFile, indexFile);
+    }
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the key bytes with a final avalanche step, the same
+   * as {@link DedupOperator#hash}.
+   */
+  private static long hash(byte[] key, int length)
+  {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < length; i++) {
+      h = (h ^ (key[i] & 0xff)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Copies the file into a local data file and builds the index over it.
+   */
+  static MappedReferenceIndex build(FileSystem fs, Path path, File directory, byte delimiter, String keyColumn)
+    throws IOException
+  {
+    long start = System.currentTimeMillis();
+    long modificationTime = fs.getFileStatus(path).getModificationTime();
+    File dataFile = File.createTempFile("reference-", ".data", directory);
+    File indexFile = File.createTempFile("reference-", ".index", directory);
+    dataFile.deleteOnExit();
+    indexFile.deleteOnExit();
+
+    String[] columns;
+    long records = 0;
+    long length = 0;
+    try (InputStream in = new BufferedInputStream(fs.open(path), 1 << 16);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile),
+        1 << 16))) {
+      LineReader lines = new LineReader(in);
+      if (!lines.next()) {
+        throw new IOException(path + " has no header");
+      }
+      String header = new String(lines.buffer, 0, lines.length, UTF8);
+      columns = header.split(Pattern.quote(String.valueOf((char)delimiter)), -1);
+      int key = -1;
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = columns[i].trim();
+        if (columns[i].equalsIgnoreCase(keyColumn)) {
+          key = i;
+        }
+      }
+      if (key < 0) {
+        throw new IllegalArgumentException("No column " + keyColumn + " in " + Arrays.toString(columns));
+      }
+      while (lines.next()) {
+        if (lines.length == 0) {
+          continue;
+        }
+        int size = RECORD_HEADER + lines.length;
+        if (size > SEGMENT_SIZE) {
+          throw new IOException("Row " + records + " of " + path + " is too long");
+        }
+        long segmentEnd = (length | (SEGMENT_SIZE - 1)) + 1;
+        if (length + size > segmentEnd) {
+          for (; length < segmentEnd; length++) {
+            out.write(0);
+          }
+        }
+        int keyStart = 0;
+        int column = 0;
+        int keyEnd = lines.length;
+        for (int i = 0; i < lines.length; i++) {
+          if (lines.buffer[i] == delimiter) {
+            if (column == key) {
+              keyEnd = i;
+              break;
+            }
+            column++;
+            keyStart = i + 1;
+          }
+        }
+        if (column < key) {
+          // no key column, the row cannot be found
+          keyStart = keyEnd;
+        }
+        out.writeInt(lines.length);
+        out.writeInt(keyStart);
+        out.writeInt(keyEnd - keyStart);
+        out.write(lines.buffer, 0, lines.length);
+        length += size;
+        records++;
+      }
+    }
+
+    MappedByteBuffer[] data = map(dataFile, length, FileChannel.MapMode.READ_ONLY);
+    long slots = Long.highestOneBit(Math.max(2, records * 2 - 1)) << 1;
+    MappedByteBuffer[] index = map(indexFile, slots << 4, FileChannel.MapMode.READ_WRITE);
+    long mask = slots - 1;
+    byte[] key = new byte[256];
+    long position = 0;
+    while (position < length) {
+      ByteBuffer segment = data[(int)(position >>> SEGMENT_BITS)];
+      int offset = (int)(position & (SEGMENT_SIZE - 1));
+      if (SEGMENT_SIZE - offset < RECORD_HEADER || segment.getInt(offset) == 0) {
+        // padding up to the next mapping
+        position = (position | (SEGMENT_SIZE - 1)) + 1;
+        continue;
+      }
+      int keyLength = segment.getInt(offset + 8);
+      if (keyLength > key.length) {
+        key = new byte[Math.max(keyLength, key.length * 2)];
+      }
+      int keyStart = offset + RECORD_HEADER + segment.getInt(offset + 4);
+      for (int i = 0; i < keyLength; i++) {
+        key[i] = segment.get(keyStart + i);
+      }
+      long hash = hash(key, keyLength);
+      long slot = hash & mask;
+      while (true) {
+        long slotPosition = slot << 4;
+        ByteBuffer indexSegment = index[(int)(slotPosition >>> SEGMENT_BITS)];
+        int slotOffset = (int)(slotPosition & (SEGMENT_SIZE - 1));
+        if (indexSegment.getLong(slotOffset + 8) == 0) {
+          indexSegment.putLong(slotOffset, hash);
+          indexSegment.putLong(slotOffset + 8, position + 1);
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      position += RECORD_HEADER + segment.getInt(offset);
+    }
+    LOG.info("Indexed {} rows of {} in {} ms", records, path, System.currentTimeMillis() - start);
+    return new MappedReferenceIndex(columns, records, modificationTime, dataFile, indexFile, data, index, mask);
+  }
+
+  private static MappedByteBuffer[] map(File file, long length, FileChannel.MapMode mode) throws IOException
+  {
+    MappedByteBuffer[] segments = new MappedByteBuffer[(int)((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+    try (RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+      if (mode != FileChannel.MapMode.READ_ONLY) {
+        raf.setLength(length);
+      }
+      for (int i = 0; i < segments.length; i++) {
+        long offset = (long)i << SEGMENT_BITS;
+        segments[i] = raf.getChannel().map(mode, offset, Math.min(SEGMENT_SIZE, length - offset));
+      }
+    }
+    return segments;
+  }
+
+  /**
+   * Reads lines into a reused buffer, without the line terminator.
+   */
+  private static class LineReader
+  {
+    private final InputStream in;
+    byte[] buffer = new byte[4096];
+    int length;
+
+    LineReader(InputStream in)
+    {
+      this.in = in;
+    }
+
+    boolean next() throws IOException
+    {
+      length = 0;
+      int b = in.read();
+      if (b < 0) {
+        return false;
+      }
+      while (b >= 0 && b != '\n') {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte)b;
+        b = in.read();
+      }
+      if (length > 0 && buffer[length - 1] == '\r') {
+        length--;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns the index of the given file shared in this container, building it
+   * if this is its first user. Every call has to be matched by a call to
+   * {@link Shared#release()}.
+   */
+  static Shared acquire(FileSystem fs, Path path, File directory, byte delimiter, String keyColumn,
+      long refreshIntervalMillis) throws IOException
+  {
+    String name = path + "|" + (char)delimiter + "|" + keyColumn;
+    synchronized (SHARED) {
+      Shared shared = SHARED.get(name);
+      if (shared == null) {
+        shared = new Shared(name, fs, path, directory, delimiter, keyColumn, refreshIntervalMillis);
+        SHARED.put(name, shared);
+      }
+      shared.references++;
+      return shared;
+    }
+  }
+
+  /**
+   * Index of a file with the thread which rebuilds it when the file changes.
+   */
+  static class Shared implements Runnable
+  {
+    private final String name;
+    private final FileSystem fs;
+    private final Path path;
+    private final File directory;
+    private final byte delimiter;
+    private final String keyColumn;
+    private final ScheduledExecutorService refresher;
+    private volatile MappedReferenceIndex current;
+    private int references;
+
+    Shared(String name, FileSystem fs, Path path, File directory, byte delimiter, String keyColumn,
+        long refreshIntervalMillis) throws IOException
+    {
+      this.name = name;
+      this.fs = fs;
+      this.path = path;
+      this.directory = directory;
+      this.delimiter = delimiter;
+      this.keyColumn = keyColumn;
+      current = build(fs, path, directory, delimiter, keyColumn);
+      refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+      {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+          Thread thread = new Thread(runnable, "reference-index-" + Shared.this.path.getName());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      refresher.scheduleWithFixedDelay(this, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    MappedReferenceIndex current()
+    {
+      return current;
+    }
+
+    @Override
+    public void run()
+    {
+      try {
+        if (fs.getFileStatus(path).getModificationTime() != current.modificationTime) {
+          MappedReferenceIndex old = current;
+          current = build(fs, path, directory, delimiter, keyColumn);
+          old.delete();
+        }
+      } catch (Exception e) {
+        // keep the current index and try again later
+        LOG.warn("Unable to reload {}", path, e);
+      }
+    }
+
+    void release()
+    {
+      synchronized (SHARED) {
+        if (--references > 0) {
+          return;
+        }
+        SHARED.remove(name);
+      }
+      refresher.shutdownNow();
+      try {
+        refresher.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      current.delete();
+    }
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(MappedReferenceIndex.class);
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Reflection helpers for the POJO fields the operators read and write through
+ * {@link com.datatorrent.lib.util.PojoUtils}.
+ */
+class PojoFields
+{
+  private PojoFields()
+  {
+  }
+
+  /**
+   * Type of a field given by its name, taken from its getter, the field
+   * itself or its boolean getter, in that order, like PojoUtils resolves a
+   * simple field expression.
+   *
+   * @throws IllegalArgumentException if the class has no such field, which
+   * includes nested expressions
+   */
+  static Class<?> fieldType(Class<?> clazz, String name)
+  {
+    String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    try {
+      Method getter = clazz.getMethod("get" + suffix);
+      return getter.getReturnType();
+    } catch (NoSuchMethodException e) {
+      // try the field
+    }
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      try {
+        Field field = c.getDeclaredField(name);
+        return field.getType();
+      } catch (NoSuchFieldException e) {
+        // try the super class
+      }
+    }
+    try {
+      return clazz.getMethod("is" + suffix).getReturnType();
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException("No field " + name + " in " + clazz.getName());
+    }
+  }
+}
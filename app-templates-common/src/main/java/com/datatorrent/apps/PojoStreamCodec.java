@@ -0,0 +1,753 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.lib.util.PojoUtils;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Stream codec which writes the fields of a POJO in a fixed binary layout.
+ * <p>
+ * The default codec serializes tuples with Kryo, which writes the class name
+ * and encodes every field generically. This codec knows the tuple class up
+ * front: it writes no type information, primitives take their fixed size in
+ * big endian order and strings are written as a 4 byte length followed by
+ * their UTF-8 bytes. Boxed values, strings and dates which may be null are
+ * preceded by a null marker. Fields are accessed through the accessors
+ * PojoUtils generates for the tuple class, in the order of their names.
+ * Supported field types are the primitives, their boxed types, String and
+ * Date.
+ * <p>
+ * The partition of a tuple is computed from the values of
+ * <code>keyFields</code>, or of all fields when none are set, using only
+ * hash functions defined by the Java specification, so the same key always
+ * goes to the same partition, unlike with the identity hash code the default
+ * codec falls back to for classes without <code>hashCode</code>.
+ * <p>
+ * Set it on the input port which receives the tuples:
+ * <pre>
+ * dag.setInputPortAttribute(jdbcOutput.input, Context.PortContext.STREAM_CODEC,
+ *     new PojoStreamCodec(PojoEvent.class, "accountNumber"));
+ * </pre>
+ */
+public class PojoStreamCodec implements StreamCodec<Object>, Serializable
+{
+  private static final long serialVersionUID = 201705160001L;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private Class<?> tupleClass;
+  private String[] keyFields = new String[0];
+
+  private transient FieldCodec[] fieldCodecs;
+  private transient FieldCodec[] keyCodecs;
+  private transient Writer writer;
+
+  public PojoStreamCodec()
+  {
+  }
+
+  public PojoStreamCodec(Class<?> tupleClass, String... keyFields)
+  {
+    this.tupleClass = tupleClass;
+    this.keyFields = keyFields;
+  }
+
+  @Override
+  public Object fromByteArray(Slice fragment)
+  {
+    init();
+    Object tuple;
+    try {
+      tuple = tupleClass.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Unable to create an instance of " + tupleClass.getName(), e);
+    }
+    Reader reader = new Reader(fragment.buffer, fragment.offset);
+    for (FieldCodec codec : fieldCodecs) {
+      codec.read(reader, tuple);
+    }
+    return tuple;
+  }
+
+  @Override
+  public Slice toByteArray(Object tuple)
+  {
+    init();
+    writer.size = 0;
+    for (FieldCodec codec : fieldCodecs) {
+      codec.write(tuple, writer);
+    }
+    return new Slice(Arrays.copyOf(writer.buffer, writer.size));
+  }
+
+  @Override
+  public int getPartition(Object tuple)
+  {
+    init();
+    int h = 0;
+    for (FieldCodec codec : keyCodecs) {
+      h = 31 * h + codec.hash(tuple);
+    }
+    // spread the bits, partitions are selected by the low bits of the hash
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  private void init()
+  {
+    if (fieldCodecs != null) {
+      return;
+    }
+    List<Field> fields = new ArrayList<>();
+    for (Class<?> c = tupleClass; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+          fields.add(field);
+        }
+      }
+    }
+    Collections.sort(fields, new Comparator<Field>()
+    {
+      @Override
+      public int compare(Field f1, Field f2)
+      {
+        return f1.getName().compareTo(f2.getName());
+      }
+    });
+    FieldCodec[] codecs = new FieldCodec[fields.size()];
+    for (int i = 0; i < codecs.length; i++) {
+      codecs[i] = FieldCodec.create(tupleClass, fields.get(i).getName(), fields.get(i).getType());
+    }
+    if (keyFields.length == 0) {
+      keyCodecs = codecs;
+    } else {
+      keyCodecs = new FieldCodec[keyFields.length];
+      for (int i = 0; i < keyFields.length; i++) {
+        for (int j = 0; j < codecs.length; j++) {
+          if (fields.get(j).getName().equals(keyFields[i])) {
+            keyCodecs[i] = codecs[j];
+          }
+        }
+        if (keyCodecs[i] == null) {
+          throw new IllegalArgumentException("No field " + keyFields[i] + " in " + tupleClass.getName());
+        }
+      }
+    }
+    writer = new Writer();
+    fieldCodecs = codecs;
+  }
+
+  static class Writer
+  {
+    byte[] buffer = new byte[256];
+    int size;
+
+    void ensureCapacity(int extra)
+    {
+      if (size + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+      }
+    }
+
+    void writeByte(int v)
+    {
+      ensureCapacity(1);
+      buffer[size++] = (byte)v;
+    }
+
+    void writeShort(int v)
+    {
+      ensureCapacity(2);
+      buffer[size++] = (byte)(v >>> 8);
+      buffer[size++] = (byte)v;
+    }
+
+    void writeInt(int v)
+    {
+      ensureCapacity(4);
+      buffer[size++] = (byte)(v >>> 24);
+      buffer[size++] = (byte)(v >>> 16);
+      buffer[size++] = (byte)(v >>> 8);
+      buffer[size++] = (byte)v;
+    }
+
+    void writeLong(long v)
+    {
+      writeInt((int)(v >>> 32));
+      writeInt((int)v);
+    }
+
+    void writeString(String value)
+    {
+      int start = size;
+      writeInt(0);
+      ensureCapacity(value.length() * 3);
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          buffer[size++] = (byte)c;
+        } else if (c < 0x800) {
+          buffer[size++] = (byte)(0xc0 | (c >> 6));
+          buffer[size++] = (byte)(0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, value.charAt(++i));
+          buffer[size++] = (byte)(0xf0 | (cp >> 18));
+          buffer[size++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+          buffer[size++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+          buffer[size++] = (byte)(0x80 | (cp & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+          buffer[size++] = '?';
+        } else {
+          buffer[size++] = (byte)(0xe0 | (c >> 12));
+          buffer[size++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+          buffer[size++] = (byte)(0x80 | (c & 0x3f));
+        }
+      }
+      int length = size - start - 4;
+      buffer[start] = (byte)(length >>> 24);
+      buffer[start + 1] = (byte)(length >>> 16);
+      buffer[start + 2] = (byte)(length >>> 8);
+      buffer[start + 3] = (byte)length;
+    }
+  }
+
+  static class Reader
+  {
+    final byte[] buffer;
+    int pos;
+
+    Reader(byte[] buffer, int offset)
+    {
+      this.buffer = buffer;
+      this.pos = offset;
+    }
+
+    byte readByte()
+    {
+      return buffer[pos++];
+    }
+
+    short readShort()
+    {
+      return (short)(((buffer[pos++] & 0xff) << 8) | (buffer[pos++] & 0xff));
+    }
+
+    int readInt()
+    {
+      return ((buffer[pos++] & 0xff) << 24) | ((buffer[pos++] & 0xff) << 16) | ((buffer[pos++] & 0xff) << 8)
+          | (buffer[pos++] & 0xff);
+    }
+
+    long readLong()
+    {
+      return ((long)readInt() << 32) | (readInt() & 0xffffffffL);
+    }
+
+    String readString()
+    {
+      int length = readInt();
+      String value = new String(buffer, pos, length, UTF8);
+      pos += length;
+      return value;
+    }
+  }
+
+  /**
+   * Writes, reads and hashes one field of the tuple class.
+   */
+  abstract static class FieldCodec
+  {
+    abstract void write(Object pojo, Writer out);
+
+    abstract void read(Reader in, Object pojo);
+
+    abstract int hash(Object pojo);
+
+    @SuppressWarnings("unchecked")
+    static FieldCodec create(Class<?> clazz, String name, Class<?> type)
+    {
+      if (type == int.class) {
+        final PojoUtils.GetterInt<Object> getter = PojoUtils.createGetterInt(clazz, name);
+        final PojoUtils.SetterInt<Object> setter = PojoUtils.createSetterInt(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeInt(getter.get(pojo));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, in.readInt());
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            return getter.get(pojo);
+          }
+        };
+      }
+      if (type == long.class) {
+        final PojoUtils.GetterLong<Object> getter = PojoUtils.createGetterLong(clazz, name);
+        final PojoUtils.SetterLong<Object> setter = PojoUtils.createSetterLong(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeLong(getter.get(pojo));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, in.readLong());
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            long v = getter.get(pojo);
+            return (int)(v ^ (v >>> 32));
+          }
+        };
+      }
+      if (type == double.class) {
+        final PojoUtils.GetterDouble<Object> getter = PojoUtils.createGetterDouble(clazz, name);
+        final PojoUtils.SetterDouble<Object> setter = PojoUtils.createSetterDouble(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeLong(Double.doubleToLongBits(getter.get(pojo)));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, Double.longBitsToDouble(in.readLong()));
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            long v = Double.doubleToLongBits(getter.get(pojo));
+            return (int)(v ^ (v >>> 32));
+          }
+        };
+      }
+      if (type == float.class) {
+        final PojoUtils.GetterFloat<Object> getter = PojoUtils.createGetterFloat(clazz, name);
+        final PojoUtils.SetterFloat<Object> setter = PojoUtils.createSetterFloat(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeInt(Float.floatToIntBits(getter.get(pojo)));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, Float.intBitsToFloat(in.readInt()));
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            return Float.floatToIntBits(getter.get(pojo));
+          }
+        };
+      }
+      if (type == short.class) {
+        final PojoUtils.GetterShort<Object> getter = PojoUtils.createGetterShort(clazz, name);
+        final PojoUtils.SetterShort<Object> setter = PojoUtils.createSetterShort(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeShort(getter.get(pojo));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, in.readShort());
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            return getter.get(pojo);
+          }
+        };
+      }
+      if (type == byte.class) {
+        final PojoUtils.GetterByte<Object> getter = PojoUtils.createGetterByte(clazz, name);
+        final PojoUtils.SetterByte<Object> setter = PojoUtils.createSetterByte(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeByte(getter.get(pojo));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, in.readByte());
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            return getter.get(pojo);
+          }
+        };
+      }
+      if (type == boolean.class) {
+        final PojoUtils.GetterBoolean<Object> getter = PojoUtils.createGetterBoolean(clazz, name);
+        final PojoUtils.SetterBoolean<Object> setter = PojoUtils.createSetterBoolean(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeByte(getter.get(pojo) ? 1 : 0);
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, in.readByte() != 0);
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            return getter.get(pojo) ? 1231 : 1237;
+          }
+        };
+      }
+      if (type == char.class) {
+        final PojoUtils.GetterChar<Object> getter = PojoUtils.createGetterChar(clazz, name);
+        final PojoUtils.SetterChar<Object> setter = PojoUtils.createSetterChar(clazz, name);
+        return new FieldCodec()
+        {
+          @Override
+          void write(Object pojo, Writer out)
+          {
+            out.writeShort(getter.get(pojo));
+          }
+
+          @Override
+          void read(Reader in, Object pojo)
+          {
+            setter.set(pojo, (char)in.readShort());
+          }
+
+          @Override
+          int hash(Object pojo)
+          {
+            return getter.get(pojo);
+          }
+        };
+      }
+      final ValueCodec valueCodec = ValueCodec.forType(type);
+      if (valueCodec == null) {
+        throw new IllegalArgumentException("Unsupported type " + type.getName() + " of field " + name + " in "
+            + clazz.getName());
+      }
+      final PojoUtils.Getter<Object, Object> getter = PojoUtils.createGetter(clazz, name, (Class<Object>)type);
+      final PojoUtils.Setter<Object, Object> setter = PojoUtils.createSetter(clazz, name, (Class<Object>)type);
+      return new FieldCodec()
+      {
+        @Override
+        void write(Object pojo, Writer out)
+        {
+          Object value = getter.get(pojo);
+          if (value == null) {
+            out.writeByte(0);
+          } else {
+            out.writeByte(1);
+            valueCodec.write(value, out);
+          }
+        }
+
+        @Override
+        void read(Reader in, Object pojo)
+        {
+          setter.set(pojo, in.readByte() == 0 ? null : valueCodec.read(in));
+        }
+
+        @Override
+        int hash(Object pojo)
+        {
+          Object value = getter.get(pojo);
+          return value == null ? 0 : valueCodec.hash(value);
+        }
+      };
+    }
+  }
+
+  /**
+   * Writes and reads non null values of the supported object types.
+   */
+  enum ValueCodec
+  {
+    STRING
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeString((String)value);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return in.readString();
+      }
+    },
+    INTEGER
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeInt((Integer)value);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return in.readInt();
+      }
+    },
+    LONG
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeLong((Long)value);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return in.readLong();
+      }
+    },
+    DOUBLE
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeLong(Double.doubleToLongBits((Double)value));
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return Double.longBitsToDouble(in.readLong());
+      }
+    },
+    FLOAT
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeInt(Float.floatToIntBits((Float)value));
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return Float.intBitsToFloat(in.readInt());
+      }
+    },
+    SHORT
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeShort((Short)value);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return in.readShort();
+      }
+    },
+    BYTE
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeByte((Byte)value);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return in.readByte();
+      }
+    },
+    BOOLEAN
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeByte((Boolean)value ? 1 : 0);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return in.readByte() != 0;
+      }
+    },
+    CHARACTER
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeShort((Character)value);
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return (char)in.readShort();
+      }
+    },
+    DATE
+    {
+      @Override
+      void write(Object value, Writer out)
+      {
+        out.writeLong(((Date)value).getTime());
+      }
+
+      @Override
+      Object read(Reader in)
+      {
+        return new Date(in.readLong());
+      }
+
+      @Override
+      int hash(Object value)
+      {
+        long v = ((Date)value).getTime();
+        return (int)(v ^ (v >>> 32));
+      }
+    };
+
+    abstract void write(Object value, Writer out);
+
+    abstract Object read(Reader in);
+
+    /**
+     * The hash codes of String and the boxed types are defined by the Java
+     * specification, so they are the same in every JVM.
+     */
+    int hash(Object value)
+    {
+      return value.hashCode();
+    }
+
+    static ValueCodec forType(Class<?> type)
+    {
+      if (type == String.class) {
+        return STRING;
+      } else if (type == Integer.class) {
+        return INTEGER;
+      } else if (type == Long.class) {
+        return LONG;
+      } else if (type == Double.class) {
+        return DOUBLE;
+      } else if (type == Float.class) {
+        return FLOAT;
+      } else if (type == Short.class) {
+        return SHORT;
+      } else if (type == Byte.class) {
+        return BYTE;
+      } else if (type == Boolean.class) {
+        return BOOLEAN;
+      } else if (type == Character.class) {
+        return CHARACTER;
+      } else if (type == Date.class) {
+        return DATE;
+      }
+      return null;
+    }
+  }
+
+  public Class<?> getTupleClass()
+  {
+    return tupleClass;
+  }
+
+  /**
+   * Class of the tuples, it needs a public no argument constructor
+   */
+  public void setTupleClass(Class<?> tupleClass)
+  {
+    this.tupleClass = tupleClass;
+  }
+
+  public String[] getKeyFields()
+  {
+    return keyFields;
+  }
+
+  /**
+   * Fields the partition of a tuple is computed from, all fields when empty
+   */
+  public void setKeyFields(String[] keyFields)
+  {
+    this.keyFields = keyFields;
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * JDBC driver which hands out connections from a {@link JdbcConnectionPool}
+ * shared by all the operators of a container.
+ * <p>
+ * Operators keep using {@link com.datatorrent.lib.db.jdbc.JdbcStore} or
+ * {@link com.datatorrent.lib.db.jdbc.JdbcTransactionalStore}; pooling is
+ * enabled by configuration only, by setting the <code>databaseDriver</code>
+ * of the store to this class and prefixing the <code>databaseUrl</code> with
+ * <code>jdbc:pooled:</code>, for example
+ * <code>jdbc:pooled:postgresql://localhost:5432/testdb</code>. The connection
+ * properties starting with <code>pool.</code> configure the pool and are not
+ * passed to the database driver:
+ * <ul>
+ * <li><code>pool.driver</code> class of the database driver to load, for
+ * drivers which do not register themselves</li>
+ * <li><code>pool.maxSize</code> maximum number of open connections, default
+ * 8</li>
+ * <li><code>pool.maxLifetimeMillis</code> age after which a connection is
+ * closed instead of reused, default 30 minutes</li>
+ * <li><code>pool.validationTimeoutSeconds</code> timeout of the validation of
+ * idle connections, default 5</li>
+ * <li><code>pool.statementCacheSize</code> number of prepared statements
+ * cached per connection, default 64</li>
+ * </ul>
+ * There is one pool per URL and user, created with the settings of its first
+ * connection.
+ */
+public class PooledJdbcDriver implements Driver
+{
+  public static final String URL_PREFIX = "jdbc:pooled:";
+
+  private static final Map<String, JdbcConnectionPool> POOLS = new HashMap<>();
+
+  static {
+    try {
+      DriverManager.registerDriver(new PooledJdbcDriver());
+    } catch (SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  @Override
+  public Connection connect(String url, Properties info) throws SQLException
+  {
+    if (!acceptsURL(url)) {
+      return null;
+    }
+    return getPool("jdbc:" + url.substring(URL_PREFIX.length()), info).borrow();
+  }
+
+  private static JdbcConnectionPool getPool(String url, Properties info) throws SQLException
+  {
+    Properties properties = new Properties();
+    Properties settings = new Properties();
+    if (info != null) {
+      for (String name : info.stringPropertyNames()) {
+        (name.startsWith("pool.") ? settings : properties).setProperty(name, info.getProperty(name));
+      }
+    }
+    String key = url + '\u0000' + properties.getProperty("user", "");
+    synchronized (POOLS) {
+      JdbcConnectionPool pool = POOLS.get(key);
+      if (pool == null) {
+        String driver = settings.getProperty("pool.driver");
+        if (driver != null) {
+          try {
+            Class.forName(driver);
+          } catch (ClassNotFoundException e) {
+            throw new SQLException("Unable to load " + driver, e);
+          }
+        }
+        pool = new JdbcConnectionPool(url, properties,
+            Integer.parseInt(settings.getProperty("pool.maxSize", "8")),
+            Long.parseLong(settings.getProperty("pool.maxLifetimeMillis", "1800000")),
+            Integer.parseInt(settings.getProperty("pool.validationTimeoutSeconds", "5")),
+            Integer.parseInt(settings.getProperty("pool.statementCacheSize", "64")));
+        POOLS.put(key, pool);
+      }
+      return pool;
+    }
+  }
+
+  @Override
+  public boolean acceptsURL(String url)
+  {
+    return url != null && url.startsWith(URL_PREFIX);
+  }
+
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+  {
+    return new DriverPropertyInfo[0];
+  }
+
+  @Override
+  public int getMajorVersion()
+  {
+    return 1;
+  }
+
+  @Override
+  public int getMinorVersion()
+  {
+    return 0;
+  }
+
+  @Override
+  public boolean jdbcCompliant()
+  {
+    return false;
+  }
+
+  @Override
+  public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException
+  {
+    throw new SQLFeatureNotSupportedException();
+  }
+}
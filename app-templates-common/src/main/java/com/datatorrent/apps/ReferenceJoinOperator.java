@@ -0,0 +1,534 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.util.FieldInfo;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Joins the tuples with the rows of a delimited reference file, such as a
+ * multi-GB dimension table on HDFS, and sets columns of the matching row on
+ * fields of the tuple.
+ * <p>
+ * The file has a header line naming the columns and no quoting. It is copied
+ * to <code>localDirectory</code> and indexed by <code>keyColumn</code> in
+ * memory mapped files, outside the heap, once per container: all partitions
+ * in a container share the index, see {@link MappedReferenceIndex}. The file
+ * is checked every <code>refreshIntervalSeconds</code>; when it changed a new
+ * index is built in the background and used from the next window on, while
+ * the stream goes on with the old one.
+ * <p>
+ * The key of a tuple is the value of <code>keyExpression</code>, compared with
+ * the text of the key column, so numbers in the file must not have leading
+ * zeros or signs. Keys of int, long and ASCII String fields are looked up
+ * without allocating; the values are decoded straight from the mapping, into
+ * int and long fields without allocating either. Tuples without a matching row
+ * are emitted unchanged, or dropped when <code>emitUnmatched</code> is false.
+ * <p>
+ * The index is the file as it is when the window is processed, so replayed
+ * windows see the file as it is then.
+ */
+public class ReferenceJoinOperator extends BaseOperator
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @NotNull
+  private String referenceFilePath;
+
+  @NotNull
+  private String keyColumn;
+
+  @NotNull
+  private String keyExpression;
+
+  @NotNull
+  private List<FieldInfo> fieldInfos = new ArrayList<>();
+
+  private char delimiter = ',';
+
+  private String localDirectory;
+
+  @Min(1)
+  private int refreshIntervalSeconds = 60;
+
+  private boolean emitUnmatched = true;
+
+  @AutoMetric
+  private long matchedTuples;
+
+  @AutoMetric
+  private long unmatchedTuples;
+
+  @AutoMetric
+  private long referenceRows;
+
+  private transient Class<?> tupleClass;
+  private transient MappedReferenceIndex.Shared shared;
+  private transient MappedReferenceIndex index;
+  private transient int[] fieldOfColumn;
+  private transient ColumnDecoder[] decoders;
+  private transient KeyEncoder keyEncoder;
+  private transient byte[] keyBytes;
+  private transient byte[] valueBytes;
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      processTuple(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> output = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  };
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    keyBytes = new byte[64];
+    valueBytes = new byte[256];
+    keyEncoder = createKeyEncoder();
+    Path path = new Path(referenceFilePath);
+    File directory = new File(localDirectory != null ? localDirectory : System.getProperty("java.io.tmpdir"));
+    try {
+      shared = MappedReferenceIndex.acquire(path.getFileSystem(new Configuration()), path, directory,
+          (byte)delimiter, keyColumn, refreshIntervalSeconds * 1000L);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to index " + referenceFilePath, e);
+    }
+    index = shared.current();
+    decoders = new ColumnDecoder[fieldInfos.size()];
+    for (int i = 0; i < decoders.length; i++) {
+      decoders[i] = createDecoder(fieldInfos.get(i));
+    }
+    mapColumns();
+  }
+
+  /**
+   * Finds the columns of the field infos in the header of the indexed file.
+   */
+  private void mapColumns()
+  {
+    String[] columns = index.columns;
+    fieldOfColumn = new int[columns.length];
+    Arrays.fill(fieldOfColumn, -1);
+    for (int i = 0; i < fieldInfos.size(); i++) {
+      String columnName = fieldInfos.get(i).getColumnName();
+      int column = -1;
+      for (int c = 0; c < columns.length; c++) {
+        if (columns[c].equalsIgnoreCase(columnName)) {
+          column = c;
+        }
+      }
+      if (column < 0) {
+        throw new IllegalArgumentException("No column " + columnName + " in " + referenceFilePath);
+      }
+      fieldOfColumn[column] = i;
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (shared != null) {
+      shared.release();
+      shared = null;
+    }
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    matchedTuples = 0;
+    unmatchedTuples = 0;
+    // a reloaded file is only used from the start of a window
+    MappedReferenceIndex current = shared.current();
+    if (current != index) {
+      boolean sameColumns = Arrays.equals(current.columns, index.columns);
+      index = current;
+      if (!sameColumns) {
+        mapColumns();
+      }
+    }
+    referenceRows = index.records;
+  }
+
+  private void processTuple(Object tuple)
+  {
+    int length = keyEncoder.encode(tuple);
+    long record = length < 0 ? -1 : index.find(keyBytes, length);
+    if (record < 0) {
+      unmatchedTuples++;
+      if (emitUnmatched) {
+        output.emit(tuple);
+      }
+      return;
+    }
+    ByteBuffer buffer = index.buffer(record);
+    int start = MappedReferenceIndex.lineStart(record);
+    int end = start + index.lineLength(record);
+    int column = 0;
+    int columnStart = start;
+    for (int i = start; i <= end && column < fieldOfColumn.length; i++) {
+      if (i == end || buffer.get(i) == delimiter) {
+        int field = fieldOfColumn[column++];
+        if (field >= 0) {
+          decoders[field].decode(tuple, buffer, columnStart, i);
+        }
+        columnStart = i + 1;
+      }
+    }
+    matchedTuples++;
+    output.emit(tuple);
+  }
+
+  private void ensureKeyCapacity(int length)
+  {
+    if (length > keyBytes.length) {
+      keyBytes = new byte[Math.max(length, keyBytes.length * 2)];
+    }
+  }
+
+  /**
+   * Writes the decimal digits of the value into the key bytes.
+   */
+  private int encodeLong(long value)
+  {
+    if (value == Long.MIN_VALUE) {
+      return encodeString(Long.toString(value));
+    }
+    boolean negative = value < 0;
+    long v = negative ? -value : value;
+    int digits = 1;
+    for (long t = v; t >= 10; t /= 10) {
+      digits++;
+    }
+    int length = negative ? digits + 1 : digits;
+    ensureKeyCapacity(length);
+    int i = length;
+    do {
+      keyBytes[--i] = (byte)('0' + v % 10);
+      v /= 10;
+    } while (v != 0);
+    if (negative) {
+      keyBytes[0] = '-';
+    }
+    return length;
+  }
+
+  private int encodeString(String value)
+  {
+    int length = value.length();
+    ensureKeyCapacity(length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        byte[] bytes = value.getBytes(UTF8);
+        ensureKeyCapacity(bytes.length);
+        System.arraycopy(bytes, 0, keyBytes, 0, bytes.length);
+        return bytes.length;
+      }
+      keyBytes[i] = (byte)c;
+    }
+    return length;
+  }
+
+  private String decodeString(ByteBuffer buffer, int start, int end)
+  {
+    int length = end - start;
+    if (length > valueBytes.length) {
+      valueBytes = new byte[Math.max(length, valueBytes.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      valueBytes[i] = buffer.get(start + i);
+    }
+    return new String(valueBytes, 0, length, UTF8);
+  }
+
+  /**
+   * Parses a decimal integer from the mapping, 0 when the column is empty.
+   */
+  static long parseLong(ByteBuffer buffer, int start, int end)
+  {
+    int i = start;
+    boolean negative = i < end && buffer.get(i) == '-';
+    if (negative) {
+      i++;
+    }
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = buffer.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException("Not a number at " + i);
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  private Class<?> fieldType(String expression)
+  {
+    try {
+      return PojoFields.fieldType(tupleClass, expression);
+    } catch (IllegalArgumentException e) {
+      // a nested expression
+      return Object.class;
+    }
+  }
+
+  /**
+   * Writes the key of a tuple into the key bytes and returns its length, or
+   * -1 when the key is null.
+   */
+  private abstract static class KeyEncoder
+  {
+    abstract int encode(Object tuple);
+  }
+
+  private KeyEncoder createKeyEncoder()
+  {
+    Class<?> type = fieldType(keyExpression);
+    if (type == int.class) {
+      final PojoUtils.GetterInt<Object> getter = PojoUtils.createGetterInt(tupleClass, keyExpression);
+      return new KeyEncoder()
+      {
+        @Override
+        int encode(Object tuple)
+        {
+          return encodeLong(getter.get(tuple));
+        }
+      };
+    } else if (type == long.class) {
+      final PojoUtils.GetterLong<Object> getter = PojoUtils.createGetterLong(tupleClass, keyExpression);
+      return new KeyEncoder()
+      {
+        @Override
+        int encode(Object tuple)
+        {
+          return encodeLong(getter.get(tuple));
+        }
+      };
+    }
+    final PojoUtils.Getter<Object, Object> getter = PojoUtils.createGetter(tupleClass, keyExpression, Object.class);
+    return new KeyEncoder()
+    {
+      @Override
+      int encode(Object tuple)
+      {
+        Object key = getter.get(tuple);
+        if (key == null) {
+          return -1;
+        }
+        return key instanceof Number && !(key instanceof Double || key instanceof Float)
+            ? encodeLong(((Number)key).longValue()) : encodeString(key.toString());
+      }
+    };
+  }
+
+  /**
+   * Sets a field of the tuple from a column of the row.
+   */
+  private abstract static class ColumnDecoder
+  {
+    abstract void decode(Object tuple, ByteBuffer buffer, int start, int end);
+  }
+
+  private ColumnDecoder createDecoder(FieldInfo fieldInfo)
+  {
+    String expression = fieldInfo.getPojoFieldExpression();
+    Class<?> type = fieldType(expression);
+    if (type == int.class) {
+      final PojoUtils.SetterInt<Object> setter = PojoUtils.createSetterInt(tupleClass, expression);
+      return new ColumnDecoder()
+      {
+        @Override
+        void decode(Object tuple, ByteBuffer buffer, int start, int end)
+        {
+          setter.set(tuple, (int)parseLong(buffer, start, end));
+        }
+      };
+    } else if (type == long.class) {
+      final PojoUtils.SetterLong<Object> setter = PojoUtils.createSetterLong(tupleClass, expression);
+      return new ColumnDecoder()
+      {
+        @Override
+        void decode(Object tuple, ByteBuffer buffer, int start, int end)
+        {
+          setter.set(tuple, parseLong(buffer, start, end));
+        }
+      };
+    }
+    final JdbcPojoMapper.FieldSetter setter = JdbcPojoMapper.FieldSetter.create(tupleClass, fieldInfo);
+    return new ColumnDecoder()
+    {
+      @Override
+      void decode(Object tuple, ByteBuffer buffer, int start, int end)
+      {
+        setter.set(tuple, start == end ? null : decodeString(buffer, start, end));
+      }
+    };
+  }
+
+  public String getReferenceFilePath()
+  {
+    return referenceFilePath;
+  }
+
+  /**
+   * Path of the reference file, on HDFS or any file system Hadoop supports.
+   */
+  public void setReferenceFilePath(String referenceFilePath)
+  {
+    this.referenceFilePath = referenceFilePath;
+  }
+
+  public String getKeyColumn()
+  {
+    return keyColumn;
+  }
+
+  /**
+   * Column of the reference file which is matched with the key of the tuples.
+   */
+  public void setKeyColumn(String keyColumn)
+  {
+    this.keyColumn = keyColumn;
+  }
+
+  public String getKeyExpression()
+  {
+    return keyExpression;
+  }
+
+  /**
+   * Field name or PojoUtils expression of the key of the tuples, for example
+   * accountNumber
+   */
+  public void setKeyExpression(String keyExpression)
+  {
+    this.keyExpression = keyExpression;
+  }
+
+  public List<FieldInfo> getFieldInfos()
+  {
+    return fieldInfos;
+  }
+
+  /**
+   * Columns of the reference file and the fields of the tuples they are set
+   * on.
+   */
+  public void setFieldInfos(List<FieldInfo> fieldInfos)
+  {
+    this.fieldInfos = fieldInfos;
+  }
+
+  public char getDelimiter()
+  {
+    return delimiter;
+  }
+
+  /**
+   * Column delimiter of the reference file, an ASCII character. Default is
+   * comma.
+   */
+  public void setDelimiter(char delimiter)
+  {
+    this.delimiter = delimiter;
+  }
+
+  public String getLocalDirectory()
+  {
+    return localDirectory;
+  }
+
+  /**
+   * Local directory of the data and index files, which need about the size of
+   * the reference file plus 32 bytes per row. Default is java.io.tmpdir.
+   */
+  public void setLocalDirectory(String localDirectory)
+  {
+    this.localDirectory = localDirectory;
+  }
+
+  public int getRefreshIntervalSeconds()
+  {
+    return refreshIntervalSeconds;
+  }
+
+  /**
+   * Seconds between the checks whether the reference file changed. Default is
+   * 60.
+   */
+  public void setRefreshIntervalSeconds(int refreshIntervalSeconds)
+  {
+    this.refreshIntervalSeconds = refreshIntervalSeconds;
+  }
+
+  public boolean isEmitUnmatched()
+  {
+    return emitUnmatched;
+  }
+
+  /**
+   * Whether tuples without a matching row are emitted unchanged or dropped.
+   * Default is true.
+   */
+  public void setEmitUnmatched(boolean emitUnmatched)
+  {
+    this.emitUnmatched = emitUnmatched;
+  }
+}
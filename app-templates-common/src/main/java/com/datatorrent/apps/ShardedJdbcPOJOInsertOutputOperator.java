@@ -0,0 +1,316 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.lib.db.jdbc.JdbcPOJOInsertOutputOperator;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+import com.datatorrent.lib.util.KryoCloneUtils;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * {@link JdbcPOJOInsertOutputOperator} which spreads the rows over several
+ * databases with the same table, by the hash of <code>shardKeyExpression</code>.
+ * <p>
+ * <code>shardUrls</code> lists the database URLs of the shards; every shard
+ * gets a copy of the store with its URL, with its own connection, transaction
+ * and row in the meta table of its database, under the negative operator id
+ * <code>-(operatorId * 64 + shard + 1)</code> where <code>shard</code> is the
+ * position of its URL in the list. The store itself is used for the table
+ * metadata and keeps the window id of the operator under its own id, so its
+ * database can also be a shard. At the end of a window every shard executes
+ * its last batch and commits its rows together with the window id, so after a
+ * failure each shard skips exactly the windows it already committed. New
+ * shards are therefore added at the end of the list.
+ * <p>
+ * Shards are placed on a hash ring with <code>virtualNodes</code> points each,
+ * derived from their URLs, and a row goes to the shard of the first point at
+ * or after the hash of its key. Adding a shard only moves the keys between
+ * its points and the preceding ones, about one in the number of shards, and
+ * the order of the URLs does not matter. The hash uses
+ * {@link Object#hashCode()} of the key, which is the same in every JVM for
+ * strings, numbers and dates.
+ * <p>
+ * Unlike the base operator, a failed batch fails the operator instead of
+ * emitting error tuples.
+ */
+public class ShardedJdbcPOJOInsertOutputOperator extends JdbcPOJOInsertOutputOperator
+{
+  private static final int MAX_SHARDS = 64;
+
+  @NotNull
+  private String shardUrls;
+
+  @NotNull
+  private String shardKeyExpression;
+
+  @Min(1)
+  private int virtualNodes = 64;
+
+  @AutoMetric
+  private long minShardRows;
+
+  @AutoMetric
+  private long maxShardRows;
+
+  private transient String appId;
+  private transient int operatorId;
+  private transient long windowId;
+  private transient List<Shard> shards;
+  private transient TreeMap<Integer, Shard> ring;
+  private transient Class<?> keyClass;
+  private transient PojoUtils.Getter<Object, Object> keyGetter;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    appId = context.getValue(DAG.APPLICATION_ID);
+    operatorId = context.getId();
+    shards = new ArrayList<>();
+    ring = new TreeMap<>();
+    for (String url : shardUrls.split(",")) {
+      url = url.trim();
+      if (url.isEmpty()) {
+        continue;
+      }
+      if (shards.size() == MAX_SHARDS) {
+        throw new IllegalArgumentException("More than " + MAX_SHARDS + " shard URLs");
+      }
+      Shard shard = new Shard(url, -(operatorId * MAX_SHARDS + shards.size() + 1));
+      shards.add(shard);
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(mix((url + '#' + i).hashCode()), shard);
+      }
+    }
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("No shard URLs");
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (shards != null) {
+      for (Shard shard : shards) {
+        shard.close();
+      }
+    }
+    super.teardown();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    super.beginWindow(windowId);
+    this.windowId = windowId;
+    for (Shard shard : shards) {
+      shard.windowRows = 0;
+      if (windowId > shard.committedWindowId) {
+        shard.store.beginTransaction();
+      }
+    }
+  }
+
+  @Override
+  public void processTuple(Object tuple)
+  {
+    Shard shard = shard(tuple);
+    if (windowId <= shard.committedWindowId) {
+      return;
+    }
+    try {
+      shard.add(tuple);
+    } catch (SQLException e) {
+      throw new RuntimeException("Insert into shard " + shard.url + " failed", e);
+    }
+  }
+
+  private Shard shard(Object tuple)
+  {
+    if (tuple.getClass() != keyClass) {
+      keyClass = tuple.getClass();
+      keyGetter = PojoUtils.createGetter(keyClass, shardKeyExpression, Object.class);
+    }
+    Object key = keyGetter.get(tuple);
+    Map.Entry<Integer, Shard> entry = ring.ceilingEntry(mix(key == null ? 0 : key.hashCode()));
+    return (entry != null ? entry : ring.firstEntry()).getValue();
+  }
+
+  /**
+   * Spreads the bits of a hash code over the ring, with the finalizer of
+   * MurmurHash3.
+   */
+  private static int mix(int h)
+  {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  @Override
+  public void endWindow()
+  {
+    minShardRows = Long.MAX_VALUE;
+    maxShardRows = 0;
+    for (Shard shard : shards) {
+      if (windowId > shard.committedWindowId) {
+        try {
+          shard.commit(windowId);
+        } catch (SQLException e) {
+          throw new RuntimeException("Commit of shard " + shard.url + " failed", e);
+        }
+      }
+      minShardRows = Math.min(minShardRows, shard.windowRows);
+      maxShardRows = Math.max(maxShardRows, shard.windowRows);
+    }
+    super.endWindow();
+  }
+
+  /**
+   * A database with its own connection, transaction and committed window.
+   */
+  private class Shard
+  {
+    private final String url;
+    private final int metaOperatorId;
+    private final JdbcTransactionalStore store;
+    private final long committedWindowId;
+    private final PreparedStatement statement;
+    private int pending;
+    private long windowRows;
+
+    Shard(String url, int metaOperatorId)
+    {
+      this.url = url;
+      this.metaOperatorId = metaOperatorId;
+      store = KryoCloneUtils.cloneObject(getStore());
+      store.setDatabaseUrl(url);
+      store.connect();
+      committedWindowId = store.getCommittedWindowId(appId, metaOperatorId);
+      try {
+        statement = store.getConnection().prepareStatement(getUpdateCommand());
+      } catch (SQLException e) {
+        throw new RuntimeException("Unable to prepare the insert on shard " + url, e);
+      }
+      LOG.info("Shard {} committed window {}", url, committedWindowId);
+    }
+
+    void add(Object tuple) throws SQLException
+    {
+      setStatementParameters(statement, tuple);
+      statement.addBatch();
+      windowRows++;
+      if (++pending >= getBatchSize()) {
+        execute();
+      }
+    }
+
+    private void execute() throws SQLException
+    {
+      statement.executeBatch();
+      statement.clearBatch();
+      pending = 0;
+    }
+
+    void commit(long window) throws SQLException
+    {
+      if (pending > 0) {
+        execute();
+      }
+      store.storeCommittedWindowId(appId, metaOperatorId, window);
+      store.commitTransaction();
+    }
+
+    void close()
+    {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        LOG.warn("Closing statement of shard {}", url, e);
+      }
+      store.disconnect();
+    }
+  }
+
+  public String getShardUrls()
+  {
+    return shardUrls;
+  }
+
+  /**
+   * Comma separated database URLs of the shards, at most 64, whose
+   * connection settings are otherwise those of the store. A URL keeps its
+   * position in the list, which identifies the committed window of the
+   * shard.
+   */
+  public void setShardUrls(String shardUrls)
+  {
+    this.shardUrls = shardUrls;
+  }
+
+  public String getShardKeyExpression()
+  {
+    return shardKeyExpression;
+  }
+
+  /**
+   * Field name or PojoUtils expression of the key which decides the shard of
+   * a tuple.
+   */
+  public void setShardKeyExpression(String shardKeyExpression)
+  {
+    this.shardKeyExpression = shardKeyExpression;
+  }
+
+  public int getVirtualNodes()
+  {
+    return virtualNodes;
+  }
+
+  /**
+   * Number of points of every shard on the hash ring. More points spread the
+   * keys more evenly. Default is 64.
+   */
+  public void setVirtualNodes(int virtualNodes)
+  {
+    this.virtualNodes = virtualNodes;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ShardedJdbcPOJOInsertOutputOperator.class);
+}
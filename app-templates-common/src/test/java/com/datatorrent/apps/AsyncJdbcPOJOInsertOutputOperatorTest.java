@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+
+/**
+ * Test that {@link AsyncJdbcPOJOInsertOutputOperator} replays a window whose
+ * workers only partly committed without losing or duplicating rows.
+ */
+public class AsyncJdbcPOJOInsertOutputOperatorTest
+{
+  // MVCC lets the worker connections insert into the table concurrently
+  private static final String URL = "jdbc:hsqldb:mem:async;hsqldb.tx=mvcc";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AsyncJdbcPOJOInsertOutputOperator operator()
+  {
+    AsyncJdbcPOJOInsertOutputOperator operator = new AsyncJdbcPOJOInsertOutputOperator();
+    operator.setStore(JdbcTestHelper.store(URL));
+    operator.setTablename(JdbcTestHelper.TABLE_NAME);
+    operator.setFieldInfos(JdbcTestHelper.fieldInfos());
+    operator.setBatchSize(2);
+    operator.setWorkers(4);
+    Context.OperatorContext context = JdbcTestHelper.operatorContext(1, folder.getRoot().getPath());
+    operator.setup(context);
+    operator.input.setup(JdbcTestHelper.portContext());
+    operator.activate(context);
+    return operator;
+  }
+
+  private static void window(AsyncJdbcPOJOInsertOutputOperator operator, long windowId, int first, int count)
+  {
+    operator.beginWindow(windowId);
+    for (int i = first; i < first + count; i++) {
+      operator.input.process(JdbcTestHelper.event(i));
+    }
+    operator.endWindow();
+  }
+
+  @Test
+  public void testReplayAfterPartialCommit() throws Exception
+  {
+    try (Connection connection = DriverManager.getConnection(URL);
+        Statement stmt = connection.createStatement()) {
+      JdbcTestHelper.createMetaTable(connection);
+      JdbcTestHelper.createEventTable(connection, JdbcTestHelper.TABLE_NAME);
+      // the second worker of operator 1 fails to commit window 2
+      stmt.executeUpdate("ALTER TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE
+          + " ADD CONSTRAINT fail_worker CHECK (dt_operator_id <> -66 OR dt_window < 2)");
+
+      AsyncJdbcPOJOInsertOutputOperator operator = operator();
+      // an odd number of tuples, so window 2 does not start at the first worker by chance
+      window(operator, 1, 0, 3);
+      try {
+        window(operator, 2, 3, 10);
+        Assert.fail("commit of the second worker did not fail");
+      } catch (RuntimeException e) {
+        // expected, the other workers may have committed window 2
+      }
+      operator.teardown();
+      stmt.executeUpdate("ALTER TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE
+          + " DROP CONSTRAINT fail_worker");
+
+      // the redeployed operator replays both windows from the checkpoint
+      operator = operator();
+      window(operator, 1, 0, 3);
+      window(operator, 2, 3, 10);
+      operator.teardown();
+
+      Assert.assertEquals(JdbcTestHelper.range(0, 13),
+          JdbcTestHelper.accountNumbers(connection, JdbcTestHelper.TABLE_NAME));
+    }
+  }
+}
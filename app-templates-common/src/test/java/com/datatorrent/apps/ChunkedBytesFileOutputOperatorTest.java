@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Test that {@link ChunkedBytesFileOutputOperator} writes the chunks as they
+ * are.
+ */
+public class ChunkedBytesFileOutputOperatorTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testChunksWithoutSeparator() throws Exception
+  {
+    ChunkedBytesFileOutputOperator writer = new ChunkedBytesFileOutputOperator();
+    writer.setFilePath(folder.getRoot().getPath());
+    writer.setOutputFileName("records.csv");
+    writer.setup(OperatorContextTestHelper.mockOperatorContext(1));
+    writer.beginWindow(1);
+    writer.input.process("1,caf\u00e9\n2,b\n".getBytes(StandardCharsets.UTF_8));
+    writer.input.process("3,c\n".getBytes(StandardCharsets.UTF_8));
+    writer.endWindow();
+    writer.beginWindow(2);
+    writer.input.process("4,d\n".getBytes(StandardCharsets.UTF_8));
+    writer.endWindow();
+    writer.beforeCheckpoint(2);
+    writer.teardown();
+
+    List<File> files = new ArrayList<>();
+    for (File file : folder.getRoot().listFiles()) {
+      // skip the checksum files of the local file system
+      if (!file.getName().startsWith(".")) {
+        files.add(file);
+      }
+    }
+    Assert.assertEquals(files.toString(), 1, files.size());
+    Assert.assertEquals("1,caf\u00e9\n2,b\n3,c\n4,d\n", FileUtils.readFileToString(files.get(0), "UTF-8"));
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+
+/**
+ * Test when {@link CoalescingJdbcPOJOInsertOutputOperator} commits, and that
+ * it recovers the committed window from the rows with the window id columns
+ * of {@link CoalescingJdbcTransactionalStore}.
+ */
+public class CoalescingJdbcPOJOInsertOutputOperatorTest
+{
+  // MVCC lets the test read the committed rows while the operator has a transaction open
+  private static final String URL = "jdbc:hsqldb:mem:coalescing_%s;hsqldb.tx=mvcc";
+  private static final String TABLE_NAME = JdbcTestHelper.TABLE_NAME;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static CoalescingJdbcTransactionalStore store(String url)
+  {
+    CoalescingJdbcTransactionalStore store = new CoalescingJdbcTransactionalStore();
+    store.setDatabaseDriver(JdbcTestHelper.DRIVER);
+    store.setDatabaseUrl(url);
+    return store;
+  }
+
+  private static CoalescingJdbcTransactionalStore stagingStore(String url)
+  {
+    CoalescingJdbcTransactionalStore store = store(url);
+    store.setWindowIdColumn("WINDOW_ID");
+    store.setAppIdColumn("APP_ID");
+    store.setOperatorIdColumn("OPERATOR_ID");
+    return store;
+  }
+
+  private static void createStagingTable(Connection connection) throws SQLException
+  {
+    JdbcTestHelper.createMetaTable(connection);
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("CREATE TABLE " + TABLE_NAME + " (ACCOUNT_NO INTEGER NOT NULL, NAME VARCHAR(64), "
+          + "AMOUNT INTEGER, WINDOW_ID BIGINT, APP_ID VARCHAR(100), OPERATOR_ID INTEGER)");
+    }
+  }
+
+  private CoalescingJdbcPOJOInsertOutputOperator operator(CoalescingJdbcTransactionalStore store)
+  {
+    CoalescingJdbcPOJOInsertOutputOperator operator = new CoalescingJdbcPOJOInsertOutputOperator();
+    operator.setStore(store);
+    operator.setTablename(TABLE_NAME);
+    operator.setFieldInfos(JdbcTestHelper.fieldInfos());
+    operator.setBatchSize(2);
+    Context.OperatorContext context = JdbcTestHelper.operatorContext(1, folder.getRoot().getPath());
+    operator.setup(context);
+    operator.input.setup(JdbcTestHelper.portContext());
+    operator.activate(context);
+    return operator;
+  }
+
+  private static void window(CoalescingJdbcPOJOInsertOutputOperator operator, long windowId, int first, int count)
+  {
+    operator.beginWindow(windowId);
+    for (int i = first; i < first + count; i++) {
+      operator.input.process(JdbcTestHelper.event(i));
+    }
+    operator.endWindow();
+  }
+
+  /**
+   * Window id of operator 1 committed to the meta table, or -1.
+   */
+  private static long committedWindowId(Connection connection) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT " + JdbcTransactionalStore.DEFAULT_WINDOW_COL + " FROM "
+        + JdbcTransactionalStore.DEFAULT_META_TABLE + " WHERE " + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL
+        + " = 1")) {
+      return rs.next() ? rs.getLong(1) : -1;
+    }
+  }
+
+  /**
+   * Highest window id of the committed rows, or 0.
+   */
+  private static long maxWindowId(Connection connection) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT MAX(WINDOW_ID) FROM " + TABLE_NAME)) {
+      rs.next();
+      return rs.getLong(1);
+    }
+  }
+
+  @Test
+  public void testCommitEveryWindows() throws Exception
+  {
+    String url = String.format(URL, "windows");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createMetaTable(connection);
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+
+      CoalescingJdbcPOJOInsertOutputOperator operator = operator(store(url));
+      operator.setCommitWindowCount(3);
+      window(operator, 1, 0, 3);
+      window(operator, 2, 3, 3);
+      Assert.assertEquals(Collections.<Integer>emptyList(), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+      Assert.assertEquals(-1, committedWindowId(connection));
+
+      window(operator, 3, 6, 3);
+      Assert.assertEquals(JdbcTestHelper.range(0, 9), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+      Assert.assertEquals(3, committedWindowId(connection));
+
+      window(operator, 4, 9, 3);
+      window(operator, 5, 12, 3);
+      Assert.assertEquals(3, committedWindowId(connection));
+
+      // the open transaction is committed before the checkpoint
+      operator.beforeCheckpoint(5);
+      Assert.assertEquals(JdbcTestHelper.range(0, 15), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+      Assert.assertEquals(5, committedWindowId(connection));
+
+      // nothing is committed when no window ended since the last commit
+      operator.beforeCheckpoint(5);
+      operator.teardown();
+      Assert.assertEquals(JdbcTestHelper.range(0, 15), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+    }
+  }
+
+  @Test
+  public void testCommitRowCount() throws Exception
+  {
+    String url = String.format(URL, "rows");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createMetaTable(connection);
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+
+      CoalescingJdbcPOJOInsertOutputOperator operator = operator(store(url));
+      operator.setCommitWindowCount(100);
+      operator.setCommitRowCount(5);
+      window(operator, 1, 0, 3);
+      Assert.assertEquals(-1, committedWindowId(connection));
+      window(operator, 2, 3, 3);
+      Assert.assertEquals(JdbcTestHelper.range(0, 6), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+      Assert.assertEquals(2, committedWindowId(connection));
+      operator.teardown();
+    }
+  }
+
+  @Test
+  public void testStagingRecovery() throws Exception
+  {
+    String url = String.format(URL, "staging");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      createStagingTable(connection);
+
+      CoalescingJdbcTransactionalStore store = stagingStore(url);
+      CoalescingJdbcPOJOInsertOutputOperator operator = operator(store);
+      operator.setCommitWindowCount(2);
+      window(operator, 1, 0, 3);
+      window(operator, 2, 3, 3);
+      window(operator, 3, 6, 3);
+      Assert.assertEquals(2, maxWindowId(connection));
+      // the operator fails with window 3 uncommitted, which is rolled back
+      operator.teardown();
+      Assert.assertEquals(JdbcTestHelper.range(0, 6), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+      Assert.assertEquals("the meta table is not used", -1, committedWindowId(connection));
+
+      CoalescingJdbcTransactionalStore restoredStore = stagingStore(url);
+      CoalescingJdbcPOJOInsertOutputOperator restored = operator(restoredStore);
+      restored.setCommitWindowCount(2);
+      Assert.assertEquals(2, restoredStore.getCommittedWindowId("test", 1));
+      window(restored, 1, 0, 3);
+      window(restored, 2, 3, 3);
+      window(restored, 3, 6, 3);
+      restored.beforeCheckpoint(3);
+      Assert.assertEquals(JdbcTestHelper.range(0, 9), JdbcTestHelper.accountNumbers(connection, TABLE_NAME));
+      Assert.assertEquals(3, restoredStore.getCommittedWindowId("test", 1));
+      restored.teardown();
+
+      try (Statement stmt = connection.createStatement();
+          ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + TABLE_NAME
+          + " WHERE WINDOW_ID = 3 AND APP_ID = 'test' AND OPERATOR_ID = 1")) {
+        rs.next();
+        Assert.assertEquals(3, rs.getInt(1));
+      }
+    }
+  }
+
+  @Test
+  public void testStagingOtherApplication() throws Exception
+  {
+    String url = String.format(URL, "staging_apps");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      createStagingTable(connection);
+      // rows of another application with the same operator id and later windows
+      try (Statement stmt = connection.createStatement()) {
+        stmt.executeUpdate("INSERT INTO " + TABLE_NAME + " VALUES (100, 'other', 1, 50, 'other', 1)");
+      }
+
+      CoalescingJdbcTransactionalStore store = stagingStore(url);
+      CoalescingJdbcPOJOInsertOutputOperator operator = operator(store);
+      Assert.assertEquals(-1, store.getCommittedWindowId("test", 1));
+      window(operator, 1, 0, 3);
+      window(operator, 2, 3, 3);
+      operator.beforeCheckpoint(2);
+      Assert.assertEquals(2, store.getCommittedWindowId("test", 1));
+      Assert.assertEquals(50, store.getCommittedWindowId("other", 1));
+      operator.teardown();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStagingWithoutAppIdColumn() throws Exception
+  {
+    CoalescingJdbcTransactionalStore store = stagingStore(String.format(URL, "staging_no_app"));
+    store.setAppIdColumn(null);
+    operator(store);
+  }
+}
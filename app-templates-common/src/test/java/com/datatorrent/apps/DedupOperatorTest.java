@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KryoCloneUtils;
+
+/**
+ * Test the decisions of {@link DedupOperator} for new, repeated and expired
+ * keys, and after a restore from a checkpoint.
+ * <p>
+ * Managed state drops keys older than the expiry period, so the window ids
+ * start at the current time. The default window width is 500 ms.
+ */
+public class DedupOperatorTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private long firstWindowId;
+  private CollectorTestSink<Object> unique;
+  private CollectorTestSink<Object> duplicate;
+
+  @Before
+  public void setup()
+  {
+    firstWindowId = (System.currentTimeMillis() / 1000) << 32;
+  }
+
+  private static DedupOperator dedup()
+  {
+    DedupOperator dedup = new DedupOperator();
+    dedup.setKeyExpression("accountNumber");
+    dedup.setExpireSeconds(10);
+    dedup.setExpectedKeysPerGeneration(1000);
+    return dedup;
+  }
+
+  private void setup(DedupOperator dedup, long activationWindowId)
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_PATH, folder.getRoot().getPath());
+    attributes.put(Context.OperatorContext.ACTIVATION_WINDOW_ID, activationWindowId);
+    dedup.input.setup(JdbcTestHelper.portContext());
+    dedup.setup(OperatorContextTestHelper.mockOperatorContext(1, attributes));
+    unique = new CollectorTestSink<>();
+    duplicate = new CollectorTestSink<>();
+    dedup.unique.setSink(unique);
+    dedup.duplicate.setSink(duplicate);
+  }
+
+  /**
+   * Window id of the given number of seconds and windows after the first one.
+   */
+  private long windowId(long seconds, int window)
+  {
+    return firstWindowId + (seconds << 32) + window;
+  }
+
+  /**
+   * Processes events with the account numbers in a window and returns the
+   * account numbers of the unique events.
+   */
+  private List<Integer> window(DedupOperator dedup, long windowId, Integer... accountNumbers)
+  {
+    unique.clear();
+    duplicate.clear();
+    dedup.beginWindow(windowId);
+    for (int accountNumber : accountNumbers) {
+      dedup.input.process(JdbcTestHelper.event(accountNumber));
+    }
+    dedup.endWindow();
+    return accountNumbers(unique);
+  }
+
+  private static List<Integer> accountNumbers(CollectorTestSink<Object> sink)
+  {
+    List<Integer> accountNumbers = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      accountNumbers.add(((PojoEvent)tuple).getAccountNumber());
+    }
+    return accountNumbers;
+  }
+
+  @Test
+  public void testDuplicates()
+  {
+    DedupOperator dedup = dedup();
+    setup(dedup, Stateless.WINDOW_ID);
+    Assert.assertEquals(Arrays.asList(1, 2, 3), window(dedup, windowId(0, 1), 1, 2, 1, 3, 2));
+    Assert.assertEquals(Arrays.asList(1, 2), accountNumbers(duplicate));
+    Assert.assertEquals(Arrays.asList(4), window(dedup, windowId(0, 2), 3, 4));
+    Assert.assertEquals(Arrays.asList(3), accountNumbers(duplicate));
+    Assert.assertEquals(Arrays.asList(5), window(dedup, windowId(2, 0), 1, 4, 5));
+    Assert.assertEquals(Arrays.asList(1, 4), accountNumbers(duplicate));
+    dedup.teardown();
+  }
+
+  @Test
+  public void testExpiry()
+  {
+    // no exact key sets, so keys found by the Bloom filters are looked up in the store
+    DedupOperator dedup = dedup();
+    dedup.setBloomGenerations(2);
+    dedup.setRecentGenerations(0);
+    setup(dedup, Stateless.WINDOW_ID);
+    Assert.assertEquals(Arrays.asList(1, 2), window(dedup, windowId(0, 1), 1, 2));
+    Assert.assertEquals(Arrays.asList(3), window(dedup, windowId(4, 0), 1, 3));
+    Assert.assertEquals(Arrays.asList(1), accountNumbers(duplicate));
+    Assert.assertEquals(Arrays.asList(4), window(dedup, windowId(9, 0), 2, 4));
+
+    Assert.assertEquals(Arrays.asList(2), accountNumbers(duplicate));
+
+    // the first generation, with keys 1, 2 and 3, has expired
+    Assert.assertEquals(Arrays.asList(1, 2, 3), window(dedup, windowId(16, 0), 1, 2, 3, 4));
+    Assert.assertEquals(Arrays.asList(4), accountNumbers(duplicate));
+
+    // the generation of key 4 is kept a little longer, but the store has the time it was seen
+    Assert.assertEquals(Arrays.asList(4), window(dedup, windowId(20, 0), 4));
+    dedup.teardown();
+  }
+
+  @Test
+  public void testRestore()
+  {
+    DedupOperator dedup = dedup();
+    setup(dedup, Stateless.WINDOW_ID);
+    Assert.assertEquals(Arrays.asList(1, 2), window(dedup, windowId(0, 1), 1, 2));
+    Assert.assertEquals(Arrays.asList(3), window(dedup, windowId(0, 2), 3));
+    dedup.beforeCheckpoint(windowId(0, 2));
+    DedupOperator checkpoint = KryoCloneUtils.cloneObject(dedup);
+    dedup.checkpointed(windowId(0, 2));
+    Assert.assertEquals(Arrays.asList(4), window(dedup, windowId(0, 3), 4, 1));
+    dedup.teardown();
+
+    // the restored operator has no Bloom filters and looks the keys up in the store
+    DedupOperator restored = checkpoint;
+    setup(restored, windowId(0, 2));
+    Assert.assertEquals("window 3 is replayed", Arrays.asList(4), window(restored, windowId(0, 3), 4, 1));
+    Assert.assertEquals(Arrays.asList(1), accountNumbers(duplicate));
+    Assert.assertEquals(Arrays.asList(5), window(restored, windowId(0, 4), 2, 3, 4, 5));
+    Assert.assertEquals(Arrays.asList(2, 3, 4), accountNumbers(duplicate));
+    restored.teardown();
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.contrib.parser.CsvParser;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * Test the records and chunks written by {@link DelimitedByteFormatter}.
+ */
+public class DelimitedByteFormatterTest
+{
+  private static final String SCHEMA = "{\"separator\": \",\", \"quoteChar\": \"\\\"\", \"lineDelimiter\": \"\\n\", "
+      + "\"fields\": [{\"name\": \"id\", \"type\": \"Integer\"}, {\"name\": \"total\", \"type\": \"Long\"}, "
+      + "{\"name\": \"name\", \"type\": \"String\"}]}";
+
+  private DelimitedByteFormatter formatter;
+  private CollectorTestSink<Object> chunks;
+
+  public static class Record
+  {
+    private int id;
+    private long total;
+    private String name;
+
+    public int getId()
+    {
+      return id;
+    }
+
+    public void setId(int id)
+    {
+      this.id = id;
+    }
+
+    public long getTotal()
+    {
+      return total;
+    }
+
+    public void setTotal(long total)
+    {
+      this.total = total;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public void setName(String name)
+    {
+      this.name = name;
+    }
+  }
+
+  private static Record record(int id, long total, String name)
+  {
+    Record record = new Record();
+    record.setId(id);
+    record.setTotal(total);
+    record.setName(name);
+    return record;
+  }
+
+  @Before
+  public void setup()
+  {
+    setup(64 * 1024);
+  }
+
+  private void setup(int chunkSize)
+  {
+    formatter = new DelimitedByteFormatter();
+    formatter.setSchema(SCHEMA);
+    formatter.setChunkSize(chunkSize);
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, Record.class);
+    formatter.in.setup(new PortContext(attributes, null));
+    formatter.setup(OperatorContextTestHelper.mockOperatorContext(1));
+    chunks = new CollectorTestSink<>();
+    formatter.out.setSink(chunks);
+  }
+
+  /**
+   * Formats the records in a window and returns the window output as a string.
+   */
+  private String format(long windowId, Record... records)
+  {
+    formatter.beginWindow(windowId);
+    for (Record record : records) {
+      formatter.in.process(record);
+    }
+    formatter.endWindow();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (Object chunk : chunks.collectedTuples) {
+      bytes.write((byte[])chunk, 0, ((byte[])chunk).length);
+    }
+    chunks.clear();
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testNumbers()
+  {
+    Assert.assertEquals("0,0,a\n-1,-1,b\n"
+        + Integer.MAX_VALUE + "," + Long.MAX_VALUE + ",c\n"
+        + Integer.MIN_VALUE + "," + Long.MIN_VALUE + ",d\n",
+        format(1, record(0, 0, "a"), record(-1, -1, "b"), record(Integer.MAX_VALUE, Long.MAX_VALUE, "c"),
+        record(Integer.MIN_VALUE, Long.MIN_VALUE, "d")));
+  }
+
+  @Test
+  public void testQuoting()
+  {
+    Assert.assertEquals("1,2,plain\n"
+        + "1,2,\"a,b\"\n"
+        + "1,2,\"say \"\"hi\"\"\"\n"
+        + "1,2,\"two\nlines\"\n"
+        + "1,2,\"cr\r\"\n"
+        + "1,2,\n",
+        format(1, record(1, 2, "plain"), record(1, 2, "a,b"), record(1, 2, "say \"hi\""),
+        record(1, 2, "two\nlines"), record(1, 2, "cr\r"), record(1, 2, null)));
+  }
+
+  @Test
+  public void testUtf8()
+  {
+    String[] names = {"caf\u00e9", "\u20ac100", "\u65e5\u672c", "smile \ud83d\ude00", "\"\u00fc,\u00f6\""};
+    Record[] records = new Record[names.length];
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < names.length; i++) {
+      records[i] = record(i, i, names[i]);
+      expected.append(i).append(',').append(i).append(',');
+      if (names[i].indexOf(',') >= 0) {
+        expected.append('"').append(names[i].replace("\"", "\"\"")).append('"');
+      } else {
+        expected.append(names[i]);
+      }
+      expected.append('\n');
+    }
+    Assert.assertEquals(expected.toString(), format(1, records));
+  }
+
+  @Test
+  public void testChunkBoundaries()
+  {
+    // two digit ids keep every record at 9 bytes
+    setup(20);
+    formatter.beginWindow(1);
+    for (int i = 10; i < 15; i++) {
+      formatter.in.process(record(i, 100, "x"));
+    }
+    // 3 records reach the chunk size, the other 2 are left for the end of the window
+    Assert.assertEquals(1, chunks.collectedTuples.size());
+    Assert.assertEquals("10,100,x\n11,100,x\n12,100,x\n",
+        new String((byte[])chunks.collectedTuples.get(0), StandardCharsets.UTF_8));
+    formatter.endWindow();
+    Assert.assertEquals(2, chunks.collectedTuples.size());
+    Assert.assertEquals("13,100,x\n14,100,x\n",
+        new String((byte[])chunks.collectedTuples.get(1), StandardCharsets.UTF_8));
+    chunks.clear();
+
+    // a record larger than the chunk size is emitted whole, and nothing is emitted for an empty window
+    Assert.assertEquals("1,2,a long name which does not fit into a single chunk\n",
+        format(2, record(1, 2, "a long name which does not fit into a single chunk")));
+    Assert.assertEquals("", format(3));
+  }
+
+  public static class Event
+  {
+    private int id;
+    private Date time;
+
+    public int getId()
+    {
+      return id;
+    }
+
+    public void setId(int id)
+    {
+      this.id = id;
+    }
+
+    public Date getTime()
+    {
+      return time;
+    }
+
+    public void setTime(Date time)
+    {
+      this.time = time;
+    }
+  }
+
+  @Test
+  public void testDates()
+  {
+    String schema = "{\"separator\": \",\", \"quoteChar\": \"\\\"\", \"lineDelimiter\": \"\\n\", "
+        + "\"fields\": [{\"name\": \"id\", \"type\": \"Integer\"}, "
+        + "{\"name\": \"time\", \"type\": \"Date\", \"constraints\": {\"format\": \"yyyy-MM-dd HH:mm:ss\"}}]}";
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, Event.class);
+
+    formatter = new DelimitedByteFormatter();
+    formatter.setSchema(schema);
+    formatter.in.setup(new PortContext(attributes, null));
+    formatter.setup(OperatorContextTestHelper.mockOperatorContext(1));
+    chunks = new CollectorTestSink<>();
+    formatter.out.setSink(chunks);
+
+    Event event = new Event();
+    event.setId(1);
+    // whole seconds, as the format has no milliseconds
+    event.setTime(new Date(1500000000000L));
+    Event noTime = new Event();
+    noTime.setId(2);
+    formatter.beginWindow(1);
+    formatter.in.process(event);
+    formatter.in.process(noTime);
+    formatter.endWindow();
+    String[] lines = new String((byte[])chunks.collectedTuples.get(0), StandardCharsets.UTF_8).split("\n");
+    Assert.assertEquals(2, lines.length);
+    Assert.assertEquals("2,", lines[1]);
+
+    // the records are read back with the same schema
+    CsvParser parser = new CsvParser();
+    parser.setSchema(schema);
+    parser.out.setup(new PortContext(attributes, null));
+    parser.setup(null);
+    CollectorTestSink<Object> parsed = new CollectorTestSink<>();
+    parser.out.setSink(parsed);
+    parser.beginWindow(1);
+    for (String line : lines) {
+      parser.in.process(line.getBytes(StandardCharsets.UTF_8));
+    }
+    parser.endWindow();
+    Assert.assertEquals(2, parsed.collectedTuples.size());
+    Assert.assertEquals(event.getTime(), ((Event)parsed.collectedTuples.get(0)).getTime());
+    Assert.assertNull(((Event)parsed.collectedTuples.get(1)).getTime());
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.Sink;
+import com.datatorrent.contrib.parser.CsvParser;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * JMH comparison of {@link DelimitedByteParser} and CsvParser parsing 1M
+ * <code>accountNumber|name|amount</code> lines into {@link PojoEvent}.
+ * <p>
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.datatorrent.apps.DelimitedByteParserBenchmark</code>;
+ * the GC profiler reports the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DelimitedByteParserBenchmark
+{
+  private static final String SCHEMA = "{\"separator\": \"|\", \"quoteChar\": \"\\\"\", \"fields\": ["
+      + "{\"name\": \"accountNumber\", \"type\": \"Integer\"}, {\"name\": \"name\", \"type\": \"String\"}, "
+      + "{\"name\": \"amount\", \"type\": \"Integer\"}]}";
+
+  @Param({"1000000"})
+  public int lines;
+
+  @Param({"false", "true"})
+  public boolean reuseTuple;
+
+  private byte[][] records;
+  private CsvParser csvParser;
+  private DelimitedByteParser byteParser;
+  private BlackholeSink sink;
+
+  private static class BlackholeSink implements Sink<Object>
+  {
+    Blackhole blackhole;
+
+    @Override
+    public void put(Object tuple)
+    {
+      blackhole.consume(tuple);
+    }
+
+    @Override
+    public int getCount(boolean reset)
+    {
+      return 0;
+    }
+  }
+
+  private static PortContext portContext()
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, PojoEvent.class);
+    return new PortContext(attributes, null);
+  }
+
+  @Setup
+  public void setup()
+  {
+    records = new byte[lines][];
+    for (int i = 0; i < lines; i++) {
+      records[i] = (i + "|User_" + i + "|" + i * 10).getBytes();
+    }
+    sink = new BlackholeSink();
+
+    csvParser = new CsvParser();
+    csvParser.setSchema(SCHEMA);
+    csvParser.out.setup(portContext());
+    csvParser.setup(null);
+    csvParser.out.setSink(sink);
+
+    byteParser = new DelimitedByteParser();
+    byteParser.setSchema(SCHEMA);
+    byteParser.setReuseTuple(reuseTuple);
+    byteParser.out.setup(portContext());
+    byteParser.setup(null);
+    byteParser.out.setSink(sink);
+  }
+
+  @Benchmark
+  public void csvParser(Blackhole blackhole)
+  {
+    sink.blackhole = blackhole;
+    for (byte[] record : records) {
+      csvParser.in.process(record);
+    }
+  }
+
+  @Benchmark
+  public void delimitedByteParser(Blackhole blackhole)
+  {
+    sink.blackhole = blackhole;
+    for (byte[] record : records) {
+      byteParser.in.process(record);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException
+  {
+    Options options = new OptionsBuilder()
+        .include(DelimitedByteParserBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
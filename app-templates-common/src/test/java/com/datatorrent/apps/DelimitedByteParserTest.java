@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Test the byte level number and boolean decoding of {@link DelimitedByteParser}
+ * and the splitting of records into fields.
+ */
+public class DelimitedByteParserTest
+{
+  private static long parseLong(String s)
+  {
+    byte[] b = ("|" + s + "|").getBytes();
+    return DelimitedByteParser.parseLong(b, 1, b.length - 1);
+  }
+
+  private static double parseDouble(String s)
+  {
+    byte[] b = s.getBytes();
+    return DelimitedByteParser.parseDouble(b, 0, b.length);
+  }
+
+  @Test
+  public void testParseLong()
+  {
+    Assert.assertEquals(0, parseLong("0"));
+    Assert.assertEquals(1000, parseLong("1000"));
+    Assert.assertEquals(-42, parseLong("-42"));
+    Assert.assertEquals(42, parseLong("+42"));
+    Assert.assertEquals(Long.MAX_VALUE, parseLong(String.valueOf(Long.MAX_VALUE)));
+    Assert.assertEquals(Long.MIN_VALUE, parseLong(String.valueOf(Long.MIN_VALUE)));
+    for (String invalid : new String[] {"", "-", "12a", "9223372036854775808", " 1"}) {
+      try {
+        parseLong(invalid);
+        Assert.fail("Expected NumberFormatException for " + invalid);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testIntOverflow()
+  {
+    byte[] b = "2147483648".getBytes();
+    DelimitedByteParser.parseInt(b, 0, b.length);
+  }
+
+  @Test
+  public void testParseDouble()
+  {
+    for (String value : new String[] {"0", "1.5", "-0.25", "123456.789", "0.1", "3.14159265358979", "1e10",
+        "12345678901234567890.5", ".5"}) {
+      Assert.assertEquals(value, Double.parseDouble(value), parseDouble(value), 0);
+    }
+  }
+
+  @Test
+  public void testParseBoolean()
+  {
+    for (String value : new String[] {"true", "TRUE", "t", "Y", "yes", "1"}) {
+      byte[] b = value.getBytes();
+      Assert.assertTrue(value, DelimitedByteParser.parseBoolean(b, 0, b.length));
+    }
+    for (String value : new String[] {"false", "False", "f", "n", "NO", "0"}) {
+      byte[] b = value.getBytes();
+      Assert.assertFalse(value, DelimitedByteParser.parseBoolean(b, 0, b.length));
+    }
+  }
+
+  private static final String SCHEMA = "{\"separator\": \"|\", \"quoteChar\": \"\\\"\", \"fields\": ["
+      + "{\"name\": \"accountNumber\", \"type\": \"Integer\"}, {\"name\": \"name\", \"type\": \"String\"}, "
+      + "{\"name\": \"amount\", \"type\": \"Integer\"}]}";
+
+  private CollectorTestSink<Object> parsed;
+  private CollectorTestSink<Object> errors;
+
+  private DelimitedByteParser parser()
+  {
+    DelimitedByteParser parser = new DelimitedByteParser();
+    parser.setSchema(SCHEMA);
+    parser.out.setup(JdbcTestHelper.portContext());
+    parser.setup(null);
+    parsed = new CollectorTestSink<>();
+    errors = new CollectorTestSink<>();
+    parser.out.setSink(parsed);
+    parser.err.setSink(errors);
+    return parser;
+  }
+
+  /**
+   * Parses the record and returns the fields of the event or the error.
+   */
+  private String parse(DelimitedByteParser parser, String record)
+  {
+    parsed.clear();
+    errors.clear();
+    parser.in.process(record.getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(record, 1, parsed.collectedTuples.size() + errors.collectedTuples.size());
+    if (!errors.collectedTuples.isEmpty()) {
+      @SuppressWarnings("unchecked")
+      KeyValPair<String, String> error = (KeyValPair<String, String>)errors.collectedTuples.get(0);
+      Assert.assertEquals(record, error.getKey());
+      return "error: " + error.getValue();
+    }
+    PojoEvent event = (PojoEvent)parsed.collectedTuples.get(0);
+    return Arrays.asList(event.getAccountNumber(), event.getName(), event.getAmount()).toString();
+  }
+
+  @Test
+  public void testFields()
+  {
+    DelimitedByteParser parser = parser();
+    Assert.assertEquals("[1, User_1, 1000]", parse(parser, "1|User_1|1000"));
+    Assert.assertEquals("[-2, null, 0]", parse(parser, "-2||"));
+    Assert.assertEquals("[3, caf\u00e9 \u20ac, 30]", parse(parser, "3|caf\u00e9 \u20ac|30"));
+    Assert.assertEquals("[4, a|b, 40]", parse(parser, "4|\"a|b\"|40"));
+    Assert.assertEquals("[5, say \"hi\", 50]", parse(parser, "5|\"say \"\"hi\"\"\"|50"));
+    Assert.assertEquals("[6, null, 60]", parse(parser, "6|\"\"|60"));
+    Assert.assertEquals("[7, two\nlines, 70]", parse(parser, "\"7\"|\"two\nlines\"|\"70\""));
+  }
+
+  @Test
+  public void testLineDelimiters()
+  {
+    DelimitedByteParser parser = parser();
+    Assert.assertEquals("[1, a, 10]", parse(parser, "1|a|10\r\n"));
+    Assert.assertEquals("[2, b, 20]", parse(parser, "2|b|20\n"));
+    Assert.assertEquals("[3, c, 30]", parse(parser, "3|c|30\r"));
+    Assert.assertEquals("[4, d\r, 40]", parse(parser, "4|\"d\r\"|40\r\n"));
+    Assert.assertEquals("[5, e, 0]", parse(parser, "5|e|\r\n"));
+  }
+
+  @Test
+  public void testErrors()
+  {
+    DelimitedByteParser parser = parser();
+    Assert.assertEquals("error: Expected 3 fields, found 2", parse(parser, "1|a"));
+    Assert.assertEquals("error: Expected 3 fields, found 1", parse(parser, "1"));
+    Assert.assertEquals("error: Expected 3 fields, found more", parse(parser, "1|a|10|x"));
+    Assert.assertEquals("error: Expected 3 fields, found more", parse(parser, "1|a|10|"));
+    Assert.assertEquals("error: Unterminated quoted value in field 2", parse(parser, "1|\"a|10"));
+    Assert.assertEquals("error: Unexpected character after quoted value in field 2", parse(parser, "1|\"a\"b|10"));
+    Assert.assertTrue(parse(parser, "x|a|10").startsWith("error: Invalid number"));
+
+    // the parser goes on after an error
+    Assert.assertEquals("[2, b, 20]", parse(parser, "2|b|20"));
+  }
+}
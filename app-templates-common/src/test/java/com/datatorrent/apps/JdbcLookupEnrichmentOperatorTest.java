@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Test the cache, the batched lookups and the preloaded table of
+ * {@link JdbcLookupEnrichmentOperator} with an HSQLDB reference table.
+ */
+public class JdbcLookupEnrichmentOperatorTest
+{
+  private static final String URL = "jdbc:hsqldb:mem:lookup_%s";
+  private static final String TABLE_NAME = "accounts";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private JdbcLookupEnrichmentOperator operator(String url, CollectorTestSink<Object> sink, boolean preload)
+  {
+    JdbcLookupEnrichmentOperator operator = new JdbcLookupEnrichmentOperator();
+    operator.setStore(JdbcTestHelper.store(url));
+    operator.setTableName(TABLE_NAME);
+    operator.setKeyColumn("ACCOUNT_NO");
+    operator.setKeyExpression("accountNumber");
+    operator.setFieldInfos(Arrays.asList(new FieldInfo("NAME", "name", FieldInfo.SupportType.STRING),
+        new FieldInfo("AMOUNT", "amount", FieldInfo.SupportType.INTEGER)));
+    operator.setCacheTtlSeconds(1);
+    operator.setMaxLookupKeys(3);
+    operator.setPreload(preload);
+    operator.output.setSink(sink);
+    operator.input.setup(JdbcTestHelper.portContext());
+    return operator;
+  }
+
+  private void setup(JdbcLookupEnrichmentOperator operator)
+  {
+    operator.setup(JdbcTestHelper.operatorContext(1, folder.getRoot().getPath()));
+  }
+
+  private static PojoEvent key(int accountNumber)
+  {
+    PojoEvent event = new PojoEvent();
+    event.setAccountNumber(accountNumber);
+    return event;
+  }
+
+  private static List<String> tuples(CollectorTestSink<Object> sink)
+  {
+    List<String> tuples = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      PojoEvent event = (PojoEvent)tuple;
+      tuples.add(event.getAccountNumber() + ":" + event.getName() + ":" + event.getAmount());
+    }
+    return tuples;
+  }
+
+  private static void rename(Connection connection, int accountNumber, String name) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("UPDATE " + TABLE_NAME + " SET NAME = '" + name + "' WHERE ACCOUNT_NO = " + accountNumber);
+    }
+  }
+
+  @Test
+  public void testBatchedLookup() throws Exception
+  {
+    String url = String.format(URL, "batched");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 1, 10);
+
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      JdbcLookupEnrichmentOperator operator = operator(url, sink, false);
+      setup(operator);
+      operator.beginWindow(1);
+      // two full lookups of three keys and one of a single key, which fills the unused parameters
+      for (int accountNumber : new int[] {1, 2, 1, 3, 4, 99, 5, 2, 6}) {
+        operator.input.process(key(accountNumber));
+      }
+      Assert.assertTrue("tuples wait for their lookup", sink.collectedTuples.isEmpty());
+      operator.endWindow();
+      Assert.assertEquals(Arrays.asList("1:User_1:10", "2:User_2:20", "1:User_1:10", "3:User_3:30", "4:User_4:40",
+          "99:null:0", "5:User_5:50", "2:User_2:20", "6:User_6:60"), tuples(sink));
+      operator.teardown();
+    }
+  }
+
+  @Test
+  public void testCache() throws Exception
+  {
+    String url = String.format(URL, "cache");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 1, 10);
+
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      JdbcLookupEnrichmentOperator operator = operator(url, sink, false);
+      operator.setMaxCacheSize(3);
+      setup(operator);
+      operator.beginWindow(1);
+      operator.input.process(key(1));
+      operator.input.process(key(99));
+      operator.endWindow();
+
+      // cached rows, and cached missing keys, are used without a lookup
+      rename(connection, 1, "Renamed_1");
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 99, 1);
+      sink.clear();
+      operator.beginWindow(2);
+      operator.input.process(key(1));
+      operator.input.process(key(99));
+      Assert.assertEquals(Arrays.asList("1:User_1:10", "99:null:0"), tuples(sink));
+      operator.endWindow();
+
+      // the least recently used key is evicted beyond maxCacheSize
+      sink.clear();
+      operator.beginWindow(3);
+      operator.input.process(key(2));
+      operator.input.process(key(3));
+      operator.endWindow();
+      sink.clear();
+      operator.beginWindow(4);
+      operator.input.process(key(99));
+      operator.input.process(key(1));
+      Assert.assertEquals(Arrays.asList("99:null:0"), tuples(sink));
+      operator.endWindow();
+      Assert.assertEquals(Arrays.asList("99:null:0", "1:Renamed_1:10"), tuples(sink));
+
+      // expired rows are looked up again
+      Thread.sleep(1100);
+      sink.clear();
+      operator.beginWindow(5);
+      operator.input.process(key(99));
+      Assert.assertTrue(sink.collectedTuples.isEmpty());
+      operator.endWindow();
+      Assert.assertEquals(Arrays.asList("99:User_99:990"), tuples(sink));
+      operator.teardown();
+    }
+  }
+
+  @Test
+  public void testPreload() throws Exception
+  {
+    String url = String.format(URL, "preload");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 1, 1000);
+
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      JdbcLookupEnrichmentOperator operator = operator(url, sink, true);
+      setup(operator);
+      operator.beginWindow(1);
+      operator.input.process(key(1));
+      operator.input.process(key(1000));
+      operator.input.process(key(1001));
+      Assert.assertEquals(Arrays.asList("1:User_1:10", "1000:User_1000:10000", "1001:null:0"), tuples(sink));
+      operator.endWindow();
+
+      // reloaded in the background once the table is older than the TTL
+      rename(connection, 1, "Renamed_1");
+      long deadline = System.currentTimeMillis() + 10000;
+      long windowId = 2;
+      do {
+        Assert.assertTrue("table not reloaded", System.currentTimeMillis() < deadline);
+        Thread.sleep(100);
+        sink.clear();
+        operator.beginWindow(windowId++);
+        operator.input.process(key(1));
+        operator.endWindow();
+      } while (tuples(sink).equals(Arrays.asList("1:User_1:10")));
+      Assert.assertEquals(Arrays.asList("1:Renamed_1:10"), tuples(sink));
+      operator.teardown();
+    }
+  }
+
+  @Test
+  public void testPreloadKeyType() throws Exception
+  {
+    String url = String.format(URL, "key_type");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcLookupEnrichmentOperator operator = operator(url, new CollectorTestSink<>(), true);
+      operator.setKeyExpression("name");
+      try {
+        setup(operator);
+        Assert.fail("a string key was accepted for preload");
+      } catch (IllegalArgumentException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("java.lang.String"));
+      }
+    }
+  }
+}
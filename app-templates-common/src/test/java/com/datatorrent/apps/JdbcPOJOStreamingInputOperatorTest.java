@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Partitioner.Partition;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Test that {@link JdbcPOJOStreamingInputOperator} reads the key ranges of its
+ * partitions, replays windows up to their saved keys and polls for new rows
+ * once the table has been read.
+ */
+public class JdbcPOJOStreamingInputOperatorTest
+{
+  private static final String URL = "jdbc:hsqldb:mem:streaming_";
+  private static final String TABLE_NAME = JdbcTestHelper.TABLE_NAME;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static JdbcPOJOStreamingInputOperator operator(String url)
+  {
+    JdbcPOJOStreamingInputOperator operator = new JdbcPOJOStreamingInputOperator();
+    operator.setStore(JdbcTestHelper.store(url));
+    operator.setTableName(TABLE_NAME);
+    operator.setKey("ACCOUNT_NO");
+    operator.setFieldInfos(new ArrayList<FieldInfo>(JdbcTestHelper.fieldInfos()));
+    operator.setBatchSize(10);
+    operator.setPollInterval(10);
+    return operator;
+  }
+
+  private void start(JdbcPOJOStreamingInputOperator operator, CollectorTestSink<Object> sink, int id)
+  {
+    operator.outputPort.setSink(sink);
+    operator.outputPort.setup(JdbcTestHelper.portContext());
+    operator.setup(JdbcTestHelper.operatorContext(id, folder.getRoot().getPath()));
+    operator.activate(null);
+  }
+
+  private static void stop(JdbcPOJOStreamingInputOperator operator)
+  {
+    operator.deactivate();
+    operator.teardown();
+  }
+
+  /**
+   * Runs a window which emits at least the given number of rows, waiting for
+   * the reader thread, and returns the account numbers of its rows.
+   */
+  private static List<Integer> window(JdbcPOJOStreamingInputOperator operator, CollectorTestSink<Object> sink,
+      long windowId, int rows) throws InterruptedException
+  {
+    sink.clear();
+    operator.beginWindow(windowId);
+    long deadline = System.currentTimeMillis() + 10000;
+    do {
+      Assert.assertTrue("window " + windowId + " timed out", System.currentTimeMillis() < deadline);
+      int emitted = sink.collectedTuples.size();
+      operator.emitTuples();
+      if (sink.collectedTuples.size() == emitted) {
+        Thread.sleep(1);
+      }
+    } while (sink.collectedTuples.size() < rows);
+    operator.endWindow();
+    List<Integer> accountNumbers = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      accountNumbers.add(((PojoEvent)tuple).getAccountNumber());
+    }
+    return accountNumbers;
+  }
+
+  @Test
+  public void testRanges() throws Exception
+  {
+    String url = URL + "ranges";
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 1, 100);
+
+      JdbcPOJOStreamingInputOperator operator = operator(url);
+      operator.setPartitionCount(3);
+      Collection<Partition<JdbcPOJOStreamingInputOperator>> partitions = operator.definePartitions(
+          Collections.<Partition<JdbcPOJOStreamingInputOperator>>singletonList(new DefaultPartition<>(operator)),
+          null);
+      Assert.assertEquals(3, partitions.size());
+      Iterator<Partition<JdbcPOJOStreamingInputOperator>> iterator = partitions.iterator();
+      JdbcPOJOStreamingInputOperator first = iterator.next().getPartitionedInstance();
+      JdbcPOJOStreamingInputOperator second = iterator.next().getPartitionedInstance();
+      JdbcPOJOStreamingInputOperator last = iterator.next().getPartitionedInstance();
+      CollectorTestSink<Object> firstSink = new CollectorTestSink<>();
+      CollectorTestSink<Object> secondSink = new CollectorTestSink<>();
+      CollectorTestSink<Object> lastSink = new CollectorTestSink<>();
+      start(first, firstSink, 1);
+      start(second, secondSink, 2);
+      start(last, lastSink, 3);
+
+      // keys 1 to 100 in ranges of 34
+      Assert.assertEquals(JdbcTestHelper.range(1, 34), window(first, firstSink, 1, 34));
+      Assert.assertEquals(JdbcTestHelper.range(35, 34), window(second, secondSink, 1, 34));
+      Assert.assertEquals(JdbcTestHelper.range(69, 32), window(last, lastSink, 1, 32));
+
+      // only the partition with the last range polls for new rows
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 101, 2);
+      Assert.assertEquals(JdbcTestHelper.range(101, 2), window(last, lastSink, 2, 2));
+      Assert.assertEquals(Collections.<Integer>emptyList(), window(first, firstSink, 2, 0));
+      Assert.assertEquals(Collections.<Integer>emptyList(), window(second, secondSink, 2, 0));
+
+      stop(first);
+      stop(second);
+      stop(last);
+    }
+  }
+
+  @Test
+  public void testReplay() throws Exception
+  {
+    String url = URL + "replay";
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 1, 100);
+
+      JdbcPOJOStreamingInputOperator operator = operator(url);
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      start(operator, sink, 1);
+      List<Integer> window1 = window(operator, sink, 1, 10);
+      List<Integer> window2 = window(operator, sink, 2, 10);
+      stop(operator);
+
+      // rows after the last key saved are replayed in the window after it
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 101, 10);
+      JdbcPOJOStreamingInputOperator restarted = operator(url);
+      start(restarted, sink, 1);
+      Assert.assertEquals(window1, window(restarted, sink, 1, 0));
+      Assert.assertEquals(window2, window(restarted, sink, 2, 0));
+
+      List<Integer> accountNumbers = new ArrayList<>(window1);
+      accountNumbers.addAll(window2);
+      accountNumbers.addAll(window(restarted, sink, 3, 110 - accountNumbers.size()));
+      Assert.assertEquals(JdbcTestHelper.range(1, 110), accountNumbers);
+      stop(restarted);
+    }
+  }
+
+  @Test
+  public void testBulkReadThenPoll() throws Exception
+  {
+    String url = URL + "poll";
+    try (Connection connection = DriverManager.getConnection(url)) {
+      JdbcTestHelper.createEventTable(connection, TABLE_NAME);
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 1, 50);
+
+      // the reader waits for the operator thread with a small queue
+      JdbcPOJOStreamingInputOperator operator = operator(url);
+      operator.setQueueCapacity(5);
+      operator.setFetchSize(3);
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      start(operator, sink, 1);
+      Assert.assertEquals(JdbcTestHelper.range(1, 50), window(operator, sink, 1, 50));
+      Assert.assertEquals(Collections.<Integer>emptyList(), window(operator, sink, 2, 0));
+
+      JdbcTestHelper.insertEvents(connection, TABLE_NAME, 51, 10);
+      Assert.assertEquals(JdbcTestHelper.range(51, 10), window(operator, sink, 3, 10));
+      stop(operator);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.lib.db.jdbc.JdbcStore;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Test that {@link JdbcPOJOWatermarkPollInputOperator} emits every row of a
+ * watermark value shared by several rows once.
+ */
+public class JdbcPOJOWatermarkPollInputOperatorTest
+{
+  private static final String URL = "jdbc:hsqldb:mem:watermark";
+  private static final String TABLE_NAME = "accounts";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static void insert(Connection connection, int id, String updatedAt) throws Exception
+  {
+    try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + TABLE_NAME + " VALUES (?, ?, ?, ?)")) {
+      stmt.setInt(1, id);
+      stmt.setString(2, "User_" + id);
+      stmt.setInt(3, id * 10);
+      stmt.setTimestamp(4, Timestamp.valueOf(updatedAt));
+      stmt.executeUpdate();
+    }
+  }
+
+  private static List<Integer> poll(JdbcPOJOWatermarkPollInputOperator operator, CollectorTestSink<Object> sink,
+      long windowId)
+  {
+    sink.clear();
+    operator.beginWindow(windowId);
+    operator.emitTuples();
+    operator.endWindow();
+    List<Integer> accountNumbers = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      accountNumbers.add(((PojoEvent)tuple).getAccountNumber());
+    }
+    return accountNumbers;
+  }
+
+  @Test
+  public void testSharedWatermark() throws Exception
+  {
+    try (Connection connection = DriverManager.getConnection(URL)) {
+      try (Statement stmt = connection.createStatement()) {
+        stmt.executeUpdate("CREATE TABLE " + TABLE_NAME
+            + " (ACCOUNT_NO INTEGER NOT NULL, NAME VARCHAR(64), AMOUNT INTEGER, UPDATED_AT TIMESTAMP)");
+      }
+      insert(connection, 1, "2020-01-01 00:00:00");
+      insert(connection, 2, "2020-01-01 00:00:00");
+      insert(connection, 3, "2020-01-01 00:00:00");
+      insert(connection, 4, "2020-01-01 00:00:01");
+      insert(connection, 5, "2020-01-01 00:00:01");
+
+      JdbcStore store = new JdbcStore();
+      store.setDatabaseDriver(JdbcTestHelper.DRIVER);
+      store.setDatabaseUrl(URL);
+      JdbcPOJOWatermarkPollInputOperator operator = new JdbcPOJOWatermarkPollInputOperator();
+      operator.setStore(store);
+      operator.setTableName(TABLE_NAME);
+      operator.setWatermarkColumn("UPDATED_AT");
+      operator.setIdColumn("ACCOUNT_NO");
+      operator.setPollInterval(0);
+      operator.setFieldInfos(Arrays.asList(new FieldInfo("ACCOUNT_NO", "accountNumber", FieldInfo.SupportType.INTEGER),
+          new FieldInfo("NAME", "name", FieldInfo.SupportType.STRING),
+          new FieldInfo("AMOUNT", "amount", FieldInfo.SupportType.INTEGER)));
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      operator.outputPort.setSink(sink);
+      operator.outputPort.setup(JdbcTestHelper.portContext());
+      operator.setup(JdbcTestHelper.operatorContext(1, folder.getRoot().getPath()));
+
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), poll(operator, sink, 1));
+
+      // committed later with the watermark value, and after it
+      insert(connection, 6, "2020-01-01 00:00:01");
+      insert(connection, 7, "2020-01-01 00:00:02");
+      Assert.assertEquals("rows at the watermark are read again and skipped", Arrays.asList(6, 7),
+          poll(operator, sink, 2));
+      Assert.assertEquals(Arrays.asList(), poll(operator, sink, 3));
+
+      operator.teardown();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Test the conversion of column values, in particular of the text forms
+ * logical replication delivers, by {@link JdbcPojoMapper}.
+ */
+public class JdbcPojoMapperTest
+{
+  // 2020-01-01 00:00:00 UTC
+  private static final long NEW_YEAR = 1577836800000L;
+
+  @Test
+  public void testTimestampWithOffset()
+  {
+    Assert.assertEquals(NEW_YEAR, JdbcPojoMapper.FieldSetter.toTimestamp("2020-01-01 00:00:00+00").getTime());
+    Assert.assertEquals(NEW_YEAR, JdbcPojoMapper.FieldSetter.toTimestamp("2020-01-01 05:30:00+05:30").getTime());
+    Assert.assertEquals(NEW_YEAR, JdbcPojoMapper.FieldSetter.toTimestamp("2019-12-31 16:00:00-08").getTime());
+    Assert.assertEquals(NEW_YEAR + 3600000,
+        JdbcPojoMapper.FieldSetter.toTimestamp("2020-01-01 00:59:59-00:00:01").getTime());
+
+    Timestamp timestamp = JdbcPojoMapper.FieldSetter.toTimestamp(" 2020-01-01 01:00:00.123456+01 ");
+    Assert.assertEquals(NEW_YEAR + 123, timestamp.getTime());
+    Assert.assertEquals(123456000, timestamp.getNanos());
+  }
+
+  @Test
+  public void testTimestampWithoutOffset()
+  {
+    Assert.assertEquals(Timestamp.valueOf("2020-01-01 00:00:00"),
+        JdbcPojoMapper.FieldSetter.toTimestamp("2020-01-01 00:00:00"));
+    Assert.assertEquals(Timestamp.valueOf("2020-01-01 00:00:00.5"),
+        JdbcPojoMapper.FieldSetter.convert("2020-01-01 00:00:00.5", Timestamp.class));
+  }
+
+  @Test
+  public void testConvert()
+  {
+    Assert.assertEquals(42, JdbcPojoMapper.FieldSetter.convert("42", Integer.class));
+    Assert.assertEquals(42L, JdbcPojoMapper.FieldSetter.convert(42, Long.class));
+    Assert.assertEquals(true, JdbcPojoMapper.FieldSetter.convert("t", Boolean.class));
+    Assert.assertEquals(false, JdbcPojoMapper.FieldSetter.convert("f", Boolean.class));
+    Assert.assertEquals(Date.valueOf("2020-01-01"), JdbcPojoMapper.FieldSetter.convert("2020-01-01", Date.class));
+    Assert.assertEquals(new java.util.Date(NEW_YEAR),
+        JdbcPojoMapper.FieldSetter.convert("2020-01-01 00:00:00+00", java.util.Date.class));
+    Assert.assertNull(JdbcPojoMapper.FieldSetter.convert(null, Timestamp.class));
+  }
+
+  @Test
+  public void testSet()
+  {
+    JdbcPojoMapper mapper = new JdbcPojoMapper(PojoEvent.class, Arrays.asList(
+        new FieldInfo("ACCOUNT_NO", "accountNumber", FieldInfo.SupportType.INTEGER),
+        new FieldInfo("NAME", "name", FieldInfo.SupportType.STRING),
+        new FieldInfo("AMOUNT", "amount", FieldInfo.SupportType.INTEGER)));
+    Assert.assertEquals(1, mapper.indexOf("name"));
+    PojoEvent event = (PojoEvent)mapper.newTuple();
+    mapper.set(event, mapper.indexOf("account_no"), "7");
+    mapper.set(event, mapper.indexOf("NAME"), 8);
+    mapper.set(event, mapper.indexOf("AMOUNT"), null);
+    Assert.assertEquals(7, event.getAccountNumber());
+    Assert.assertEquals("8", event.getName());
+    Assert.assertEquals(0, event.getAmount());
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.lib.db.jdbc.JdbcFieldInfo;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.util.FieldInfo;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * Tables, stores and contexts for the tests of the JDBC operators with an
+ * in-memory HSQLDB database, with rows of {@link PojoEvent}.
+ */
+final class JdbcTestHelper
+{
+  static final String DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+  static final String TABLE_NAME = "test_event";
+
+  private JdbcTestHelper()
+  {
+  }
+
+  static void createMetaTable(Connection connection) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("CREATE TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE + " ("
+          + JdbcTransactionalStore.DEFAULT_APP_ID_COL + " VARCHAR(100) NOT NULL, "
+          + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL + " INT NOT NULL, "
+          + JdbcTransactionalStore.DEFAULT_WINDOW_COL + " BIGINT NOT NULL, UNIQUE ("
+          + JdbcTransactionalStore.DEFAULT_APP_ID_COL + ", " + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL + ", "
+          + JdbcTransactionalStore.DEFAULT_WINDOW_COL + "))");
+    }
+  }
+
+  static void createEventTable(Connection connection, String table) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("CREATE TABLE " + table + " (ACCOUNT_NO INTEGER NOT NULL, NAME VARCHAR(64), AMOUNT INTEGER)");
+    }
+  }
+
+  static void insertEvents(Connection connection, String table, int first, int count) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      for (int i = first; i < first + count; i++) {
+        stmt.executeUpdate("INSERT INTO " + table + " VALUES (" + i + ", 'User_" + i + "', " + i * 10 + ")");
+      }
+    }
+  }
+
+  static JdbcTransactionalStore store(String url)
+  {
+    JdbcTransactionalStore store = new JdbcTransactionalStore();
+    store.setDatabaseDriver(DRIVER);
+    store.setDatabaseUrl(url);
+    return store;
+  }
+
+  static List<JdbcFieldInfo> fieldInfos()
+  {
+    List<JdbcFieldInfo> fieldInfos = new ArrayList<>();
+    fieldInfos.add(new JdbcFieldInfo("ACCOUNT_NO", "accountNumber", FieldInfo.SupportType.INTEGER, 0));
+    fieldInfos.add(new JdbcFieldInfo("NAME", "name", FieldInfo.SupportType.STRING, 0));
+    fieldInfos.add(new JdbcFieldInfo("AMOUNT", "amount", FieldInfo.SupportType.INTEGER, 0));
+    return fieldInfos;
+  }
+
+  static PojoEvent event(int accountNumber)
+  {
+    PojoEvent event = new PojoEvent();
+    event.setAccountNumber(accountNumber);
+    event.setName("User_" + accountNumber);
+    event.setAmount(accountNumber * 10);
+    return event;
+  }
+
+  static Context.OperatorContext operatorContext(int id, String applicationPath)
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, "test");
+    attributes.put(DAG.APPLICATION_PATH, applicationPath);
+    return OperatorContextTestHelper.mockOperatorContext(id, attributes);
+  }
+
+  static PortContext portContext()
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, PojoEvent.class);
+    return new PortContext(attributes, null);
+  }
+
+  /**
+   * Account numbers of the rows of the table in ascending order, with
+   * duplicates.
+   */
+  static List<Integer> accountNumbers(Connection connection, String table) throws SQLException
+  {
+    List<Integer> accountNumbers = new ArrayList<>();
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT ACCOUNT_NO FROM " + table + " ORDER BY ACCOUNT_NO")) {
+      while (rs.next()) {
+        accountNumbers.add(rs.getInt(1));
+      }
+    }
+    return accountNumbers;
+  }
+
+  static List<Integer> range(int first, int count)
+  {
+    List<Integer> range = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      range.add(i);
+    }
+    return range;
+  }
+}
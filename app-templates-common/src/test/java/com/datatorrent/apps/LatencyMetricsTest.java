@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.datatorrent.api.AutoMetric;
+
+/**
+ * Test how {@link LatencyMetrics.Aggregator} combines the metrics of the
+ * partitions of an operator.
+ */
+public class LatencyMetricsTest
+{
+  private final List<AutoMetric.PhysicalMetricsContext> partitions = new ArrayList<>();
+
+  private void partition(Object... metrics)
+  {
+    Map<String, Object> values = new HashMap<>();
+    for (int i = 0; i < metrics.length; i += 2) {
+      values.put((String)metrics[i], metrics[i + 1]);
+    }
+    AutoMetric.PhysicalMetricsContext context = Mockito.mock(AutoMetric.PhysicalMetricsContext.class);
+    Mockito.when(context.getMetrics()).thenReturn(values);
+    partitions.add(context);
+  }
+
+  private Map<String, Object> aggregate(LatencyMetrics.Aggregator aggregator)
+  {
+    return aggregator.aggregate(1, partitions);
+  }
+
+  @Test
+  public void testIntegralMetrics()
+  {
+    partition("recordsIn", 10L, "bytesIn", 100, "windowLatencyNanos", 5000L);
+    partition("recordsIn", 30L, "bytesIn", 300, "windowLatencyNanos", 2000L);
+    Map<String, Object> result = aggregate(new LatencyMetrics.Aggregator());
+    Assert.assertEquals(40L, result.get("recordsIn"));
+    Assert.assertEquals(400L, result.get("bytesIn"));
+    Assert.assertEquals("the slowest partition", 5000L, result.get("windowLatencyNanos"));
+  }
+
+  @Test
+  public void testWeightedDecimals()
+  {
+    partition("recordsIn", 10L, "hitRate", 1.0);
+    partition("recordsIn", 30L, "hitRate", 0.5f);
+    partition("recordsIn", 0L, "hitRate", 0.0);
+    Assert.assertEquals("weighted by the records of the partitions", 0.625,
+        (Double)aggregate(new LatencyMetrics.Aggregator()).get("hitRate"), 1e-9);
+
+    LatencyMetrics.Aggregator aggregator = new LatencyMetrics.Aggregator();
+    aggregator.setWeightMetric("tuplesEvaluated");
+    partitions.clear();
+    partition("tuplesEvaluated", 100L, "selectivity", 0.2);
+    partition("tuplesEvaluated", 300L, "selectivity", 0.6);
+    Assert.assertEquals(0.5, (Double)aggregate(aggregator).get("selectivity"), 1e-9);
+  }
+
+  @Test
+  public void testUnweightedDecimals()
+  {
+    partition("recordsIn", 0L, "hitRate", 1.0);
+    partition("recordsIn", 0L, "hitRate", 0.5);
+    Assert.assertEquals("no partition has records", 0.75,
+        (Double)aggregate(new LatencyMetrics.Aggregator()).get("hitRate"), 1e-9);
+
+    partitions.clear();
+    partition("hitRate", 1.0);
+    partition("hitRate", 0.0);
+    Assert.assertEquals("no partition reports the weight", 0.5,
+        (Double)aggregate(new LatencyMetrics.Aggregator()).get("hitRate"), 1e-9);
+  }
+
+  @Test
+  public void testPassThrough()
+  {
+    Object first = new Object();
+    Object second = new Object();
+    partition("recordsIn", 1L, "kafkaMetrics", first, "state", null);
+    partition("recordsIn", 2L, "kafkaMetrics", second, "state", "active");
+    Map<String, Object> result = aggregate(new LatencyMetrics.Aggregator());
+    Assert.assertEquals(3L, result.get("recordsIn"));
+    Assert.assertEquals(Arrays.asList(first, second), result.get("kafkaMetrics"));
+    Assert.assertEquals(Arrays.asList(null, "active"), result.get("state"));
+  }
+}
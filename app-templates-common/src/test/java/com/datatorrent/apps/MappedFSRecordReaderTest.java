@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.apex.malhar.lib.fs.FSRecordReader;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import com.datatorrent.lib.io.block.BlockMetadata;
+import com.datatorrent.lib.io.block.ReaderContext;
+
+/**
+ * Test that the lines of a local file are read exactly once by
+ * {@link MappedFSRecordReader}, whatever the block and mapping sizes.
+ */
+public class MappedFSRecordReaderTest
+{
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Reads all blocks of the file with a new context and returns the lines.
+   */
+  private static List<String> read(File file, long blockSize, int windowSize) throws IOException
+  {
+    MappedFSRecordReader.MappedLineReaderContext context = new MappedFSRecordReader.MappedLineReaderContext(
+        new ReaderContext.LineReaderContext<FSDataInputStream>(), windowSize);
+    List<String> lines = new ArrayList<>();
+    long blockId = 0;
+    for (long offset = 0; offset < file.length(); offset += blockSize) {
+      long length = Math.min(blockSize, file.length() - offset);
+      BlockMetadata.FileBlockMetadata block = new BlockMetadata.FileBlockMetadata(file.getPath(), blockId, offset,
+          length, offset + length == file.length(), blockId - 1);
+      blockId++;
+      context.initialize(null, block, false);
+      for (ReaderContext.Entity entity = context.next(); entity != null; entity = context.next()) {
+        if (entity.getRecord() != null) {
+          lines.add(new String(entity.getRecord(), StandardCharsets.UTF_8));
+        }
+      }
+    }
+    context.close();
+    return lines;
+  }
+
+  @Test
+  public void testBlocksAndWindows() throws Exception
+  {
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      longLine.append("long_").append(i);
+    }
+    List<String> expected = Arrays.asList("1,first", "", "2,\u00e9t\u00e9", "3,crlf", longLine.toString(), "4,x",
+        "5,no newline at the end");
+    File file = folder.newFile("lines.csv");
+    FileUtils.writeStringToFile(file, "1,first\n\n2,\u00e9t\u00e9\n3,crlf\r\n" + longLine + "\n4,x\n"
+        + "5,no newline at the end", "UTF-8");
+
+    for (long blockSize : new long[] {1, 2, 7, 8, 13, 64, file.length(), file.length() * 2}) {
+      for (int windowSize : new int[] {1, 8, 17, 1024}) {
+        Assert.assertEquals("block size " + blockSize + ", window size " + windowSize, expected,
+            read(file, blockSize, windowSize));
+      }
+    }
+  }
+
+  @Test
+  public void testConsecutiveFiles() throws Exception
+  {
+    File first = folder.newFile("first.csv");
+    File second = folder.newFile("second.csv");
+    FileUtils.writeStringToFile(first, "a\nb\n", "UTF-8");
+    FileUtils.writeStringToFile(second, "c\nd\n", "UTF-8");
+    MappedFSRecordReader.MappedLineReaderContext context = new MappedFSRecordReader.MappedLineReaderContext(
+        new ReaderContext.LineReaderContext<FSDataInputStream>(), 1024);
+    List<String> lines = new ArrayList<>();
+    long blockId = 0;
+    for (File file : new File[] {first, second, first}) {
+      context.initialize(null, new BlockMetadata.FileBlockMetadata(file.getPath(), blockId++, 0, file.length(), true,
+          -1), false);
+      for (ReaderContext.Entity entity = context.next(); entity != null; entity = context.next()) {
+        lines.add(new String(entity.getRecord(), StandardCharsets.UTF_8));
+      }
+    }
+    context.close();
+    Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "a", "b"), lines);
+  }
+
+  @Test
+  public void testModule()
+  {
+    MappedFSRecordReaderModule module = new MappedFSRecordReaderModule();
+    Assert.assertFalse(module.createRecordReader() instanceof MappedFSRecordReader);
+
+    module.setMemoryMapped(true);
+    module.setMapWindowSize(4096);
+    FSRecordReader recordReader = module.createRecordReader();
+    Assert.assertTrue(recordReader instanceof MappedFSRecordReader);
+    Assert.assertEquals(4096, ((MappedFSRecordReader)recordReader).getMapWindowSize());
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Test lookups and reloads of {@link MappedReferenceIndex} with a file on the
+ * local file system.
+ */
+public class MappedReferenceIndexTest
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static String find(MappedReferenceIndex index, String key)
+  {
+    byte[] bytes = key.getBytes(UTF8);
+    long record = index.find(bytes, bytes.length);
+    if (record < 0) {
+      return null;
+    }
+    ByteBuffer buffer = index.buffer(record);
+    byte[] line = new byte[index.lineLength(record)];
+    for (int i = 0; i < line.length; i++) {
+      line[i] = buffer.get(MappedReferenceIndex.lineStart(record) + i);
+    }
+    return new String(line, UTF8);
+  }
+
+  @Test
+  public void testFind() throws Exception
+  {
+    File file = folder.newFile("accounts.csv");
+    StringBuilder content = new StringBuilder("tier,account_no,region\r\n");
+    for (int i = 0; i < 1000; i++) {
+      content.append(i % 3 == 0 ? "gold" : "silver").append(',').append(i).append(",r").append(i % 7).append('\n');
+    }
+    content.append("\n").append("platinum,1,duplicate\n").append("bronze\n");
+    FileUtils.write(file, content.toString());
+
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    MappedReferenceIndex index = MappedReferenceIndex.build(fs, new Path(file.getPath()), folder.getRoot(),
+        (byte)',', "ACCOUNT_NO");
+    Assert.assertArrayEquals(new String[] {"tier", "account_no", "region"}, index.columns);
+    Assert.assertEquals(1002, index.records);
+    Assert.assertEquals("gold,0,r0", find(index, "0"));
+    Assert.assertEquals("silver,998,r4", find(index, "998"));
+    Assert.assertEquals("the first row of a key wins", "silver,1,r1", find(index, "1"));
+    Assert.assertNull(find(index, "1000"));
+    Assert.assertNull(find(index, "gold"));
+  }
+
+  @Test
+  public void testShared() throws Exception
+  {
+    File file = folder.newFile("regions.csv");
+    FileUtils.write(file, "code|name\nEU|Europe\n");
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    Path path = new Path(file.getPath());
+
+    MappedReferenceIndex.Shared first = MappedReferenceIndex.acquire(fs, path, folder.getRoot(), (byte)'|', "code",
+        60000);
+    MappedReferenceIndex.Shared second = MappedReferenceIndex.acquire(fs, path, folder.getRoot(), (byte)'|', "code",
+        60000);
+    Assert.assertSame(first, second);
+    Assert.assertEquals("EU|Europe", find(first.current(), "EU"));
+
+    // a changed file is indexed again, the old index stays readable
+    MappedReferenceIndex old = first.current();
+    FileUtils.write(file, "code|name\nEU|European Union\nUS|United States\n");
+    Assert.assertTrue(file.setLastModified(old.modificationTime + 10000));
+    first.run();
+    Assert.assertEquals("EU|European Union", find(first.current(), "EU"));
+    Assert.assertEquals("EU|Europe", find(old, "EU"));
+
+    first.release();
+    second.release();
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Test the binary layout and partition hash of {@link PojoStreamCodec}.
+ */
+public class PojoStreamCodecTest
+{
+  private static PojoEvent event(int accountNumber, String name, int amount)
+  {
+    PojoEvent event = new PojoEvent();
+    event.setAccountNumber(accountNumber);
+    event.setName(name);
+    event.setAmount(amount);
+    return event;
+  }
+
+  @Test
+  public void testRoundTrip()
+  {
+    PojoStreamCodec codec = new PojoStreamCodec(PojoEvent.class);
+    for (PojoEvent event : new PojoEvent[] {event(1, "User_1", 1000), event(-7, null, Integer.MIN_VALUE),
+        event(3, "", 0), event(4, "Zo\u00eb \u20ac \ud83d\ude00", 5)}) {
+      Slice slice = codec.toByteArray(event);
+      Assert.assertEquals(event.toString(), codec.fromByteArray(slice).toString());
+    }
+  }
+
+  @Test
+  public void testLayout()
+  {
+    // accountNumber, amount, name: two ints, null marker, length and bytes
+    Slice slice = new PojoStreamCodec(PojoEvent.class).toByteArray(event(1, "abc", 2));
+    Assert.assertEquals(4 + 4 + 1 + 4 + 3, slice.length);
+  }
+
+  @Test
+  public void testPartition()
+  {
+    PojoStreamCodec codec = new PojoStreamCodec(PojoEvent.class, "accountNumber");
+    Assert.assertEquals(codec.getPartition(event(42, "a", 1)), codec.getPartition(event(42, "b", 2)));
+    Assert.assertEquals(new PojoStreamCodec(PojoEvent.class, "accountNumber").getPartition(event(42, "c", 3)),
+        codec.getPartition(event(42, "d", 4)));
+
+    PojoStreamCodec allFields = new PojoStreamCodec(PojoEvent.class);
+    Assert.assertEquals(allFields.getPartition(event(42, "a", 1)), allFields.getPartition(event(42, "a", 1)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownKeyField()
+  {
+    new PojoStreamCodec(PojoEvent.class, "account").getPartition(event(1, "a", 1));
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.db.jdbc.JdbcStore;
+
+/**
+ * Test connection reuse, statement caching and reset on return of
+ * {@link PooledJdbcDriver} with an in-memory HSQLDB database.
+ */
+public class PooledJdbcDriverTest
+{
+  private static JdbcStore store(String database)
+  {
+    JdbcStore store = new JdbcStore();
+    store.setDatabaseDriver(PooledJdbcDriver.class.getName());
+    store.setDatabaseUrl(PooledJdbcDriver.URL_PREFIX + "hsqldb:mem:" + database);
+    store.setConnectionProperties("pool.driver:org.hsqldb.jdbcDriver,pool.maxSize:2");
+    return store;
+  }
+
+  @Test
+  public void testReuse() throws Exception
+  {
+    JdbcStore store = store("reuse");
+    store.connect();
+    JdbcConnectionPool pool = ((JdbcConnectionPool.Pooled)store.getConnection()).getPool();
+    try (Statement statement = store.getConnection().createStatement()) {
+      statement.execute("CREATE TABLE t (id INTEGER)");
+    }
+    PreparedStatement insert = store.getConnection().prepareStatement("INSERT INTO t VALUES (?)");
+    insert.setInt(1, 1);
+    insert.executeUpdate();
+    insert.close();
+    store.disconnect();
+
+    // a redeployed operator gets the same connection and statement back
+    store = store("reuse");
+    store.connect();
+    Assert.assertSame(pool, ((JdbcConnectionPool.Pooled)store.getConnection()).getPool());
+    Assert.assertEquals(1, pool.getOpen());
+    insert = store.getConnection().prepareStatement("INSERT INTO t VALUES (?)");
+    Assert.assertEquals(1, pool.getStatementCacheHits());
+    insert.setInt(1, 2);
+    insert.executeUpdate();
+
+    // uncommitted work is rolled back when the connection is returned
+    store.getConnection().setAutoCommit(false);
+    insert.setInt(1, 3);
+    insert.executeUpdate();
+    store.disconnect();
+
+    store.connect();
+    Assert.assertTrue(store.getConnection().getAutoCommit());
+    try (Statement statement = store.getConnection().createStatement();
+        ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM t")) {
+      result.next();
+      Assert.assertEquals(2, result.getInt(1));
+    }
+    store.disconnect();
+    Assert.assertEquals(3, pool.getBorrowed());
+  }
+
+  @Test
+  public void testStatementInUse() throws Exception
+  {
+    JdbcStore store = store("inuse");
+    store.connect();
+    JdbcConnectionPool pool = ((JdbcConnectionPool.Pooled)store.getConnection()).getPool();
+    Connection connection = store.getConnection();
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE t (id INTEGER)");
+    }
+    String sql = "SELECT COUNT(*) FROM t WHERE id > ?";
+    PreparedStatement first = connection.prepareStatement(sql);
+    PreparedStatement second = connection.prepareStatement(sql);
+    Assert.assertEquals("the cached statement is in use", 2, pool.getStatementCacheMisses());
+
+    // both are usable at the same time
+    first.setInt(1, 0);
+    second.setInt(1, 1);
+    try (ResultSet result = first.executeQuery()) {
+      second.executeQuery().close();
+      Assert.assertTrue(result.next());
+    }
+    second.close();
+    Assert.assertTrue(second.isClosed());
+
+    first.close();
+    Assert.assertTrue(first.isClosed());
+    try {
+      first.executeQuery();
+      Assert.fail("closed statement used");
+    } catch (SQLException e) {
+      // expected
+    }
+    PreparedStatement third = connection.prepareStatement(sql);
+    Assert.assertEquals(1, pool.getStatementCacheHits());
+    Assert.assertFalse(third.isClosed());
+
+    // statements not closed by the borrower are taken back with the connection
+    store.disconnect();
+    Assert.assertTrue(third.isClosed());
+    store.connect();
+    store.getConnection().prepareStatement(sql).close();
+    Assert.assertEquals(2, pool.getStatementCacheHits());
+    store.disconnect();
+  }
+
+  @Test
+  public void testClosedConnection() throws Exception
+  {
+    JdbcStore store = store("closed");
+    store.connect();
+    Connection connection = store.getConnection();
+    store.disconnect();
+    Assert.assertTrue(connection.isClosed());
+    try {
+      connection.createStatement();
+      Assert.fail("closed connection used");
+    } catch (SQLException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+
+/**
+ * Test that {@link ShardedJdbcPOJOInsertOutputOperator} replays a window per
+ * shard after only some shards committed it, with the store on one of the
+ * shards.
+ */
+public class ShardedJdbcPOJOInsertOutputOperatorTest
+{
+  private static final String SHARD_A = "jdbc:hsqldb:mem:shard_a;hsqldb.tx=mvcc";
+  private static final String SHARD_B = "jdbc:hsqldb:mem:shard_b;hsqldb.tx=mvcc";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ShardedJdbcPOJOInsertOutputOperator operator()
+  {
+    ShardedJdbcPOJOInsertOutputOperator operator = new ShardedJdbcPOJOInsertOutputOperator();
+    operator.setStore(JdbcTestHelper.store(SHARD_A));
+    operator.setShardUrls(SHARD_A + "," + SHARD_B);
+    operator.setShardKeyExpression("accountNumber");
+    operator.setTablename(JdbcTestHelper.TABLE_NAME);
+    operator.setFieldInfos(JdbcTestHelper.fieldInfos());
+    operator.setBatchSize(3);
+    Context.OperatorContext context = JdbcTestHelper.operatorContext(1, folder.getRoot().getPath());
+    operator.setup(context);
+    operator.input.setup(JdbcTestHelper.portContext());
+    operator.activate(context);
+    return operator;
+  }
+
+  private static void window(ShardedJdbcPOJOInsertOutputOperator operator, long windowId, int first, int count)
+  {
+    operator.beginWindow(windowId);
+    for (int i = first; i < first + count; i++) {
+      operator.input.process(JdbcTestHelper.event(i));
+    }
+    operator.endWindow();
+  }
+
+  @Test
+  public void testReplayPerShard() throws Exception
+  {
+    try (Connection a = DriverManager.getConnection(SHARD_A);
+        Connection b = DriverManager.getConnection(SHARD_B);
+        Statement stmt = b.createStatement()) {
+      for (Connection connection : new Connection[] {a, b}) {
+        JdbcTestHelper.createMetaTable(connection);
+        JdbcTestHelper.createEventTable(connection, JdbcTestHelper.TABLE_NAME);
+      }
+      // shard b, the second of operator 1, fails to commit window 2 after shard a committed it
+      stmt.executeUpdate("ALTER TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE
+          + " ADD CONSTRAINT fail_shard CHECK (dt_operator_id <> -66 OR dt_window < 2)");
+
+      ShardedJdbcPOJOInsertOutputOperator operator = operator();
+      window(operator, 1, 0, 20);
+      try {
+        window(operator, 2, 20, 20);
+        Assert.fail("commit of shard b did not fail");
+      } catch (RuntimeException e) {
+        // expected
+      }
+      operator.teardown();
+      stmt.executeUpdate("ALTER TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE + " DROP CONSTRAINT fail_shard");
+
+      List<Integer> rowsA = JdbcTestHelper.accountNumbers(a, JdbcTestHelper.TABLE_NAME);
+      Assert.assertTrue("shard a committed window 2", rowsA.size() > 0 && Collections.max(rowsA) >= 20);
+
+      operator = operator();
+      window(operator, 1, 0, 20);
+      window(operator, 2, 20, 20);
+      operator.teardown();
+
+      List<Integer> rows = new ArrayList<>(JdbcTestHelper.accountNumbers(a, JdbcTestHelper.TABLE_NAME));
+      List<Integer> rowsB = JdbcTestHelper.accountNumbers(b, JdbcTestHelper.TABLE_NAME);
+      Assert.assertFalse("both shards have rows", rowsB.isEmpty() || rows.isEmpty());
+      rows.addAll(rowsB);
+      Collections.sort(rows);
+      Assert.assertEquals(JdbcTestHelper.range(0, 40), rows);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.apps.PojoEvent;
+import com.datatorrent.contrib.parser.CsvParser;
+
+/**
+ * Throughput of CsvParser parsing delimited records into PojoEvent tuples,
+ * for different row widths. Scores are tuples per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvParserBenchmark
+{
+  @Param({"16", "128", "1024"})
+  public int nameWidth;
+
+  private byte[][] records;
+  private CsvParser parser;
+  private Workloads.BlackholeSink sink;
+  private long windowId;
+
+  @Setup
+  public void setup()
+  {
+    records = Workloads.records(Workloads.WINDOW_TUPLES, nameWidth);
+    parser = new CsvParser();
+    parser.setSchema(Workloads.SCHEMA);
+    parser.out.setup(Workloads.portContext());
+    parser.setup(Workloads.operatorContext(1, System.getProperty("java.io.tmpdir")));
+    sink = new Workloads.BlackholeSink();
+    parser.out.setSink(sink);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void parse(Blackhole blackhole)
+  {
+    sink.blackhole = blackhole;
+    parser.beginWindow(++windowId);
+    for (byte[] record : records) {
+      parser.in.process(record);
+    }
+    parser.endWindow();
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator;
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.BytesFileOutputOperator;
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.StringFileOutputOperator;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Throughput of the file writers of the templates writing lines to the local
+ * file system, for String and byte[] tuples and different row widths. Scores
+ * are lines per second.
+ * <p>
+ * Every window ends with a flush of the output file, as in the templates. A
+ * new output directory is used for every iteration and deleted after it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileOutputBenchmark
+{
+  @Param({"string", "bytes"})
+  public String writer;
+
+  @Param({"16", "128", "1024"})
+  public int nameWidth;
+
+  private String[] lines;
+  private byte[][] records;
+  private File outputDir;
+  private StringFileOutputOperator stringOutput;
+  private BytesFileOutputOperator bytesOutput;
+  private GenericFileOutputOperator<?> output;
+  private long windowId;
+
+  @Setup(Level.Trial)
+  public void createWorkload()
+  {
+    lines = Workloads.lines(Workloads.WINDOW_TUPLES, nameWidth);
+    records = Workloads.records(Workloads.WINDOW_TUPLES, nameWidth);
+  }
+
+  @Setup(Level.Iteration)
+  public void setup() throws IOException
+  {
+    outputDir = Files.createTempDirectory("file-output-benchmark").toFile();
+    if ("string".equals(writer)) {
+      stringOutput = new StringFileOutputOperator();
+      output = stringOutput;
+    } else {
+      bytesOutput = new BytesFileOutputOperator();
+      output = bytesOutput;
+    }
+    output.setFilePath(outputDir.getAbsolutePath());
+    output.setOutputFileName("output.txt");
+    output.setMaxLength(Long.MAX_VALUE);
+    output.setup(Workloads.operatorContext(1, outputDir.getAbsolutePath()));
+  }
+
+  @TearDown(Level.Iteration)
+  public void teardown() throws IOException
+  {
+    output.teardown();
+    FileUtils.deleteDirectory(outputDir);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void write()
+  {
+    output.beginWindow(++windowId);
+    if (stringOutput != null) {
+      for (String line : lines) {
+        stringOutput.input.process(line);
+      }
+    } else {
+      for (byte[] record : records) {
+        bytesOutput.input.process(record);
+      }
+    }
+    output.endWindow();
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.apps.PojoEvent;
+import com.datatorrent.lib.filter.FilterOperator;
+
+/**
+ * Throughput of the Malhar FilterOperator evaluating the condition syntax of
+ * the templates on PojoEvent tuples, for different selectivities. Scores are
+ * tuples per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilterOperatorBenchmark
+{
+  @Param({"0.1", "0.5", "0.9"})
+  public double selectivity;
+
+  private PojoEvent[] events;
+  private FilterOperator filter;
+  private Workloads.BlackholeSink sink;
+  private long windowId;
+
+  @Setup
+  public void setup()
+  {
+    events = Workloads.events(Workloads.WINDOW_TUPLES, 16);
+    filter = new FilterOperator();
+    filter.setCondition(Workloads.condition(selectivity));
+    filter.input.setup(Workloads.portContext());
+    filter.setup(Workloads.operatorContext(1, System.getProperty("java.io.tmpdir")));
+    sink = new Workloads.BlackholeSink();
+    filter.truePort.setSink(sink);
+    filter.falsePort.setSink(sink);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void filter(Blackhole blackhole)
+  {
+    sink.blackhole = blackhole;
+    filter.beginWindow(++windowId);
+    for (PojoEvent event : events) {
+      filter.input.process(event);
+    }
+    filter.endWindow();
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datatorrent.apps.PojoEvent;
+import com.datatorrent.lib.db.jdbc.JdbcFieldInfo;
+import com.datatorrent.lib.db.jdbc.JdbcPOJOInsertOutputOperator;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Throughput of JdbcPOJOInsertOutputOperator binding PojoEvent tuples to
+ * batched inserts and committing them once per window, for different batch
+ * sizes and row widths. Scores are tuples per second.
+ * <p>
+ * The database is an in-memory HSQLDB, so the scores show the cost of the
+ * operator, the JDBC binding and the transaction handling rather than of a
+ * database server. The table is emptied before every iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JdbcOutputBenchmark
+{
+  private static final String TABLE_NAME = "test_event_output_table";
+
+  @Param({"100", "1000"})
+  public int batchSize;
+
+  @Param({"16", "128"})
+  public int nameWidth;
+
+  private String url;
+  private Connection connection;
+  private PojoEvent[] events;
+  private JdbcPOJOInsertOutputOperator output;
+  private long windowId;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException
+  {
+    url = "jdbc:hsqldb:mem:benchmark" + System.nanoTime();
+    connection = DriverManager.getConnection(url);
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("CREATE TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE + " ("
+          + JdbcTransactionalStore.DEFAULT_APP_ID_COL + " VARCHAR(100) NOT NULL, "
+          + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL + " INT NOT NULL, "
+          + JdbcTransactionalStore.DEFAULT_WINDOW_COL + " BIGINT NOT NULL, UNIQUE ("
+          + JdbcTransactionalStore.DEFAULT_APP_ID_COL + ", " + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL + ", "
+          + JdbcTransactionalStore.DEFAULT_WINDOW_COL + "))");
+      stmt.executeUpdate("CREATE TABLE " + TABLE_NAME
+          + " (ACCOUNT_NO INTEGER NOT NULL, NAME VARCHAR(2048), AMOUNT INTEGER)");
+    }
+
+    events = Workloads.events(Workloads.WINDOW_TUPLES, nameWidth);
+
+    JdbcTransactionalStore store = new JdbcTransactionalStore();
+    store.setDatabaseDriver("org.hsqldb.jdbc.JDBCDriver");
+    store.setDatabaseUrl(url);
+
+    List<JdbcFieldInfo> fieldInfos = new ArrayList<>();
+    fieldInfos.add(new JdbcFieldInfo("ACCOUNT_NO", "accountNumber", FieldInfo.SupportType.INTEGER, 0));
+    fieldInfos.add(new JdbcFieldInfo("NAME", "name", FieldInfo.SupportType.STRING, 0));
+    fieldInfos.add(new JdbcFieldInfo("AMOUNT", "amount", FieldInfo.SupportType.INTEGER, 0));
+
+    output = new JdbcPOJOInsertOutputOperator();
+    output.setStore(store);
+    output.setTablename(TABLE_NAME);
+    output.setBatchSize(batchSize);
+    output.setFieldInfos(fieldInfos);
+    output.input.setup(Workloads.portContext());
+    output.setup(Workloads.operatorContext(1, System.getProperty("java.io.tmpdir")));
+  }
+
+  @Setup(Level.Iteration)
+  public void truncate() throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("TRUNCATE TABLE " + TABLE_NAME);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws SQLException
+  {
+    output.teardown();
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute("SHUTDOWN");
+    }
+    connection.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void insert()
+  {
+    output.beginWindow(++windowId);
+    for (PojoEvent event : events) {
+      output.input.process(event);
+    }
+    output.endWindow();
+  }
+}
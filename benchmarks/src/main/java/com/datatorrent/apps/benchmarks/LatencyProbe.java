@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps.benchmarks;
+
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Counts the tuples of a stream and records the end-to-end latency of the
+ * events sampled by {@link LoadGeneratorOperator}.
+ * <p>
+ * The emission time is read from the <code>@&lt;nanos&gt;</code> marker which
+ * the generator puts in the name of sampled events. Records as
+ * <code>byte[]</code> and strings are scanned for the marker, for other
+ * tuples the field given by <code>markerField</code> is read. The latency is
+ * only meaningful when the probe runs in the JVM of the generator, as in
+ * local mode.
+ */
+public class LatencyProbe extends BaseOperator
+{
+  @NotNull
+  private String markerField = "name";
+
+  private transient Class<?> getterClass;
+  private transient PojoUtils.Getter<Object, String> getter;
+
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void process(Object tuple)
+    {
+      SoakMetrics.addReceived(1);
+      long emitted = emittedNanos(tuple);
+      if (emitted > 0) {
+        SoakMetrics.recordLatency(System.nanoTime() - emitted);
+      }
+    }
+  };
+
+  private long emittedNanos(Object tuple)
+  {
+    if (tuple instanceof byte[]) {
+      byte[] b = (byte[])tuple;
+      for (int i = 0; i < b.length; i++) {
+        if (b[i] == '@') {
+          long nanos = 0;
+          for (int j = i + 1; j < b.length && b[j] >= '0' && b[j] <= '9'; j++) {
+            nanos = nanos * 10 + (b[j] - '0');
+          }
+          return nanos;
+        }
+      }
+      return 0;
+    }
+    if (tuple instanceof CharSequence) {
+      return emittedNanos((CharSequence)tuple);
+    }
+    if (tuple.getClass() != getterClass) {
+      getterClass = tuple.getClass();
+      getter = PojoUtils.createGetter(getterClass, markerField, String.class);
+    }
+    String value = getter.get(tuple);
+    return value == null ? 0 : emittedNanos(value);
+  }
+
+  private static long emittedNanos(CharSequence s)
+  {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) == '@') {
+        long nanos = 0;
+        for (int j = i + 1; j < s.length() && s.charAt(j) >= '0' && s.charAt(j) <= '9'; j++) {
+          nanos = nanos * 10 + (s.charAt(j) - '0');
+        }
+        return nanos;
+      }
+    }
+    return 0;
+  }
+
+  public String getMarkerField()
+  {
+    return markerField;
+  }
+
+  /**
+   * Field of POJO tuples which carries the emission time marker, default is
+   * name.
+   */
+  public void setMarkerField(String markerField)
+  {
+    this.markerField = markerField;
+  }
+}
@@ -0,0 +1,374 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps.benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Input operator which generates synthetic events at a target rate, in place
+ * of the input operator of a template for soak tests.
+ * <p>
+ * Events have the <code>accountNumber|name|amount</code> layout of the
+ * template test data. Account numbers are drawn from <code>keyCount</code>
+ * keys with a uniform or a Zipf distribution, names are
+ * <code>User_&lt;accountNumber&gt;</code> padded to <code>nameLength</code>
+ * characters and amounts are uniform below <code>maxAmount</code>. Events are
+ * emitted as delimited records on <code>records</code>, as POJOs of the
+ * TUPLE_CLASS of <code>pojos</code>, or both.
+ * <p>
+ * Every <code>latencySampleInterval</code>-th event carries the
+ * {@link System#nanoTime()} of its emission in its name, as
+ * <code>@&lt;nanos&gt;</code> after the user name, from which
+ * {@link LatencyProbe} computes the end-to-end latency when the operators run
+ * in the same JVM. Checkpointing is not replayed: after a restart the
+ * generator continues with new events.
+ */
+public class LoadGeneratorOperator extends BaseOperator implements InputOperator
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  public enum Distribution
+  {
+    UNIFORM, ZIPF
+  }
+
+  @Min(0)
+  private long rate = 10000;
+
+  @Min(0)
+  private long maxTuples;
+
+  @Min(1)
+  private int keyCount = 100000;
+
+  @NotNull
+  private Distribution distribution = Distribution.UNIFORM;
+
+  private double zipfExponent = 1.0;
+
+  @Min(1)
+  private int nameLength = 16;
+
+  @Min(1)
+  private int maxAmount = 10000;
+
+  private char separator = '|';
+
+  @Min(1)
+  private int latencySampleInterval = 100;
+
+  @Min(1)
+  private int maxBatchSize = 1000;
+
+  private long seed = 1;
+
+  @AutoMetric
+  private long tuplesEmitted;
+
+  private transient Random random;
+  private transient double[] zipfCumulative;
+  private transient long startNanos;
+  private transient long sequence;
+  private transient Class<?> tupleClass;
+  private transient PojoUtils.SetterInt<Object> accountNumberSetter;
+  private transient PojoUtils.Setter<Object, String> nameSetter;
+  private transient PojoUtils.SetterInt<Object> amountSetter;
+  private final transient StringBuilder name = new StringBuilder();
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<byte[]> records = new DefaultOutputPort<>();
+
+  @OutputPortFieldAnnotation(optional = true, schemaRequired = true)
+  public final transient DefaultOutputPort<Object> pojos = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+  };
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    random = new Random(seed + context.getId());
+    if (distribution == Distribution.ZIPF) {
+      zipfCumulative = zipfCumulative(keyCount, zipfExponent);
+    }
+    if (tupleClass != null) {
+      accountNumberSetter = PojoUtils.createSetterInt(tupleClass, "accountNumber");
+      nameSetter = PojoUtils.createSetter(tupleClass, "name", String.class);
+      amountSetter = PojoUtils.createSetterInt(tupleClass, "amount");
+    }
+    startNanos = 0;
+    sequence = 0;
+  }
+
+  /**
+   * Cumulative probabilities of the ranks 1 to n when the probability of rank
+   * k is proportional to 1 / k^s.
+   */
+  static double[] zipfCumulative(int n, double s)
+  {
+    double[] cumulative = new double[n];
+    double sum = 0;
+    for (int k = 0; k < n; k++) {
+      sum += 1 / Math.pow(k + 1, s);
+      cumulative[k] = sum;
+    }
+    for (int k = 0; k < n; k++) {
+      cumulative[k] /= sum;
+    }
+    return cumulative;
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    tuplesEmitted = 0;
+  }
+
+  @Override
+  public void emitTuples()
+  {
+    long now = System.nanoTime();
+    if (startNanos == 0) {
+      startNanos = now;
+    }
+    long count = maxBatchSize;
+    if (rate > 0) {
+      long due = (long)((now - startNanos) / 1e9 * rate) - sequence;
+      count = Math.min(count, due);
+    }
+    if (maxTuples > 0) {
+      count = Math.min(count, maxTuples - sequence);
+    }
+    for (long i = 0; i < count; i++) {
+      emitEvent();
+    }
+  }
+
+  private void emitEvent()
+  {
+    int key = nextKey();
+    int amount = random.nextInt(maxAmount);
+    name.setLength(0);
+    name.append("User_").append(key);
+    if (sequence % latencySampleInterval == 0) {
+      name.append('@').append(System.nanoTime());
+    }
+    while (name.length() < nameLength) {
+      name.append('x');
+    }
+    if (records.isConnected()) {
+      String record = String.valueOf(key) + separator + name + separator + amount;
+      records.emit(record.getBytes(UTF8));
+    }
+    if (pojos.isConnected()) {
+      Object pojo = newTuple();
+      accountNumberSetter.set(pojo, key);
+      nameSetter.set(pojo, name.toString());
+      amountSetter.set(pojo, amount);
+      pojos.emit(pojo);
+    }
+    sequence++;
+    tuplesEmitted++;
+    SoakMetrics.addEmitted(1);
+  }
+
+  private int nextKey()
+  {
+    if (zipfCumulative == null) {
+      return random.nextInt(keyCount);
+    }
+    int index = Arrays.binarySearch(zipfCumulative, random.nextDouble());
+    return index < 0 ? Math.min(-index - 1, keyCount - 1) : index;
+  }
+
+  private Object newTuple()
+  {
+    try {
+      return tupleClass.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Cannot create tuple of " + tupleClass, e);
+    }
+  }
+
+  public long getRate()
+  {
+    return rate;
+  }
+
+  /**
+   * Target rate in events per second for each partition, 0 emits as fast as
+   * the downstream operators accept. Default is 10000.
+   */
+  public void setRate(long rate)
+  {
+    this.rate = rate;
+  }
+
+  public long getMaxTuples()
+  {
+    return maxTuples;
+  }
+
+  /**
+   * Number of events after which the generator stops, 0 for no limit.
+   */
+  public void setMaxTuples(long maxTuples)
+  {
+    this.maxTuples = maxTuples;
+  }
+
+  public int getKeyCount()
+  {
+    return keyCount;
+  }
+
+  /**
+   * Number of distinct account numbers, default is 100000.
+   */
+  public void setKeyCount(int keyCount)
+  {
+    this.keyCount = keyCount;
+  }
+
+  public Distribution getDistribution()
+  {
+    return distribution;
+  }
+
+  /**
+   * Distribution of the account numbers, UNIFORM or ZIPF. With ZIPF account
+   * number 0 is the most frequent.
+   */
+  public void setDistribution(Distribution distribution)
+  {
+    this.distribution = distribution;
+  }
+
+  public double getZipfExponent()
+  {
+    return zipfExponent;
+  }
+
+  /**
+   * Exponent of the Zipf distribution, default is 1.0. Larger values
+   * concentrate the events on fewer keys.
+   */
+  public void setZipfExponent(double zipfExponent)
+  {
+    this.zipfExponent = zipfExponent;
+  }
+
+  public int getNameLength()
+  {
+    return nameLength;
+  }
+
+  /**
+   * Minimum length of the name field, default is 16.
+   */
+  public void setNameLength(int nameLength)
+  {
+    this.nameLength = nameLength;
+  }
+
+  public int getMaxAmount()
+  {
+    return maxAmount;
+  }
+
+  /**
+   * Amounts are drawn uniformly from 0 to maxAmount - 1, default is 10000.
+   */
+  public void setMaxAmount(int maxAmount)
+  {
+    this.maxAmount = maxAmount;
+  }
+
+  public char getSeparator()
+  {
+    return separator;
+  }
+
+  /**
+   * Field separator of the records, default is '|'.
+   */
+  public void setSeparator(char separator)
+  {
+    this.separator = separator;
+  }
+
+  public int getLatencySampleInterval()
+  {
+    return latencySampleInterval;
+  }
+
+  /**
+   * Every n-th event carries its emission time, default is 100.
+   */
+  public void setLatencySampleInterval(int latencySampleInterval)
+  {
+    this.latencySampleInterval = latencySampleInterval;
+  }
+
+  public int getMaxBatchSize()
+  {
+    return maxBatchSize;
+  }
+
+  /**
+   * Maximum number of events emitted by one call of emitTuples, default is
+   * 1000.
+   */
+  public void setMaxBatchSize(int maxBatchSize)
+  {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * Seed of the random generator, combined with the operator id so that
+   * partitions generate different events.
+   */
+  public void setSeed(long seed)
+  {
+    this.seed = seed;
+  }
+}
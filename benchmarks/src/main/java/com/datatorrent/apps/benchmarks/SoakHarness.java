@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.LocalMode;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.StreamingApplication;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+
+/**
+ * Runs a template in local mode with its input operator replaced by a
+ * {@link LoadGeneratorOperator} and reports sustained throughput, end-to-end
+ * latency percentiles and the heap and GC profile of the run.
+ * <p>
+ * The application is populated and configured as usual, then the operator or
+ * module named by <code>inputOperator</code>, such as <code>kafkaInput</code>,
+ * <code>recordReader</code> or <code>JdbcPoller</code>, is removed and the
+ * streams it fed are connected to the generator: to its <code>records</code>
+ * port, or to its <code>pojos</code> port when a tuple class is set. A
+ * {@link LatencyProbe} is added as a sink of the stream named by
+ * <code>probeStream</code>, so throughput and latency are measured up to the
+ * input of the operators of that stream. Counters and latencies of the warm up
+ * period are discarded.
+ */
+public class SoakHarness
+{
+  private static final Logger LOG = LoggerFactory.getLogger(SoakHarness.class);
+
+  private static final long SAMPLE_MILLIS = 100;
+
+  private final StreamingApplication application;
+  private final Configuration conf;
+  private final String inputOperator;
+  private final String probeStream;
+  private final LoadGeneratorOperator generator = new LoadGeneratorOperator();
+  private Class<?> tupleClass;
+  private long warmupMillis = TimeUnit.SECONDS.toMillis(10);
+  private long durationMillis = TimeUnit.SECONDS.toMillis(60);
+
+  public SoakHarness(StreamingApplication application, Configuration conf, String inputOperator, String probeStream)
+  {
+    this.application = application;
+    this.conf = conf;
+    this.inputOperator = inputOperator;
+    this.probeStream = probeStream;
+  }
+
+  /**
+   * Returns the generator to configure rate, key distribution and record
+   * layout before the run.
+   */
+  public LoadGeneratorOperator getGenerator()
+  {
+    return generator;
+  }
+
+  /**
+   * Makes the generator emit POJOs of the given class instead of records, for
+   * templates whose input operator emits POJOs.
+   */
+  public void setTupleClass(Class<?> tupleClass)
+  {
+    this.tupleClass = tupleClass;
+  }
+
+  public void setWarmupMillis(long warmupMillis)
+  {
+    this.warmupMillis = warmupMillis;
+  }
+
+  public void setDurationMillis(long durationMillis)
+  {
+    this.durationMillis = durationMillis;
+  }
+
+  public Result run() throws Exception
+  {
+    SoakMetrics.reset();
+    LocalMode lma = LocalMode.newInstance();
+    lma.prepareDAG(application, conf);
+    LogicalPlan dag = (LogicalPlan)lma.getDAG();
+    replaceInput(dag);
+    LatencyProbe probe = dag.addOperator("latencyProbe", new LatencyProbe());
+    LogicalPlan.StreamMeta stream = dag.getStream(probeStream);
+    if (stream == null) {
+      throw new IllegalArgumentException("No stream " + probeStream + " in " + dag.getAllOperators());
+    }
+    stream.addSink(probe.input);
+
+    LocalMode.Controller lc = lma.getController();
+    lc.runAsync();
+    try {
+      Thread.sleep(warmupMillis);
+      MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+      memory.gc();
+      long gcCount = gcCount();
+      long gcMillis = gcMillis();
+      long emitted = SoakMetrics.getEmitted();
+      long received = SoakMetrics.getReceived();
+      SoakMetrics.reset();
+      long start = System.nanoTime();
+      long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+      long peakHeap = 0;
+      long heapSum = 0;
+      int samples = 0;
+      while (System.nanoTime() < end) {
+        Thread.sleep(SAMPLE_MILLIS);
+        long heap = memory.getHeapMemoryUsage().getUsed();
+        peakHeap = Math.max(peakHeap, heap);
+        heapSum += heap;
+        samples++;
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      Result result = new Result(SoakMetrics.getEmitted(), SoakMetrics.getReceived(), seconds,
+          SoakMetrics.getLatency(), peakHeap, samples == 0 ? 0 : heapSum / samples, gcCount() - gcCount,
+          gcMillis() - gcMillis);
+      LOG.info("warm up emitted {} received {} tuples", emitted, received);
+      LOG.info("{}", result);
+      return result;
+    } finally {
+      lc.shutdown();
+    }
+  }
+
+  /**
+   * Removes the input operator, or the operators of the input module, and
+   * connects the sinks of its outgoing streams to the generator.
+   */
+  private void replaceInput(LogicalPlan dag)
+  {
+    List<LogicalPlan.OperatorMeta> removed = new ArrayList<>();
+    for (LogicalPlan.OperatorMeta om : dag.getAllOperators()) {
+      // operators of a module are named <module>$<operator>
+      if (om.getName().equals(inputOperator) || om.getName().startsWith(inputOperator + "$")) {
+        removed.add(om);
+      }
+    }
+    if (removed.isEmpty()) {
+      throw new IllegalArgumentException("No operator " + inputOperator + " in " + dag.getAllOperators());
+    }
+
+    dag.addOperator("loadGenerator", generator);
+    Operator.OutputPort<?> source = generator.records;
+    if (tupleClass != null) {
+      dag.setOutputPortAttribute(generator.pojos, Context.PortContext.TUPLE_CLASS, tupleClass);
+      source = generator.pojos;
+    }
+
+    for (LogicalPlan.OperatorMeta om : removed) {
+      for (LogicalPlan.StreamMeta stream : new ArrayList<>(om.getOutputStreams().values())) {
+        List<Operator.InputPort<?>> sinks = new ArrayList<>();
+        for (LogicalPlan.InputPortMeta sink : stream.getSinks()) {
+          if (!removed.contains(sink.getOperatorWrapper())) {
+            sinks.add(sink.getPortObject());
+          }
+        }
+        String id = stream.getName();
+        DAG.Locality locality = stream.getLocality();
+        stream.remove();
+        if (!sinks.isEmpty()) {
+          LogicalPlan.StreamMeta replacement = dag.addStream(id, source);
+          for (Operator.InputPort<?> sink : sinks) {
+            replacement.addSink(sink);
+          }
+          replacement.setLocality(locality);
+        }
+      }
+    }
+    for (LogicalPlan.OperatorMeta om : removed) {
+      dag.removeOperator(om.getOperator());
+    }
+  }
+
+  private static long gcCount()
+  {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis()
+  {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  /**
+   * Measurements of a soak run after the warm up period.
+   */
+  public static class Result
+  {
+    private final long emitted;
+    private final long received;
+    private final double seconds;
+    private final Histogram latency;
+    private final long peakHeapBytes;
+    private final long averageHeapBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    Result(long emitted, long received, double seconds, Histogram latency, long peakHeapBytes,
+        long averageHeapBytes, long gcCount, long gcMillis)
+    {
+      this.emitted = emitted;
+      this.received = received;
+      this.seconds = seconds;
+      this.latency = latency;
+      this.peakHeapBytes = peakHeapBytes;
+      this.averageHeapBytes = averageHeapBytes;
+      this.gcCount = gcCount;
+      this.gcMillis = gcMillis;
+    }
+
+    public long getEmitted()
+    {
+      return emitted;
+    }
+
+    public long getReceived()
+    {
+      return received;
+    }
+
+    /**
+     * Tuples per second which reached the probed stream.
+     */
+    public double getThroughput()
+    {
+      return received / seconds;
+    }
+
+    public double getLatencyMillis(double percentile)
+    {
+      return latency.getTotalCount() == 0 ? 0 : latency.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    public double getMaxLatencyMillis()
+    {
+      return latency.getTotalCount() == 0 ? 0 : latency.getMaxValue() / 1e6;
+    }
+
+    public long getPeakHeapBytes()
+    {
+      return peakHeapBytes;
+    }
+
+    public long getAverageHeapBytes()
+    {
+      return averageHeapBytes;
+    }
+
+    public long getGcCount()
+    {
+      return gcCount;
+    }
+
+    /**
+     * Fraction of the run spent in garbage collection.
+     */
+    public double getGcRatio()
+    {
+      return gcMillis / (seconds * 1000);
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format("%.1fs emitted %d received %d throughput %.0f tuples/s, latency ms p50 %.2f p99 %.2f "
+          + "p99.9 %.2f max %.2f (%d samples), heap MB peak %d average %d, gc %d collections %d ms (%.1f%%)",
+          seconds, emitted, received, getThroughput(), getLatencyMillis(50), getLatencyMillis(99),
+          getLatencyMillis(99.9), getMaxLatencyMillis(), latency.getTotalCount(), peakHeapBytes >> 20,
+          averageHeapBytes >> 20, gcCount, gcMillis, getGcRatio() * 100);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Counters and latency histogram shared by {@link LoadGeneratorOperator},
+ * {@link LatencyProbe} and {@link SoakHarness}.
+ * <p>
+ * The operators of a local mode application are copies deserialized in the
+ * containers, so the harness cannot read their fields; they report to this
+ * JVM wide registry instead. Only one soak run at a time is supported.
+ */
+final class SoakMetrics
+{
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  private static final AtomicLong emitted = new AtomicLong();
+  private static final AtomicLong received = new AtomicLong();
+  private static final Histogram latency = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+
+  private SoakMetrics()
+  {
+  }
+
+  static void addEmitted(long count)
+  {
+    emitted.addAndGet(count);
+  }
+
+  static void addReceived(long count)
+  {
+    received.addAndGet(count);
+  }
+
+  static void recordLatency(long nanos)
+  {
+    synchronized (latency) {
+      latency.recordValue(Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+    }
+  }
+
+  static long getEmitted()
+  {
+    return emitted.get();
+  }
+
+  static long getReceived()
+  {
+    return received.get();
+  }
+
+  /**
+   * Returns a copy of the latencies recorded since the last reset.
+   */
+  static Histogram getLatency()
+  {
+    synchronized (latency) {
+      return latency.copy();
+    }
+  }
+
+  static void reset()
+  {
+    emitted.set(0);
+    received.set(0);
+    synchronized (latency) {
+      latency.reset();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.apps.PojoEvent;
+import com.datatorrent.apps.PojoStreamCodec;
+import com.datatorrent.lib.codec.KryoSerializableStreamCodec;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Throughput of serializing and deserializing PojoEvent tuples with
+ * PojoStreamCodec and with the Kryo codec, for different row widths. Scores
+ * are tuples per second; the <code>bytes</code> counter of the serialize
+ * benchmark divided by its score is the serialized size per tuple.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamCodecBenchmark
+{
+  @Param({"kryo", "pojo"})
+  public String codec;
+
+  @Param({"16", "128", "1024"})
+  public int nameWidth;
+
+  private PojoEvent[] events;
+  private Slice[] slices;
+  private StreamCodec<Object> streamCodec;
+
+  /**
+   * Serialized bytes, reported next to the score.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Bytes
+  {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset()
+    {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setup()
+  {
+    events = Workloads.events(Workloads.WINDOW_TUPLES, nameWidth);
+    if ("pojo".equals(codec)) {
+      streamCodec = new PojoStreamCodec(PojoEvent.class, "accountNumber");
+    } else {
+      streamCodec = new KryoSerializableStreamCodec<>();
+    }
+    slices = new Slice[events.length];
+    for (int i = 0; i < events.length; i++) {
+      slices[i] = streamCodec.toByteArray(events[i]);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void serialize(Bytes bytes)
+  {
+    for (PojoEvent event : events) {
+      bytes.bytes += streamCodec.toByteArray(event).length;
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void deserialize(Blackhole blackhole)
+  {
+    for (Slice slice : slices) {
+      blackhole.consume(streamCodec.fromByteArray(slice));
+    }
+  }
+}
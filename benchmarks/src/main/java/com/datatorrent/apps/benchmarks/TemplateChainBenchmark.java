@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.contrib.formatter.CsvFormatter;
+import com.datatorrent.contrib.parser.CsvParser;
+import com.datatorrent.lib.filter.FilterOperator;
+
+/**
+ * Throughput of the processing chains of the templates, with the operators
+ * connected as thread local streams. Scores are input records per second.
+ * <p>
+ * The chains start with the records as read from Kafka or HDFS and end with
+ * the formatted lines, before the file writer. The writers and the JDBC
+ * output are measured by {@link FileOutputBenchmark} and
+ * {@link JdbcOutputBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TemplateChainBenchmark
+{
+  private static final Context.OperatorContext CONTEXT =
+      Workloads.operatorContext(1, System.getProperty("java.io.tmpdir"));
+
+  /**
+   * HDFS-line-copy: csvParser -> formatter
+   */
+  @State(Scope.Thread)
+  public static class LineCopy
+  {
+    @Param({"16", "128", "1024"})
+    public int nameWidth;
+
+    byte[][] records;
+    CsvParser parser;
+    CsvFormatter formatter;
+    Workloads.BlackholeSink sink;
+    long windowId;
+
+    @Setup
+    public void setup()
+    {
+      records = Workloads.records(Workloads.WINDOW_TUPLES, nameWidth);
+      parser = parser();
+      formatter = formatter();
+      sink = new Workloads.BlackholeSink();
+      Workloads.connect(parser.out, formatter.in);
+      formatter.out.setSink(sink);
+    }
+  }
+
+  /**
+   * Kafka-to-HDFS-Filter: csvParser -> filter -> formatter
+   */
+  @State(Scope.Thread)
+  public static class Filter
+  {
+    @Param({"16", "128"})
+    public int nameWidth;
+
+    @Param({"0.1", "0.9"})
+    public double selectivity;
+
+    byte[][] records;
+    CsvParser parser;
+    FilterOperator filter;
+    CsvFormatter formatter;
+    Workloads.BlackholeSink sink;
+    long windowId;
+
+    @Setup
+    public void setup()
+    {
+      records = Workloads.records(Workloads.WINDOW_TUPLES, nameWidth);
+      parser = parser();
+      filter = new FilterOperator();
+      filter.setCondition(Workloads.condition(selectivity));
+      filter.input.setup(Workloads.portContext());
+      filter.setup(CONTEXT);
+      formatter = formatter();
+      sink = new Workloads.BlackholeSink();
+      Workloads.connect(parser.out, filter.input);
+      Workloads.connect(filter.truePort, formatter.in);
+      formatter.out.setSink(sink);
+    }
+  }
+
+  private static CsvParser parser()
+  {
+    CsvParser parser = new CsvParser();
+    parser.setSchema(Workloads.SCHEMA);
+    parser.out.setup(Workloads.portContext());
+    parser.setup(CONTEXT);
+    return parser;
+  }
+
+  private static CsvFormatter formatter()
+  {
+    CsvFormatter formatter = new CsvFormatter();
+    formatter.setSchema(Workloads.FORMATTER_SCHEMA);
+    formatter.in.setup(Workloads.portContext());
+    formatter.setup(CONTEXT);
+    return formatter;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void lineCopy(LineCopy chain, Blackhole blackhole)
+  {
+    chain.sink.blackhole = blackhole;
+    long window = ++chain.windowId;
+    chain.parser.beginWindow(window);
+    chain.formatter.beginWindow(window);
+    for (byte[] record : chain.records) {
+      chain.parser.in.process(record);
+    }
+    chain.parser.endWindow();
+    chain.formatter.endWindow();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Workloads.WINDOW_TUPLES)
+  public void filter(Filter chain, Blackhole blackhole)
+  {
+    chain.sink.blackhole = blackhole;
+    long window = ++chain.windowId;
+    chain.parser.beginWindow(window);
+    chain.filter.beginWindow(window);
+    chain.formatter.beginWindow(window);
+    for (byte[] record : chain.records) {
+      chain.parser.in.process(record);
+    }
+    chain.parser.endWindow();
+    chain.filter.endWindow();
+    chain.formatter.endWindow();
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Sink;
+import com.datatorrent.apps.PojoEvent;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * Synthetic PojoEvent workloads and helpers to drive operators outside of a
+ * container.
+ * <p>
+ * Records have the <code>accountNumber|name|amount</code> layout of the
+ * template test data. The name is padded to <code>nameWidth</code> characters
+ * to vary the row width, and amounts are spread evenly over 0 to 9900 in
+ * steps of 100, so <code>amount &lt; selectivity * 10000</code> selects the
+ * given fraction of the records.
+ */
+final class Workloads
+{
+  /**
+   * Number of tuples processed per benchmark invocation, as one window.
+   */
+  static final int WINDOW_TUPLES = 10000;
+
+  static final String SCHEMA = "{\"separator\": \"|\", \"quoteChar\": \"\\\"\", \"fields\": ["
+      + "{\"name\": \"accountNumber\", \"type\": \"Integer\"}, {\"name\": \"name\", \"type\": \"String\"}, "
+      + "{\"name\": \"amount\", \"type\": \"Integer\"}]}";
+
+  static final String FORMATTER_SCHEMA = "{\"separator\": \"|\", \"quoteChar\": \"\\\"\", "
+      + "\"lineDelimiter\": \"\", \"fields\": ["
+      + "{\"name\": \"accountNumber\", \"type\": \"Integer\"}, {\"name\": \"name\", \"type\": \"String\"}, "
+      + "{\"name\": \"amount\", \"type\": \"Integer\"}]}";
+
+  private Workloads()
+  {
+  }
+
+  static String name(int i, int nameWidth)
+  {
+    StringBuilder name = new StringBuilder(nameWidth).append("User_").append(i);
+    while (name.length() < nameWidth) {
+      name.append('x');
+    }
+    return name.toString();
+  }
+
+  static int amount(int i)
+  {
+    return (i % 100) * 100;
+  }
+
+  static PojoEvent[] events(int count, int nameWidth)
+  {
+    PojoEvent[] events = new PojoEvent[count];
+    for (int i = 0; i < count; i++) {
+      events[i] = new PojoEvent();
+      events[i].setAccountNumber(i);
+      events[i].setName(name(i, nameWidth));
+      events[i].setAmount(amount(i));
+    }
+    return events;
+  }
+
+  static byte[][] records(int count, int nameWidth)
+  {
+    byte[][] records = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      records[i] = line(i, nameWidth).getBytes();
+    }
+    return records;
+  }
+
+  static String[] lines(int count, int nameWidth)
+  {
+    String[] lines = new String[count];
+    for (int i = 0; i < count; i++) {
+      lines[i] = line(i, nameWidth);
+    }
+    return lines;
+  }
+
+  private static String line(int i, int nameWidth)
+  {
+    return i + "|" + name(i, nameWidth) + "|" + amount(i);
+  }
+
+  /**
+   * Filter condition in the syntax of the templates which selects the given
+   * fraction of the events.
+   */
+  static String condition(double selectivity)
+  {
+    return "({$}.getAmount() < " + (int)Math.round(selectivity * 10000) + ")";
+  }
+
+  static PortContext portContext()
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, PojoEvent.class);
+    return new PortContext(attributes, null);
+  }
+
+  static Context.OperatorContext operatorContext(int id, String applicationPath)
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, "benchmark");
+    attributes.put(DAG.APPLICATION_PATH, applicationPath);
+    return OperatorContextTestHelper.mockOperatorContext(id, attributes);
+  }
+
+  /**
+   * Delivers the tuples emitted on the output port to the input port, as a
+   * thread local stream would.
+   */
+  @SuppressWarnings("unchecked")
+  static void connect(DefaultOutputPort<?> out, DefaultInputPort<?> in)
+  {
+    out.setSink((Sink<Object>)in);
+  }
+
+  /**
+   * Hands the emitted tuples to a JMH blackhole, so that producing them cannot
+   * be optimized away.
+   */
+  static class BlackholeSink implements Sink<Object>
+  {
+    Blackhole blackhole;
+    int count;
+
+    @Override
+    public void put(Object tuple)
+    {
+      count++;
+      blackhole.consume(tuple);
+    }
+
+    @Override
+    public int getCount(boolean reset)
+    {
+      int c = count;
+      if (reset) {
+        count = 0;
+      }
+      return c;
+    }
+  }
+}
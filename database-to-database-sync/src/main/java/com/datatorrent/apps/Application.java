@@ -42,15 +42,50 @@ import com.datatorrent.lib.util.FieldInfo;
 @ApplicationAnnotation(name="Database-to-Database-Sync")
 public class Application implements StreamingApplication
 {
+  /**
+   * Set to true to copy the rows with INSERT ... SELECT statements within the
+   * database, or to auto to do so when JdbcInput and JdbcOutput have the same
+   * database URL.
+   */
+  public static final String PUSHDOWN_PROPERTY = "database-to-database-sync.pushdown";
 
   @Override
   public void populateDAG(DAG dag, Configuration conf)
   {
+    /*
+     * When both tables are in the same database the rows do not have to be
+     * read into POJOs and written back: in pushdown mode JdbcOutput copies
+     * them with INSERT ... SELECT range statements, per key range and window.
+     * It takes the table, key, where condition, partition count and poll
+     * interval of JdbcInput; transformations are SQL expressions in its
+     * selectExpression property instead of operators.
+     */
+    String pushdown = conf.get(PUSHDOWN_PROPERTY, "false");
+    if (pushdown.equals("true") || (pushdown.equals("auto") && isSameDatabase(conf))) {
+      JdbcInsertSelectOperator insertSelect = dag.addOperator("JdbcOutput", new JdbcInsertSelectOperator());
+      insertSelect.setStore(new JdbcTransactionalStore());
+      insertSelect.setInputTable(conf.get("dt.operator.JdbcInput.prop.tableName"));
+      insertSelect.setKey(conf.get("dt.operator.JdbcInput.prop.key"));
+      insertSelect.setWhereCondition(conf.get("dt.operator.JdbcInput.prop.whereCondition"));
+      insertSelect.setPartitionCount(conf.getInt("dt.operator.JdbcInput.prop.partitionCount", 1));
+      insertSelect.setPollInterval(conf.getInt("dt.operator.JdbcInput.prop.pollInterval", 1000));
+      setPushdownColumns(insertSelect);
+      return;
+    }
+
     /*
      * Jdbc Input and Output operators.
      */
     JdbcPOJOPollInputOperator jdbcInputOperator = dag.addOperator("JdbcInput", new JdbcPOJOPollInputOperator());
-    JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput", new JdbcPOJOInsertOutputOperator());
+    JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput",
+        new InstrumentedJdbcPOJOInsertOutputOperator());
+
+    /*
+     * JdbcOutput reports records, latency percentiles and the commit latency
+     * per window as auto metrics. Partitions are combined by summing the
+     * counts and taking the maximum latency.
+     */
+    dag.setAttribute(jdbcOutputOperator, Context.OperatorContext.METRICS_AGGREGATOR, new LatencyMetrics.Aggregator());
 
     /*
      * Custom field mapping(DB ColumnName -> PojoFieldExpression) provided to JdbcInput Operator.
@@ -62,7 +97,7 @@ public class Application implements StreamingApplication
     /*
      * Custom field mapping(DB ColumnName -> PojoFieldExpression) provided to JdbcOutput Operator.
      */
-    JdbcTransactionalStore outputStore = new JdbcTransactionalStore();
+    JdbcTransactionalStore outputStore = new InstrumentedJdbcPOJOInsertOutputOperator.CommitTimingStore();
     jdbcOutputOperator.setStore(outputStore);
     jdbcOutputOperator.setFieldInfos(addOutputFieldInfos());
 
@@ -72,6 +107,56 @@ public class Application implements StreamingApplication
     dag.addStream("JdbcInput-to-JdbcOutput", jdbcInputOperator.outputPort, jdbcOutputOperator.input);
     dag.setInputPortAttribute(jdbcOutputOperator.input, Context.PortContext.PARTITION_PARALLEL, true);
 
+    /*
+     * JdbcInput issues a range query per batch of rows every pollInterval, which
+     * caps the initial load of a large table at the poll cadence. To stream
+     * the table through a server side cursor at the pace of the DAG instead,
+     * and poll for new rows once it has been read, use
+     * JdbcPOJOStreamingInputOperator. It takes the same properties, see
+     * properties.xml for fetchSize and queueCapacity:
+     *
+     * JdbcPOJOStreamingInputOperator jdbcInputOperator = dag.addOperator("JdbcInput",
+     *     new JdbcPOJOStreamingInputOperator());
+     */
+
+    /*
+     * To poll only for the rows inserted or updated since the last poll, with
+     * a range query on an indexed column such as updated_at instead of the
+     * whereCondition, use JdbcPOJOWatermarkPollInputOperator. Its
+     * watermarkColumn, idColumn and overlap properties are listed in
+     * properties.xml:
+     *
+     * JdbcPOJOWatermarkPollInputOperator jdbcInputOperator = dag.addOperator("JdbcInput",
+     *     new JdbcPOJOWatermarkPollInputOperator());
+     */
+
+    /*
+     * JdbcInput only sees new rows and scans the table on every poll. To
+     * replicate inserts, updates and deletes from the PostgreSQL write ahead
+     * log instead, read them from a logical replication slot with
+     * PostgresCdcInputOperator. Inserted rows are emitted on outputPort, so
+     * the stream above stays the same; updated and deleted rows are emitted
+     * on the updates and deletes ports, which can be connected to
+     * JdbcPOJONonInsertOutputOperator instances with UPDATE and DELETE
+     * statements. The slot and publication properties are listed in
+     * properties.xml:
+     *
+     * PostgresCdcInputOperator jdbcInputOperator = dag.addOperator("JdbcInput",
+     *     new PostgresCdcInputOperator());
+     */
+
+    /*
+     * JdbcOutput executes each batch and commits on the operator thread, so
+     * the throughput of a partition is bounded by the database round trips.
+     * To execute the batches on a pool of worker connections while the
+     * operator goes on with the next tuples, use
+     * AsyncJdbcPOJOInsertOutputOperator instead. Its workers, keyExpression and
+     * maxInFlightBatches properties are listed in properties.xml:
+     *
+     * JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput",
+     *     new AsyncJdbcPOJOInsertOutputOperator());
+     */
+
     /*
      * To add custom logic to your DAG, add your custom operator here with
      * dag.addOperator api call and connect it in the dag using the dag.addStream
@@ -100,6 +185,41 @@ public class Application implements StreamingApplication
      */
   }
 
+  private static boolean isSameDatabase(Configuration conf)
+  {
+    String inputUrl = conf.get("dt.operator.JdbcInput.prop.store.databaseUrl");
+    return inputUrl != null && inputUrl.equals(conf.get("dt.operator.JdbcOutput.prop.store.databaseUrl"));
+  }
+
+  /**
+   * Inserts the columns of the output field mappings, each selected from the
+   * input column mapped to the same POJO field.
+   */
+  private void setPushdownColumns(JdbcInsertSelectOperator insertSelect)
+  {
+    StringBuilder columns = new StringBuilder();
+    StringBuilder selectExpression = new StringBuilder();
+    for (JdbcFieldInfo outputField : addOutputFieldInfos()) {
+      String inputColumn = null;
+      for (FieldInfo inputField : addInputFieldInfos()) {
+        if (inputField.getPojoFieldExpression().equals(outputField.getPojoFieldExpression())) {
+          inputColumn = inputField.getColumnName();
+        }
+      }
+      if (inputColumn == null) {
+        throw new IllegalArgumentException("No input column for " + outputField.getPojoFieldExpression());
+      }
+      if (columns.length() > 0) {
+        columns.append(", ");
+        selectExpression.append(", ");
+      }
+      columns.append(outputField.getColumnName());
+      selectExpression.append(inputColumn);
+    }
+    insertSelect.setColumns(columns.toString());
+    insertSelect.setSelectExpression(selectExpression.toString());
+  }
+
   /**
    * This method can be modified to have field mappings based on used defined
    * class for reading from database.
@@ -0,0 +1,530 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.wal.FSWindowDataManager;
+import org.apache.apex.malhar.lib.wal.WindowDataManager;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+import com.datatorrent.lib.util.KryoCloneUtils;
+
+/**
+ * Copies the rows of a table into another table of the same database with
+ * <code>INSERT ... SELECT</code> statements, so the rows never leave the
+ * database.
+ * <p>
+ * Rows are copied in the order of the <code>key</code> column, which has to be
+ * unique, indexed and increasing for new rows, in chunks of
+ * <code>chunkSize</code> rows: the end of the next chunk is found with
+ * <code>SELECT MAX(key) FROM (SELECT key ... ORDER BY key LIMIT chunkSize)</code>,
+ * which the database has to support, and the chunk is copied with
+ * <code>INSERT INTO tablename (columns) SELECT selectExpression FROM inputTable
+ * WHERE key &gt; last AND key &lt;= end</code>. The select expression can
+ * transform the rows with any SQL the database supports. At most
+ * <code>maxChunksPerWindow</code> chunks are copied per window. Once the table
+ * has been copied new rows are looked for every <code>pollInterval</code>
+ * milliseconds.
+ * <p>
+ * The chunks of a window are committed together with the window id in the
+ * meta table of the store, and the last key of every window is saved with the
+ * <code>windowManager</code> before the commit, so after a failure the windows
+ * which were not committed are copied again with the same ranges and those
+ * which were are skipped.
+ * <p>
+ * With <code>partitionCount</code> greater than 1 the numeric key range at
+ * launch is split into as many ranges, each copied by its own partition, like
+ * {@link JdbcPOJOStreamingInputOperator} does. Only the partition with the
+ * last range polls for new rows.
+ */
+public class JdbcInsertSelectOperator extends BaseOperator implements InputOperator, Operator.CheckpointListener,
+    Partitioner<JdbcInsertSelectOperator>
+{
+  @NotNull
+  private JdbcTransactionalStore store = new JdbcTransactionalStore();
+
+  @NotNull
+  private String inputTable;
+
+  @NotNull
+  private String tablename;
+
+  @NotNull
+  private String key;
+
+  @NotNull
+  private String columns;
+
+  private String selectExpression;
+
+  private String whereCondition;
+
+  @Min(1)
+  private int chunkSize = 10000;
+
+  @Min(1)
+  private int maxChunksPerWindow = 10;
+
+  @Min(0)
+  private int pollInterval = 1000;
+
+  @Min(1)
+  private int partitionCount = 1;
+
+  @NotNull
+  private WindowDataManager windowManager = new FSWindowDataManager();
+
+  // range of this partition, lower bound inclusive and upper bound exclusive
+  private Long lowerBound;
+  private Long upperBound;
+
+  // key of the last copied row, and whether the range of the partition is done
+  private Object lastKey;
+  private boolean finished;
+
+  @AutoMetric
+  private long insertedRows;
+
+  @AutoMetric
+  private long chunks;
+
+  private transient String appId;
+  private transient int operatorId;
+  private transient long windowId;
+  private transient long committedWindowId;
+  private transient long nextPoll;
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    appId = context.getValue(DAG.APPLICATION_ID);
+    operatorId = context.getId();
+    windowManager.setup(context);
+    store.connect();
+    committedWindowId = store.getCommittedWindowId(appId, operatorId);
+  }
+
+  @Override
+  public void teardown()
+  {
+    windowManager.teardown();
+    store.disconnect();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+    insertedRows = 0;
+    chunks = 0;
+    store.beginTransaction();
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      replay(windowId);
+    }
+  }
+
+  /**
+   * Copies the range of the window again, unless it was committed.
+   */
+  private void replay(long windowId)
+  {
+    Object endKey;
+    try {
+      endKey = windowManager.retrieve(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to retrieve window " + windowId, e);
+    }
+    if (endKey == null) {
+      return;
+    }
+    if (windowId > committedWindowId) {
+      try {
+        insertedRows = insert(lastKey, endKey);
+      } catch (SQLException e) {
+        throw new RuntimeException("Unable to replay window " + windowId, e);
+      }
+      chunks = 1;
+      store.storeCommittedWindowId(appId, operatorId, windowId);
+      store.commitTransaction();
+    }
+    lastKey = endKey;
+  }
+
+  @Override
+  public void emitTuples()
+  {
+    if (windowId <= windowManager.getLargestCompletedWindow() || finished || chunks >= maxChunksPerWindow
+        || System.currentTimeMillis() < nextPoll) {
+      return;
+    }
+    try {
+      Object endKey = nextChunkEnd();
+      if (endKey == null) {
+        if (upperBound != null) {
+          LOG.info("Finished copying range [{}, {}) of {}", lowerBound, upperBound, inputTable);
+          finished = true;
+        } else {
+          nextPoll = System.currentTimeMillis() + pollInterval;
+        }
+        return;
+      }
+      insertedRows += insert(lastKey, endKey);
+      lastKey = endKey;
+      chunks++;
+    } catch (SQLException e) {
+      throw new RuntimeException("Copying " + inputTable + " to " + tablename + " failed", e);
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (windowId <= windowManager.getLargestCompletedWindow() || chunks == 0) {
+      return;
+    }
+    try {
+      // saved first, so a committed window is always known when replaying
+      windowManager.save(lastKey, windowId);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to save window " + windowId, e);
+    }
+    store.storeCommittedWindowId(appId, operatorId, windowId);
+    store.commitTransaction();
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+  }
+
+  @Override
+  public void committed(long windowId)
+  {
+    try {
+      windowManager.committed(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the key of the last row of the next chunk, or null when there are
+   * no rows after the last key.
+   */
+  private Object nextChunkEnd() throws SQLException
+  {
+    String sql = "SELECT MAX(" + key + ") FROM (SELECT " + key + " FROM " + inputTable + where(lastKey, false)
+        + " ORDER BY " + key + " LIMIT " + chunkSize + ") chunk";
+    try (PreparedStatement statement = store.getConnection().prepareStatement(sql)) {
+      bind(statement, lastKey);
+      try (ResultSet result = statement.executeQuery()) {
+        return result.next() ? result.getObject(1) : null;
+      }
+    }
+  }
+
+  /**
+   * Copies the rows after the given key up to the end key and returns their
+   * number.
+   */
+  private int insert(Object from, Object endKey) throws SQLException
+  {
+    String sql = "INSERT INTO " + tablename + " (" + columns + ") SELECT "
+        + (selectExpression != null ? selectExpression : columns) + " FROM " + inputTable + where(from, true);
+    try (PreparedStatement statement = store.getConnection().prepareStatement(sql)) {
+      int index = bind(statement, from);
+      statement.setObject(index, endKey);
+      int rows = statement.executeUpdate();
+      LOG.debug("Copied {} rows of {} up to key {}", rows, inputTable, endKey);
+      return rows;
+    }
+  }
+
+  /**
+   * Condition on the rows after the given key, within the range of the
+   * partition and, when bounded, up to a given key.
+   */
+  private String where(Object from, boolean bounded)
+  {
+    List<String> conditions = new ArrayList<>();
+    if (from != null) {
+      conditions.add(key + " > ?");
+    } else if (lowerBound != null) {
+      conditions.add(key + " >= ?");
+    }
+    if (upperBound != null) {
+      conditions.add(key + " < ?");
+    }
+    if (bounded) {
+      conditions.add(key + " <= ?");
+    }
+    if (whereCondition != null && !whereCondition.trim().isEmpty()) {
+      conditions.add("(" + whereCondition + ")");
+    }
+    StringBuilder sql = new StringBuilder();
+    for (int i = 0; i < conditions.size(); i++) {
+      sql.append(i == 0 ? " WHERE " : " AND ").append(conditions.get(i));
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Binds the start key and the range of the partition and returns the index
+   * of the next parameter.
+   */
+  private int bind(PreparedStatement statement, Object from) throws SQLException
+  {
+    int index = 1;
+    if (from != null) {
+      statement.setObject(index++, from);
+    } else if (lowerBound != null) {
+      statement.setLong(index++, lowerBound);
+    }
+    if (upperBound != null) {
+      statement.setLong(index++, upperBound);
+    }
+    return index;
+  }
+
+  @Override
+  public Collection<Partition<JdbcInsertSelectOperator>> definePartitions(
+      Collection<Partition<JdbcInsertSelectOperator>> partitions, PartitioningContext context)
+  {
+    if (partitionCount == 1 || partitions.size() > 1 || lastKey != null) {
+      // ranges are only assigned at launch
+      return partitions;
+    }
+    long min;
+    long max;
+    store.connect();
+    try (PreparedStatement statement = store.getConnection().prepareStatement("SELECT MIN(" + key + "), MAX("
+        + key + ") FROM " + inputTable + (whereCondition == null || whereCondition.trim().isEmpty() ? "" :
+        " WHERE " + whereCondition)); ResultSet result = statement.executeQuery()) {
+      result.next();
+      min = result.getLong(1);
+      max = result.getLong(2);
+      if (result.wasNull()) {
+        // empty table, copy everything with one partition
+        return partitions;
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to get the key range of " + inputTable, e);
+    } finally {
+      store.disconnect();
+    }
+
+    long step = Math.max(1, (max - min + partitionCount) / partitionCount);
+    List<Partition<JdbcInsertSelectOperator>> newPartitions = new ArrayList<>(partitionCount);
+    for (int i = 0; i < partitionCount; i++) {
+      JdbcInsertSelectOperator operator = KryoCloneUtils.cloneObject(this);
+      operator.lowerBound = i == 0 ? null : min + i * step;
+      operator.upperBound = i == partitionCount - 1 ? null : min + (i + 1) * step;
+      newPartitions.add(new DefaultPartition<>(operator));
+    }
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<JdbcInsertSelectOperator>> partitions)
+  {
+  }
+
+  public JdbcTransactionalStore getStore()
+  {
+    return store;
+  }
+
+  /**
+   * Store of the database both tables are in.
+   */
+  public void setStore(JdbcTransactionalStore store)
+  {
+    this.store = store;
+  }
+
+  public String getInputTable()
+  {
+    return inputTable;
+  }
+
+  /**
+   * Table the rows are copied from.
+   */
+  public void setInputTable(String inputTable)
+  {
+    this.inputTable = inputTable;
+  }
+
+  public String getTablename()
+  {
+    return tablename;
+  }
+
+  /**
+   * Table the rows are copied into.
+   */
+  public void setTablename(String tablename)
+  {
+    this.tablename = tablename;
+  }
+
+  public String getKey()
+  {
+    return key;
+  }
+
+  /**
+   * Unique, indexed column of the input table whose value increases for new
+   * rows, which rows are copied in the order of.
+   */
+  public void setKey(String key)
+  {
+    this.key = key;
+  }
+
+  public String getColumns()
+  {
+    return columns;
+  }
+
+  /**
+   * Comma separated columns of the output table which are inserted.
+   */
+  public void setColumns(String columns)
+  {
+    this.columns = columns;
+  }
+
+  public String getSelectExpression()
+  {
+    return selectExpression;
+  }
+
+  /**
+   * Comma separated expressions over the columns of the input table, one per
+   * inserted column, for example <code>account_no, UPPER(name), amount</code>.
+   * Default is the inserted columns.
+   */
+  public void setSelectExpression(String selectExpression)
+  {
+    this.selectExpression = selectExpression;
+  }
+
+  public String getWhereCondition()
+  {
+    return whereCondition;
+  }
+
+  /**
+   * Additional condition rows have to match to be copied.
+   */
+  public void setWhereCondition(String whereCondition)
+  {
+    this.whereCondition = whereCondition;
+  }
+
+  public int getChunkSize()
+  {
+    return chunkSize;
+  }
+
+  /**
+   * Maximum number of rows copied per statement. Default is 10000.
+   */
+  public void setChunkSize(int chunkSize)
+  {
+    this.chunkSize = chunkSize;
+  }
+
+  public int getMaxChunksPerWindow()
+  {
+    return maxChunksPerWindow;
+  }
+
+  /**
+   * Maximum number of chunks copied in one window, and so in one transaction.
+   * Default is 10.
+   */
+  public void setMaxChunksPerWindow(int maxChunksPerWindow)
+  {
+    this.maxChunksPerWindow = maxChunksPerWindow;
+  }
+
+  public int getPollInterval()
+  {
+    return pollInterval;
+  }
+
+  /**
+   * Milliseconds between the queries for new rows once the table has been
+   * copied. Default is 1000.
+   */
+  public void setPollInterval(int pollInterval)
+  {
+    this.pollInterval = pollInterval;
+  }
+
+  public int getPartitionCount()
+  {
+    return partitionCount;
+  }
+
+  /**
+   * Number of key ranges the table is copied in at launch. Default is 1.
+   */
+  public void setPartitionCount(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  public WindowDataManager getWindowManager()
+  {
+    return windowManager;
+  }
+
+  public void setWindowManager(WindowDataManager windowManager)
+  {
+    this.windowManager = windowManager;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(JdbcInsertSelectOperator.class);
+}
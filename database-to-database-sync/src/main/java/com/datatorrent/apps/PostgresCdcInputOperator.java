@@ -0,0 +1,587 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.wal.FSWindowDataManager;
+import org.apache.apex.malhar.lib.wal.WindowDataManager;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.lib.db.jdbc.JdbcStore;
+import com.datatorrent.lib.util.FieldInfo;
+
+/**
+ * Emits the rows inserted, updated and deleted in a PostgreSQL table, read
+ * from a logical replication slot with the pgoutput plugin, as POJOs.
+ * <p>
+ * Column values are set on the POJO fields given by <code>fieldInfos</code>,
+ * like for the poller. Inserted rows are emitted on <code>outputPort</code>,
+ * the new image of updated rows on <code>updates</code> and the old image of
+ * deleted rows on <code>deletes</code>, which only has the replica identity
+ * columns unless the table has <code>REPLICA IDENTITY FULL</code>. The changes
+ * of a transaction are emitted together once its commit has been read.
+ * <p>
+ * The slot and a publication of the table have to exist, and have to be
+ * created before the initial copy of the table so that no change is missed:
+ * <pre>
+ * CREATE PUBLICATION test_event_publication FOR TABLE test_event_input_table;
+ * SELECT pg_create_logical_replication_slot('test_event_slot', 'pgoutput');
+ * </pre>
+ * The server keeps the WAL from the position the operator acknowledged. The
+ * position of the last transaction of a window is acknowledged only once the
+ * window is committed, that is once the downstream operators have persisted
+ * it, and is saved with the <code>windowManager</code> so that after a failure
+ * the windows are replayed with the same transactions. The user needs the
+ * REPLICATION attribute and the server PostgreSQL 10 or later.
+ */
+public class PostgresCdcInputOperator extends BaseOperator implements InputOperator,
+    Operator.ActivationListener<Context.OperatorContext>, Operator.CheckpointListener
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  // PostgreSQL timestamps are microseconds since 2000-01-01 UTC
+  private static final long POSTGRES_EPOCH_MILLIS = 946684800000L;
+
+  @NotNull
+  private JdbcStore store = new JdbcStore();
+
+  @NotNull
+  private String slotName;
+
+  @NotNull
+  private String publicationName;
+
+  @NotNull
+  private String tableName;
+
+  @NotNull
+  private List<FieldInfo> fieldInfos = new ArrayList<>();
+
+  @Min(1)
+  private int batchSize = 1000;
+
+  @Min(1)
+  private int statusInterval = 10000;
+
+  @NotNull
+  private WindowDataManager windowManager = new FSWindowDataManager();
+
+  // end position of the last transaction emitted
+  private long lastLsn;
+
+  // end position of the last transaction of the windows not committed yet
+  private TreeMap<Long, Long> windowLsns = new TreeMap<>();
+
+  @AutoMetric
+  private long insertCount;
+
+  @AutoMetric
+  private long updateCount;
+
+  @AutoMetric
+  private long deleteCount;
+
+  @AutoMetric
+  private long replicationLagMillis;
+
+  private transient Class<?> tupleClass;
+  private transient JdbcPojoMapper mapper;
+  private transient long windowId;
+  private transient Connection connection;
+  private transient PGReplicationStream stream;
+  private transient Map<Integer, Relation> relations;
+  private transient List<Change> transaction;
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> outputPort = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+  };
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<Object> updates = new DefaultOutputPort<>();
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<Object> deletes = new DefaultOutputPort<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    mapper = new JdbcPojoMapper(tupleClass, fieldInfos);
+    relations = new HashMap<>();
+    transaction = new ArrayList<>();
+    windowManager.setup(context);
+  }
+
+  @Override
+  public void teardown()
+  {
+    windowManager.teardown();
+  }
+
+  @Override
+  public void activate(Context.OperatorContext context)
+  {
+    try {
+      stream = startReplication();
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to start replication from slot " + slotName, e);
+    }
+    LOG.info("Replicating {} from slot {} at {}", tableName, slotName, LogSequenceNumber.valueOf(lastLsn));
+  }
+
+  /**
+   * Opens the replication connection and starts streaming the changes of the
+   * publication from the end of the last transaction emitted.
+   */
+  PGReplicationStream startReplication() throws SQLException
+  {
+    Properties properties = new Properties();
+    properties.putAll(store.getConnectionProperties());
+    PGProperty.REPLICATION.set(properties, "database");
+    PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+    PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+    connection = DriverManager.getConnection(store.getDatabaseUrl(), properties);
+    // starting from 0 starts from the position last acknowledged to the slot
+    return connection.unwrap(PGConnection.class).getReplicationAPI()
+        .replicationStream()
+        .logical()
+        .withSlotName(slotName)
+        .withSlotOption("proto_version", 1)
+        .withSlotOption("publication_names", publicationName)
+        .withStartPosition(LogSequenceNumber.valueOf(lastLsn))
+        .withStatusInterval(statusInterval, TimeUnit.MILLISECONDS)
+        .start();
+  }
+
+  @Override
+  public void deactivate()
+  {
+    try {
+      if (stream != null) {
+        stream.close();
+      }
+      if (connection != null) {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      LOG.warn("Closing replication connection", e);
+    }
+    stream = null;
+    connection = null;
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    this.windowId = windowId;
+    insertCount = 0;
+    updateCount = 0;
+    deleteCount = 0;
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      replay(windowId);
+    }
+  }
+
+  /**
+   * Emits the transactions up to the position saved for the window.
+   */
+  private void replay(long windowId)
+  {
+    Long endLsn;
+    try {
+      endLsn = (Long)windowManager.retrieve(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to retrieve window " + windowId, e);
+    }
+    if (endLsn == null) {
+      return;
+    }
+    try {
+      while (lastLsn < endLsn) {
+        handle(stream.read());
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Unable to replay window " + windowId, e);
+    }
+  }
+
+  @Override
+  public void emitTuples()
+  {
+    if (windowId <= windowManager.getLargestCompletedWindow()) {
+      return;
+    }
+    try {
+      for (int i = 0; i < batchSize; i++) {
+        ByteBuffer message = stream.readPending();
+        if (message == null) {
+          break;
+        }
+        handle(message);
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException("Reading from slot " + slotName + " failed", e);
+    }
+  }
+
+  @Override
+  public void endWindow()
+  {
+    if (windowId > windowManager.getLargestCompletedWindow()) {
+      Map.Entry<Long, Long> last = windowLsns.lastEntry();
+      if (last == null || last.getValue() != lastLsn) {
+        try {
+          windowManager.save(lastLsn, windowId);
+        } catch (IOException e) {
+          throw new RuntimeException("Unable to save window " + windowId, e);
+        }
+      }
+    }
+    windowLsns.put(windowId, lastLsn);
+  }
+
+  @Override
+  public void checkpointed(long windowId)
+  {
+  }
+
+  /**
+   * Acknowledges the position of the committed window to the slot, so the
+   * server can release the WAL before it.
+   */
+  @Override
+  public void committed(long windowId)
+  {
+    Map.Entry<Long, Long> entry = windowLsns.floorEntry(windowId);
+    if (entry != null && entry.getValue() > 0 && stream != null) {
+      LogSequenceNumber lsn = LogSequenceNumber.valueOf(entry.getValue());
+      stream.setAppliedLSN(lsn);
+      stream.setFlushedLSN(lsn);
+      try {
+        stream.forceUpdateStatus();
+      } catch (SQLException e) {
+        // acknowledged with the next status update
+        LOG.warn("Unable to acknowledge {} to slot {}", lsn, slotName, e);
+      }
+    }
+    windowLsns.headMap(windowId, false).clear();
+    try {
+      windowManager.committed(windowId);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Decodes a pgoutput message.
+   */
+  void handle(ByteBuffer message)
+  {
+    byte type = message.get();
+    switch (type) {
+      case 'B':
+        transaction.clear();
+        break;
+      case 'R':
+        readRelation(message);
+        break;
+      case 'I': {
+        Relation relation = relations.get(message.getInt());
+        message.get(); // 'N'
+        Object tuple = readTuple(message, relation);
+        if (relation.captured) {
+          transaction.add(new Change(outputPort, tuple));
+        }
+        break;
+      }
+      case 'U': {
+        Relation relation = relations.get(message.getInt());
+        byte kind = message.get();
+        if (kind == 'K' || kind == 'O') {
+          // old key or row, the new row follows
+          readTuple(message, relation);
+          message.get();
+        }
+        Object tuple = readTuple(message, relation);
+        if (relation.captured) {
+          transaction.add(new Change(updates, tuple));
+        }
+        break;
+      }
+      case 'D': {
+        Relation relation = relations.get(message.getInt());
+        message.get(); // 'K' or 'O'
+        Object tuple = readTuple(message, relation);
+        if (relation.captured) {
+          transaction.add(new Change(deletes, tuple));
+        }
+        break;
+      }
+      case 'C': {
+        message.get(); // flags
+        message.getLong(); // commit position
+        long endLsn = message.getLong();
+        long commitTime = message.getLong();
+        commit(endLsn, POSTGRES_EPOCH_MILLIS + commitTime / 1000);
+        break;
+      }
+      case 'T':
+        LOG.warn("Ignoring truncate of a published table");
+        break;
+      default:
+        // origin and type messages
+        break;
+    }
+  }
+
+  private void commit(long endLsn, long commitTimeMillis)
+  {
+    if (endLsn <= lastLsn) {
+      // emitted before the checkpoint the operator was restored from
+      transaction.clear();
+      return;
+    }
+    for (Change change : transaction) {
+      change.port.emit(change.tuple);
+      if (change.port == outputPort) {
+        insertCount++;
+      } else if (change.port == updates) {
+        updateCount++;
+      } else {
+        deleteCount++;
+      }
+    }
+    transaction.clear();
+    lastLsn = endLsn;
+    replicationLagMillis = Math.max(0, System.currentTimeMillis() - commitTimeMillis);
+  }
+
+  private void readRelation(ByteBuffer message)
+  {
+    int id = message.getInt();
+    String namespace = readString(message);
+    String name = readString(message);
+    message.get(); // replica identity
+    int columns = message.getShort();
+    int[] fields = new int[columns];
+    for (int i = 0; i < columns; i++) {
+      message.get(); // flags
+      fields[i] = mapper.indexOf(readString(message));
+      message.getInt(); // type
+      message.getInt(); // type modifier
+    }
+    boolean captured = tableName.equalsIgnoreCase(name) || tableName.equalsIgnoreCase(namespace + "." + name);
+    relations.put(id, new Relation(captured, fields));
+  }
+
+  private Object readTuple(ByteBuffer message, Relation relation)
+  {
+    Object tuple = relation.captured ? mapper.newTuple() : null;
+    int columns = message.getShort();
+    for (int i = 0; i < columns; i++) {
+      byte kind = message.get();
+      if (kind == 't') {
+        int length = message.getInt();
+        int field = relation.fields[i];
+        if (tuple != null && field >= 0) {
+          mapper.set(tuple, field, new String(message.array(), message.arrayOffset() + message.position(), length,
+              UTF8));
+        }
+        message.position(message.position() + length);
+      }
+      // 'n' is null and 'u' an unchanged TOASTed value, both leave the field unset
+    }
+    return tuple;
+  }
+
+  private static String readString(ByteBuffer message)
+  {
+    int start = message.position();
+    while (message.get() != 0) {
+      // find the terminating zero
+    }
+    return new String(message.array(), message.arrayOffset() + start, message.position() - start - 1, UTF8);
+  }
+
+  /**
+   * Table of the publication, with the field index of each of its columns or
+   * -1 for columns not mapped.
+   */
+  private static class Relation
+  {
+    final boolean captured;
+    final int[] fields;
+
+    Relation(boolean captured, int[] fields)
+    {
+      this.captured = captured;
+      this.fields = fields;
+    }
+  }
+
+  private static class Change
+  {
+    final DefaultOutputPort<Object> port;
+    final Object tuple;
+
+    Change(DefaultOutputPort<Object> port, Object tuple)
+    {
+      this.port = port;
+      this.tuple = tuple;
+    }
+  }
+
+  public JdbcStore getStore()
+  {
+    return store;
+  }
+
+  /**
+   * Store with the URL and credentials of the database, used to open the
+   * replication connection.
+   */
+  public void setStore(JdbcStore store)
+  {
+    this.store = store;
+  }
+
+  public String getSlotName()
+  {
+    return slotName;
+  }
+
+  /**
+   * Logical replication slot created with the pgoutput plugin.
+   */
+  public void setSlotName(String slotName)
+  {
+    this.slotName = slotName;
+  }
+
+  public String getPublicationName()
+  {
+    return publicationName;
+  }
+
+  /**
+   * Publication which includes the table.
+   */
+  public void setPublicationName(String publicationName)
+  {
+    this.publicationName = publicationName;
+  }
+
+  public String getTableName()
+  {
+    return tableName;
+  }
+
+  /**
+   * Table whose changes are emitted, optionally qualified with the schema.
+   * Changes of other tables of the publication are skipped.
+   */
+  public void setTableName(String tableName)
+  {
+    this.tableName = tableName;
+  }
+
+  public List<FieldInfo> getFieldInfos()
+  {
+    return fieldInfos;
+  }
+
+  public void setFieldInfos(List<FieldInfo> fieldInfos)
+  {
+    this.fieldInfos = fieldInfos;
+  }
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * Maximum number of messages read per emitTuples call. Default is 1000.
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  public int getStatusInterval()
+  {
+    return statusInterval;
+  }
+
+  /**
+   * Milliseconds between the status updates sent to the server. Default is
+   * 10000.
+   */
+  public void setStatusInterval(int statusInterval)
+  {
+    this.statusInterval = statusInterval;
+  }
+
+  public WindowDataManager getWindowManager()
+  {
+    return windowManager;
+  }
+
+  public void setWindowManager(WindowDataManager windowManager)
+  {
+    this.windowManager = windowManager;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(PostgresCdcInputOperator.class);
+}
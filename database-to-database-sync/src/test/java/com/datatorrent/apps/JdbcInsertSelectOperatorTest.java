@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.lib.db.jdbc.JdbcTransactionalStore;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+
+/**
+ * Test that {@link JdbcInsertSelectOperator} copies a table in chunks, and
+ * copies every row once when it fails after saving a window and before
+ * committing it.
+ */
+public class JdbcInsertSelectOperatorTest
+{
+  // MVCC lets the test read the committed rows while the operator has a transaction open
+  private static final String URL = "jdbc:hsqldb:mem:insert_select_%s;hsqldb.tx=mvcc";
+  private static final String INPUT_TABLE = "test_event_input";
+  private static final String OUTPUT_TABLE = "test_event_output";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static void createTables(Connection connection) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      stmt.executeUpdate("CREATE TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE + " ("
+          + JdbcTransactionalStore.DEFAULT_APP_ID_COL + " VARCHAR(100) NOT NULL, "
+          + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL + " INT NOT NULL, "
+          + JdbcTransactionalStore.DEFAULT_WINDOW_COL + " BIGINT NOT NULL, UNIQUE ("
+          + JdbcTransactionalStore.DEFAULT_APP_ID_COL + ", " + JdbcTransactionalStore.DEFAULT_OPERATOR_ID_COL + ", "
+          + JdbcTransactionalStore.DEFAULT_WINDOW_COL + "))");
+      for (String table : new String[] {INPUT_TABLE, OUTPUT_TABLE}) {
+        stmt.executeUpdate("CREATE TABLE " + table
+            + " (ACCOUNT_NO INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR(64), AMOUNT INTEGER)");
+      }
+    }
+  }
+
+  private static void insertEvents(Connection connection, int first, int count) throws SQLException
+  {
+    try (Statement stmt = connection.createStatement()) {
+      for (int i = first; i < first + count; i++) {
+        stmt.executeUpdate("INSERT INTO " + INPUT_TABLE + " VALUES (" + i + ", 'User_" + i + "', " + i * 10 + ")");
+      }
+    }
+  }
+
+  /**
+   * Account numbers of the copied rows in ascending order, with duplicates.
+   */
+  private static List<Integer> copied(Connection connection) throws SQLException
+  {
+    List<Integer> accountNumbers = new ArrayList<>();
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT ACCOUNT_NO FROM " + OUTPUT_TABLE + " ORDER BY ACCOUNT_NO")) {
+      while (rs.next()) {
+        accountNumbers.add(rs.getInt(1));
+      }
+    }
+    return accountNumbers;
+  }
+
+  private static List<Integer> range(int first, int count)
+  {
+    List<Integer> range = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      range.add(i);
+    }
+    return range;
+  }
+
+  private JdbcInsertSelectOperator operator(String url)
+  {
+    JdbcTransactionalStore store = new JdbcTransactionalStore();
+    store.setDatabaseDriver("org.hsqldb.jdbc.JDBCDriver");
+    store.setDatabaseUrl(url);
+    JdbcInsertSelectOperator operator = new JdbcInsertSelectOperator();
+    operator.setStore(store);
+    operator.setInputTable(INPUT_TABLE);
+    operator.setTablename(OUTPUT_TABLE);
+    operator.setKey("ACCOUNT_NO");
+    operator.setColumns("ACCOUNT_NO, NAME, AMOUNT");
+    operator.setChunkSize(10);
+    operator.setMaxChunksPerWindow(2);
+    operator.setPollInterval(0);
+
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(DAG.APPLICATION_ID, "test");
+    attributes.put(DAG.APPLICATION_PATH, folder.getRoot().getPath());
+    Context.OperatorContext context = OperatorContextTestHelper.mockOperatorContext(1, attributes);
+    operator.setup(context);
+    return operator;
+  }
+
+  private static void window(JdbcInsertSelectOperator operator, long windowId)
+  {
+    operator.beginWindow(windowId);
+    for (int i = 0; i <= operator.getMaxChunksPerWindow(); i++) {
+      operator.emitTuples();
+    }
+    operator.endWindow();
+  }
+
+  @Test
+  public void testChunks() throws Exception
+  {
+    String url = String.format(URL, "chunks");
+    try (Connection connection = DriverManager.getConnection(url)) {
+      createTables(connection);
+      insertEvents(connection, 1, 45);
+
+      JdbcInsertSelectOperator operator = operator(url);
+      operator.setSelectExpression("ACCOUNT_NO, UPPER(NAME), AMOUNT * 2");
+      window(operator, 1);
+      Assert.assertEquals("two chunks per window", range(1, 20), copied(connection));
+      window(operator, 2);
+      Assert.assertEquals(range(1, 40), copied(connection));
+      window(operator, 3);
+      Assert.assertEquals(range(1, 45), copied(connection));
+
+      // new rows are copied once the table has been copied
+      insertEvents(connection, 46, 3);
+      window(operator, 4);
+      Assert.assertEquals(range(1, 48), copied(connection));
+      operator.teardown();
+
+      try (Statement stmt = connection.createStatement();
+          ResultSet rs = stmt.executeQuery("SELECT NAME, AMOUNT FROM " + OUTPUT_TABLE + " WHERE ACCOUNT_NO = 7")) {
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals("USER_7", rs.getString(1));
+        Assert.assertEquals(140, rs.getInt(2));
+      }
+    }
+  }
+
+  @Test
+  public void testFailureBeforeCommit() throws Exception
+  {
+    String url = String.format(URL, "failure");
+    try (Connection connection = DriverManager.getConnection(url);
+        Statement stmt = connection.createStatement()) {
+      createTables(connection);
+      insertEvents(connection, 1, 100);
+      // storing window 3 in the meta table fails, after its last key was saved
+      stmt.executeUpdate("ALTER TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE
+          + " ADD CONSTRAINT fail_window CHECK (" + JdbcTransactionalStore.DEFAULT_WINDOW_COL + " < 3)");
+
+      JdbcInsertSelectOperator operator = operator(url);
+      window(operator, 1);
+      window(operator, 2);
+      try {
+        window(operator, 3);
+        Assert.fail("commit of window 3 did not fail");
+      } catch (RuntimeException e) {
+        // expected
+      }
+      operator.teardown();
+      Assert.assertEquals(range(1, 40), copied(connection));
+      stmt.executeUpdate("ALTER TABLE " + JdbcTransactionalStore.DEFAULT_META_TABLE + " DROP CONSTRAINT fail_window");
+
+      // the redeployed operator skips the committed windows and copies window 3 again
+      operator = operator(url);
+      window(operator, 1);
+      window(operator, 2);
+      Assert.assertEquals(range(1, 40), copied(connection));
+      window(operator, 3);
+      Assert.assertEquals(range(1, 60), copied(connection));
+      window(operator, 4);
+      window(operator, 5);
+      window(operator, 6);
+      operator.teardown();
+      Assert.assertEquals(range(1, 100), copied(connection));
+    }
+  }
+}
@@ -0,0 +1,412 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.FieldInfo;
+import com.datatorrent.lib.util.KryoCloneUtils;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * Test that {@link PostgresCdcInputOperator} decodes pgoutput messages and
+ * emits every transaction once, also when the slot sends it again.
+ */
+public class PostgresCdcInputOperatorTest
+{
+  private static final int EVENTS = 16384;
+  private static final int OTHER = 16390;
+  // 2020-01-01 00:00:00 UTC
+  private static final long NEW_YEAR = 1577836800000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public static class Event
+  {
+    private int id;
+    private String name;
+    private Timestamp updated;
+
+    public int getId()
+    {
+      return id;
+    }
+
+    public void setId(int id)
+    {
+      this.id = id;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public void setName(String name)
+    {
+      this.name = name;
+    }
+
+    public Timestamp getUpdated()
+    {
+      return updated;
+    }
+
+    public void setUpdated(Timestamp updated)
+    {
+      this.updated = updated;
+    }
+
+    @Override
+    public String toString()
+    {
+      return id + ":" + name + ":" + (updated == null ? null : updated.getTime());
+    }
+  }
+
+  /**
+   * Operator reading from the messages queued in the test instead of a slot.
+   */
+  static class TestOperator extends PostgresCdcInputOperator
+  {
+    transient PGReplicationStream slot;
+
+    @Override
+    PGReplicationStream startReplication()
+    {
+      return slot;
+    }
+  }
+
+  /**
+   * Writes a pgoutput message.
+   */
+  private static class Message
+  {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    Message(char type) throws IOException
+    {
+      out.writeByte(type);
+    }
+
+    Message b(int value) throws IOException
+    {
+      out.writeByte(value);
+      return this;
+    }
+
+    Message s(int value) throws IOException
+    {
+      out.writeShort(value);
+      return this;
+    }
+
+    Message i(int value) throws IOException
+    {
+      out.writeInt(value);
+      return this;
+    }
+
+    Message l(long value) throws IOException
+    {
+      out.writeLong(value);
+      return this;
+    }
+
+    Message string(String value) throws IOException
+    {
+      out.write(value.getBytes(StandardCharsets.UTF_8));
+      out.writeByte(0);
+      return this;
+    }
+
+    /**
+     * Tuple data with the given column values in text form, null for a null
+     * column.
+     */
+    Message tuple(String... values) throws IOException
+    {
+      out.writeShort(values.length);
+      for (String value : values) {
+        if (value == null) {
+          out.writeByte('n');
+        } else {
+          byte[] text = value.getBytes(StandardCharsets.UTF_8);
+          out.writeByte('t');
+          out.writeInt(text.length);
+          out.write(text);
+        }
+      }
+      return this;
+    }
+
+    ByteBuffer buffer()
+    {
+      return ByteBuffer.wrap(bytes.toByteArray());
+    }
+  }
+
+  private static ByteBuffer begin(long finalLsn) throws IOException
+  {
+    return new Message('B').l(finalLsn).l(0).i(1).buffer();
+  }
+
+  private static ByteBuffer relation(int id, String name, String... columns) throws IOException
+  {
+    Message message = new Message('R').i(id).string("public").string(name).b('d').s(columns.length);
+    for (String column : columns) {
+      message.b(0).string(column).i(25).i(-1);
+    }
+    return message.buffer();
+  }
+
+  private static ByteBuffer insert(int relation, String... values) throws IOException
+  {
+    return new Message('I').i(relation).b('N').tuple(values).buffer();
+  }
+
+  private static ByteBuffer commit(long endLsn) throws IOException
+  {
+    // commit time in microseconds since 2000-01-01
+    return new Message('C').b(0).l(endLsn - 8).l(endLsn).l((NEW_YEAR - 946684800000L) * 1000).buffer();
+  }
+
+  /**
+   * Messages of a transaction inserting the event with the given id.
+   */
+  private static List<ByteBuffer> transaction(long endLsn, int id) throws IOException
+  {
+    return Arrays.asList(begin(endLsn - 8), insert(EVENTS, Integer.toString(id), "event-" + id,
+        "2020-01-01 00:00:00+00"), commit(endLsn));
+  }
+
+  /**
+   * A slot whose read and readPending return the queued messages,
+   * readPending null once they are all read.
+   */
+  private static PGReplicationStream slot(final Deque<ByteBuffer> messages) throws Exception
+  {
+    PGReplicationStream slot = Mockito.mock(PGReplicationStream.class);
+    Answer<ByteBuffer> next = new Answer<ByteBuffer>()
+    {
+      @Override
+      public ByteBuffer answer(InvocationOnMock invocation)
+      {
+        return messages.poll();
+      }
+    };
+    Mockito.when(slot.read()).thenAnswer(next);
+    Mockito.when(slot.readPending()).thenAnswer(next);
+    return slot;
+  }
+
+  private TestOperator operator()
+  {
+    TestOperator operator = new TestOperator();
+    operator.setSlotName("events_slot");
+    operator.setPublicationName("events_publication");
+    operator.setTableName("public.events");
+    operator.setFieldInfos(Arrays.asList(new FieldInfo("id", "id", FieldInfo.SupportType.INTEGER),
+        new FieldInfo("name", "name", FieldInfo.SupportType.STRING),
+        new FieldInfo("updated", "updated", FieldInfo.SupportType.OBJECT)));
+    return operator;
+  }
+
+  private void setup(TestOperator operator, long activationWindowId)
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, Event.class);
+    operator.outputPort.setup(new PortContext(attributes, null));
+
+    Attribute.AttributeMap operatorAttributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    operatorAttributes.put(DAG.APPLICATION_ID, "test");
+    operatorAttributes.put(DAG.APPLICATION_PATH, folder.getRoot().getPath());
+    operatorAttributes.put(Context.OperatorContext.ACTIVATION_WINDOW_ID, activationWindowId);
+    Context.OperatorContext context = OperatorContextTestHelper.mockOperatorContext(1, operatorAttributes);
+    operator.setup(context);
+    operator.activate(context);
+  }
+
+  private static List<String> window(TestOperator operator, CollectorTestSink<Object> sink, long windowId)
+  {
+    sink.clear();
+    operator.beginWindow(windowId);
+    operator.emitTuples();
+    operator.endWindow();
+    return toStrings(sink);
+  }
+
+  private static List<String> toStrings(CollectorTestSink<Object> sink)
+  {
+    List<String> tuples = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      tuples.add(tuple.toString());
+    }
+    return tuples;
+  }
+
+  @Test
+  public void testChanges() throws Exception
+  {
+    TestOperator operator = operator();
+    operator.slot = slot(new ArrayDeque<ByteBuffer>());
+    CollectorTestSink<Object> inserts = new CollectorTestSink<>();
+    CollectorTestSink<Object> updates = new CollectorTestSink<>();
+    CollectorTestSink<Object> deletes = new CollectorTestSink<>();
+    operator.outputPort.setSink(inserts);
+    operator.updates.setSink(updates);
+    operator.deletes.setSink(deletes);
+    setup(operator, Stateless.WINDOW_ID);
+    operator.beginWindow(1);
+
+    // the relation has a column which is not mapped
+    operator.handle(begin(100));
+    operator.handle(relation(EVENTS, "events", "id", "comment", "name", "updated"));
+    operator.handle(relation(OTHER, "other", "id", "name"));
+    operator.handle(insert(EVENTS, "1", "not mapped", "first", "2020-01-01 05:30:00.25+05:30"));
+    operator.handle(insert(OTHER, "2", "other"));
+    operator.handle(insert(EVENTS, "3", null, null, null));
+    operator.handle(new Message('U').i(EVENTS).b('K').tuple("1", null, null, null)
+        .b('N').tuple("1", null, "renamed", "2020-01-01 00:00:00+00").buffer());
+    operator.handle(new Message('U').i(OTHER).b('N').tuple("2", "renamed").buffer());
+    operator.handle(new Message('D').i(EVENTS).b('K').tuple("3", null, null, null).buffer());
+    Assert.assertTrue("nothing is emitted before the commit", inserts.collectedTuples.isEmpty());
+
+    operator.handle(commit(108));
+    Assert.assertEquals(Arrays.asList("1:first:" + (NEW_YEAR + 250), "3:null:null"), toStrings(inserts));
+    Assert.assertEquals(Arrays.asList("1:renamed:" + NEW_YEAR), toStrings(updates));
+    Assert.assertEquals(Arrays.asList("3:null:null"), toStrings(deletes));
+    operator.endWindow();
+
+    // a transaction of the other table only emits nothing
+    inserts.clear();
+    operator.beginWindow(2);
+    operator.handle(begin(200));
+    operator.handle(insert(OTHER, "4", "other"));
+    operator.handle(commit(208));
+    operator.endWindow();
+    Assert.assertTrue(inserts.collectedTuples.isEmpty());
+
+    operator.deactivate();
+    operator.teardown();
+  }
+
+  @Test
+  public void testReplay() throws Exception
+  {
+    Deque<ByteBuffer> messages = new ArrayDeque<>();
+    messages.add(relation(EVENTS, "events", "id", "name", "updated"));
+    messages.addAll(transaction(108, 1));
+    TestOperator operator = operator();
+    operator.slot = slot(messages);
+    CollectorTestSink<Object> sink = new CollectorTestSink<>();
+    operator.outputPort.setSink(sink);
+    setup(operator, Stateless.WINDOW_ID);
+    Assert.assertEquals(Arrays.asList("1:event-1:" + NEW_YEAR), window(operator, sink, 1));
+    messages.addAll(transaction(208, 2));
+    messages.addAll(transaction(308, 3));
+    Assert.assertEquals(Arrays.asList("2:event-2:" + NEW_YEAR, "3:event-3:" + NEW_YEAR), window(operator, sink, 2));
+    operator.deactivate();
+    operator.teardown();
+
+    // restarted from the beginning, the slot sends every transaction again
+    messages.add(relation(EVENTS, "events", "id", "name", "updated"));
+    messages.addAll(transaction(108, 1));
+    messages.addAll(transaction(208, 2));
+    messages.addAll(transaction(308, 3));
+    messages.addAll(transaction(408, 4));
+    TestOperator restarted = operator();
+    restarted.slot = slot(messages);
+    restarted.outputPort.setSink(sink);
+    setup(restarted, Stateless.WINDOW_ID);
+    Assert.assertEquals("window 1 replayed up to its position", Arrays.asList("1:event-1:" + NEW_YEAR),
+        window(restarted, sink, 1));
+    Assert.assertEquals(Arrays.asList("2:event-2:" + NEW_YEAR, "3:event-3:" + NEW_YEAR), window(restarted, sink, 2));
+    Assert.assertEquals(Arrays.asList("4:event-4:" + NEW_YEAR), window(restarted, sink, 3));
+    restarted.deactivate();
+    restarted.teardown();
+  }
+
+  @Test
+  public void testSkipEmitted() throws Exception
+  {
+    Deque<ByteBuffer> messages = new ArrayDeque<>();
+    messages.add(relation(EVENTS, "events", "id", "name", "updated"));
+    messages.addAll(transaction(108, 1));
+    TestOperator operator = operator();
+    operator.slot = slot(messages);
+    CollectorTestSink<Object> sink = new CollectorTestSink<>();
+    operator.outputPort.setSink(sink);
+    setup(operator, Stateless.WINDOW_ID);
+    Assert.assertEquals(Arrays.asList("1:event-1:" + NEW_YEAR), window(operator, sink, 1));
+    messages.addAll(transaction(208, 2));
+    Assert.assertEquals(Arrays.asList("2:event-2:" + NEW_YEAR), window(operator, sink, 2));
+    operator.checkpointed(2);
+    TestOperator restored = KryoCloneUtils.cloneObject(operator);
+    operator.deactivate();
+    operator.teardown();
+
+    // nothing was acknowledged, so the slot starts with the transactions emitted before the checkpoint
+    messages.add(relation(EVENTS, "events", "id", "name", "updated"));
+    messages.addAll(transaction(108, 1));
+    messages.addAll(transaction(208, 2));
+    messages.addAll(transaction(308, 3));
+    PGReplicationStream slot = slot(messages);
+    restored.slot = slot;
+    restored.outputPort.setSink(sink);
+    setup(restored, 2);
+    Assert.assertEquals(Arrays.asList("3:event-3:" + NEW_YEAR), window(restored, sink, 3));
+
+    restored.committed(3);
+    Mockito.verify(slot).setFlushedLSN(LogSequenceNumber.valueOf(308));
+    restored.deactivate();
+    restored.teardown();
+  }
+}
@@ -28,6 +28,7 @@ import org.apache.hadoop.conf.Configuration;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.DAG;
 import com.datatorrent.api.StreamingApplication;
@@ -52,13 +53,56 @@ public class Application implements StreamingApplication
 
     CsvFormatter formatter = dag.addOperator("formatter", new CsvFormatter());
 
-    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new StringFileOutputOperator());
+    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new InstrumentedStringFileOutputOperator());
+
+    /*
+     * The file writer reports records, bytes and latency percentiles per
+     * window as auto metrics. Partitions are combined by summing the counts
+     * and taking the maximum latency.
+     */
+    dag.setAttribute(fileOutput, OperatorContext.METRICS_AGGREGATOR, new LatencyMetrics.Aggregator());
 
     dag.addStream("dbrecords", poller.outputPort, formatter.in);
     dag.addStream("string", formatter.out, fileOutput.input);
     dag.setInputPortAttribute(formatter.in, PortContext.PARTITION_PARALLEL, true);
     dag.setInputPortAttribute(fileOutput.input, PortContext.PARTITION_PARALLEL, true);
 
+    /*
+     * JdbcPoller issues a range query per batch of rows every pollInterval, which
+     * caps the initial load of a large table at the poll cadence. To stream
+     * the table through a server side cursor at the pace of the DAG instead,
+     * and poll for new rows once it has been read, use
+     * JdbcPOJOStreamingInputOperator. It takes the same properties, see
+     * properties.xml for fetchSize and queueCapacity:
+     *
+     * JdbcPOJOStreamingInputOperator poller = dag.addOperator("JdbcPoller",
+     *     new JdbcPOJOStreamingInputOperator());
+     */
+
+    /*
+     * To poll only for the rows inserted or updated since the last poll, with
+     * a range query on an indexed column such as updated_at instead of the
+     * whereCondition, use JdbcPOJOWatermarkPollInputOperator. Its
+     * watermarkColumn, idColumn and overlap properties are listed in
+     * properties.xml:
+     *
+     * JdbcPOJOWatermarkPollInputOperator poller = dag.addOperator("JdbcPoller",
+     *     new JdbcPOJOWatermarkPollInputOperator());
+     */
+
+    /*
+     * To write records without creating a String per record and encoding it
+     * again in the file writer, format them straight to bytes and write the
+     * resulting chunks as they are. The operator names stay the same, so the
+     * formatter schema and the fileOutput properties still apply. The chunked
+     * writer adds no separator of its own, so change the lineDelimiter of the
+     * formatter schema from "" to "\n" to keep one record per line:
+     *
+     * DelimitedByteFormatter formatter = dag.addOperator("formatter", new DelimitedByteFormatter());
+     * ChunkedBytesFileOutputOperator fileOutput = dag.addOperator("fileOutput",
+     *     new ChunkedBytesFileOutputOperator());
+     */
+
     /*
      * To add custom logic to your DAG, add your custom operator here with
      * dag.addOperator api call and connect it in the dag using the dag.addStream
@@ -24,13 +24,17 @@ import java.io.File;
 import java.util.Map;
 
 import org.apache.apex.malhar.lib.fs.FSRecordReaderModule;
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.BytesFileOutputOperator;
 import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.StringFileOutputOperator;
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
 
 import com.google.common.collect.Maps;
 
+import com.datatorrent.api.Context;
 import com.datatorrent.api.DAG;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.StreamingApplication;
 import com.datatorrent.api.annotation.ApplicationAnnotation;
 import com.datatorrent.contrib.formatter.CsvFormatter;
@@ -40,19 +44,84 @@ import com.datatorrent.lib.transform.TransformOperator;
 @ApplicationAnnotation(name="HDFS-line-copy")
 public class Application implements StreamingApplication
 {
+  /**
+   * Set to true to copy lines without parsing and formatting them.
+   */
+  public static final String PASSTHROUGH_PROPERTY = "hdfs-line-copy.passthrough";
+
+  /**
+   * Set to true to parse the lines with DelimitedByteParser instead of
+   * CsvParser.
+   */
+  public static final String BYTE_PARSER_PROPERTY = "hdfs-line-copy.byteParser";
 
   @Override
   public void populateDAG(DAG dag, Configuration conf)
   {
-    FSRecordReaderModule recordReader = dag.addModule("recordReader", FSRecordReaderModule.class);
-    CsvParser csvParser = dag.addOperator("csvParser", CsvParser.class);
+    FSRecordReaderModule recordReader = dag.addModule("recordReader", MappedFSRecordReaderModule.class);
+
+    /*
+     * The instrumented operators report records, bytes and latency percentiles
+     * per window as auto metrics. Partitions are combined by summing the
+     * counts and taking the maximum latency.
+     */
+    LatencyMetrics.Aggregator metricsAggregator = new LatencyMetrics.Aggregator();
+
+    /*
+     * Without transformations the lines are written back unchanged, so in
+     * pass-through mode they are copied as bytes instead of being parsed and
+     * formatted again. Only a sample of the lines is checked against the
+     * csvParser schema.
+     */
+    if (conf.getBoolean(PASSTHROUGH_PROPERTY, false)) {
+      SampledRecordValidator validator = dag.addOperator("validator", new SampledRecordValidator());
+      validator.setSchema(conf.get("dt.operator.csvParser.prop.schema"));
+      BytesFileOutputOperator fileOutput = dag.addOperator("fileOutput", new InstrumentedBytesFileOutputOperator());
+      dag.setAttribute(validator, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+      dag.setAttribute(fileOutput, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+
+      dag.addStream("record", recordReader.records, validator.input);
+      dag.addStream("bytes", validator.output, fileOutput.input).setLocality(Locality.THREAD_LOCAL);
+      return;
+    }
+
+    /*
+     * DelimitedByteParser parses the lines without the per field String and
+     * boxed value allocations of CsvParser. It takes the same schema property
+     * and has the same port names.
+     */
+    DefaultOutputPort<Object> pojos;
+    if (conf.getBoolean(BYTE_PARSER_PROPERTY, false)) {
+      DelimitedByteParser csvParser = dag.addOperator("csvParser", new DelimitedByteParser());
+      dag.addStream("record", recordReader.records, csvParser.in);
+      dag.setAttribute(csvParser, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+      pojos = csvParser.out;
+    } else {
+      CsvParser csvParser = dag.addOperator("csvParser", InstrumentedCsvParser.class);
+      dag.addStream("record", recordReader.records, csvParser.in);
+      dag.setAttribute(csvParser, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+      pojos = csvParser.out;
+    }
     CsvFormatter formatter = dag.addOperator("formatter", new CsvFormatter());
-    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new StringFileOutputOperator());
+    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new InstrumentedStringFileOutputOperator());
+    dag.setAttribute(fileOutput, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
     
-    dag.addStream("record", recordReader.records, csvParser.in);
-    dag.addStream("pojo", csvParser.out, formatter.in);
+    dag.addStream("pojo", pojos, formatter.in);
     dag.addStream("string", formatter.out, fileOutput.input);
-    
+
+    /*
+     * To write records without creating a String per record and encoding it
+     * again in the file writer, format them straight to bytes and write the
+     * resulting chunks as they are. The operator names stay the same, so the
+     * formatter schema and the fileOutput properties still apply. The chunked
+     * writer adds no separator of its own, so change the lineDelimiter of the
+     * formatter schema from "" to "\n" to keep one record per line:
+     *
+     * DelimitedByteFormatter formatter = dag.addOperator("formatter", new DelimitedByteFormatter());
+     * ChunkedBytesFileOutputOperator fileOutput = dag.addOperator("fileOutput",
+     *     new ChunkedBytesFileOutputOperator());
+     */
+
     /*
      * To add custom logic to your DAG, add your custom operator here with
      * dag.addOperator api call and connect it in the dag using the dag.addStream
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.contrib.parser.DelimitedSchema;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Passes records through unchanged while checking a sample of them against a
+ * delimited schema.
+ * <p>
+ * Used by the pass-through mode of the HDFS line copy application, where
+ * lines are copied as bytes without being parsed. Every n-th record, with n
+ * derived from <code>sampleRate</code>, is split into fields the same way
+ * {@link DelimitedByteParser} splits it and checked for the number of fields
+ * and for numeric and boolean values that can be decoded. Invalid sampled records
+ * are still copied; they are logged, counted in the
+ * <code>invalidSampledRecords</code> metric and emitted on the <code>err</code>
+ * port. Without a schema no record is checked.
+ */
+public class SampledRecordValidator extends BaseOperator
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private String schema;
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double sampleRate = 0.01;
+
+  @AutoMetric
+  private long records;
+
+  @AutoMetric
+  private long sampledRecords;
+
+  @AutoMetric
+  private long invalidSampledRecords;
+
+  private transient byte separator;
+  private transient byte quoteChar;
+  private transient String[] types;
+  private transient long interval;
+  private transient long sequence;
+
+  public final transient DefaultInputPort<byte[]> input = new DefaultInputPort<byte[]>()
+  {
+    @Override
+    public void process(byte[] tuple)
+    {
+      records++;
+      if (types != null && sequence++ % interval == 0) {
+        validate(tuple);
+      }
+      output.emit(tuple);
+    }
+  };
+
+  public final transient DefaultOutputPort<byte[]> output = new DefaultOutputPort<>();
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<KeyValPair<String, String>> err = new DefaultOutputPort<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    if (schema == null || sampleRate == 0) {
+      return;
+    }
+    DelimitedSchema delimitedSchema = new DelimitedSchema(schema);
+    separator = (byte)delimitedSchema.getDelimiterChar();
+    quoteChar = (byte)delimitedSchema.getQuoteChar();
+    List<DelimitedSchema.Field> fields = delimitedSchema.getFields();
+    types = new String[fields.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = fields.get(i).getType().name();
+    }
+    interval = Math.max(1, Math.round(1 / sampleRate));
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    records = 0;
+    sampledRecords = 0;
+    invalidSampledRecords = 0;
+  }
+
+  private void validate(byte[] record)
+  {
+    sampledRecords++;
+    try {
+      DelimitedByteParser.split(record, types.length, separator, quoteChar, checkingVisitor, null);
+    } catch (RuntimeException e) {
+      invalidSampledRecords++;
+      String line = new String(record, UTF8);
+      LOG.warn("Invalid record {}: {}", line, e.getMessage());
+      err.emit(new KeyValPair<>(line, String.valueOf(e.getMessage())));
+    }
+  }
+
+  private final transient DelimitedByteParser.FieldVisitor checkingVisitor = new DelimitedByteParser.FieldVisitor()
+  {
+    @Override
+    public void field(Object target, int index, byte[] record, int start, int end, boolean escaped)
+    {
+      if (start < end) {
+        check(types[index], record, start, end);
+      }
+    }
+  };
+
+  private static void check(String type, byte[] b, int start, int end)
+  {
+    switch (type) {
+      case "INTEGER":
+      case "SHORT":
+        DelimitedByteParser.parseInt(b, start, end);
+        break;
+      case "LONG":
+        DelimitedByteParser.parseLong(b, start, end);
+        break;
+      case "DOUBLE":
+      case "FLOAT":
+        DelimitedByteParser.parseDouble(b, start, end);
+        break;
+      case "BOOLEAN":
+        DelimitedByteParser.parseBoolean(b, start, end);
+        break;
+      default:
+        break;
+    }
+  }
+
+  public String getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * Delimited schema the sampled records are checked against, same format as
+   * the CsvParser schema. No record is checked when it is not set.
+   */
+  public void setSchema(String schema)
+  {
+    this.schema = schema;
+  }
+
+  public double getSampleRate()
+  {
+    return sampleRate;
+  }
+
+  /**
+   * Fraction of records checked against the schema, between 0 and 1. Default
+   * is 0.01.
+   */
+  public void setSampleRate(double sampleRate)
+  {
+    this.sampleRate = sampleRate;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(SampledRecordValidator.class);
+}
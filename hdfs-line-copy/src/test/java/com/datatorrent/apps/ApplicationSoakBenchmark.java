@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import com.datatorrent.apps.benchmarks.LoadGeneratorOperator;
+import com.datatorrent.apps.benchmarks.SoakHarness;
+
+/**
+ * Soak test of the application in local mode with the record reader module
+ * replaced by a synthetic load generator.
+ * <p>
+ * Reports sustained throughput, end-to-end latency percentiles up to the file
+ * writer, and the heap and GC profile. The class is not picked up by the
+ * surefire test includes; run it with
+ * <code>mvn test -Dtest=ApplicationSoakBenchmark</code> and tune it with the
+ * system properties <code>soak.rate</code> (events per second, 0 for as fast
+ * as possible), <code>soak.seconds</code>, <code>soak.keys</code>,
+ * <code>soak.distribution</code> (UNIFORM or ZIPF) and
+ * <code>soak.nameLength</code>.
+ */
+public class ApplicationSoakBenchmark
+{
+  @Test
+  public void testSoak() throws Exception
+  {
+    String outputDir = "target/" + ApplicationSoakBenchmark.class.getName() + "/output";
+    Configuration conf = new Configuration(false);
+    conf.addResource(this.getClass().getResourceAsStream("/META-INF/properties-test.xml"));
+    conf.set("dt.operator.fileOutput.prop.filePath", outputDir);
+
+    SoakHarness harness = new SoakHarness(new Application(), conf, "recordReader", "string");
+    harness.setDurationMillis(Long.getLong("soak.seconds", 60) * 1000);
+    LoadGeneratorOperator generator = harness.getGenerator();
+    generator.setRate(Long.getLong("soak.rate", 50000));
+    generator.setKeyCount(Integer.getInteger("soak.keys", 100000));
+    generator.setDistribution(LoadGeneratorOperator.Distribution.valueOf(
+        System.getProperty("soak.distribution", "UNIFORM")));
+    generator.setNameLength(Integer.getInteger("soak.nameLength", 16));
+    try {
+      SoakHarness.Result result = harness.run();
+      Assert.assertTrue("no tuples reached the file writer", result.getReceived() > 0);
+    } finally {
+      FileUtils.deleteQuietly(new File(outputDir));
+    }
+  }
+}
@@ -105,4 +105,66 @@ public class ApplicationTest
     }
   }
 
+  @Test
+  public void testByteParser() throws IOException, Exception
+  {
+    try {
+      LocalMode lma = LocalMode.newInstance();
+      Configuration conf = new Configuration(false);
+      conf.addResource(this.getClass().getResourceAsStream("/META-INF/properties-test.xml"));
+      conf.set("dt.operator.fileOutput.prop.filePath", outputDir);
+      conf.setBoolean(Application.BYTE_PARSER_PROPERTY, true);
+      File outputfile = FileUtils.getFile(outputDir, "output.txt_5.0");
+
+      lma.prepareDAG(new Application(), conf);
+      LocalMode.Controller lc = lma.getController();
+      lc.runAsync();
+
+      // wait for tuples to show up
+      while (!outputfile.exists()) {
+        System.out.println("Waiting for tuples ....");
+        Thread.sleep(1000);
+      }
+
+      lc.shutdown();
+      Assert.assertTrue(
+          FileUtils.contentEquals(FileUtils.getFile("src/test/resources/test_event_data.txt"), outputfile));
+
+    } catch (ConstraintViolationException e) {
+      Assert.fail("constraint violations: " + e.getConstraintViolations());
+    }
+  }
+
+  @Test
+  public void testPassthrough() throws IOException, Exception
+  {
+    try {
+      LocalMode lma = LocalMode.newInstance();
+      Configuration conf = new Configuration(false);
+      conf.addResource(this.getClass().getResourceAsStream("/META-INF/properties-test.xml"));
+      conf.set("dt.operator.fileOutput.prop.filePath", outputDir);
+      conf.setBoolean(Application.PASSTHROUGH_PROPERTY, true);
+      conf.set("dt.operator.validator.prop.sampleRate", "1");
+      // the validator replaces csvParser and formatter
+      File outputfile = FileUtils.getFile(outputDir, "output.txt_4.0");
+
+      lma.prepareDAG(new Application(), conf);
+      LocalMode.Controller lc = lma.getController();
+      lc.runAsync();
+
+      // wait for tuples to show up
+      while (!outputfile.exists()) {
+        System.out.println("Waiting for tuples ....");
+        Thread.sleep(1000);
+      }
+
+      lc.shutdown();
+      Assert.assertTrue(
+          FileUtils.contentEquals(FileUtils.getFile("src/test/resources/test_event_data.txt"), outputfile));
+
+    } catch (ConstraintViolationException e) {
+      Assert.fail("constraint violations: " + e.getConstraintViolations());
+    }
+  }
+
 }
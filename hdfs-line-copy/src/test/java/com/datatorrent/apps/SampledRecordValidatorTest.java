@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.lib.util.KeyValPair;
+
+/**
+ * Test that {@link SampledRecordValidator} copies every record and rejects
+ * the invalid ones among the sampled records.
+ */
+public class SampledRecordValidatorTest
+{
+  private static final String SCHEMA = "{\"separator\": \"|\", \"quoteChar\": \"\\\"\", \"fields\": ["
+      + "{\"name\": \"accountNumber\", \"type\": \"Integer\"}, "
+      + "{\"name\": \"name\", \"type\": \"String\"}, "
+      + "{\"name\": \"amount\", \"type\": \"Integer\"}]}";
+
+  private final CollectorTestSink<Object> outputSink = new CollectorTestSink<>();
+  private final CollectorTestSink<Object> errSink = new CollectorTestSink<>();
+
+  private SampledRecordValidator validator(String schema, double sampleRate)
+  {
+    SampledRecordValidator validator = new SampledRecordValidator();
+    validator.setSchema(schema);
+    validator.setSampleRate(sampleRate);
+    validator.output.setSink(outputSink);
+    validator.err.setSink(errSink);
+    validator.setup(null);
+    return validator;
+  }
+
+  private static List<String> process(SampledRecordValidator validator, String... records)
+  {
+    validator.beginWindow(1);
+    for (String record : records) {
+      validator.input.process(record.getBytes(StandardCharsets.UTF_8));
+    }
+    validator.endWindow();
+    return Arrays.asList(records);
+  }
+
+  private List<String> output()
+  {
+    List<String> records = new ArrayList<>();
+    for (Object tuple : outputSink.collectedTuples) {
+      records.add(new String((byte[])tuple, StandardCharsets.UTF_8));
+    }
+    return records;
+  }
+
+  private List<String> rejected()
+  {
+    List<String> records = new ArrayList<>();
+    for (Object tuple : errSink.collectedTuples) {
+      @SuppressWarnings("unchecked")
+      KeyValPair<String, String> error = (KeyValPair<String, String>)tuple;
+      Assert.assertNotNull("the reason is given", error.getValue());
+      records.add(error.getKey());
+    }
+    return records;
+  }
+
+  @Test
+  public void testAllSampled()
+  {
+    SampledRecordValidator validator = validator(SCHEMA, 1);
+    List<String> records = process(validator,
+        "1|User_1|10",
+        "2|\"User|2\"|20",
+        "3|\"User \"\"3\"\"\"|30",
+        "4||",
+        "5|User_5|fifty",
+        "6|User_6",
+        "7|User_7|70|extra",
+        "8|\"User_8|80",
+        "9|\"User\"_9|90");
+    Assert.assertEquals("invalid records are still copied", records, output());
+    Assert.assertEquals(Arrays.asList("5|User_5|fifty", "6|User_6", "7|User_7|70|extra", "8|\"User_8|80",
+        "9|\"User\"_9|90"), rejected());
+  }
+
+  @Test
+  public void testSampled()
+  {
+    // every other record is checked, starting with the first
+    SampledRecordValidator validator = validator(SCHEMA, 0.5);
+    List<String> records = process(validator, "1|User_1|x", "2|User_2|x", "3|User_3|30", "4|User_4", "5|User_5");
+    Assert.assertEquals(records, output());
+    Assert.assertEquals(Arrays.asList("1|User_1|x", "5|User_5"), rejected());
+  }
+
+  @Test
+  public void testNotSampled()
+  {
+    List<String> records = process(validator(null, 1), "1|User_1|x", "2");
+    Assert.assertEquals(records, output());
+    Assert.assertTrue("without a schema no record is checked", errSink.collectedTuples.isEmpty());
+
+    outputSink.clear();
+    records = process(validator(SCHEMA, 0), "1|User_1|x", "2");
+    Assert.assertEquals(records, output());
+    Assert.assertTrue("with a sample rate of 0 no record is checked", errSink.collectedTuples.isEmpty());
+  }
+}
@@ -39,16 +39,40 @@ import com.datatorrent.lib.transform.TransformOperator;
 @ApplicationAnnotation(name="HDFS-to-Kafka-Sync")
 public class Application implements StreamingApplication
 {
+  /**
+   * Set to true to parse the records and drop duplicates before they are sent
+   * to Kafka.
+   */
+  public static final String DEDUP_PROPERTY = "hdfs-to-kafka-sync.dedup";
 
   @Override
   public void populateDAG(DAG dag, Configuration conf)
   {
-    FSRecordReaderModule lineReader = dag.addModule("recordReader", FSRecordReaderModule.class);
+    FSRecordReaderModule lineReader = dag.addModule("recordReader", MappedFSRecordReaderModule.class);
 
     KafkaSinglePortOutputOperator<String,byte[]> kafkaOutput = 
         dag.addOperator("kafkaOutput", new KafkaSinglePortOutputOperator<String,byte[]>());
 
-    dag.addStream("data", lineReader.records, kafkaOutput.inputPort);
+    /*
+     * To drop duplicate records, for example when input files are replayed,
+     * the records are parsed, passed through DedupOperator and formatted
+     * again. Records with the same value of the keyExpression property of
+     * dedup are dropped for expireSeconds. With a chunk size of one byte the
+     * formatter emits every record as a message of its own, and with an empty
+     * lineDelimiter in its schema the messages are the same as without dedup.
+     */
+    if (conf.getBoolean(DEDUP_PROPERTY, false)) {
+      CsvParser csvParser = dag.addOperator("csvParser", CsvParser.class);
+      DedupOperator dedup = dag.addOperator("dedup", new DedupOperator());
+      DelimitedByteFormatter formatter = dag.addOperator("formatter", new DelimitedByteFormatter());
+      formatter.setChunkSize(1);
+      dag.addStream("record", lineReader.records, csvParser.in);
+      dag.addStream("pojo", csvParser.out, dedup.input);
+      dag.addStream("unique", dedup.unique, formatter.in);
+      dag.addStream("data", formatter.out, kafkaOutput.inputPort);
+    } else {
+      dag.addStream("data", lineReader.records, kafkaOutput.inputPort);
+    }
     
     
     /*
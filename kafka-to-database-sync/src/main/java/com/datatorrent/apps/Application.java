@@ -43,18 +43,34 @@ import com.datatorrent.lib.util.FieldInfo;
 @ApplicationAnnotation(name="Kafka-to-Database-Sync")
 public class Application implements StreamingApplication
 {
+  /**
+   * Set to true to drop duplicate records between csvParser and JdbcOutput.
+   */
+  public static final String DEDUP_PROPERTY = "kafka-to-database-sync.dedup";
 
   @Override
   public void populateDAG(DAG dag, Configuration conf)
   {
-    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput", KafkaSinglePortInputOperator.class);
-    CsvParser csvParser = dag.addOperator("csvParser", CsvParser.class);
-    JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput", new JdbcPOJOInsertOutputOperator());
+    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput",
+        InstrumentedKafkaInputOperator.class);
+    CsvParser csvParser = dag.addOperator("csvParser", InstrumentedCsvParser.class);
+    JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput",
+        new InstrumentedJdbcPOJOInsertOutputOperator());
+
+    /*
+     * The operators report records, bytes and latency percentiles per window as
+     * auto metrics. Partitions are combined by summing the counts and taking
+     * the maximum latency.
+     */
+    LatencyMetrics.Aggregator metricsAggregator = new LatencyMetrics.Aggregator();
+    dag.setAttribute(kafkaInputOperator, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+    dag.setAttribute(csvParser, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+    dag.setAttribute(jdbcOutputOperator, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
 
     /*
      * Custom field mapping(DB ColumnName -> PojoFieldExpression) provided to JdbcOutput Operator.
      */
-    JdbcTransactionalStore outputStore = new JdbcTransactionalStore();
+    JdbcTransactionalStore outputStore = new InstrumentedJdbcPOJOInsertOutputOperator.CommitTimingStore();
     jdbcOutputOperator.setStore(outputStore);
     jdbcOutputOperator.setFieldInfos(addFieldInfos());
 
@@ -62,10 +78,108 @@ public class Application implements StreamingApplication
      * Connecting JDBC operators and using parallel partitioning for input port.
      */
     dag.addStream("record", kafkaInputOperator.outputPort, csvParser.in);
-    dag.addStream("pojo", csvParser.out, jdbcOutputOperator.input);
     dag.setInputPortAttribute(csvParser.in, Context.PortContext.PARTITION_PARALLEL, true);
     dag.setInputPortAttribute(jdbcOutputOperator.input, Context.PortContext.PARTITION_PARALLEL, true);
 
+    /*
+     * To drop duplicate records, such as replayed or repeated topic messages,
+     * DedupOperator is inserted between csvParser and JdbcOutput. Records with
+     * the same value of its keyExpression property are dropped for
+     * expireSeconds. A partition of dedup only sees the keys of its Kafka
+     * partitions, so parallel partitioning finds all duplicates only when the
+     * topic is partitioned by the same key.
+     */
+    if (conf.getBoolean(DEDUP_PROPERTY, false)) {
+      DedupOperator dedup = dag.addOperator("dedup", new DedupOperator());
+      dag.addStream("pojo", csvParser.out, dedup.input);
+      dag.addStream("unique", dedup.unique, jdbcOutputOperator.input);
+      dag.setInputPortAttribute(dedup.input, Context.PortContext.PARTITION_PARALLEL, true);
+    } else {
+      dag.addStream("pojo", csvParser.out, jdbcOutputOperator.input);
+    }
+
+    /*
+     * To parse records without the per field String and boxed value
+     * allocations of CsvParser, use DelimitedByteParser instead. It takes the
+     * same schema property and has the same port names:
+     *
+     * DelimitedByteParser csvParser = dag.addOperator("csvParser", new DelimitedByteParser());
+     */
+
+    /*
+     * When csvParser and JdbcOutput are not partitioned in parallel, or are
+     * placed in different containers, every PojoEvent is serialized with Kryo
+     * between them. To serialize the tuples in a compact binary layout and
+     * partition them by a stable hash of the given key fields instead, set
+     * PojoStreamCodec on the input port of JdbcOutput:
+     *
+     * dag.setInputPortAttribute(jdbcOutputOperator.input, Context.PortContext.STREAM_CODEC,
+     *     new PojoStreamCodec(PojoEvent.class, "accountNumber"));
+     */
+
+    /*
+     * JdbcOutput executes each batch and commits on the operator thread, so
+     * the throughput of a partition is bounded by the database round trips.
+     * To execute the batches on a pool of worker connections while the
+     * operator goes on with the next tuples, use
+     * AsyncJdbcPOJOInsertOutputOperator instead. Its workers, keyExpression and
+     * maxInFlightBatches properties are listed in properties.xml:
+     *
+     * JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput",
+     *     new AsyncJdbcPOJOInsertOutputOperator());
+     */
+
+    /*
+     * JdbcOutput commits its rows and updates its row of the meta table every
+     * window. To commit every commitWindowCount windows, and before every
+     * checkpoint, use CoalescingJdbcPOJOInsertOutputOperator with a
+     * CoalescingJdbcTransactionalStore. With the windowIdColumn, appIdColumn
+     * and operatorIdColumn properties of the store set, the window id is
+     * written into the rows instead of the meta table. The properties are
+     * listed in properties.xml:
+     *
+     * JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput",
+     *     new CoalescingJdbcPOJOInsertOutputOperator());
+     * JdbcTransactionalStore outputStore = new CoalescingJdbcTransactionalStore();
+     */
+
+    /*
+     * To spread the rows over several databases with the same table instead of
+     * writing all of them to one, use ShardedJdbcPOJOInsertOutputOperator. Rows
+     * go to the database of the shardUrls property picked by a consistent hash
+     * of shardKeyExpression, and every database commits its rows with its own
+     * window id. The store settings other than the URL apply to all of them;
+     * the properties are listed in properties.xml:
+     *
+     * JdbcPOJOInsertOutputOperator jdbcOutputOperator = dag.addOperator("JdbcOutput",
+     *     new ShardedJdbcPOJOInsertOutputOperator());
+     */
+
+    /*
+     * To set columns of a reference table on the tuples before they are
+     * inserted, such as the tier and region of the account, insert
+     * JdbcLookupEnrichmentOperator between csvParser and JdbcOutput. Rows are
+     * cached, and the keys which are not cached are looked up in batches on a
+     * separate connection; small tables can be preloaded. The tuple class
+     * needs the fields, which are also added to the field mappings of
+     * JdbcOutput. The table and key properties are listed in properties.xml:
+     *
+     * JdbcLookupEnrichmentOperator enrich = dag.addOperator("enrich", new JdbcLookupEnrichmentOperator());
+     * enrich.setStore(new JdbcStore());
+     * List<FieldInfo> enrichFieldInfos = Lists.newArrayList();
+     * enrichFieldInfos.add(new FieldInfo("tier", "tier", FieldInfo.SupportType.STRING));
+     * enrichFieldInfos.add(new FieldInfo("region", "region", FieldInfo.SupportType.STRING));
+     * enrich.setFieldInfos(enrichFieldInfos);
+     *
+     * Replace the following line:
+     * dag.addStream("pojo", csvParser.out, jdbcOutputOperator.input);
+     *
+     * with the following lines:
+     * dag.addStream("pojo", csvParser.out, enrich.input);
+     * dag.addStream("enriched", enrich.output, jdbcOutputOperator.input);
+     * dag.setInputPortAttribute(enrich.input, Context.PortContext.PARTITION_PARALLEL, true);
+     */
+
     /*
      * To add custom logic to your DAG, add your custom operator here with
      * dag.addOperator api call and connect it in the dag using the dag.addStream
@@ -25,34 +25,116 @@ import java.util.Map;
 import org.apache.apex.malhar.kafka.KafkaSinglePortInputOperator;
 import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.StringFileOutputOperator;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 
 import com.google.common.collect.Maps;
 
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.DAG;
+import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.StreamingApplication;
 import com.datatorrent.api.annotation.ApplicationAnnotation;
 import com.datatorrent.contrib.formatter.CsvFormatter;
 import com.datatorrent.contrib.parser.CsvParser;
-import com.datatorrent.lib.filter.FilterOperator;
 import com.datatorrent.lib.transform.TransformOperator;
 
 @ApplicationAnnotation(name = "Kafka-to-HDFS-Filter")
 public class Application implements StreamingApplication
 {
+  public static final String ROUTES_PROPERTY = "dt.operator.router.prop.routes";
 
   public void populateDAG(DAG dag, Configuration conf)
   {
-    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput", KafkaSinglePortInputOperator.class);
-    CsvParser csvParser = dag.addOperator("csvParser", CsvParser.class);
-    FilterOperator filterOperator = dag.addOperator("filter", new FilterOperator());
+    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput",
+        InstrumentedKafkaInputOperator.class);
+    CsvParser csvParser = dag.addOperator("csvParser", InstrumentedCsvParser.class);
+    dag.addStream("data", kafkaInputOperator.outputPort, csvParser.in);
+
+    /*
+     * The instrumented operators report records, bytes and latency percentiles
+     * per window as auto metrics. Partitions are combined by summing the
+     * counts and taking the maximum latency.
+     */
+    LatencyMetrics.Aggregator metricsAggregator = new LatencyMetrics.Aggregator();
+    dag.setAttribute(kafkaInputOperator, OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+    dag.setAttribute(csvParser, OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+
+    /*
+     * To parse records without the per field String and boxed value
+     * allocations of CsvParser, use DelimitedByteParser instead. It takes the
+     * same schema property and has the same port names:
+     *
+     * DelimitedByteParser csvParser = dag.addOperator("csvParser", new DelimitedByteParser());
+     */
+
+    /*
+     * When routes are configured, a single consume-and-parse feeds a router
+     * with one formatter and file writer per route instead of the filter.
+     */
+    String routes = conf.get(ROUTES_PROPERTY);
+    if (routes != null && !routes.trim().isEmpty()) {
+      addRoutes(dag, conf, csvParser.out, routes);
+      return;
+    }
+
+    CompiledFilterOperator filterOperator = dag.addOperator("filter", new CompiledFilterOperator());
     CsvFormatter formatter = dag.addOperator("formatter", new CsvFormatter());
-    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new StringFileOutputOperator());
+    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new InstrumentedStringFileOutputOperator());
+    // the selectivity of a partition counts by the tuples it evaluated
+    LatencyMetrics.Aggregator filterMetricsAggregator = new LatencyMetrics.Aggregator();
+    filterMetricsAggregator.setWeightMetric("tuplesEvaluated");
+    dag.setAttribute(filterOperator, OperatorContext.METRICS_AGGREGATOR, filterMetricsAggregator);
+    dag.setAttribute(fileOutput, OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
 
-    dag.addStream("data", kafkaInputOperator.outputPort, csvParser.in);
     dag.addStream("pojo", csvParser.out, filterOperator.input);
     dag.addStream("filtered", filterOperator.truePort, formatter.in);
     dag.addStream("string", formatter.out, fileOutput.input);
 
+    /*
+     * To write records without creating a String per record and encoding it
+     * again in the file writer, format them straight to bytes and write the
+     * resulting chunks as they are. The operator names stay the same, so the
+     * formatter schema and the fileOutput properties still apply. The chunked
+     * writer adds no separator of its own, so change the lineDelimiter of the
+     * formatter schema from "" to "\n" to keep one record per line:
+     *
+     * DelimitedByteFormatter formatter = dag.addOperator("formatter", new DelimitedByteFormatter());
+     * ChunkedBytesFileOutputOperator fileOutput = dag.addOperator("fileOutput",
+     *     new ChunkedBytesFileOutputOperator());
+     */
+
+    /*
+     * To join the records with a large reference file, such as account
+     * dimensions on HDFS, insert ReferenceJoinOperator between csvParser and
+     * filter. The file is indexed once per container in memory mapped files
+     * outside the heap, shared by the partitions in the container, and
+     * indexed again in the background when it changes. The columns set on the
+     * tuples are given as field infos; the file and key properties are listed
+     * in properties.xml:
+     *
+     * ReferenceJoinOperator join = dag.addOperator("join", new ReferenceJoinOperator());
+     * List<FieldInfo> joinFieldInfos = new ArrayList<>();
+     * joinFieldInfos.add(new FieldInfo("tier", "tier", FieldInfo.SupportType.STRING));
+     * joinFieldInfos.add(new FieldInfo("region", "region", FieldInfo.SupportType.STRING));
+     * join.setFieldInfos(joinFieldInfos);
+     *
+     * Replace the following line:
+     * dag.addStream("pojo", csvParser.out, filterOperator.input);
+     *
+     * with the following lines:
+     * dag.addStream("pojo", csvParser.out, join.input);
+     * dag.addStream("joined", join.output, filterOperator.input);
+     */
+
+    /*
+     * The filter condition is compiled once into a class specialized for the
+     * TUPLE_CLASS and evaluated on batches of tuples. To use the expression
+     * based evaluator from Malhar instead, replace the filter operator with
+     * com.datatorrent.lib.filter.FilterOperator; it takes the same condition
+     * property and has the same port names.
+     */
+
     /*
      * To add custom logic to your DAG, add your custom operator here with
      * dag.addOperator api call and connect it in the dag using the dag.addStream
@@ -94,4 +176,42 @@ public class Application implements StreamingApplication
      */
   }
 
+  /**
+   * Adds the router and, for every route, a formatter named formatter_&lt;route&gt;
+   * and a file writer named fileOutput_&lt;route&gt;. Unless overridden for the
+   * route, the formatter uses the schema of the formatter operator and each
+   * route is written to a sub directory of fileOutput filePath named after the
+   * route.
+   */
+  private void addRoutes(DAG dag, Configuration conf, DefaultOutputPort<Object> pojo, String routes)
+  {
+    ContentRouterOperator router = dag.addOperator("router", new ContentRouterOperator());
+    router.setRoutes(routes);
+    dag.addStream("pojo", pojo, router.input);
+
+    Class<?> tupleClass = conf.getClass("dt.operator.router.port.input.attr.TUPLE_CLASS", PojoEvent.class);
+    dag.setInputPortAttribute(router.input, PortContext.TUPLE_CLASS, tupleClass);
+    String schema = conf.get("dt.operator.formatter.prop.schema");
+    String filePath = conf.get("dt.operator.fileOutput.prop.filePath");
+    String outputFileName = conf.get("dt.operator.fileOutput.prop.outputFileName");
+
+    int index = 0;
+    for (String route : ContentRouterOperator.parseRoutes(routes).keySet()) {
+      CsvFormatter formatter = dag.addOperator("formatter_" + route, new CsvFormatter());
+      formatter.setSchema(schema);
+      dag.setInputPortAttribute(formatter.in, PortContext.TUPLE_CLASS, tupleClass);
+
+      StringFileOutputOperator fileOutput = dag.addOperator("fileOutput_" + route, new StringFileOutputOperator());
+      if (filePath != null) {
+        fileOutput.setFilePath(filePath + Path.SEPARATOR + route);
+      }
+      if (outputFileName != null) {
+        fileOutput.setOutputFileName(outputFileName);
+      }
+
+      dag.addStream("routed_" + route, router.getRoutePort(index++), formatter.in);
+      dag.addStream("string_" + route, formatter.out, fileOutput.input);
+    }
+  }
+
 }
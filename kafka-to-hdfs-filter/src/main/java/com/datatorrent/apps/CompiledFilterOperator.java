@@ -0,0 +1,363 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+
+/**
+ * Filter operator which compiles the filter condition once per TUPLE_CLASS into
+ * a specialized class and evaluates buffered tuples in batches.
+ * <p>
+ * The condition uses the same syntax as {@link com.datatorrent.lib.filter.FilterOperator},
+ * e.g. <code>({$}.getAmount() >= 5000)</code> or <code>{$.amount} >= 5000</code>.
+ * Tuples are buffered until <code>batchSize</code> tuples are available or the
+ * window ends, and the whole batch is evaluated in one call to the generated
+ * class, where the tuple type is known statically so field access is a direct
+ * getter call instead of reflective or interpreted evaluation.
+ * <p>
+ * Per window selectivity and evaluation time are reported as auto metrics.
+ */
+public class CompiledFilterOperator extends BaseOperator
+{
+  /**
+   * Implemented by the class generated from the filter condition.
+   */
+  public interface BatchPredicate
+  {
+    /**
+     * Evaluates the condition on the first <code>length</code> tuples and stores
+     * the results in <code>results</code>.
+     *
+     * @return number of tuples which satisfied the condition
+     */
+    int evaluate(Object[] tuples, int length, boolean[] results);
+
+    boolean evaluate(Object tuple);
+  }
+
+  private static final Pattern FIELD_EXPRESSION = Pattern.compile("\\{\\$\\.([a-zA-Z_][a-zA-Z0-9_]*)\\}");
+  private static final String TUPLE_VARIABLE = "t";
+
+  @NotNull
+  private String condition;
+
+  @Min(1)
+  private int batchSize = 1024;
+
+  @AutoMetric
+  private long tuplesEvaluated;
+
+  @AutoMetric
+  private long tuplesSelected;
+
+  @AutoMetric
+  private double selectivity;
+
+  @AutoMetric
+  private long evaluationNanos;
+
+  private transient Class<?> tupleClass;
+  private transient BatchPredicate predicate;
+  private transient Object[] buffer;
+  private transient boolean[] results;
+  private transient int buffered;
+  private transient LatencyMetrics latencyMetrics;
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      buffer[buffered++] = tuple;
+      if (buffered == batchSize) {
+        flush();
+      }
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultOutputPort<Object> truePort = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> falsePort = new DefaultOutputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  };
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<Object> error = new DefaultOutputPort<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    predicate = compile(condition, tupleClass);
+    buffer = new Object[batchSize];
+    results = new boolean[batchSize];
+    latencyMetrics = new LatencyMetrics();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    tuplesEvaluated = 0;
+    tuplesSelected = 0;
+    evaluationNanos = 0;
+    selectivity = 0;
+    latencyMetrics.beginWindow();
+  }
+
+  @Override
+  public void endWindow()
+  {
+    flush();
+    selectivity = tuplesEvaluated == 0 ? 0 : (double)tuplesSelected / tuplesEvaluated;
+  }
+
+  private void flush()
+  {
+    if (buffered == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    boolean evaluated;
+    try {
+      tuplesSelected += predicate.evaluate(buffer, buffered, results);
+      evaluated = true;
+    } catch (RuntimeException e) {
+      LOG.debug("Batch evaluation failed, evaluating tuples individually", e);
+      evaluated = false;
+    }
+    long nanos = System.nanoTime() - start;
+    evaluationNanos += nanos;
+    // tuples are emitted outside of the try block, so that an exception from
+    // downstream is not taken for a failed evaluation and the batch emitted again
+    if (evaluated) {
+      latencyMetrics.recordTuples(nanos, buffered);
+      for (int i = 0; i < buffered; i++) {
+        if (results[i]) {
+          truePort.emit(buffer[i]);
+        } else {
+          falsePort.emit(buffer[i]);
+        }
+      }
+    } else {
+      evaluateIndividually();
+    }
+    tuplesEvaluated += buffered;
+    for (int i = 0; i < buffered; i++) {
+      buffer[i] = null;
+    }
+    buffered = 0;
+  }
+
+  private void evaluateIndividually()
+  {
+    for (int i = 0; i < buffered; i++) {
+      Object tuple = buffer[i];
+      long start = System.nanoTime();
+      boolean result;
+      try {
+        result = predicate.evaluate(tuple);
+      } catch (RuntimeException e) {
+        evaluationNanos += System.nanoTime() - start;
+        LOG.error("Error evaluating condition {} on tuple {}", condition, tuple, e);
+        error.emit(tuple);
+        continue;
+      }
+      long nanos = System.nanoTime() - start;
+      evaluationNanos += nanos;
+      latencyMetrics.recordTuple(nanos);
+      if (result) {
+        tuplesSelected++;
+        truePort.emit(tuple);
+      } else {
+        falsePort.emit(tuple);
+      }
+    }
+  }
+
+  /**
+   * Generates and compiles the {@link BatchPredicate} implementation for the
+   * given condition and tuple class.
+   */
+  static BatchPredicate compile(String condition, Class<?> tupleClass)
+  {
+    String typeName = tupleClass.getName().replace('$', '.');
+    String expression = translate(condition, tupleClass);
+
+    StringBuilder body = new StringBuilder();
+    body.append("public int evaluate(Object[] tuples, int length, boolean[] results) {\n");
+    body.append("  int selected = 0;\n");
+    body.append("  for (int i = 0; i < length; i++) {\n");
+    body.append("    ").append(typeName).append(" ").append(TUPLE_VARIABLE).append(" = (").append(typeName)
+        .append(")tuples[i];\n");
+    body.append("    boolean r = (").append(expression).append(");\n");
+    body.append("    results[i] = r;\n");
+    body.append("    if (r) {\n");
+    body.append("      selected++;\n");
+    body.append("    }\n");
+    body.append("  }\n");
+    body.append("  return selected;\n");
+    body.append("}\n");
+    body.append("public boolean evaluate(Object tuple) {\n");
+    body.append("  ").append(typeName).append(" ").append(TUPLE_VARIABLE).append(" = (").append(typeName)
+        .append(")tuple;\n");
+    body.append("  return (").append(expression).append(");\n");
+    body.append("}\n");
+    LOG.debug("Generated filter class body:\n{}", body);
+
+    ClassBodyEvaluator evaluator = new ClassBodyEvaluator();
+    evaluator.setImplementedInterfaces(new Class[] {BatchPredicate.class});
+    evaluator.setParentClassLoader(tupleClass.getClassLoader());
+    try {
+      evaluator.cook(body.toString());
+      return (BatchPredicate)evaluator.getClazz().newInstance();
+    } catch (CompileException | InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Unable to compile filter condition " + condition, e);
+    }
+  }
+
+  /**
+   * Replaces the <code>{$}</code> and <code>{$.field}</code> placeholders with
+   * accesses on the typed tuple variable.
+   */
+  static String translate(String condition, Class<?> tupleClass)
+  {
+    Matcher matcher = FIELD_EXPRESSION.matcher(condition);
+    StringBuffer sb = new StringBuffer();
+    while (matcher.find()) {
+      matcher.appendReplacement(sb, Matcher.quoteReplacement(TUPLE_VARIABLE + "." + accessor(tupleClass,
+          matcher.group(1))));
+    }
+    matcher.appendTail(sb);
+    return sb.toString().replace("{$}", TUPLE_VARIABLE);
+  }
+
+  private static String accessor(Class<?> tupleClass, String field)
+  {
+    String suffix = Character.toUpperCase(field.charAt(0)) + field.substring(1);
+    for (String prefix : new String[] {"get", "is"}) {
+      try {
+        Method method = tupleClass.getMethod(prefix + suffix);
+        return method.getName() + "()";
+      } catch (NoSuchMethodException e) {
+        // try next
+      }
+    }
+    try {
+      Field f = tupleClass.getField(field);
+      if (Modifier.isPublic(f.getModifiers())) {
+        return field;
+      }
+    } catch (NoSuchFieldException e) {
+      // fall through
+    }
+    throw new IllegalArgumentException("No public getter or field " + field + " in " + tupleClass.getName());
+  }
+
+  /**
+   * Median evaluation time per tuple in the last window. Tuples evaluated in
+   * a batch each count as the batch time divided by the batch size.
+   */
+  @AutoMetric
+  public long getTupleLatencyP50Nanos()
+  {
+    return latencyMetrics.getTupleLatencyNanos(50);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyP99Nanos()
+  {
+    return latencyMetrics.getTupleLatencyNanos(99);
+  }
+
+  @AutoMetric
+  public long getTupleLatencyMaxNanos()
+  {
+    return latencyMetrics.getMaxTupleLatencyNanos();
+  }
+
+  public String getCondition()
+  {
+    return condition;
+  }
+
+  /**
+   * Filter condition, e.g. <code>({$}.getAmount() >= 5000)</code>
+   */
+  public void setCondition(String condition)
+  {
+    this.condition = condition;
+  }
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * Maximum number of tuples buffered before they are evaluated together.
+   * Tuples are always evaluated at the end of the window.
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(CompiledFilterOperator.class);
+}
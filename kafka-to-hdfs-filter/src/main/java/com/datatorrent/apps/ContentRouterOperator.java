@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.InputPortFieldAnnotation;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+
+/**
+ * Routes each tuple to one or more named destinations based on an ordered list
+ * of conditions, evaluated in a single pass per tuple.
+ * <p>
+ * Routes are configured with the <code>routes</code> property, one route per
+ * line in the form <code>name:condition</code>, for example:
+ * <pre>
+ * high:({$}.getAmount() >= 5000)
+ * low:({$}.getAmount() &lt; 5000)
+ * </pre>
+ * The n-th route is emitted on port <code>routeN</code>, up to {@link #MAX_ROUTES}
+ * routes. By default a tuple goes to the first route whose condition holds;
+ * with <code>emitToAllMatches</code> it goes to every matching route. Tuples
+ * matching no route are emitted on <code>unmatched</code>. Conditions use the
+ * same syntax as {@link CompiledFilterOperator} and are compiled the same way.
+ */
+public class ContentRouterOperator extends BaseOperator
+{
+  public static final int MAX_ROUTES = 8;
+
+  @NotNull
+  private String routes;
+
+  private boolean emitToAllMatches;
+
+  @AutoMetric
+  private long tuplesRouted;
+
+  @AutoMetric
+  private long tuplesUnmatched;
+
+  private transient Class<?> tupleClass;
+  private transient CompiledFilterOperator.BatchPredicate[] predicates;
+  private transient boolean[] matched;
+  private transient List<DefaultOutputPort<Object>> routePorts;
+
+  @InputPortFieldAnnotation(schemaRequired = true)
+  public final transient DefaultInputPort<Object> input = new DefaultInputPort<Object>()
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      tupleClass = context.getValue(Context.PortContext.TUPLE_CLASS);
+    }
+
+    @Override
+    public void process(Object tuple)
+    {
+      route(tuple);
+    }
+  };
+
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route0 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route1 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route2 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route3 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route4 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route5 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route6 = new RoutePort();
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> route7 = new RoutePort();
+
+  @OutputPortFieldAnnotation(schemaRequired = true, optional = true)
+  public final transient DefaultOutputPort<Object> unmatched = new RoutePort();
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<Object> error = new DefaultOutputPort<>();
+
+  private class RoutePort extends DefaultOutputPort<Object>
+  {
+    @Override
+    public void setup(Context.PortContext context)
+    {
+      context.getAttributes().put(Context.PortContext.TUPLE_CLASS, tupleClass);
+    }
+  }
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    Map<String, String> conditions = parseRoutes(routes);
+    predicates = new CompiledFilterOperator.BatchPredicate[conditions.size()];
+    int i = 0;
+    for (Map.Entry<String, String> entry : conditions.entrySet()) {
+      LOG.debug("Route {} on port route{}: {}", entry.getKey(), i, entry.getValue());
+      predicates[i++] = CompiledFilterOperator.compile(entry.getValue(), tupleClass);
+    }
+    matched = new boolean[predicates.length];
+    routePorts = Lists.newArrayList(route0, route1, route2, route3, route4, route5, route6, route7);
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    tuplesRouted = 0;
+    tuplesUnmatched = 0;
+  }
+
+  /**
+   * Evaluates the conditions before the tuple is emitted, so a condition which
+   * fails sends the tuple only to the error port and a failure downstream is
+   * not taken for one.
+   */
+  private void route(Object tuple)
+  {
+    Arrays.fill(matched, false);
+    int matches = 0;
+    try {
+      for (int i = 0; i < predicates.length; i++) {
+        matched[i] = predicates[i].evaluate(tuple);
+        if (matched[i]) {
+          matches++;
+          if (!emitToAllMatches) {
+            break;
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Error routing tuple {}", tuple, e);
+      error.emit(tuple);
+      return;
+    }
+    if (matches == 0) {
+      tuplesUnmatched++;
+      unmatched.emit(tuple);
+      return;
+    }
+    tuplesRouted++;
+    for (int i = 0; i < predicates.length && matches > 0; i++) {
+      if (matched[i]) {
+        matches--;
+        routePorts.get(i).emit(tuple);
+      }
+    }
+  }
+
+  /**
+   * Returns the output port for the route at the given position.
+   */
+  public DefaultOutputPort<Object> getRoutePort(int index)
+  {
+    switch (index) {
+      case 0:
+        return route0;
+      case 1:
+        return route1;
+      case 2:
+        return route2;
+      case 3:
+        return route3;
+      case 4:
+        return route4;
+      case 5:
+        return route5;
+      case 6:
+        return route6;
+      case 7:
+        return route7;
+      default:
+        throw new IndexOutOfBoundsException("Route index " + index + " exceeds " + MAX_ROUTES + " routes");
+    }
+  }
+
+  /**
+   * Parses the routes specification into an ordered map of route name to
+   * condition.
+   */
+  public static Map<String, String> parseRoutes(String routes)
+  {
+    Map<String, String> conditions = new LinkedHashMap<>();
+    for (String line : routes.split("\n")) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      int separator = line.indexOf(':');
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Invalid route, expected name:condition - " + line);
+      }
+      String name = line.substring(0, separator).trim();
+      if (conditions.put(name, line.substring(separator + 1).trim()) != null) {
+        throw new IllegalArgumentException("Duplicate route " + name);
+      }
+    }
+    if (conditions.size() > MAX_ROUTES) {
+      throw new IllegalArgumentException("At most " + MAX_ROUTES + " routes are supported");
+    }
+    return conditions;
+  }
+
+  public String getRoutes()
+  {
+    return routes;
+  }
+
+  /**
+   * Ordered routes, one <code>name:condition</code> per line
+   */
+  public void setRoutes(String routes)
+  {
+    this.routes = routes;
+  }
+
+  public boolean isEmitToAllMatches()
+  {
+    return emitToAllMatches;
+  }
+
+  /**
+   * Emit a tuple on every matching route instead of only the first one
+   */
+  public void setEmitToAllMatches(boolean emitToAllMatches)
+  {
+    this.emitToAllMatches = emitToAllMatches;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ContentRouterOperator.class);
+}
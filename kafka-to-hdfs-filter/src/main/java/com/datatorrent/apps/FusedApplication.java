@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import org.apache.apex.malhar.kafka.KafkaSinglePortInputOperator;
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator.StringFileOutputOperator;
+import org.apache.hadoop.conf.Configuration;
+
+import com.datatorrent.api.DAG;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.StreamingApplication;
+import com.datatorrent.api.annotation.ApplicationAnnotation;
+
+/**
+ * Variant of the Kafka-to-HDFS-Filter application where parsing, filtering and
+ * formatting run inside a single {@link ParseFilterFormatOperator}, which is
+ * thread local with the file writer. Records are only serialized between the
+ * Kafka input and the fused operator.
+ */
+@ApplicationAnnotation(name = "Kafka-to-HDFS-Filter-Fused")
+public class FusedApplication implements StreamingApplication
+{
+
+  public void populateDAG(DAG dag, Configuration conf)
+  {
+    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput", KafkaSinglePortInputOperator.class);
+    ParseFilterFormatOperator filterOperator = dag.addOperator("filter", new ParseFilterFormatOperator());
+    StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new StringFileOutputOperator());
+    fileOutput.setConverter(new ParseFilterFormatOperator.Utf8Converter());
+
+    dag.addStream("data", kafkaInputOperator.outputPort, filterOperator.in);
+    dag.addStream("string", filterOperator.out, fileOutput.input).setLocality(Locality.THREAD_LOCAL);
+  }
+
+}
@@ -0,0 +1,426 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.contrib.parser.DelimitedSchema;
+import com.datatorrent.lib.converter.Converter;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * Parses delimited records, filters them and formats the selected ones back
+ * to delimited strings inside a single operator.
+ * <p>
+ * This replaces the <code>csvParser -> filter -> formatter</code> part of the
+ * Kafka-to-HDFS-Filter pipeline so records never cross an operator boundary
+ * as POJOs. A single instance of <code>tupleClass</code> and a single output
+ * buffer are reused for every record; this is safe because the POJO never
+ * leaves the operator. The <code>schema</code> and <code>condition</code>
+ * properties use the same formats as {@link com.datatorrent.contrib.parser.CsvParser}
+ * and {@link CompiledFilterOperator}. Records are written back with the same
+ * separator and quote character; records which cannot be parsed, or on which
+ * the condition fails, are emitted on the <code>err</code> port. Records are
+ * decoded from UTF-8, and {@link Utf8Converter} writes them back the same way.
+ */
+public class ParseFilterFormatOperator extends BaseOperator
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  @NotNull
+  private String schema;
+
+  @NotNull
+  private String condition;
+
+  @NotNull
+  private String tupleClassName;
+
+  @AutoMetric
+  private long tuplesIn;
+
+  @AutoMetric
+  private long tuplesOut;
+
+  @AutoMetric
+  private long errorTuples;
+
+  private transient char separator;
+  private transient char quoteChar;
+  private transient FieldCodec[] codecs;
+  private transient String[] values;
+  private transient Object tuple;
+  private transient CompiledFilterOperator.BatchPredicate predicate;
+  private transient StringBuilder line;
+  private transient StringBuilder output;
+
+  public final transient DefaultInputPort<byte[]> in = new DefaultInputPort<byte[]>()
+  {
+    @Override
+    public void process(byte[] tuple)
+    {
+      processRecord(new String(tuple, UTF8));
+    }
+  };
+
+  public final transient DefaultOutputPort<String> out = new DefaultOutputPort<>();
+
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<String> err = new DefaultOutputPort<>();
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    Class<?> tupleClass;
+    try {
+      tupleClass = Thread.currentThread().getContextClassLoader().loadClass(tupleClassName);
+      tuple = tupleClass.newInstance();
+    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+      throw new RuntimeException("Unable to instantiate " + tupleClassName, e);
+    }
+
+    DelimitedSchema delimitedSchema = new DelimitedSchema(schema);
+    separator = delimitedSchema.getDelimiterChar();
+    quoteChar = delimitedSchema.getQuoteChar();
+    List<DelimitedSchema.Field> fields = delimitedSchema.getFields();
+    codecs = new FieldCodec[fields.size()];
+    for (int i = 0; i < codecs.length; i++) {
+      codecs[i] = FieldCodec.create(tupleClass, fields.get(i).getName(), fields.get(i).getType().name());
+    }
+    values = new String[codecs.length];
+
+    predicate = CompiledFilterOperator.compile(condition, tupleClass);
+    line = new StringBuilder();
+    output = new StringBuilder();
+  }
+
+  @Override
+  public void beginWindow(long windowId)
+  {
+    tuplesIn = 0;
+    tuplesOut = 0;
+    errorTuples = 0;
+  }
+
+  void processRecord(String record)
+  {
+    tuplesIn++;
+    try {
+      if (split(record) != codecs.length) {
+        throw new IllegalArgumentException("Expected " + codecs.length + " fields");
+      }
+      for (int i = 0; i < codecs.length; i++) {
+        codecs[i].parse(tuple, values[i]);
+      }
+    } catch (RuntimeException e) {
+      LOG.debug("Unable to parse {}", record, e);
+      errorTuples++;
+      err.emit(record);
+      return;
+    }
+
+    boolean selected;
+    try {
+      selected = predicate.evaluate(tuple);
+    } catch (RuntimeException e) {
+      LOG.error("Error evaluating condition {} on record {}", condition, record, e);
+      errorTuples++;
+      err.emit(record);
+      return;
+    }
+    if (!selected) {
+      return;
+    }
+
+    output.setLength(0);
+    for (int i = 0; i < codecs.length; i++) {
+      if (i > 0) {
+        output.append(separator);
+      }
+      line.setLength(0);
+      codecs[i].format(tuple, line);
+      appendQuoted(line);
+    }
+    tuplesOut++;
+    out.emit(output.toString());
+  }
+
+  /**
+   * Splits the record into {@link #values}, handling quoted values with
+   * doubled quote characters as escapes.
+   *
+   * @return number of values found
+   */
+  private int split(String record)
+  {
+    int count = 0;
+    int length = record.length();
+    int i = 0;
+    while (i <= length) {
+      if (count == values.length) {
+        return count + 1;
+      }
+      line.setLength(0);
+      if (i < length && record.charAt(i) == quoteChar) {
+        i++;
+        while (i < length) {
+          char c = record.charAt(i++);
+          if (c == quoteChar) {
+            if (i < length && record.charAt(i) == quoteChar) {
+              line.append(c);
+              i++;
+            } else {
+              break;
+            }
+          } else {
+            line.append(c);
+          }
+        }
+        values[count++] = line.toString();
+        i++;
+      } else {
+        int end = record.indexOf(separator, i);
+        if (end < 0) {
+          end = length;
+        }
+        values[count++] = record.substring(i, end);
+        i = end + 1;
+      }
+    }
+    return count;
+  }
+
+  private void appendQuoted(CharSequence value)
+  {
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == separator || c == quoteChar || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      output.append(value);
+      return;
+    }
+    output.append(quoteChar);
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == quoteChar) {
+        output.append(quoteChar);
+      }
+      output.append(c);
+    }
+    output.append(quoteChar);
+  }
+
+  /**
+   * Reads and writes one POJO field using the type declared in the schema.
+   */
+  abstract static class FieldCodec
+  {
+    abstract void parse(Object pojo, String value);
+
+    abstract void format(Object pojo, StringBuilder sb);
+
+    static FieldCodec create(Class<?> clazz, String name, String type)
+    {
+      switch (type) {
+        case "INTEGER":
+          return new IntCodec(PojoUtils.createSetterInt(clazz, name), PojoUtils.createGetterInt(clazz, name));
+        case "LONG":
+          return new LongCodec(PojoUtils.createSetterLong(clazz, name), PojoUtils.createGetterLong(clazz, name));
+        case "DOUBLE":
+          return new DoubleCodec(PojoUtils.createSetterDouble(clazz, name), PojoUtils.createGetterDouble(clazz, name));
+        case "STRING":
+          return new StringCodec(PojoUtils.<Object, String>createSetter(clazz, name, String.class),
+              PojoUtils.<Object, String>createGetter(clazz, name, String.class));
+        default:
+          throw new IllegalArgumentException("Unsupported type " + type + " for field " + name);
+      }
+    }
+  }
+
+  static class IntCodec extends FieldCodec
+  {
+    private final PojoUtils.SetterInt<Object> setter;
+    private final PojoUtils.GetterInt<Object> getter;
+
+    IntCodec(PojoUtils.SetterInt<Object> setter, PojoUtils.GetterInt<Object> getter)
+    {
+      this.setter = setter;
+      this.getter = getter;
+    }
+
+    @Override
+    void parse(Object pojo, String value)
+    {
+      setter.set(pojo, value.isEmpty() ? 0 : Integer.parseInt(value));
+    }
+
+    @Override
+    void format(Object pojo, StringBuilder sb)
+    {
+      sb.append(getter.get(pojo));
+    }
+  }
+
+  static class LongCodec extends FieldCodec
+  {
+    private final PojoUtils.SetterLong<Object> setter;
+    private final PojoUtils.GetterLong<Object> getter;
+
+    LongCodec(PojoUtils.SetterLong<Object> setter, PojoUtils.GetterLong<Object> getter)
+    {
+      this.setter = setter;
+      this.getter = getter;
+    }
+
+    @Override
+    void parse(Object pojo, String value)
+    {
+      setter.set(pojo, value.isEmpty() ? 0L : Long.parseLong(value));
+    }
+
+    @Override
+    void format(Object pojo, StringBuilder sb)
+    {
+      sb.append(getter.get(pojo));
+    }
+  }
+
+  static class DoubleCodec extends FieldCodec
+  {
+    private final PojoUtils.SetterDouble<Object> setter;
+    private final PojoUtils.GetterDouble<Object> getter;
+
+    DoubleCodec(PojoUtils.SetterDouble<Object> setter, PojoUtils.GetterDouble<Object> getter)
+    {
+      this.setter = setter;
+      this.getter = getter;
+    }
+
+    @Override
+    void parse(Object pojo, String value)
+    {
+      setter.set(pojo, value.isEmpty() ? 0d : Double.parseDouble(value));
+    }
+
+    @Override
+    void format(Object pojo, StringBuilder sb)
+    {
+      sb.append(getter.get(pojo));
+    }
+  }
+
+  static class StringCodec extends FieldCodec
+  {
+    private final PojoUtils.Setter<Object, String> setter;
+    private final PojoUtils.Getter<Object, String> getter;
+
+    StringCodec(PojoUtils.Setter<Object, String> setter, PojoUtils.Getter<Object, String> getter)
+    {
+      this.setter = setter;
+      this.getter = getter;
+    }
+
+    /**
+     * Sets an empty value as null, as CsvParser does.
+     */
+    @Override
+    void parse(Object pojo, String value)
+    {
+      setter.set(pojo, value.isEmpty() ? null : value);
+    }
+
+    @Override
+    void format(Object pojo, StringBuilder sb)
+    {
+      String value = getter.get(pojo);
+      if (value != null) {
+        sb.append(value);
+      }
+    }
+  }
+
+  /**
+   * Encodes the formatted records in UTF-8, the charset they are decoded from,
+   * for the file writer, which would otherwise use the platform charset.
+   */
+  public static class Utf8Converter implements Converter<String, byte[]>
+  {
+    @Override
+    public byte[] convert(String tuple)
+    {
+      return tuple.getBytes(UTF8);
+    }
+  }
+
+  public String getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * Delimited schema of the records, same format as the CsvParser schema
+   */
+  public void setSchema(String schema)
+  {
+    this.schema = schema;
+  }
+
+  public String getCondition()
+  {
+    return condition;
+  }
+
+  /**
+   * Filter condition, e.g. <code>({$}.getAmount() >= 5000)</code>
+   */
+  public void setCondition(String condition)
+  {
+    this.condition = condition;
+  }
+
+  public String getTupleClassName()
+  {
+    return tupleClassName;
+  }
+
+  /**
+   * Fully qualified name of the POJO class the records are parsed into
+   */
+  public void setTupleClassName(String tupleClassName)
+  {
+    this.tupleClassName = tupleClassName;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParseFilterFormatOperator.class);
+}
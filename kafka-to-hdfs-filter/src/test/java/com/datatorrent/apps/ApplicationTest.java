@@ -46,6 +46,7 @@ import info.batey.kafka.unit.KafkaUnit;
 import kafka.producer.KeyedMessage;
 
 import com.datatorrent.api.LocalMode;
+import com.datatorrent.api.StreamingApplication;
 
 import static org.junit.Assert.assertTrue;
 
@@ -136,6 +137,25 @@ public class ApplicationTest
     }
   }
 
+  @Test
+  public void testFusedApplication() throws Exception
+  {
+    try {
+      Configuration conf = getConfig();
+      writeToTopic();
+
+      // fused application has kafkaInput, filter and fileOutput operators
+      outputFilePath = outputDir + "/output.txt_3.0";
+      LocalMode.Controller lc = asyncRun(new FusedApplication(), conf);
+      waitForOutputTuples();
+      compare();
+
+      lc.shutdown();
+    } catch (ConstraintViolationException e) {
+      Assert.fail("constraint violations: " + e.getConstraintViolations());
+    }
+  }
+
   private void writeToTopic()
   {
     KafkaUnit ku = kafkaUnitRule.getKafkaUnit();
@@ -158,10 +178,15 @@ public class ApplicationTest
   }
 
   private LocalMode.Controller asyncRun(Configuration conf) throws Exception
+  {
+    return asyncRun(new Application(), conf);
+  }
+
+  private LocalMode.Controller asyncRun(StreamingApplication app, Configuration conf) throws Exception
   {
 
     LocalMode lma = LocalMode.newInstance();
-    lma.prepareDAG(new Application(), conf);
+    lma.prepareDAG(app, conf);
     LocalMode.Controller lc = lma.getController();
     lc.runAsync();
     return lc;
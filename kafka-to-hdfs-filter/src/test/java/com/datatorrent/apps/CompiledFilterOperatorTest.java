@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.Sink;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * Test the code generation of {@link CompiledFilterOperator} and the ports the
+ * tuples of a batch are emitted on.
+ */
+public class CompiledFilterOperatorTest
+{
+  @Test
+  public void testTranslate()
+  {
+    Assert.assertEquals("(t.getAmount() >= 5000)",
+        CompiledFilterOperator.translate("({$}.getAmount() >= 5000)", PojoEvent.class));
+    Assert.assertEquals("t.getAmount() >= 5000 && t.getName().startsWith(\"User\")",
+        CompiledFilterOperator.translate("{$.amount} >= 5000 && {$.name}.startsWith(\"User\")", PojoEvent.class));
+  }
+
+  @Test
+  public void testBatchEvaluation()
+  {
+    CompiledFilterOperator.BatchPredicate predicate =
+        CompiledFilterOperator.compile("({$}.getAmount() >= 5000)", PojoEvent.class);
+
+    Object[] tuples = new Object[10];
+    for (int i = 0; i < tuples.length; i++) {
+      PojoEvent event = new PojoEvent();
+      event.setAccountNumber(i + 1);
+      event.setName("User_" + (i + 1));
+      event.setAmount((i + 1) * 1000);
+      tuples[i] = event;
+    }
+
+    boolean[] results = new boolean[tuples.length];
+    Assert.assertEquals(6, predicate.evaluate(tuples, tuples.length, results));
+    for (int i = 0; i < tuples.length; i++) {
+      Assert.assertEquals(i >= 4, results[i]);
+      Assert.assertEquals(i >= 4, predicate.evaluate(tuples[i]));
+    }
+  }
+
+  private static PojoEvent event(int accountNumber, String name)
+  {
+    PojoEvent event = new PojoEvent();
+    event.setAccountNumber(accountNumber);
+    event.setName(name);
+    event.setAmount(accountNumber * 1000);
+    return event;
+  }
+
+  private static CompiledFilterOperator filter(String condition, int batchSize)
+  {
+    CompiledFilterOperator filter = new CompiledFilterOperator();
+    filter.setCondition(condition);
+    filter.setBatchSize(batchSize);
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, PojoEvent.class);
+    filter.input.setup(new PortContext(attributes, null));
+    filter.setup(null);
+    return filter;
+  }
+
+  private static List<Integer> accountNumbers(CollectorTestSink<Object> sink)
+  {
+    List<Integer> accountNumbers = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      accountNumbers.add(((PojoEvent)tuple).getAccountNumber());
+    }
+    return accountNumbers;
+  }
+
+  @Test
+  public void testPorts()
+  {
+    // the null names fail the condition, so their batches are evaluated tuple by tuple
+    CompiledFilterOperator filter = filter("{$.name}.startsWith(\"User_1\")", 4);
+    CollectorTestSink<Object> trueSink = new CollectorTestSink<>();
+    CollectorTestSink<Object> falseSink = new CollectorTestSink<>();
+    CollectorTestSink<Object> errorSink = new CollectorTestSink<>();
+    filter.truePort.setSink(trueSink);
+    filter.falsePort.setSink(falseSink);
+    filter.error.setSink(errorSink);
+
+    filter.beginWindow(1);
+    for (int i = 1; i <= 10; i++) {
+      filter.input.process(event(i, i == 3 || i == 7 ? null : "User_" + i));
+    }
+    Assert.assertEquals("two full batches", 8, trueSink.collectedTuples.size() + falseSink.collectedTuples.size()
+        + errorSink.collectedTuples.size());
+    filter.endWindow();
+    Assert.assertEquals(Arrays.asList(1, 10), accountNumbers(trueSink));
+    Assert.assertEquals(Arrays.asList(2, 4, 5, 6, 8, 9), accountNumbers(falseSink));
+    Assert.assertEquals(Arrays.asList(3, 7), accountNumbers(errorSink));
+
+    // batches without errors
+    trueSink.clear();
+    falseSink.clear();
+    errorSink.clear();
+    filter.beginWindow(2);
+    for (int i = 10; i < 15; i++) {
+      filter.input.process(event(i, "User_" + i));
+    }
+    filter.endWindow();
+    Assert.assertEquals(Arrays.asList(10, 11, 12, 13, 14), accountNumbers(trueSink));
+    Assert.assertTrue(falseSink.collectedTuples.isEmpty());
+    Assert.assertTrue(errorSink.collectedTuples.isEmpty());
+  }
+
+  @Test
+  public void testDownstreamFailure()
+  {
+    CompiledFilterOperator filter = filter("({$}.getAmount() >= 0)", 4);
+    CollectorTestSink<Object> errorSink = new CollectorTestSink<>();
+    final List<Object> received = new ArrayList<>();
+    filter.truePort.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.add(tuple);
+        throw new IllegalStateException("downstream failure");
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+    filter.error.setSink(errorSink);
+
+    filter.beginWindow(1);
+    for (int i = 1; i < 4; i++) {
+      filter.input.process(event(i, "User_" + i));
+    }
+    try {
+      filter.endWindow();
+      Assert.fail("the failure of the sink is not passed on");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("downstream failure", e.getMessage());
+    }
+    Assert.assertEquals("a tuple is emitted only once", 1, received.size());
+    Assert.assertTrue("the tuples are not taken for evaluation errors", errorSink.collectedTuples.isEmpty());
+  }
+}
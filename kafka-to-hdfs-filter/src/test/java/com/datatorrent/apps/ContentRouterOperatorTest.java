@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.Sink;
+import com.datatorrent.lib.testbench.CollectorTestSink;
+import com.datatorrent.stram.engine.PortContext;
+
+/**
+ * Test the route specification parsing of {@link ContentRouterOperator} and
+ * the ports the tuples are emitted on.
+ */
+public class ContentRouterOperatorTest
+{
+  private static final String ROUTES = "high:({$}.getAmount() >= 5000)\n"
+      + "named:{$.name}.startsWith(\"User\")\n"
+      + "low:({$}.getAmount() < 5000)";
+
+  private static PojoEvent event(int accountNumber, String name)
+  {
+    PojoEvent event = new PojoEvent();
+    event.setAccountNumber(accountNumber);
+    event.setName(name);
+    event.setAmount(accountNumber * 1000);
+    return event;
+  }
+
+  private static ContentRouterOperator router(String routes, boolean emitToAllMatches)
+  {
+    ContentRouterOperator router = new ContentRouterOperator();
+    router.setRoutes(routes);
+    router.setEmitToAllMatches(emitToAllMatches);
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.PortContext.TUPLE_CLASS, PojoEvent.class);
+    router.input.setup(new PortContext(attributes, null));
+    router.setup(null);
+    return router;
+  }
+
+  private static List<CollectorTestSink<Object>> sinks(ContentRouterOperator router, int routes)
+  {
+    List<CollectorTestSink<Object>> sinks = new ArrayList<>();
+    for (int i = 0; i < routes; i++) {
+      CollectorTestSink<Object> sink = new CollectorTestSink<>();
+      router.getRoutePort(i).setSink(sink);
+      sinks.add(sink);
+    }
+    return sinks;
+  }
+
+  private static List<Integer> accountNumbers(CollectorTestSink<Object> sink)
+  {
+    List<Integer> accountNumbers = new ArrayList<>();
+    for (Object tuple : sink.collectedTuples) {
+      accountNumbers.add(((PojoEvent)tuple).getAccountNumber());
+    }
+    return accountNumbers;
+  }
+
+  private static void process(ContentRouterOperator router)
+  {
+    router.beginWindow(1);
+    for (int i = 3; i <= 7; i++) {
+      router.input.process(event(i, i % 2 == 0 ? "User_" + i : "Other_" + i));
+    }
+    router.endWindow();
+  }
+
+  @Test
+  public void testFirstMatch()
+  {
+    ContentRouterOperator router = router(ROUTES, false);
+    List<CollectorTestSink<Object>> sinks = sinks(router, 3);
+    CollectorTestSink<Object> unmatchedSink = new CollectorTestSink<>();
+    router.unmatched.setSink(unmatchedSink);
+
+    process(router);
+    Assert.assertEquals(Arrays.asList(5, 6, 7), accountNumbers(sinks.get(0)));
+    Assert.assertEquals(Arrays.asList(4), accountNumbers(sinks.get(1)));
+    Assert.assertEquals(Arrays.asList(3), accountNumbers(sinks.get(2)));
+    Assert.assertTrue(unmatchedSink.collectedTuples.isEmpty());
+  }
+
+  @Test
+  public void testAllMatches()
+  {
+    ContentRouterOperator router = router(ROUTES, true);
+    List<CollectorTestSink<Object>> sinks = sinks(router, 3);
+    process(router);
+    Assert.assertEquals(Arrays.asList(5, 6, 7), accountNumbers(sinks.get(0)));
+    Assert.assertEquals(Arrays.asList(4, 6), accountNumbers(sinks.get(1)));
+    Assert.assertEquals(Arrays.asList(3, 4), accountNumbers(sinks.get(2)));
+  }
+
+  @Test
+  public void testUnmatched()
+  {
+    ContentRouterOperator router = router("big:({$}.getAmount() >= 1000000)", true);
+    CollectorTestSink<Object> routeSink = sinks(router, 1).get(0);
+    CollectorTestSink<Object> unmatchedSink = new CollectorTestSink<>();
+    router.unmatched.setSink(unmatchedSink);
+    process(router);
+    Assert.assertTrue(routeSink.collectedTuples.isEmpty());
+    Assert.assertEquals(Arrays.asList(3, 4, 5, 6, 7), accountNumbers(unmatchedSink));
+  }
+
+  @Test
+  public void testConditionError()
+  {
+    // the null name fails the second condition after the first one matched
+    ContentRouterOperator router = router(ROUTES, true);
+    List<CollectorTestSink<Object>> sinks = sinks(router, 3);
+    CollectorTestSink<Object> unmatchedSink = new CollectorTestSink<>();
+    CollectorTestSink<Object> errorSink = new CollectorTestSink<>();
+    router.unmatched.setSink(unmatchedSink);
+    router.error.setSink(errorSink);
+
+    router.beginWindow(1);
+    router.input.process(event(8, null));
+    router.input.process(event(9, "User_9"));
+    router.endWindow();
+    Assert.assertEquals(Arrays.asList(8), accountNumbers(errorSink));
+    Assert.assertEquals("the failed tuple is not routed", Arrays.asList(9), accountNumbers(sinks.get(0)));
+    Assert.assertEquals(Arrays.asList(9), accountNumbers(sinks.get(1)));
+    Assert.assertTrue(sinks.get(2).collectedTuples.isEmpty());
+    Assert.assertTrue(unmatchedSink.collectedTuples.isEmpty());
+  }
+
+  @Test
+  public void testDownstreamFailure()
+  {
+    ContentRouterOperator router = router(ROUTES, true);
+    final List<Object> received = new ArrayList<>();
+    router.route0.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.add(tuple);
+        throw new IllegalStateException("downstream failure");
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+    CollectorTestSink<Object> errorSink = new CollectorTestSink<>();
+    router.error.setSink(errorSink);
+
+    router.beginWindow(1);
+    try {
+      router.input.process(event(6, "User_6"));
+      Assert.fail("the failure of the sink is not passed on");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("downstream failure", e.getMessage());
+    }
+    Assert.assertEquals(1, received.size());
+    Assert.assertTrue("the tuple is not taken for an evaluation error", errorSink.collectedTuples.isEmpty());
+  }
+
+  @Test
+  public void testParseRoutes()
+  {
+    Map<String, String> routes = ContentRouterOperator.parseRoutes(
+        "\n  high:({$}.getAmount() >= 5000)\n\n  low : ({$}.getAmount() < 5000) ? true : false\n");
+    Assert.assertEquals(Lists.newArrayList("high", "low"), Lists.newArrayList(routes.keySet()));
+    Assert.assertEquals("({$}.getAmount() >= 5000)", routes.get("high"));
+    Assert.assertEquals("({$}.getAmount() < 5000) ? true : false", routes.get("low"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateRoute()
+  {
+    ContentRouterOperator.parseRoutes("a:true\na:false");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManyRoutes()
+  {
+    StringBuilder routes = new StringBuilder();
+    for (int i = 0; i <= ContentRouterOperator.MAX_ROUTES; i++) {
+      routes.append("route").append(i).append(":true\n");
+    }
+    ContentRouterOperator.parseRoutes(routes.toString());
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Test the ports the records of {@link ParseFilterFormatOperator} are emitted
+ * on.
+ */
+public class ParseFilterFormatOperatorTest
+{
+  private static final String SCHEMA = "{\"separator\": \"|\", \"quoteChar\": \"\\\"\", \"fields\": ["
+      + "{\"name\": \"accountNumber\", \"type\": \"Integer\"}, {\"name\": \"name\", \"type\": \"String\"}, "
+      + "{\"name\": \"amount\", \"type\": \"Integer\"}]}";
+
+  @Test
+  public void testPorts()
+  {
+    ParseFilterFormatOperator operator = new ParseFilterFormatOperator();
+    operator.setSchema(SCHEMA);
+    operator.setCondition("{$.name}.startsWith(\"User\") && {$.amount} >= 5000");
+    operator.setTupleClassName(PojoEvent.class.getName());
+    operator.setup(null);
+    CollectorTestSink<Object> outSink = new CollectorTestSink<>();
+    CollectorTestSink<Object> errSink = new CollectorTestSink<>();
+    operator.out.setSink(outSink);
+    operator.err.setSink(errSink);
+
+    operator.beginWindow(1);
+    operator.processRecord("1|User_1|1000");
+    operator.processRecord("2|\"User|2\"|6000");
+    // the condition fails on the null name
+    operator.processRecord("3||7000");
+    operator.processRecord("4|User_4|x");
+    operator.processRecord("5|User_5|9000");
+    operator.endWindow();
+
+    Assert.assertEquals(Arrays.<Object>asList("2|\"User|2\"|6000", "5|User_5|9000"), outSink.collectedTuples);
+    Assert.assertEquals(Arrays.<Object>asList("3||7000", "4|User_4|x"), errSink.collectedTuples);
+  }
+}
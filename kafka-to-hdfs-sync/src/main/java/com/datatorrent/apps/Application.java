@@ -28,6 +28,7 @@ import org.apache.hadoop.conf.Configuration;
 
 import com.google.common.collect.Maps;
 
+import com.datatorrent.api.Context;
 import com.datatorrent.api.DAG;
 import com.datatorrent.api.StreamingApplication;
 import com.datatorrent.api.annotation.ApplicationAnnotation;
@@ -41,11 +42,21 @@ public class Application implements StreamingApplication
 
   public void populateDAG(DAG dag, Configuration conf)
   {
-    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput", KafkaSinglePortInputOperator.class);
-    BytesFileOutputOperator fileOutput = dag.addOperator("fileOutput", BytesFileOutputOperator.class);
+    KafkaSinglePortInputOperator kafkaInputOperator = dag.addOperator("kafkaInput",
+        InstrumentedKafkaInputOperator.class);
+    BytesFileOutputOperator fileOutput = dag.addOperator("fileOutput", InstrumentedBytesFileOutputOperator.class);
 
     dag.addStream("data", kafkaInputOperator.outputPort, fileOutput.input);
 
+    /*
+     * The instrumented operators report records, bytes and latency percentiles
+     * per window as auto metrics. Partitions are combined by summing the
+     * counts and taking the maximum latency.
+     */
+    LatencyMetrics.Aggregator metricsAggregator = new LatencyMetrics.Aggregator();
+    dag.setAttribute(kafkaInputOperator, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+    dag.setAttribute(fileOutput, Context.OperatorContext.METRICS_AGGREGATOR, metricsAggregator);
+
     /*
      * To add custom logic to your DAG, add your custom operator here with
      * dag.addOperator api call and connect it in the dag using the dag.addStream
@@ -67,9 +78,9 @@ public class Application implements StreamingApplication
      * 
      * Use StringFileOutputOperator instead of BytesFileOutputOperator i.e. 
      * Replace the following line below:
-     * BytesFileOutputOperator fileOutput = dag.addOperator("fileOutput", BytesFileOutputOperator.class);
+     * BytesFileOutputOperator fileOutput = dag.addOperator("fileOutput", InstrumentedBytesFileOutputOperator.class);
      * with this lines:
-     * StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new StringFileOutputOperator());
+     * StringFileOutputOperator fileOutput = dag.addOperator("fileOutput", new InstrumentedStringFileOutputOperator());
      *
      * Connect these operators with approriate streams
      * Replace the following line below:
@@ -91,6 +102,24 @@ public class Application implements StreamingApplication
      * Assert.assertArrayEquals(lines, output.split("\\n"));
      * with
      * Assert.assertArrayEquals(lines_transformed, output.split("\\n"));
+     *
+     * To write the parsed records as block compressed Avro container files,
+     * kafkaInput->CSVParser->fileOutput, use AvroFileOutputOperator instead of
+     * BytesFileOutputOperator and set its csvSchema property to the schema of
+     * the parser, see properties.xml:
+     * CsvParser csvParser = dag.addOperator("csvParser", CsvParser.class);
+     * AvroFileOutputOperator fileOutput = dag.addOperator("fileOutput", new AvroFileOutputOperator());
+     *
+     * dag.addStream("data", kafkaInputOperator.outputPort, csvParser.in);
+     * dag.addStream("pojo", csvParser.out, fileOutput.input);
+     *
+     * To write an index of the Kafka offsets next to every rolled part file,
+     * see the indexInterval property in properties.xml, replace the input and
+     * output operators and the stream with:
+     * KafkaMessageInputOperator kafkaInputOperator = dag.addOperator("kafkaInput", KafkaMessageInputOperator.class);
+     * IndexedFileOutputOperator fileOutput = dag.addOperator("fileOutput", IndexedFileOutputOperator.class);
+     *
+     * dag.addStream("data", kafkaInputOperator.messageOutput, fileOutput.input);
      * 
      */
   }
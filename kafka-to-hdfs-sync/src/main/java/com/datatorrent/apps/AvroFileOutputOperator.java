@@ -0,0 +1,490 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.contrib.parser.DelimitedSchema;
+import com.datatorrent.lib.converter.Converter;
+import com.datatorrent.lib.util.PojoUtils;
+
+/**
+ * File writer for POJOs, such as the output of the csv parser, which writes
+ * Avro object container files.
+ * <p>
+ * Tuples are encoded with the schema into a block buffer. A block is
+ * compressed with <code>codec</code> and written, followed by the sync marker
+ * of the file, once it holds <code>blockSize</code> bytes and before every
+ * checkpoint, so files are splittable at every block and the file length saved
+ * with a checkpoint always ends on a block. Blocks are the tuples of the base
+ * operator, which rolls files only between blocks, and are encoded by its
+ * converter, {@link BlockConverter}; every part file starts with its own
+ * header and is a complete container file. The sync marker is kept in
+ * the checkpoint, so a part appended to after recovery keeps a single marker.
+ * <p>
+ * The schema is <code>schema</code> if set, else built from
+ * <code>csvSchema</code>, the schema of the csv parser, else derived from the
+ * class of the first tuple. Fields are nullable in the last two cases and are
+ * read from the tuples with PojoUtils getters, by name.
+ */
+public class AvroFileOutputOperator extends GenericFileOutputOperator<Object>
+{
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte[] MAGIC = {'O', 'b', 'j', 1};
+
+  private String schema;
+
+  private String csvSchema;
+
+  @Min(1)
+  private int blockSize = 64 * 1024;
+
+  @NotNull
+  @Pattern(regexp = "null|deflate")
+  private String codec = "deflate";
+
+  @Min(-1)
+  @Max(9)
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+  private byte[] syncMarker;
+
+  private transient Schema avroSchema;
+  private transient GenericDatumWriter<GenericData.Record> writer;
+  private transient GenericData.Record record;
+  private transient Class<?> tupleClass;
+  private transient PojoUtils.Getter<Object, Object>[] getters;
+  private transient Schema.Type[] types;
+  private transient Block block;
+  private transient BinaryEncoder blockEncoder;
+  private transient Buffer header;
+  private transient BinaryEncoder headerEncoder;
+  private transient boolean newFile;
+
+  public AvroFileOutputOperator()
+  {
+    setConverter(new BlockConverter());
+  }
+
+  @Override
+  public void setup(Context.OperatorContext context)
+  {
+    super.setup(context);
+    if (syncMarker == null) {
+      UUID uuid = UUID.randomUUID();
+      syncMarker = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits())
+          .putLong(uuid.getLeastSignificantBits()).array();
+    }
+    block = new Block(syncMarker, "deflate".equals(codec) ? new Deflater(compressionLevel, true) : null);
+    blockEncoder = EncoderFactory.get().directBinaryEncoder(block.data, null);
+    header = new Buffer();
+    headerEncoder = EncoderFactory.get().directBinaryEncoder(header, null);
+    if (schema != null) {
+      bindSchema(new Schema.Parser().parse(schema));
+    }
+  }
+
+  @Override
+  public void teardown()
+  {
+    if (block != null && block.deflater != null) {
+      block.deflater.end();
+    }
+    super.teardown();
+  }
+
+  @Override
+  protected void processTuple(Object tuple)
+  {
+    if (tuple.getClass() != tupleClass) {
+      bindClass(tuple.getClass());
+    }
+    for (int i = 0; i < getters.length; i++) {
+      record.put(i, getters[i] == null ? null : value(getters[i].get(tuple), types[i]));
+    }
+    try {
+      writer.write(record, blockEncoder);
+    } catch (IOException e) {
+      throw new RuntimeException("Encoding " + tuple, e);
+    }
+    block.records++;
+    if (block.data.size() >= blockSize) {
+      flushBlock();
+    }
+  }
+
+  private void bindSchema(Schema schema)
+  {
+    avroSchema = schema;
+    writer = new GenericDatumWriter<>(schema);
+    record = new GenericData.Record(schema);
+    types = new Schema.Type[schema.getFields().size()];
+    for (Schema.Field field : schema.getFields()) {
+      types[field.pos()] = valueType(field.schema());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void bindClass(Class<?> clazz)
+  {
+    if (avroSchema == null) {
+      bindSchema(csvSchema != null ? csvRecordSchema(clazz) : ReflectData.AllowNull.get().getSchema(clazz));
+    }
+    tupleClass = clazz;
+    getters = new PojoUtils.Getter[types.length];
+    for (Schema.Field field : avroSchema.getFields()) {
+      try {
+        getters[field.pos()] = PojoUtils.createGetter(clazz, field.name(), Object.class);
+      } catch (RuntimeException e) {
+        LOG.warn("No field {} in {}, writing null", field.name(), clazz.getName());
+      }
+    }
+  }
+
+  private Schema csvRecordSchema(Class<?> clazz)
+  {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (DelimitedSchema.Field field : new DelimitedSchema(csvSchema).getFields()) {
+      Schema.Type type;
+      switch (field.getType()) {
+        case BOOLEAN:
+          type = Schema.Type.BOOLEAN;
+          break;
+        case INTEGER:
+        case SHORT:
+          type = Schema.Type.INT;
+          break;
+        case LONG:
+        case DATE:
+          type = Schema.Type.LONG;
+          break;
+        case FLOAT:
+          type = Schema.Type.FLOAT;
+          break;
+        case DOUBLE:
+          type = Schema.Type.DOUBLE;
+          break;
+        default:
+          type = Schema.Type.STRING;
+      }
+      Schema fieldSchema = Schema.create(type);
+      if (field.getType() == DelimitedSchema.FieldType.DATE) {
+        fieldSchema.addProp("logicalType", "timestamp-millis");
+      }
+      List<Schema> union = new ArrayList<>();
+      union.add(Schema.create(Schema.Type.NULL));
+      union.add(fieldSchema);
+      fields.add(new Schema.Field(field.getName(), Schema.createUnion(union), null, null));
+    }
+    Package pkg = clazz.getPackage();
+    Schema record = Schema.createRecord(clazz.getSimpleName(), null, pkg == null ? null : pkg.getName(), false);
+    record.setFields(fields);
+    return record;
+  }
+
+  /**
+   * The type of the values of a field, the non null branch of a nullable union.
+   */
+  private static Schema.Type valueType(Schema schema)
+  {
+    if (schema.getType() == Schema.Type.UNION) {
+      for (Schema branch : schema.getTypes()) {
+        if (branch.getType() != Schema.Type.NULL) {
+          return branch.getType();
+        }
+      }
+    }
+    return schema.getType();
+  }
+
+  /**
+   * Converts the values the parser produces for a field to the representation
+   * Avro expects for its type.
+   */
+  private static Object value(Object value, Schema.Type type)
+  {
+    if (value == null) {
+      return null;
+    }
+    switch (type) {
+      case INT:
+        return value instanceof Integer ? value : ((Number)value).intValue();
+      case LONG:
+        if (value instanceof Date) {
+          return ((Date)value).getTime();
+        }
+        return value instanceof Long ? value : ((Number)value).longValue();
+      case FLOAT:
+        return value instanceof Float ? value : ((Number)value).floatValue();
+      case DOUBLE:
+        return value instanceof Double ? value : ((Number)value).doubleValue();
+      case STRING:
+        return value instanceof CharSequence ? value : value.toString();
+      default:
+        return value;
+    }
+  }
+
+  private void flushBlock()
+  {
+    if (block.records > 0) {
+      super.processTuple(block);
+    }
+  }
+
+  /**
+   * Returns the pending block encoded by the converter, preceded by the header
+   * if it is the first block of the file. The base operator would append the
+   * tuple separator, which has no place between the sync marker and the next
+   * block.
+   */
+  @Override
+  protected byte[] getBytesForTuple(Object tuple)
+  {
+    byte[] bytes = getConverter().convert(tuple);
+    block.reset();
+    if (!newFile) {
+      return bytes;
+    }
+    header.reset();
+    try {
+      header.write(MAGIC);
+      headerEncoder.writeMapStart();
+      headerEncoder.setItemCount(2);
+      headerEncoder.startItem();
+      headerEncoder.writeString("avro.schema");
+      headerEncoder.writeBytes(avroSchema.toString().getBytes(UTF8));
+      headerEncoder.startItem();
+      headerEncoder.writeString("avro.codec");
+      headerEncoder.writeBytes(codec.getBytes(UTF8));
+      headerEncoder.writeMapEnd();
+      headerEncoder.writeFixed(syncMarker);
+      header.write(bytes);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    newFile = false;
+    return header.toByteArray();
+  }
+
+  @Override
+  protected FSDataOutputStream openStream(Path filepath, boolean append) throws IOException
+  {
+    FSDataOutputStream stream = super.openStream(filepath, append);
+    newFile = !append || fs.getFileStatus(filepath).getLen() == 0;
+    return stream;
+  }
+
+  @Override
+  public void beforeCheckpoint(long windowId)
+  {
+    flushBlock();
+    super.beforeCheckpoint(windowId);
+  }
+
+  /**
+   * Byte array output stream which gives access to its buffer.
+   */
+  private static class Buffer extends ByteArrayOutputStream
+  {
+    byte[] array()
+    {
+      return buf;
+    }
+  }
+
+  /**
+   * Records encoded since the last block was written, the tuple of the base
+   * operator.
+   */
+  public static class Block
+  {
+    private final Buffer data = new Buffer();
+    private final byte[] syncMarker;
+    private final Deflater deflater;
+    private int records;
+
+    Block(byte[] syncMarker, Deflater deflater)
+    {
+      this.syncMarker = syncMarker;
+      this.deflater = deflater;
+    }
+
+    void reset()
+    {
+      data.reset();
+      records = 0;
+    }
+  }
+
+  /**
+   * Converter of the base operator, which encodes a {@link Block} as its
+   * record count, its length and its data, compressed when the block has a
+   * deflater, followed by the sync marker.
+   */
+  public static class BlockConverter implements Converter<Object, byte[]>
+  {
+    private transient Buffer chunk;
+    private transient BinaryEncoder encoder;
+    private transient byte[] compressed;
+
+    @Override
+    public byte[] convert(Object tuple)
+    {
+      Block block = (Block)tuple;
+      if (chunk == null) {
+        chunk = new Buffer();
+        encoder = EncoderFactory.get().directBinaryEncoder(chunk, null);
+        compressed = new byte[Math.max(block.data.size(), 1024)];
+      }
+      chunk.reset();
+      try {
+        encoder.writeLong(block.records);
+        if (block.deflater != null) {
+          int length = compress(block);
+          encoder.writeLong(length);
+          encoder.writeFixed(compressed, 0, length);
+        } else {
+          encoder.writeLong(block.data.size());
+          encoder.writeFixed(block.data.array(), 0, block.data.size());
+        }
+        encoder.writeFixed(block.syncMarker);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return chunk.toByteArray();
+    }
+
+    private int compress(Block block)
+    {
+      Deflater deflater = block.deflater;
+      deflater.reset();
+      deflater.setInput(block.data.array(), 0, block.data.size());
+      deflater.finish();
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == compressed.length) {
+          byte[] grown = new byte[compressed.length * 2];
+          System.arraycopy(compressed, 0, grown, 0, length);
+          compressed = grown;
+        }
+        length += deflater.deflate(compressed, length, compressed.length - length);
+      }
+      return length;
+    }
+  }
+
+  public String getSchema()
+  {
+    return schema;
+  }
+
+  /**
+   * Avro schema of the records, in JSON. Optional.
+   */
+  public void setSchema(String schema)
+  {
+    this.schema = schema;
+  }
+
+  public String getCsvSchema()
+  {
+    return csvSchema;
+  }
+
+  /**
+   * Schema of the csv parser, in JSON, whose fields are written as nullable
+   * fields of the corresponding Avro types, dates as milliseconds. Used when
+   * <code>schema</code> is not set. Optional.
+   */
+  public void setCsvSchema(String csvSchema)
+  {
+    this.csvSchema = csvSchema;
+  }
+
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+  /**
+   * Uncompressed size in bytes at which a block is written. Default is 64KB.
+   */
+  public void setBlockSize(int blockSize)
+  {
+    this.blockSize = blockSize;
+  }
+
+  public String getCodec()
+  {
+    return codec;
+  }
+
+  /**
+   * Compression of the blocks, <code>deflate</code> (default) or
+   * <code>null</code>.
+   */
+  public void setCodec(String codec)
+  {
+    this.codec = codec;
+  }
+
+  public int getCompressionLevel()
+  {
+    return compressionLevel;
+  }
+
+  /**
+   * Deflate level from 0 to 9, -1 for the default level of the codec.
+   */
+  public void setCompressionLevel(int compressionLevel)
+  {
+    this.compressionLevel = compressionLevel;
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(AvroFileOutputOperator.class);
+}
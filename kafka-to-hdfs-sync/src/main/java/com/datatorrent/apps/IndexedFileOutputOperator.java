@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.apache.apex.malhar.lib.fs.GenericFileOutputOperator;
+import org.apache.commons.lang.mutable.MutableInt;
+import org.apache.commons.lang.mutable.MutableLong;
+import org.apache.hadoop.fs.Path;
+
+import com.datatorrent.lib.converter.Converter;
+
+/**
+ * File writer for {@link KafkaMessage}s which writes the message values, like
+ * {@link GenericFileOutputOperator.BytesFileOutputOperator}, together with a
+ * sidecar index of every part file.
+ * <p>
+ * For the first message of every topic partition in a part, and every
+ * <code>indexInterval</code> messages of the partition after it, the topic,
+ * partition, offset and timestamp of the message are recorded with the byte
+ * offset in the part where the message starts. Since the messages of a
+ * partition are written in offset order, a reader looking for an offset seeks
+ * to the last entry of its partition at or before it and reads on from there.
+ * <p>
+ * The entries and the message counts of the partitions in every part are
+ * kept with the checkpoint, together with the file offsets they refer to, so
+ * replayed windows record the same entries again. When a part is finalized
+ * its entries are written next to it, to the part name followed by
+ * <code>indexSuffix</code>, replacing an index left by an earlier attempt.
+ * The index is a big endian int with the number of entries, followed by the
+ * entries, each the topic as modified UTF-8, the partition as an int and the
+ * offset, timestamp and byte offset as longs.
+ */
+public class IndexedFileOutputOperator extends GenericFileOutputOperator<KafkaMessage>
+{
+  @Min(1)
+  private int indexInterval = 10000;
+
+  @NotNull
+  private String indexSuffix = ".index";
+
+  private Map<String, List<IndexEntry>> entries = new HashMap<>();
+
+  /**
+   * Number of messages of every topic partition written to a part, by part
+   * file name and topic.
+   */
+  private Map<String, Map<String, long[]>> partitionMessages = new HashMap<>();
+
+  public IndexedFileOutputOperator()
+  {
+    setConverter(new ValueConverter());
+  }
+
+  @Override
+  protected void processTuple(KafkaMessage tuple)
+  {
+    String fileName = getFileName(tuple);
+    MutableInt part = openPart.get(fileName);
+    String partFileName = getPartFileName(fileName, part == null ? 0 : part.intValue());
+    Map<String, long[]> partMessages = partitionMessages.get(partFileName);
+    if (partMessages == null) {
+      partMessages = new HashMap<>();
+      partitionMessages.put(partFileName, partMessages);
+    }
+    long[] messages = partMessages.get(tuple.getTopic());
+    if (messages == null || messages.length <= tuple.getPartition()) {
+      long[] grown = new long[tuple.getPartition() + 1];
+      if (messages != null) {
+        System.arraycopy(messages, 0, grown, 0, messages.length);
+      }
+      messages = grown;
+      partMessages.put(tuple.getTopic(), messages);
+    }
+    if (messages[tuple.getPartition()]++ % indexInterval == 0) {
+      List<IndexEntry> partEntries = entries.get(partFileName);
+      if (partEntries == null) {
+        partEntries = new ArrayList<>();
+        entries.put(partFileName, partEntries);
+      }
+      MutableLong end = endOffsets.get(fileName);
+      partEntries.add(new IndexEntry(tuple, end == null ? 0 : end.longValue()));
+    }
+    super.processTuple(tuple);
+  }
+
+  @Override
+  protected void finalizeFile(String fileName) throws IOException
+  {
+    super.finalizeFile(fileName);
+    partitionMessages.remove(fileName);
+    List<IndexEntry> partEntries = entries.get(fileName);
+    if (partEntries != null) {
+      Path index = new Path(getFilePath(), fileName + indexSuffix);
+      Path tmpIndex = new Path(getFilePath(), fileName + indexSuffix + ".tmp");
+      try (DataOutputStream out = fs.create(tmpIndex, true)) {
+        out.writeInt(partEntries.size());
+        for (IndexEntry entry : partEntries) {
+          out.writeUTF(entry.topic);
+          out.writeInt(entry.partition);
+          out.writeLong(entry.offset);
+          out.writeLong(entry.timestamp);
+          out.writeLong(entry.position);
+        }
+      }
+      if (fs.exists(index)) {
+        fs.delete(index, false);
+      }
+      if (!fs.rename(tmpIndex, index)) {
+        throw new IOException("Unable to rename " + tmpIndex + " to " + index);
+      }
+      entries.remove(fileName);
+    }
+  }
+
+  /**
+   * Position of a message in Kafka and in the part file.
+   */
+  public static class IndexEntry
+  {
+    private String topic;
+    private int partition;
+    private long offset;
+    private long timestamp;
+    private long position;
+
+    protected IndexEntry()
+    {
+    }
+
+    IndexEntry(KafkaMessage message, long position)
+    {
+      topic = message.getTopic();
+      partition = message.getPartition();
+      offset = message.getOffset();
+      timestamp = message.getTimestamp();
+      this.position = position;
+    }
+  }
+
+  /**
+   * Writes the value of a message.
+   */
+  public static class ValueConverter implements Converter<KafkaMessage, byte[]>
+  {
+    @Override
+    public byte[] convert(KafkaMessage tuple)
+    {
+      return tuple.getValue();
+    }
+  }
+
+  public int getIndexInterval()
+  {
+    return indexInterval;
+  }
+
+  /**
+   * Number of messages of a partition between index entries. Default is 10000.
+   */
+  public void setIndexInterval(int indexInterval)
+  {
+    this.indexInterval = indexInterval;
+  }
+
+  public String getIndexSuffix()
+  {
+    return indexSuffix;
+  }
+
+  /**
+   * Appended to the part file name for the name of its index. Default is
+   * <code>.index</code>.
+   */
+  public void setIndexSuffix(String indexSuffix)
+  {
+    this.indexSuffix = indexSuffix;
+  }
+}
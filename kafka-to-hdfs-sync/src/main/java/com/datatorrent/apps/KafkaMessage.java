@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+/**
+ * Kafka message value with its position in the topic, and the time it was
+ * consumed.
+ */
+public class KafkaMessage
+{
+  private String topic;
+  private int partition;
+  private long offset;
+  private long timestamp;
+  private byte[] value;
+
+  public KafkaMessage()
+  {
+  }
+
+  public KafkaMessage(String topic, int partition, long offset, long timestamp, byte[] value)
+  {
+    this.topic = topic;
+    this.partition = partition;
+    this.offset = offset;
+    this.timestamp = timestamp;
+    this.value = value;
+  }
+
+  public String getTopic()
+  {
+    return topic;
+  }
+
+  public void setTopic(String topic)
+  {
+    this.topic = topic;
+  }
+
+  public int getPartition()
+  {
+    return partition;
+  }
+
+  public void setPartition(int partition)
+  {
+    this.partition = partition;
+  }
+
+  public long getOffset()
+  {
+    return offset;
+  }
+
+  public void setOffset(long offset)
+  {
+    this.offset = offset;
+  }
+
+  public long getTimestamp()
+  {
+    return timestamp;
+  }
+
+  public void setTimestamp(long timestamp)
+  {
+    this.timestamp = timestamp;
+  }
+
+  public byte[] getValue()
+  {
+    return value;
+  }
+
+  public void setValue(byte[] value)
+  {
+    this.value = value;
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.datatorrent.apps;
+
+import org.apache.apex.malhar.kafka.KafkaSinglePortInputOperator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.annotation.OutputPortFieldAnnotation;
+
+/**
+ * {@link KafkaSinglePortInputOperator} which also emits every message with its
+ * topic, partition and offset on <code>messageOutput</code>, for writers which
+ * index their output by Kafka position. The timestamp is the time the message
+ * was consumed, the consumer of this Kafka version has no message timestamps.
+ */
+public class KafkaMessageInputOperator extends KafkaSinglePortInputOperator
+{
+  @OutputPortFieldAnnotation(optional = true)
+  public final transient DefaultOutputPort<KafkaMessage> messageOutput = new DefaultOutputPort<>();
+
+  @Override
+  protected void emitTuple(String cluster, ConsumerRecord<byte[], byte[]> message)
+  {
+    if (messageOutput.isConnected()) {
+      messageOutput.emit(new KafkaMessage(message.topic(), message.partition(), message.offset(),
+          System.currentTimeMillis(), message.value()));
+    }
+    if (outputPort.isConnected()) {
+      super.emitTuple(cluster, message);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.util.KryoCloneUtils;
+
+/**
+ * Test that the files written by {@link AvroFileOutputOperator} are read back
+ * by the Avro {@link DataFileReader}, with either codec.
+ */
+public class AvroFileOutputOperatorTest
+{
+  private static final String SCHEMA = "{\"type\": \"record\", \"name\": \"Event\", \"fields\": ["
+      + "{\"name\": \"id\", \"type\": \"int\"}, {\"name\": \"name\", \"type\": [\"null\", \"string\"]}]}";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public static class Event
+  {
+    private int id;
+    private String name;
+
+    public Event()
+    {
+    }
+
+    public Event(int id, String name)
+    {
+      this.id = id;
+      this.name = name;
+    }
+
+    public int getId()
+    {
+      return id;
+    }
+
+    public void setId(int id)
+    {
+      this.id = id;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public void setName(String name)
+    {
+      this.name = name;
+    }
+  }
+
+  private AvroFileOutputOperator writer(File dir, String codec)
+  {
+    AvroFileOutputOperator writer = new AvroFileOutputOperator();
+    writer.setFilePath(dir.getPath());
+    writer.setOutputFileName("events.avro");
+    writer.setSchema(SCHEMA);
+    writer.setCodec(codec);
+    writer.setBlockSize(64);
+    writer.setMaxLength(300);
+    return writer;
+  }
+
+  private static void setup(AvroFileOutputOperator writer, long activationWindowId)
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.OperatorContext.ACTIVATION_WINDOW_ID, activationWindowId);
+    writer.setup(OperatorContextTestHelper.mockOperatorContext(1, attributes));
+  }
+
+  /**
+   * Writes the events with the ids [from, to) in a window, every tenth
+   * without a name.
+   */
+  private static void window(AvroFileOutputOperator writer, long windowId, int from, int to)
+  {
+    writer.beginWindow(windowId);
+    for (int id = from; id < to; id++) {
+      writer.input.process(new Event(id, id % 10 == 0 ? null : "event-" + id));
+    }
+    writer.endWindow();
+  }
+
+  private static List<String> expected(int count)
+  {
+    List<String> events = new ArrayList<>();
+    for (int id = 0; id < count; id++) {
+      events.add(id + ":" + (id % 10 == 0 ? null : "event-" + id));
+    }
+    return events;
+  }
+
+  /**
+   * The part files in the directory, in part order, without the checksum files
+   * of the local file system.
+   */
+  private static List<File> parts(File dir)
+  {
+    List<File> parts = new ArrayList<>();
+    for (File file : dir.listFiles()) {
+      if (!file.getName().startsWith(".")) {
+        parts.add(file);
+      }
+    }
+    Collections.sort(parts, new Comparator<File>()
+    {
+      @Override
+      public int compare(File a, File b)
+      {
+        return Integer.compare(part(a), part(b));
+      }
+
+      private int part(File file)
+      {
+        return Integer.parseInt(file.getName().substring(file.getName().lastIndexOf('.') + 1));
+      }
+    });
+    return parts;
+  }
+
+  /**
+   * Reads the events of all parts, checking that each part is a complete
+   * container file with the codec in its header.
+   */
+  private static List<String> read(List<File> parts, String codec) throws Exception
+  {
+    List<String> events = new ArrayList<>();
+    for (File part : parts) {
+      try (DataFileReader<GenericRecord> reader = new DataFileReader<>(part, new GenericDatumReader<GenericRecord>())) {
+        Assert.assertEquals(part.getName(), codec, reader.getMetaString("avro.codec"));
+        Assert.assertEquals("Event", reader.getSchema().getName());
+        for (GenericRecord record : reader) {
+          Object name = record.get("name");
+          events.add(record.get("id") + ":" + (name == null ? null : name.toString()));
+        }
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Walks the blocks of a part, checking that every block is followed by the
+   * sync marker of the header and nothing else, and that the last one ends the
+   * file.
+   *
+   * @return number of records and number of blocks in the part
+   */
+  private static long[] checkBlocks(File part) throws Exception
+  {
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(Files.readAllBytes(part.toPath()), null);
+    byte[] magic = new byte[4];
+    decoder.readFixed(magic);
+    Assert.assertArrayEquals(new byte[] {'O', 'b', 'j', 1}, magic);
+    for (long n = decoder.readMapStart(); n != 0; n = decoder.mapNext()) {
+      for (long i = 0; i < n; i++) {
+        decoder.readString(null);
+        decoder.readBytes(null);
+      }
+    }
+    byte[] sync = new byte[16];
+    decoder.readFixed(sync);
+    long[] counts = new long[2];
+    byte[] marker = new byte[16];
+    while (!decoder.isEnd()) {
+      counts[0] += decoder.readLong();
+      decoder.skipFixed((int)decoder.readLong());
+      decoder.readFixed(marker);
+      Assert.assertArrayEquals(part.getName() + " block " + counts[1], sync, marker);
+      counts[1]++;
+    }
+    return counts;
+  }
+
+  private static void checkBlocks(List<File> parts, int records) throws Exception
+  {
+    long[] total = new long[2];
+    for (File part : parts) {
+      long[] counts = checkBlocks(part);
+      total[0] += counts[0];
+      total[1] += counts[1];
+    }
+    Assert.assertEquals(records, total[0]);
+    Assert.assertTrue("blocks " + total[1], total[1] > parts.size());
+  }
+
+  private void testRolledParts(String codec) throws Exception
+  {
+    File dir = folder.newFolder(codec);
+    AvroFileOutputOperator writer = writer(dir, codec);
+    setup(writer, Stateless.WINDOW_ID);
+    window(writer, 1, 0, 100);
+    writer.beforeCheckpoint(1);
+    writer.checkpointed(1);
+    writer.committed(1);
+    window(writer, 2, 100, 200);
+    writer.beforeCheckpoint(2);
+    writer.teardown();
+
+    List<File> parts = parts(dir);
+    Assert.assertTrue(parts.toString(), parts.size() >= 2);
+    checkBlocks(parts, 200);
+    Assert.assertEquals(expected(200), read(parts, codec));
+  }
+
+  @Test
+  public void testRolledParts() throws Exception
+  {
+    for (String codec : Arrays.asList("null", "deflate")) {
+      testRolledParts(codec);
+    }
+  }
+
+  private void testAppendAfterRecovery(String codec) throws Exception
+  {
+    File dir = folder.newFolder(codec);
+    AvroFileOutputOperator writer = writer(dir, codec);
+    writer.setMaxLength(Long.MAX_VALUE);
+    setup(writer, Stateless.WINDOW_ID);
+    window(writer, 1, 0, 30);
+    writer.beforeCheckpoint(1);
+    AvroFileOutputOperator restored = KryoCloneUtils.cloneObject(writer);
+    writer.checkpointed(1);
+    window(writer, 2, 30, 60);
+    writer.teardown();
+
+    // the part is truncated to the checkpoint and window 2 appended again
+    setup(restored, 1);
+    window(restored, 2, 30, 60);
+    window(restored, 3, 60, 90);
+    restored.beforeCheckpoint(3);
+    restored.teardown();
+
+    List<File> parts = parts(dir);
+    Assert.assertEquals(parts.toString(), 1, parts.size());
+    // blocks of three windows, written before and after the recovery
+    checkBlocks(parts, 90);
+    Assert.assertEquals(expected(90), read(parts, codec));
+  }
+
+  @Test
+  public void testAppendAfterRecovery() throws Exception
+  {
+    for (String codec : Arrays.asList("null", "deflate")) {
+      testAppendAfterRecovery(codec);
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datatorrent.api.Attribute;
+import com.datatorrent.api.Context;
+import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.lib.helper.OperatorContextTestHelper;
+import com.datatorrent.lib.util.KryoCloneUtils;
+
+/**
+ * Test the part files and sidecar indexes written by
+ * {@link IndexedFileOutputOperator}.
+ * <p>
+ * Every message value is "partition-offset\n" with a fixed width, so the
+ * expected index of a part can be computed from its content.
+ */
+public class IndexedFileOutputOperatorTest
+{
+  private static final String TOPIC = "events";
+  private static final int MESSAGE_LENGTH = 10;
+  private static final int INDEX_INTERVAL = 3;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static KafkaMessage message(int partition, long offset)
+  {
+    byte[] value = String.format("%d-%07d\n", partition, offset).getBytes(StandardCharsets.UTF_8);
+    return new KafkaMessage(TOPIC, partition, offset, offset * 1000, value);
+  }
+
+  private IndexedFileOutputOperator writer()
+  {
+    IndexedFileOutputOperator writer = new IndexedFileOutputOperator();
+    writer.setFilePath(folder.getRoot().getPath());
+    writer.setOutputFileName("messages");
+    writer.setMaxLength(10 * MESSAGE_LENGTH);
+    writer.setIndexInterval(INDEX_INTERVAL);
+    return writer;
+  }
+
+  private static void setup(IndexedFileOutputOperator writer, long activationWindowId)
+  {
+    Attribute.AttributeMap attributes = new Attribute.AttributeMap.DefaultAttributeMap();
+    attributes.put(Context.OperatorContext.ACTIVATION_WINDOW_ID, activationWindowId);
+    writer.setup(OperatorContextTestHelper.mockOperatorContext(1, attributes));
+  }
+
+  /**
+   * Writes the messages with the offsets [from, to) of partitions 0 and 1,
+   * interleaved, in a window.
+   */
+  private static void window(IndexedFileOutputOperator writer, long windowId, int from, int to)
+  {
+    writer.beginWindow(windowId);
+    for (int offset = from; offset < to; offset++) {
+      writer.input.process(message(0, offset));
+      if (offset % 2 == 0) {
+        writer.input.process(message(1, offset / 2));
+      }
+    }
+    writer.endWindow();
+  }
+
+  private static void commit(IndexedFileOutputOperator writer, long windowId)
+  {
+    writer.beforeCheckpoint(windowId);
+    writer.checkpointed(windowId);
+    writer.committed(windowId);
+  }
+
+  private static String entry(String topic, int partition, long offset, long timestamp, long position)
+  {
+    return topic + "-" + partition + "@" + offset + " " + timestamp + " at " + position;
+  }
+
+  private static List<String> readIndex(File index) throws IOException
+  {
+    List<String> entries = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new FileInputStream(index))) {
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        entries.add(entry(in.readUTF(), in.readInt(), in.readLong(), in.readLong(), in.readLong()));
+      }
+      Assert.assertEquals("end of " + index, -1, in.read());
+    }
+    return entries;
+  }
+
+  /**
+   * Index entries for the first message of every partition in the part and
+   * every INDEX_INTERVAL messages of the partition after it.
+   */
+  private static List<String> expectedEntries(byte[] part)
+  {
+    Assert.assertEquals(0, part.length % MESSAGE_LENGTH);
+    List<String> entries = new ArrayList<>();
+    Map<Integer, Integer> messages = new HashMap<>();
+    for (int position = 0; position < part.length; position += MESSAGE_LENGTH) {
+      String value = new String(part, position, MESSAGE_LENGTH - 1, StandardCharsets.UTF_8);
+      int partition = Integer.parseInt(value.substring(0, 1));
+      long offset = Long.parseLong(value.substring(2));
+      Integer count = messages.get(partition);
+      if (count == null) {
+        count = 0;
+      }
+      if (count % INDEX_INTERVAL == 0) {
+        entries.add(entry(TOPIC, partition, offset, offset * 1000, position));
+      }
+      messages.put(partition, count + 1);
+    }
+    return entries;
+  }
+
+  /**
+   * Checks the index of every finalized part against its content and returns
+   * the number of indexed parts.
+   */
+  private int checkIndexes() throws IOException
+  {
+    int parts = 0;
+    for (File index : folder.getRoot().listFiles()) {
+      if (!index.getName().endsWith(".index")) {
+        continue;
+      }
+      File part = new File(index.getParent(), index.getName().substring(0, index.getName().length() - 6));
+      Assert.assertTrue(part + " exists", part.isFile());
+      Assert.assertEquals(index.getName(), expectedEntries(FileUtils.readFileToByteArray(part)), readIndex(index));
+      parts++;
+    }
+    return parts;
+  }
+
+  @Test
+  public void testIndexOfRolledParts() throws Exception
+  {
+    IndexedFileOutputOperator writer = writer();
+    setup(writer, Stateless.WINDOW_ID);
+    window(writer, 1, 0, 20);
+    commit(writer, 1);
+    window(writer, 2, 20, 40);
+    commit(writer, 2);
+    writer.teardown();
+
+    // 60 messages of 10 bytes in parts of up to 100 bytes
+    Assert.assertTrue(checkIndexes() >= 4);
+
+    // the first part starts with the first message of either partition
+    File index = new File(folder.getRoot(), "messages_1.0.index");
+    if (index.exists()) {
+      List<String> entries = readIndex(index);
+      Assert.assertEquals(Arrays.asList(entry(TOPIC, 0, 0, 0, 0), entry(TOPIC, 1, 0, 0, MESSAGE_LENGTH)),
+          entries.subList(0, 2));
+    }
+  }
+
+  @Test
+  public void testReplay() throws Exception
+  {
+    IndexedFileOutputOperator writer = writer();
+    setup(writer, Stateless.WINDOW_ID);
+    window(writer, 1, 0, 5);
+    writer.beforeCheckpoint(1);
+    IndexedFileOutputOperator checkpoint = KryoCloneUtils.cloneObject(writer);
+    writer.checkpointed(1);
+    window(writer, 2, 5, 12);
+    writer.teardown();
+
+    // window 2 is written again by the restored operator, in the middle of the first part
+    IndexedFileOutputOperator restored = checkpoint;
+    setup(restored, 1);
+    window(restored, 2, 5, 12);
+    window(restored, 3, 12, 40);
+    commit(restored, 3);
+    restored.teardown();
+
+    Assert.assertTrue(checkIndexes() >= 4);
+  }
+}
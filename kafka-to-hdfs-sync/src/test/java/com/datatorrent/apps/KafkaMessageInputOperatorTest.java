@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.datatorrent.apps;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import com.datatorrent.lib.testbench.CollectorTestSink;
+
+/**
+ * Test the ports {@link KafkaMessageInputOperator} emits a consumed message
+ * on.
+ */
+public class KafkaMessageInputOperatorTest
+{
+  private static ConsumerRecord<byte[], byte[]> record(long offset)
+  {
+    return new ConsumerRecord<>("events", 3, offset, null, ("message " + offset).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testMessageOutput()
+  {
+    KafkaMessageInputOperator input = new KafkaMessageInputOperator();
+    CollectorTestSink<Object> messages = new CollectorTestSink<>();
+    input.messageOutput.setSink(messages);
+
+    long before = System.currentTimeMillis();
+    input.emitTuple("cluster", record(42));
+    Assert.assertEquals(1, messages.collectedTuples.size());
+    KafkaMessage message = (KafkaMessage)messages.collectedTuples.get(0);
+    Assert.assertEquals("events", message.getTopic());
+    Assert.assertEquals(3, message.getPartition());
+    Assert.assertEquals(42, message.getOffset());
+    Assert.assertTrue(message.getTimestamp() >= before);
+    Assert.assertEquals("message 42", new String(message.getValue(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testBothPorts()
+  {
+    KafkaMessageInputOperator input = new KafkaMessageInputOperator();
+    CollectorTestSink<Object> messages = new CollectorTestSink<>();
+    CollectorTestSink<Object> values = new CollectorTestSink<>();
+    input.messageOutput.setSink(messages);
+    input.outputPort.setSink(values);
+
+    input.emitTuple("cluster", record(1));
+    input.emitTuple("cluster", record(2));
+    Assert.assertEquals(2, messages.collectedTuples.size());
+    Assert.assertEquals(2, values.collectedTuples.size());
+    Assert.assertEquals("message 2", new String((byte[])values.collectedTuples.get(1), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testValuesOnly()
+  {
+    KafkaMessageInputOperator input = new KafkaMessageInputOperator();
+    CollectorTestSink<Object> values = new CollectorTestSink<>();
+    input.outputPort.setSink(values);
+
+    input.emitTuple("cluster", record(7));
+    Assert.assertFalse(input.messageOutput.isConnected());
+    Assert.assertEquals("message 7", new String((byte[])values.collectedTuples.get(0), StandardCharsets.UTF_8));
+  }
+}